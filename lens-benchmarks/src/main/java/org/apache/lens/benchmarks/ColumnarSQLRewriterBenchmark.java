@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.cube.parse.CubeQueryRewriter;
+import org.apache.lens.cube.parse.HQLParser;
+import org.apache.lens.driver.jdbc.ColumnarSQLRewriter;
+import org.apache.lens.driver.jdbc.JDBCDriverConfConstants;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Rewrites the HQL of cube queries of each {@link QueryShape} for a columnar database, the way the JDBC driver does.
+ * <p></p>
+ * With <code>cached=false</code> the rewrite cache of the rewriter and the AST cache of {@link HQLParser} are
+ * disabled, so the benchmark measures parsing the HQL and the whole rewrite. With <code>cached=true</code> the
+ * rewritten query is served from the rewrite cache, so the benchmark measures a cache hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class ColumnarSQLRewriterBenchmark {
+  // SUSPEND CHECKSTYLE CHECK VisibilityModifierCheck
+  @Param
+  public QueryShape shape;
+  // whether rewritten queries are served from the rewrite cache
+  @Param({"false", "true"})
+  public boolean cached;
+  // RESUME CHECKSTYLE CHECK VisibilityModifierCheck
+
+  private String rewrittenQuery;
+  private ColumnarSQLRewriter rewriter;
+
+  @Setup(Level.Trial)
+  public void setUp(CubeSchemaState cube) throws Exception {
+    cube.startSession();
+    HQLParser.setASTCacheMaxSize(cached ? HQLParser.DEFAULT_AST_CACHE_MAX_SIZE : 0);
+    rewrittenQuery = new CubeQueryRewriter(cube.getQueryConf(), cube.getHiveConf()).rewrite(cube.getQuery(shape))
+      .toHQL();
+    Configuration rewriterConf = new Configuration(cube.getQueryConf());
+    rewriterConf.setLong(JDBCDriverConfConstants.JDBC_REWRITE_CACHE_MAX_SIZE, cached ? 1000 : 0);
+    rewriter = new ColumnarSQLRewriter();
+    rewriter.init(rewriterConf);
+  }
+
+  @Benchmark
+  public String rewrite(CubeSchemaState cube) throws Exception {
+    return rewriter.rewrite(rewrittenQuery, cube.getQueryConf(), cube.getHiveConf());
+  }
+}
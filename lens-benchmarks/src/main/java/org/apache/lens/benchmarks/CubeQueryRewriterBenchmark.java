@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.cube.parse.CubeQueryRewriter;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Rewrites cube queries of each {@link QueryShape} to HQL, the way a driver rewrites a submitted query. This covers
+ * parsing, all the context rewriters including join and storage table resolution, and writing the HQL. The same
+ * query is rewritten again and again, so its parsed tree comes from the AST cache of
+ * {@link org.apache.lens.cube.parse.HQLParser}, as for a query submitted again to a server. Parsing a query is
+ * measured by {@link HQLParserBenchmark}.
+ * <p></p>
+ * Run with <code>mvn -pl lens-benchmarks exec:exec -Dbenchmark.args="CubeQueryRewriterBenchmark -prof gc"</code> to
+ * also report allocations per query as <code>gc.alloc.rate.norm</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class CubeQueryRewriterBenchmark {
+  // SUSPEND CHECKSTYLE CHECK VisibilityModifierCheck
+  @Param
+  public QueryShape shape;
+  // RESUME CHECKSTYLE CHECK VisibilityModifierCheck
+
+  private String query;
+
+  @Setup(Level.Trial)
+  public void setUp(CubeSchemaState cube) {
+    cube.startSession();
+    query = cube.getQuery(shape);
+  }
+
+  @Benchmark
+  public String rewrite(CubeSchemaState cube) throws Exception {
+    return new CubeQueryRewriter(cube.getQueryConf(), cube.getHiveConf()).rewrite(query).toHQL();
+  }
+}
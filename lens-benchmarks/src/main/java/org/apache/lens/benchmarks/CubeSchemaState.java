@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.parse.CubeQueryConfUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.api.Database;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.session.SessionState;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A {@link SyntheticCubeSchema} created in an embedded metastore, shared by all the threads of a benchmark. The size
+ * of the schema is set by the parameters of the benchmark. Every thread running queries on the schema should call
+ * {@link #startSession()} first.
+ */
+@State(Scope.Benchmark)
+public class CubeSchemaState {
+  public static final String DATABASE = "lens_benchmarks";
+
+  // SUSPEND CHECKSTYLE CHECK VisibilityModifierCheck
+  @Param({"1", "10"})
+  public int numFacts;
+  @Param({"10"})
+  public int numDimensions;
+  @Param({"10"})
+  public int numChains;
+  @Param({"24", "720"})
+  public int numPartitions;
+  // RESUME CHECKSTYLE CHECK VisibilityModifierCheck
+
+  private HiveConf hiveConf;
+  private Configuration queryConf;
+  private SyntheticCubeSchema schema;
+  private File workDir;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    workDir = Files.createTempDirectory("lens-benchmarks").toFile();
+    System.setProperty("derby.stream.error.file", new File(workDir, "derby.log").getAbsolutePath());
+    hiveConf = new HiveConf(CubeSchemaState.class);
+    hiveConf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY, "jdbc:derby:;databaseName="
+      + new File(workDir, "metastore_db").getAbsolutePath() + ";create=true");
+    hiveConf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, new File(workDir, "warehouse").getAbsolutePath());
+    hiveConf.setVar(HiveConf.ConfVars.HIVEHISTORYFILELOC, new File(workDir, "querylog").getAbsolutePath());
+    SessionState.start(hiveConf);
+    Database database = new Database();
+    database.setName(DATABASE);
+    Hive.get(hiveConf).createDatabase(database);
+    SessionState.get().setCurrentDatabase(DATABASE);
+
+    schema = new SyntheticCubeSchema(numFacts, numDimensions, numChains, numPartitions);
+    schema.create(CubeMetastoreClient.getInstance(hiveConf));
+
+    queryConf = new Configuration(hiveConf);
+    queryConf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, SyntheticCubeSchema.STORAGE);
+    queryConf.setBoolean(CubeQueryConfUtil.DISABLE_AGGREGATE_RESOLVER, false);
+  }
+
+  public HiveConf getHiveConf() {
+    return hiveConf;
+  }
+
+  /**
+   * Configuration of cube queries on the schema.
+   *
+   * @return query configuration
+   */
+  public Configuration getQueryConf() {
+    return queryConf;
+  }
+
+  public SyntheticCubeSchema getSchema() {
+    return schema;
+  }
+
+  /**
+   * Starts a hive session on the schema database for the current thread.
+   */
+  public void startSession() {
+    if (SessionState.get() == null) {
+      SessionState.start(hiveConf);
+    }
+    SessionState.get().setCurrentDatabase(DATABASE);
+  }
+
+  /**
+   * Cube query of the given shape on the schema.
+   *
+   * @param shape query shape
+   * @return cube query
+   */
+  public String getQuery(QueryShape shape) {
+    return shape.getQuery(schema);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    Hive.get(hiveConf).dropDatabase(DATABASE, true, true, true);
+    Hive.closeCurrent();
+    try {
+      DriverManager.getConnection("jdbc:derby:;shutdown=true");
+    } catch (SQLException e) {
+      // derby always reports shutdown with an exception
+    }
+    FileUtils.deleteQuietly(workDir);
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.cube.parse.CubeQueryRewriter;
+import org.apache.lens.cube.parse.HQLParser;
+
+import org.apache.hadoop.hive.ql.parse.ASTNode;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses cube queries of each {@link QueryShape}, and parses and prints the HQL they are rewritten to.
+ * <p></p>
+ * {@link HQLParser#parseHQL(String, org.apache.hadoop.hive.conf.HiveConf)} keeps the trees of parsed queries in a
+ * static cache. With <code>astCached=false</code> the cache is disabled, so the benchmarks measure the Hive parser.
+ * With <code>astCached=true</code> the same query is parsed again and again, so they measure a cache hit, which is
+ * only the copy of the cached tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g"})
+public class HQLParserBenchmark {
+  // SUSPEND CHECKSTYLE CHECK VisibilityModifierCheck
+  @Param
+  public QueryShape shape;
+  // whether parsed trees are served from the AST cache of HQLParser
+  @Param({"false", "true"})
+  public boolean astCached;
+  // RESUME CHECKSTYLE CHECK VisibilityModifierCheck
+
+  private String query;
+  private String rewrittenQuery;
+
+  @Setup(Level.Trial)
+  public void setUp(CubeSchemaState cube) throws Exception {
+    cube.startSession();
+    HQLParser.setASTCacheMaxSize(astCached ? HQLParser.DEFAULT_AST_CACHE_MAX_SIZE : 0);
+    query = cube.getQuery(shape);
+    rewrittenQuery = new CubeQueryRewriter(cube.getQueryConf(), cube.getHiveConf()).rewrite(query).toHQL();
+  }
+
+  @Benchmark
+  public ASTNode parseCubeQuery(CubeSchemaState cube) throws Exception {
+    return HQLParser.parseHQL(query, cube.getHiveConf());
+  }
+
+  @Benchmark
+  public String parseAndPrintRewrittenQuery(CubeSchemaState cube) throws Exception {
+    return HQLParser.getString(HQLParser.parseHQL(rewrittenQuery, cube.getHiveConf()));
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import static org.apache.lens.benchmarks.SyntheticCubeSchema.*;
+
+/**
+ * Representative shapes of cube queries on the {@link SyntheticCubeSchema}.
+ */
+public enum QueryShape {
+  /** Measures by a cube attribute, without joins */
+  SIMPLE {
+    @Override
+    public String getQuery(SyntheticCubeSchema schema) {
+      return "select " + getDimensionRefName(0) + ", " + getMeasureName(0) + ", " + getMeasureName(1) + " from "
+        + CUBE_NAME + " where " + schema.getTimeRange();
+    }
+  },
+  /** Measures by an attribute of a dimension joined directly with the cube */
+  JOIN {
+    @Override
+    public String getQuery(SyntheticCubeSchema schema) {
+      return "select " + getChainName(0) + ".name, " + getMeasureName(0) + " from " + CUBE_NAME + " where "
+        + schema.getTimeRange();
+    }
+  },
+  /** Measures by an attribute of a dimension joined through all the other dimensions */
+  DEEP_JOIN {
+    @Override
+    public String getQuery(SyntheticCubeSchema schema) {
+      return "select " + DEEP_CHAIN + ".name, " + getMeasureName(0) + " from " + CUBE_NAME + " where "
+        + schema.getTimeRange();
+    }
+  },
+  /** All measures by attributes of all join chains, with filters, ordering and limit */
+  WIDE {
+    @Override
+    public String getQuery(SyntheticCubeSchema schema) {
+      StringBuilder query = new StringBuilder("select ");
+      for (int i = 0; i < schema.getNumChains(); i++) {
+        query.append(getChainName(i)).append(".name, ");
+      }
+      for (int i = 0; i < NUM_MEASURES; i++) {
+        query.append(i == 0 ? "" : ", ").append(getMeasureName(i));
+      }
+      query.append(" from ").append(CUBE_NAME).append(" where ").append(schema.getTimeRange());
+      for (int i = 0; i < schema.getNumChains(); i++) {
+        query.append(" and ").append(getChainName(i)).append(".name != 'unknown'");
+      }
+      return query.append(" order by ").append(getChainName(0)).append(".name limit 100").toString();
+    }
+  };
+
+  /**
+   * Cube query of this shape.
+   *
+   * @param schema schema queried
+   * @return cube query
+   */
+  public abstract String getQuery(SyntheticCubeSchema schema);
+}
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.benchmarks;
+
+import java.util.*;
+
+import org.apache.lens.cube.metadata.*;
+import org.apache.lens.cube.parse.DateUtil;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.mapred.TextInputFormat;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A synthetic cube schema for benchmarking query rewriting.
+ * <p></p>
+ * The schema has one cube with {@link #NUM_MEASURES} measures, a reference to every dimension and a time dimension
+ * {@link #TIME_DIM}. Every fact has all the columns of the cube, is available on the storage {@link #STORAGE} with
+ * hourly and daily partitions, and has a different weight. Dimension <i>i</i> has an id, a name and a parent
+ * referring to dimension <i>i - 1</i>. Join chain <i>i</i> goes from the cube to dimension <i>i % numDimensions</i>,
+ * and the join chain {@link #DEEP_CHAIN} goes from the cube to the last dimension and through the parents to the first
+ * dimension.
+ */
+public class SyntheticCubeSchema {
+  public static final String CUBE_NAME = "benchcube";
+  public static final String STORAGE = "C1";
+  public static final String TIME_DIM = "dt";
+  public static final String DEEP_CHAIN = "deepchain";
+  public static final int NUM_MEASURES = 10;
+
+  private final int numFacts;
+  private final int numDimensions;
+  private final int numChains;
+  private final int numPartitions;
+  // hour of the latest partition
+  private final Date now;
+
+  public SyntheticCubeSchema(int numFacts, int numDimensions, int numChains, int numPartitions) {
+    if (numFacts < 1 || numDimensions < 1 || numPartitions < 1) {
+      throw new IllegalArgumentException("Schema needs at least one fact, one dimension and one partition");
+    }
+    this.numFacts = numFacts;
+    this.numDimensions = numDimensions;
+    this.numChains = numChains;
+    this.numPartitions = numPartitions;
+    this.now = DateUtil.getFloorDate(new Date(), UpdatePeriod.HOURLY);
+  }
+
+  public int getNumFacts() {
+    return numFacts;
+  }
+
+  public int getNumDimensions() {
+    return numDimensions;
+  }
+
+  public int getNumChains() {
+    return numChains;
+  }
+
+  public int getNumPartitions() {
+    return numPartitions;
+  }
+
+  public static String getFactName(int fact) {
+    return "fact" + fact;
+  }
+
+  public static String getDimensionName(int dim) {
+    return "dim" + dim;
+  }
+
+  public static String getChainName(int chain) {
+    return "chain" + chain;
+  }
+
+  public static String getMeasureName(int measure) {
+    return "msr" + measure;
+  }
+
+  public static String getDimensionRefName(int dim) {
+    return "dim" + dim + "id";
+  }
+
+  /**
+   * Creates the schema in the current database of the client.
+   *
+   * @param client metastore client
+   * @throws HiveException
+   * @throws LensException
+   */
+  public void create(CubeMetastoreClient client) throws HiveException, LensException {
+    client.createStorage(new HDFSStorage(STORAGE));
+    for (int i = 0; i < numDimensions; i++) {
+      createDimension(client, i);
+    }
+    createCube(client);
+    for (int i = 0; i < numFacts; i++) {
+      createFact(client, i);
+    }
+    addPartitions(client);
+  }
+
+  private void createDimension(CubeMetastoreClient client, int dim) throws HiveException {
+    String name = getDimensionName(dim);
+    List<FieldSchema> columns = new ArrayList<FieldSchema>();
+    columns.add(new FieldSchema("id", serdeConstants.INT_TYPE_NAME, "id"));
+    columns.add(new FieldSchema("name", serdeConstants.STRING_TYPE_NAME, "name"));
+    columns.add(new FieldSchema("parentid", serdeConstants.INT_TYPE_NAME, "id of the parent"));
+    Set<CubeDimAttribute> attributes = new HashSet<CubeDimAttribute>();
+    for (FieldSchema column : columns) {
+      attributes.add(new BaseDimAttribute(column));
+    }
+    client.createDimension(new Dimension(name, attributes));
+    client.createCubeDimensionTable(name, name + "tbl", columns, 0L, Collections.singleton(STORAGE), null,
+      Collections.singletonMap(STORAGE, getStorageTableDesc(false)));
+  }
+
+  private void createCube(CubeMetastoreClient client) throws HiveException {
+    Set<CubeMeasure> measures = new HashSet<CubeMeasure>();
+    for (int i = 0; i < NUM_MEASURES; i++) {
+      measures.add(new ColumnMeasure(new FieldSchema(getMeasureName(i), serdeConstants.DOUBLE_TYPE_NAME, "measure"),
+        null, null, "SUM", null));
+    }
+    Set<CubeDimAttribute> dimensions = new HashSet<CubeDimAttribute>();
+    for (int i = 0; i < numDimensions; i++) {
+      dimensions.add(new BaseDimAttribute(new FieldSchema(getDimensionRefName(i), serdeConstants.INT_TYPE_NAME,
+        "reference")));
+    }
+    Set<JoinChain> chains = new HashSet<JoinChain>();
+    for (int i = 0; i < numChains; i++) {
+      int dim = i % numDimensions;
+      JoinChain chain = new JoinChain(getChainName(i), getChainName(i), "cube to " + getDimensionName(dim));
+      chain.addPath(Arrays.asList(new TableReference(CUBE_NAME, getDimensionRefName(dim)),
+        new TableReference(getDimensionName(dim), "id")));
+      chains.add(chain);
+    }
+    JoinChain deepChain = new JoinChain(DEEP_CHAIN, DEEP_CHAIN, "cube to all dimensions through their parents");
+    List<TableReference> path = new ArrayList<TableReference>();
+    path.add(new TableReference(CUBE_NAME, getDimensionRefName(numDimensions - 1)));
+    path.add(new TableReference(getDimensionName(numDimensions - 1), "id"));
+    for (int i = numDimensions - 1; i > 0; i--) {
+      path.add(new TableReference(getDimensionName(i), "parentid"));
+      path.add(new TableReference(getDimensionName(i - 1), "id"));
+    }
+    deepChain.addPath(path);
+    chains.add(deepChain);
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put(MetastoreUtil.getCubeTimedDimensionListKey(CUBE_NAME), TIME_DIM);
+    client.createCube(new Cube(CUBE_NAME, measures, dimensions, null, chains, properties, 0L));
+  }
+
+  private void createFact(CubeMetastoreClient client, int fact) throws HiveException {
+    List<FieldSchema> columns = new ArrayList<FieldSchema>();
+    for (int i = 0; i < NUM_MEASURES; i++) {
+      columns.add(new FieldSchema(getMeasureName(i), serdeConstants.DOUBLE_TYPE_NAME, "measure"));
+    }
+    for (int i = 0; i < numDimensions; i++) {
+      columns.add(new FieldSchema(getDimensionRefName(i), serdeConstants.INT_TYPE_NAME, "reference"));
+    }
+    Map<String, Set<UpdatePeriod>> updatePeriods = new HashMap<String, Set<UpdatePeriod>>();
+    updatePeriods.put(STORAGE, EnumSet.of(UpdatePeriod.HOURLY, UpdatePeriod.DAILY));
+    client.createCubeFactTable(CUBE_NAME, getFactName(fact), columns, updatePeriods, 10L * (fact + 1), null,
+      Collections.singletonMap(STORAGE, getStorageTableDesc(true)));
+  }
+
+  private StorageTableDesc getStorageTableDesc(boolean partitioned) {
+    StorageTableDesc desc = new StorageTableDesc();
+    desc.setInputFormat(TextInputFormat.class.getCanonicalName());
+    desc.setOutputFormat(HiveIgnoreKeyTextOutputFormat.class.getCanonicalName());
+    if (partitioned) {
+      desc.setPartCols(Lists.newArrayList(new FieldSchema(TIME_DIM, serdeConstants.STRING_TYPE_NAME,
+        "time partition")));
+      desc.setTimePartCols(Collections.singletonList(TIME_DIM));
+    }
+    return desc;
+  }
+
+  /** hourly partitions for the last numPartitions hours, and daily partitions for the days in that range */
+  private void addPartitions(CubeMetastoreClient client) throws HiveException, LensException {
+    List<StoragePartitionDesc> partitions = new ArrayList<StoragePartitionDesc>();
+    Calendar cal = Calendar.getInstance();
+    for (int fact = 0; fact < numFacts; fact++) {
+      cal.setTime(now);
+      for (int i = 0; i < numPartitions; i++) {
+        partitions.add(getPartition(fact, UpdatePeriod.HOURLY, cal.getTime()));
+        cal.add(Calendar.HOUR_OF_DAY, -1);
+      }
+      Date firstDay = DateUtil.getFloorDate(getRangeStart(), UpdatePeriod.DAILY);
+      cal.setTime(DateUtil.getFloorDate(now, UpdatePeriod.DAILY));
+      while (!cal.getTime().before(firstDay)) {
+        partitions.add(getPartition(fact, UpdatePeriod.DAILY, cal.getTime()));
+        cal.add(Calendar.DAY_OF_MONTH, -1);
+      }
+    }
+    Map<StoragePartitionDesc, Exception> failures = client.addFactPartitions(Collections.singletonMap(STORAGE,
+      partitions));
+    if (!failures.isEmpty()) {
+      throw new HiveException("Could not add partitions " + failures.keySet(), failures.values().iterator().next());
+    }
+  }
+
+  private StoragePartitionDesc getPartition(int fact, UpdatePeriod updatePeriod, Date partition) {
+    return new StoragePartitionDesc(getFactName(fact), Collections.singletonMap(TIME_DIM, partition), null,
+      updatePeriod);
+  }
+
+  /**
+   * Start of the time range having partitions in all facts.
+   *
+   * @return hour of the earliest hourly partition
+   */
+  public Date getRangeStart() {
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(now);
+    cal.add(Calendar.HOUR_OF_DAY, 1 - numPartitions);
+    return cal.getTime();
+  }
+
+  /**
+   * Time range filter on the time dimension for the range having partitions in all facts.
+   *
+   * @return time range filter
+   */
+  public String getTimeRange() {
+    return "time_range_in(" + TIME_DIM + ", '" + UpdatePeriod.HOURLY.format().format(getRangeStart()) + "', '"
+      + UpdatePeriod.HOURLY.format().format(now) + "')";
+  }
+}
@@ -220,6 +220,17 @@ public class LensClient {
     return getLensStatement(query).getResultSet();
   }
 
+  public QueryResult getResults(QueryHandle query, long startIndex, int fetchSize) {
+    LensStatement lensStatement = getLensStatement(query);
+    QueryStatus status = lensStatement.getStatus();
+    if (!status.isResultSetAvailable()) {
+      LOG.debug("Current status of the query is " + status);
+      throw new IllegalStateException("Resultset for the query "
+        + query + " is not available, its current status is " + status);
+    }
+    return lensStatement.getResultSet(lensStatement.getQuery(), startIndex, fetchSize);
+  }
+
   public List<QueryHandle> getQueries(String state, String queryName, String user, long fromDate, long toDate) {
     return new LensStatement(connection).getAllQueries(state, queryName, user, fromDate, toDate);
   }
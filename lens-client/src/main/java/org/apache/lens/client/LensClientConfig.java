@@ -51,6 +51,12 @@ public class LensClientConfig extends Configuration {
   /** The Constant DEFAULT_QUERY_POLL_INTERVAL. */
   private static final long DEFAULT_QUERY_POLL_INTERVAL = 10L;
 
+  /** Number of queries fetched from the server in one request while listing queries. */
+  public static final String QUERY_LIST_PAGE_SIZE = CLIENT_PFX + "query.list.page.size";
+
+  /** The Constant DEFAULT_QUERY_LIST_PAGE_SIZE. */
+  public static final int DEFAULT_QUERY_LIST_PAGE_SIZE = 1000;
+
   /** The Constant USER_NAME. */
   private static final String USER_NAME = CLIENT_PFX + "user.name";
 
@@ -138,6 +144,10 @@ public class LensClientConfig extends Configuration {
     return this.getLong(QUERY_POLL_INTERVAL_KEY, DEFAULT_QUERY_POLL_INTERVAL);
   }
 
+  public int getQueryListPageSize() {
+    return this.getInt(QUERY_LIST_PAGE_SIZE, DEFAULT_QUERY_LIST_PAGE_SIZE);
+  }
+
   public String getMetastoreResourcePath() {
     return DEFAULT_METASTORE_RESOURCE_PATH;
   }
@@ -110,6 +110,10 @@ public class LensConnectionParams {
     return this.conf.getQueryPollInterval();
   }
 
+  public int getQueryListPageSize() {
+    return this.conf.getQueryListPageSize();
+  }
+
   public LensConf getSessionConf() {
     LensConf conf = new LensConf();
     Iterator<Map.Entry<String, String>> itr = this.conf.iterator();
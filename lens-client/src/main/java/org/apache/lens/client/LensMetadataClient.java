@@ -955,6 +955,14 @@ public class LensMetadataClient {
     return result;
   }
 
+  public XPartitionAddResults addPartitionsToFactTables(XBulkPartitions partitions) {
+    WebTarget target = getMetastoreWebTarget();
+    return target.path("partitions")
+      .queryParam("sessionid", this.connection.getSessionHandle())
+      .request(MediaType.APPLICATION_XML)
+      .post(Entity.xml(objFact.createXBulkPartitions(partitions)), XPartitionAddResults.class);
+  }
+
   public APIResult addPartitionsToFactTable(String fact, String storage,
     String partitionsSpec) {
     try {
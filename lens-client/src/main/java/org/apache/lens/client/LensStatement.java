@@ -18,6 +18,7 @@
  */
 package org.apache.lens.client;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.ws.rs.client.Client;
@@ -368,7 +369,8 @@ public class LensStatement {
   }
 
   /**
-   * Gets the all queries.
+   * Gets the all queries. The queries are fetched a page at a time, each page starting after the last query of the
+   * previous one.
    *
    * @param state     the state
    * @param queryName the query name
@@ -378,12 +380,42 @@ public class LensStatement {
    * @return the all queries
    */
   public List<QueryHandle> getAllQueries(String state, String queryName, String user, long fromDate, long toDate) {
-    WebTarget target = getQueryWebTarget(ClientBuilder.newBuilder().register(MultiPartFeature.class).build());
-    List<QueryHandle> handles = target.queryParam("sessionid", connection.getSessionHandle())
+    int pageSize = connection.getLensConnectionParams().getQueryListPageSize();
+    List<QueryHandle> handles = new ArrayList<QueryHandle>();
+    QueryHandle after = null;
+    while (true) {
+      List<QueryHandle> page = getAllQueries(state, queryName, user, fromDate, toDate, after, pageSize);
+      handles.addAll(page);
+      if (pageSize <= 0 || page.size() < pageSize) {
+        return handles;
+      }
+      after = page.get(page.size() - 1);
+    }
+  }
+
+  /**
+   * Gets a page of the queries, ordered by submission time.
+   *
+   * @param state     the state
+   * @param queryName the query name
+   * @param user      the user
+   * @param fromDate  the from date
+   * @param toDate    the to date
+   * @param after     the last query of the previous page, null for the first page
+   * @param limit     maximum number of queries in the page, all the queries if not positive
+   * @return the queries
+   */
+  public List<QueryHandle> getAllQueries(String state, String queryName, String user, long fromDate, long toDate,
+    QueryHandle after, int limit) {
+    WebTarget target = getQueryWebTarget(ClientBuilder.newBuilder().register(MultiPartFeature.class).build())
+      .queryParam("sessionid", connection.getSessionHandle())
       .queryParam("state", state).queryParam("queryName", queryName).queryParam("user", user)
-      .queryParam("fromDate", fromDate).queryParam("toDate", toDate).request()
-      .get(new GenericType<List<QueryHandle>>() {
-      });
+      .queryParam("fromDate", fromDate).queryParam("toDate", toDate).queryParam("limit", limit);
+    if (after != null) {
+      target = target.queryParam("after", after.toString());
+    }
+    List<QueryHandle> handles = target.request().get(new GenericType<List<QueryHandle>>() {
+    });
     return handles;
   }
 
@@ -446,6 +478,19 @@ public class LensStatement {
    * @return the result set
    */
   public QueryResult getResultSet(LensQuery query) {
+    return getResultSet(query, 0, 0);
+  }
+
+  /**
+   * Gets a window of rows of the result set. Consecutive windows are read from a cursor kept on the server, so reading
+   * the result in increasing order of start index does not re-read earlier rows.
+   *
+   * @param query      the query
+   * @param startIndex index of the first row to fetch
+   * @param fetchSize  maximum number of rows to fetch, all the remaining rows if not positive
+   * @return the result set
+   */
+  public QueryResult getResultSet(LensQuery query, long startIndex, int fetchSize) {
     if (query.getStatus().getStatus() != QueryStatus.Status.SUCCESSFUL) {
       throw new IllegalArgumentException("Result set metadata " + "can be only queries for successful queries");
     }
@@ -454,7 +499,8 @@ public class LensStatement {
     try {
       WebTarget target = getQueryWebTarget(client);
       return target.path(query.getQueryHandle().toString()).path("resultset")
-        .queryParam("sessionid", connection.getSessionHandle()).request().get(QueryResult.class);
+        .queryParam("sessionid", connection.getSessionHandle()).queryParam("fromindex", startIndex)
+        .queryParam("fetchsize", fetchSize).request().get(QueryResult.class);
     } catch (Exception e) {
       throw new IllegalStateException("Failed to get resultset, cause:" + e.getMessage());
     }
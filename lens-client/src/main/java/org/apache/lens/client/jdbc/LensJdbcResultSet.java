@@ -33,10 +33,16 @@ import org.apache.lens.api.query.*;
 public class LensJdbcResultSet implements ResultSet {
 
   /** The result. */
-  private final QueryResult result;
+  private QueryResult result;
 
   /** The iterators. */
-  private final Iterator<ResultRow> iterators;
+  private Iterator<ResultRow> iterators;
+
+  /** Number of rows fetched from the server so far. */
+  private long fetchedRows;
+
+  /** Number of rows fetched from the server at a time, all rows are fetched at once if zero. */
+  private int fetchSize;
 
   /** The current row. */
   private ResultRow currentRow;
@@ -70,17 +76,36 @@ public class LensJdbcResultSet implements ResultSet {
     this.result = result;
     this.metadata = metadata;
     this.statement = statement;
+    try {
+      this.fetchSize = statement.getFetchSize();
+    } catch (SQLException e) {
+      this.fetchSize = 0;
+    }
     colNames = new ArrayList<String>();
     colTypes = new ArrayList<ResultColumnType>();
     for (ResultColumn col : metadata.getColumns()) {
       colNames.add(col.getName());
       colTypes.add(col.getType());
     }
-    if (result instanceof InMemoryQueryResult) {
-      iterators = ((InMemoryQueryResult) result).getRows().iterator();
-    } else {
-      iterators = null;
+    setPage(result);
+  }
+
+  /**
+   * Start iterating over the rows of the given page.
+   *
+   * @param page the page
+   * @return number of rows in the page
+   */
+  private int setPage(QueryResult page) {
+    result = page;
+    if (page instanceof InMemoryQueryResult) {
+      List<ResultRow> rows = ((InMemoryQueryResult) page).getRows();
+      iterators = rows.iterator();
+      fetchedRows += rows.size();
+      return rows.size();
     }
+    iterators = null;
+    return 0;
   }
 
   /*
@@ -94,7 +119,16 @@ public class LensJdbcResultSet implements ResultSet {
       throw new SQLException("You cannot iterate after resultset is closed");
     }
 
-    if (iterators != null && iterators.hasNext()) {
+    if (iterators == null) {
+      return false;
+    }
+    // a full page means the server may have more rows, fetch the next page once the current one is consumed
+    while (!iterators.hasNext() && fetchSize > 0 && ((InMemoryQueryResult) result).getRows().size() == fetchSize) {
+      if (setPage(statement.fetchResultPage(fetchedRows)) == 0) {
+        return false;
+      }
+    }
+    if (iterators.hasNext()) {
       currentRow = iterators.next();
       return true;
     }
@@ -812,12 +846,12 @@ public class LensJdbcResultSet implements ResultSet {
 
   @Override
   public int getFetchSize() throws SQLException {
-    throw new SQLException("Operation not supported");
+    return fetchSize;
   }
 
   @Override
   public void setFetchSize(int i) throws SQLException {
-    throw new SQLException("Operation not supported");
+    throw new SQLException("Operation not supported, set the fetch size on the statement");
   }
 
   /*
@@ -20,6 +20,7 @@ package org.apache.lens.client.jdbc;
 
 import java.sql.*;
 
+import org.apache.lens.api.query.QueryResult;
 import org.apache.lens.client.LensStatement;
 import org.apache.lens.client.exceptions.LensAPIException;
 
@@ -40,6 +41,9 @@ public class LensJdbcStatement implements Statement {
   /** The closed. */
   private boolean closed;
 
+  /** Number of rows fetched from the server at a time, all rows are fetched at once if zero. */
+  private int fetchSize;
+
   /**
    * Instantiates a new lens jdbc statement.
    *
@@ -62,7 +66,7 @@ public class LensJdbcStatement implements Statement {
     } catch (LensAPIException e) {
       log.error("Execution Failed for Statement:{}", s, e);
     }
-    return new LensJdbcResultSet(statement.getResultSet(), statement.getResultSetMetaData(), this);
+    return new LensJdbcResultSet(fetchResultPage(0), statement.getResultSetMetaData(), this);
   }
 
   /*
@@ -127,7 +131,7 @@ public class LensJdbcStatement implements Statement {
     if (closed) {
       throw new SQLException("Cannot get resultset for closed statements");
     }
-    return new LensJdbcResultSet(statement.getResultSet(), statement.getResultSetMetaData(), this);
+    return new LensJdbcResultSet(fetchResultPage(0), statement.getResultSetMetaData(), this);
   }
 
   @Override
@@ -162,6 +166,16 @@ public class LensJdbcStatement implements Statement {
     this.statement.closeResultSet();
   }
 
+  /**
+   * Fetch the rows of the result starting at the given index, at most fetch size rows are fetched.
+   *
+   * @param startIndex index of the first row to fetch
+   * @return the query result
+   */
+  QueryResult fetchResultPage(long startIndex) {
+    return statement.getResultSet(statement.getQuery(), startIndex, fetchSize);
+  }
+
   @Override
   public SQLWarning getWarnings() throws SQLException {
     return null;
@@ -220,13 +234,15 @@ public class LensJdbcStatement implements Statement {
 
   @Override
   public void setFetchSize(int i) throws SQLException {
-    throw new SQLException("Operation not supported!!!!");
-
+    if (i < 0) {
+      throw new SQLException("Fetch size cannot be negative: " + i);
+    }
+    fetchSize = i;
   }
 
   @Override
   public int getFetchSize() throws SQLException {
-    throw new SQLException("Operation not supported!!!!");
+    return fetchSize;
   }
 
   /*
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.client.jdbc;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lens.api.query.*;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for fetching the rows of a result set in pages.
+ */
+public class TestLensJdbcResultSet {
+
+  private static final QueryResultSetMetadata METADATA = new QueryResultSetMetadata(
+    Collections.singletonList(new ResultColumn("id", ResultColumnType.INT)));
+
+  /**
+   * Page of the rows of a result holding integers 0 to numRows - 1.
+   */
+  private static InMemoryQueryResult page(long startIndex, int fetchSize, int numRows) {
+    List<ResultRow> rows = new ArrayList<ResultRow>();
+    for (long i = startIndex; i < numRows && (fetchSize == 0 || i < startIndex + fetchSize); i++) {
+      rows.add(new ResultRow(Collections.<Object>singletonList((int) i)));
+    }
+    return new InMemoryQueryResult(rows);
+  }
+
+  /**
+   * Statement serving pages of a result with the given number of rows.
+   */
+  private static LensJdbcStatement mockStatement(final int fetchSize, final int numRows) throws SQLException {
+    LensJdbcStatement statement = mock(LensJdbcStatement.class);
+    when(statement.getFetchSize()).thenReturn(fetchSize);
+    when(statement.fetchResultPage(anyLong())).thenAnswer(new Answer<QueryResult>() {
+      @Override
+      public QueryResult answer(InvocationOnMock invocation) {
+        return page((Long) invocation.getArguments()[0], fetchSize, numRows);
+      }
+    });
+    return statement;
+  }
+
+  private static List<Object> readAll(LensJdbcResultSet resultSet) throws SQLException {
+    List<Object> values = new ArrayList<Object>();
+    while (resultSet.next()) {
+      values.add(resultSet.getObject(1));
+    }
+    assertFalse(resultSet.next());
+    return values;
+  }
+
+  private static List<Object> range(int numRows) {
+    List<Object> values = new ArrayList<Object>();
+    for (int i = 0; i < numRows; i++) {
+      values.add(i);
+    }
+    return values;
+  }
+
+  @Test
+  public void testPagedFetch() throws SQLException {
+    LensJdbcStatement statement = mockStatement(2, 5);
+    LensJdbcResultSet resultSet = new LensJdbcResultSet(statement.fetchResultPage(0), METADATA, statement);
+    assertEquals(readAll(resultSet), range(5));
+    verify(statement).fetchResultPage(0);
+    verify(statement).fetchResultPage(2);
+    verify(statement).fetchResultPage(4);
+    // the last page was not full, so there is nothing more to fetch
+    verify(statement, times(3)).fetchResultPage(anyLong());
+  }
+
+  @Test
+  public void testPagedFetchOfFullLastPage() throws SQLException {
+    LensJdbcStatement statement = mockStatement(2, 4);
+    LensJdbcResultSet resultSet = new LensJdbcResultSet(statement.fetchResultPage(0), METADATA, statement);
+    assertEquals(readAll(resultSet), range(4));
+    // a full last page is followed by a fetch which finds no more rows
+    verify(statement).fetchResultPage(4);
+    verify(statement, times(3)).fetchResultPage(anyLong());
+  }
+
+  @Test
+  public void testFetchWithoutFetchSize() throws SQLException {
+    LensJdbcStatement statement = mockStatement(0, 5);
+    LensJdbcResultSet resultSet = new LensJdbcResultSet(statement.fetchResultPage(0), METADATA, statement);
+    assertEquals(readAll(resultSet), range(5));
+    verify(statement, times(1)).fetchResultPage(anyLong());
+  }
+}
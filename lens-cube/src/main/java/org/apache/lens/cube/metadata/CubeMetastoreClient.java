@@ -21,7 +21,13 @@ package org.apache.lens.cube.metadata;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lens.cube.metadata.Storage.LatestInfo;
 import org.apache.lens.cube.metadata.Storage.LatestPartColumnInfo;
@@ -32,8 +38,12 @@ import org.apache.lens.server.api.error.LensException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.TableType;
+import org.apache.hadoop.hive.metastore.Warehouse;
+import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.metastore.api.InvalidOperationException;
+import org.apache.hadoop.hive.metastore.api.MetaException;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
 import org.apache.hadoop.hive.ql.metadata.Hive;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.metadata.Partition;
@@ -41,6 +51,11 @@ import org.apache.hadoop.hive.ql.metadata.Table;
 import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.thrift.TException;
 
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -53,14 +68,53 @@ import lombok.extern.apachecommons.CommonsLog;
 public class CubeMetastoreClient {
   private final HiveConf config;
   private final boolean enableCaching;
+  // database of this client
+  private final String dbName;
+  // whether changes are published to and checked against the version stamp of the database
+  private final boolean versionedCache;
+  private final long cacheCheckIntervalMillis;
 
-  private CubeMetastoreClient(HiveConf conf) {
+  CubeMetastoreClient(HiveConf conf, String dbName) {
     this.config = new HiveConf(conf);
     this.enableCaching = conf.getBoolean(MetastoreConstants.METASTORE_ENABLE_CACHING, true);
+    this.dbName = dbName;
+    this.versionedCache = conf.getBoolean(MetastoreConstants.METASTORE_CACHE_VERSIONED,
+      MetastoreConstants.DEFAULT_METASTORE_CACHE_VERSIONED);
+    this.cacheCheckIntervalMillis = conf.getLong(MetastoreConstants.METASTORE_CACHE_CHECK_INTERVAL_MILLIS,
+      MetastoreConstants.DEFAULT_METASTORE_CACHE_CHECK_INTERVAL_MILLIS);
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    long maxSize = conf.getLong(MetastoreConstants.METASTORE_CACHE_MAX_SIZE,
+      MetastoreConstants.DEFAULT_METASTORE_CACHE_MAX_SIZE);
+    if (maxSize > 0) {
+      builder.maximumSize(maxSize);
+    }
+    long expiryMillis = conf.getLong(MetastoreConstants.METASTORE_CACHE_EXPIRY_MILLIS,
+      MetastoreConstants.DEFAULT_METASTORE_CACHE_EXPIRY_MILLIS);
+    if (expiryMillis > 0) {
+      builder.expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS);
+    }
+    this.allHiveTables = builder.removalListener(new RemovalListener<String, Table>() {
+      @Override
+      public void onRemoval(RemovalNotification<String, Table> notification) {
+        tableRemoved(notification.getKey(), notification.getValue(), notification.wasEvicted());
+      }
+    }).build();
+    CacheBuilder<Object, Object> statsBuilder = CacheBuilder.newBuilder();
+    long statsMaxSize = conf.getLong(MetastoreConstants.PARTITION_STATS_CACHE_MAX_SIZE,
+      MetastoreConstants.DEFAULT_PARTITION_STATS_CACHE_MAX_SIZE);
+    if (statsMaxSize > 0) {
+      statsBuilder.maximumSize(statsMaxSize);
+    }
+    long statsExpiryMillis = conf.getLong(MetastoreConstants.PARTITION_STATS_CACHE_EXPIRY_MILLIS,
+      MetastoreConstants.DEFAULT_PARTITION_STATS_CACHE_EXPIRY_MILLIS);
+    if (statsExpiryMillis > 0) {
+      statsBuilder.expireAfterWrite(statsExpiryMillis, TimeUnit.MILLISECONDS);
+    }
+    this.partitionStats = statsBuilder.build();
   }
 
   // map from table name to Table
-  private final Map<String, Table> allHiveTables = Maps.newConcurrentMap();
+  private final Cache<String, Table> allHiveTables;
   private volatile boolean allTablesPopulated = false;
   // map from dimension name to Dimension
   private final Map<String, Dimension> allDims = Maps.newConcurrentMap();
@@ -77,11 +131,31 @@ public class CubeMetastoreClient {
   // map from storage name to storage
   private final Map<String, Storage> allStorages = Maps.newConcurrentMap();
   private volatile boolean allStoragesPopulated = false;
+  // map from storage table and partition name to statistics of the partition
+  private final Cache<String, PartitionStats> partitionStats;
   // Partition cache. Inner class since it logically belongs here
   PartitionTimelineCache partitionTimelineCache = new PartitionTimelineCache();
   // dbname to client mapping
   private static final Map<String, CubeMetastoreClient> CLIENT_MAPPING = Maps.newConcurrentMap();
+  /** Version of the metastore, incremented on every change made through any client */
+  private static final AtomicLong METASTORE_VERSION = new AtomicLong();
+  // incremented whenever cached entries are evicted or reloaded, so that listings being populated are not marked
+  // complete
+  private final AtomicLong cacheGeneration = new AtomicLong();
+  private final Object cacheCheckLock = new Object();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+  private volatile long lastCacheCheck = System.currentTimeMillis();
+  // version stamps of the database when the cache was last checked
+  private String knownVersionStamp;
+  private String knownTablesVersionStamp;
+  // changes made by the public operation being run by the current thread, published once when it ends
+  private final ThreadLocal<PendingChange> pendingChange = new ThreadLocal<PendingChange>();
   private SchemaGraph schemaGraph;
+  // version of cubes and dimensions the schema graph was built for
+  private long schemaGraphVersion;
+  // incremented whenever a cube or dimension is created, changed or dropped
+  private final AtomicLong schemaVersion = new AtomicLong();
   // Set of all storage table names for which latest partitions exist
   private final Set<String> latestLookupCache = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
@@ -131,7 +205,334 @@ public class CubeMetastoreClient {
 
   /** clear hive table cache */
   public void clearHiveTableCache() {
-    allHiveTables.clear();
+    allHiveTables.invalidateAll();
+    metastoreChanged();
+  }
+
+  /**
+   * Drop all the tables, cubes, dimensions, storages and partition timelines cached by this client. With a versioned
+   * cache, the version stamp of the database is changed too, so that clients on other servers drop their cached
+   * entries that changed in the metastore.
+   */
+  public void invalidateCache() {
+    allHiveTables.invalidateAll();
+    invalidateListings();
+    synchronized (partitionTimelineCache) {
+      partitionTimelineCache.clear();
+    }
+    partitionStats.invalidateAll();
+    publishChange(true);
+    log.info("Invalidated metastore cache of database " + dbName);
+  }
+
+  /**
+   * Number of table lookups served from the caches of all the clients.
+   *
+   * @return cache hits
+   */
+  public static long getCacheHitCount() {
+    long hits = 0;
+    for (CubeMetastoreClient client : CLIENT_MAPPING.values()) {
+      hits += client.cacheHits.get();
+    }
+    return hits;
+  }
+
+  /**
+   * Number of table lookups of all the clients which were not cached and went to the metastore.
+   *
+   * @return cache misses
+   */
+  public static long getCacheMissCount() {
+    long misses = 0;
+    for (CubeMetastoreClient client : CLIENT_MAPPING.values()) {
+      misses += client.cacheMisses.get();
+    }
+    return misses;
+  }
+
+  /** remove the objects built from the table, and forget complete listings if it was evicted */
+  private void tableRemoved(String tableName, Table table, boolean evicted) {
+    String tableType = table == null ? null : table.getParameters().get(MetastoreConstants.TABLE_TYPE_KEY);
+    if (CubeTableType.CUBE.name().equals(tableType) || CubeTableType.DIMENSION.name().equals(tableType)) {
+      schemaChanged();
+    }
+    allCubes.remove(tableName);
+    allDims.remove(tableName);
+    allFactTables.remove(tableName);
+    allDimTables.remove(tableName);
+    allStorages.remove(tableName);
+    if (evicted) {
+      invalidateListings();
+    }
+  }
+
+  private void invalidateListings() {
+    cacheGeneration.incrementAndGet();
+    allTablesPopulated = false;
+    allCubesPopulated = false;
+    allDimensionsPopulated = false;
+    allFactTablesPopulated = false;
+    allDimTablesPopulated = false;
+    allStoragesPopulated = false;
+  }
+
+  /**
+   * Check the caches of all the clients, as done on their lookups, so that results computed from the metastore and
+   * cached elsewhere see the changes made by other servers without a lookup through the clients. Cheap when the check
+   * interval has not elapsed.
+   */
+  public static void checkAllCaches() {
+    for (CubeMetastoreClient client : CLIENT_MAPPING.values()) {
+      client.checkCache();
+    }
+  }
+
+  /**
+   * Expire cached tables and, with a versioned cache, reload the tables changed in the metastore by other clients.
+   * This is done at most once in the configured check interval, so that cache lookups stay cheap.
+   */
+  private void checkCache() {
+    if (!enableCaching || System.currentTimeMillis() - lastCacheCheck < cacheCheckIntervalMillis) {
+      return;
+    }
+    Set<String> changedTables = null;
+    synchronized (cacheCheckLock) {
+      long now = System.currentTimeMillis();
+      if (now - lastCacheCheck < cacheCheckIntervalMillis) {
+        return;
+      }
+      lastCacheCheck = now;
+      allHiveTables.cleanUp();
+      if (versionedCache) {
+        try {
+          Database db = getClient().getDatabase(dbName);
+          String versionStamp = getVersionStamp(db, MetastoreConstants.METASTORE_VERSION_KEY);
+          String tablesVersionStamp = getVersionStamp(db, MetastoreConstants.METASTORE_TABLES_VERSION_KEY);
+          if (!versionStamp.equals(knownVersionStamp)) {
+            changedTables = reloadChangedTables(!tablesVersionStamp.equals(knownTablesVersionStamp));
+            knownVersionStamp = versionStamp;
+            knownTablesVersionStamp = tablesVersionStamp;
+          }
+        } catch (HiveException e) {
+          log.warn("Could not check version of metastore cache for database " + dbName, e);
+        }
+      }
+    }
+    dropTimelines(changedTables);
+  }
+
+  /** Changes made by a public operation, which are published once the operation ends. */
+  private static class PendingChange {
+    // nesting depth of the operations being run
+    private int depth;
+    private boolean changed;
+    private boolean tablesChanged;
+  }
+
+  /**
+   * Start an operation which may change the metastore many times. Changes are published once, when the outermost
+   * operation started by the thread ends, so that a batch of partitions does not update the version stamp for every
+   * partition. Must be followed by {@link #endChange()} in a finally block.
+   */
+  private void startChange() {
+    PendingChange pending = pendingChange.get();
+    if (pending == null) {
+      pending = new PendingChange();
+      pendingChange.set(pending);
+    }
+    pending.depth++;
+  }
+
+  /** End an operation started with {@link #startChange()}, publishing its changes if it is the outermost one. */
+  private void endChange() {
+    PendingChange pending = pendingChange.get();
+    if (--pending.depth > 0) {
+      return;
+    }
+    pendingChange.remove();
+    if (pending.changed) {
+      publishVersionStamp(pending.tablesChanged);
+    }
+  }
+
+  /**
+   * Mark the metastore as changed by this client. With a versioned cache, a new version stamp is written to the
+   * database, after reloading the tables changed by other clients since the last check. When called inside an
+   * operation started with {@link #startChange()}, the stamp is written when the operation ends.
+   *
+   * @param tablesChanged whether tables were created or dropped, rather than only altered or their partitions changed
+   */
+  private void publishChange(boolean tablesChanged) {
+    metastoreChanged();
+    if (!versionedCache) {
+      return;
+    }
+    PendingChange pending = pendingChange.get();
+    if (pending != null) {
+      pending.changed = true;
+      pending.tablesChanged |= tablesChanged;
+      return;
+    }
+    publishVersionStamp(tablesChanged);
+  }
+
+  /**
+   * Write a new version stamp to the database, and a new tables version stamp if tables were created or dropped, so
+   * that clients on other servers reload the changed tables and, only in the latter case, their listings.
+   * <p></p>
+   * The metastore cannot compare and set database parameters, so a stamp written by another server between reading and
+   * writing the database here is overwritten. This client therefore does not take the stamps it writes as known, only
+   * the ones it read: its next check sees its own stamp as new and compares the cached tables once more, which picks up
+   * the changes of the overwritten stamp.
+   *
+   * @param tablesChanged whether tables were created or dropped
+   */
+  private void publishVersionStamp(boolean tablesChanged) {
+    Set<String> changedTables = null;
+    synchronized (cacheCheckLock) {
+      try {
+        Database db = getClient().getDatabase(dbName);
+        String versionStamp = getVersionStamp(db, MetastoreConstants.METASTORE_VERSION_KEY);
+        String tablesVersionStamp = getVersionStamp(db, MetastoreConstants.METASTORE_TABLES_VERSION_KEY);
+        if (!versionStamp.equals(knownVersionStamp)) {
+          changedTables = reloadChangedTables(!tablesVersionStamp.equals(knownTablesVersionStamp));
+        }
+        if (db.getParameters() == null) {
+          db.setParameters(new HashMap<String, String>());
+        }
+        db.getParameters().put(MetastoreConstants.METASTORE_VERSION_KEY, UUID.randomUUID().toString());
+        if (tablesChanged) {
+          db.getParameters().put(MetastoreConstants.METASTORE_TABLES_VERSION_KEY, UUID.randomUUID().toString());
+        }
+        getClient().alterDatabase(dbName, db);
+        knownVersionStamp = versionStamp;
+        knownTablesVersionStamp = tablesVersionStamp;
+      } catch (HiveException e) {
+        log.warn("Could not update version of metastore cache for database " + dbName, e);
+      }
+    }
+    dropTimelines(changedTables);
+  }
+
+  private String getVersionStamp(Database db, String key) {
+    String versionStamp = db.getParameters() == null ? null : db.getParameters().get(key);
+    return versionStamp == null ? "" : versionStamp;
+  }
+
+  /**
+   * Reload the cached tables which changed in the metastore, and drop the ones which do not exist anymore. All the
+   * tables are fetched in a single call.
+   * <p></p>
+   * A table is taken as changed when its last DDL time ({@link hive_metastoreConstants#DDL_TIME}), its other parameters
+   * or its storage descriptor differ from the cached table. The metastore sets the DDL time on every alter, but only
+   * with a precision of seconds, hence the other comparisons. Partitions are not compared: adding or dropping
+   * partitions of a fact changes its timelines, which are kept in the parameters of the storage table.
+   *
+   * @param tablesChanged whether tables were created or dropped, in which case listings are marked incomplete
+   * @return names of the changed tables
+   * @throws HiveException
+   */
+  private Set<String> reloadChangedTables(boolean tablesChanged) throws HiveException {
+    List<String> cachedTables = new ArrayList<String>(allHiveTables.asMap().keySet());
+    Map<String, org.apache.hadoop.hive.metastore.api.Table> currentTables =
+      new HashMap<String, org.apache.hadoop.hive.metastore.api.Table>();
+    if (!cachedTables.isEmpty()) {
+      try {
+        for (org.apache.hadoop.hive.metastore.api.Table table
+          : getClient().getMSC().getTableObjectsByName(dbName, cachedTables)) {
+          currentTables.put(table.getTableName().toLowerCase(), table);
+        }
+      } catch (TException e) {
+        throw new HiveException("Could not get tables of database " + dbName, e);
+      }
+    }
+    Set<String> changedTables = new HashSet<String>();
+    for (String tableName : cachedTables) {
+      Table cached = allHiveTables.asMap().get(tableName);
+      org.apache.hadoop.hive.metastore.api.Table current = currentTables.get(tableName);
+      if (current == null) {
+        allHiveTables.invalidate(tableName);
+        changedTables.add(tableName);
+      } else if (cached != null && isChanged(cached.getTTable(), current)) {
+        allHiveTables.put(tableName, new Table(current));
+        changedTables.add(tableName);
+      }
+    }
+    invalidatePartitionStats(changedTables);
+    if (tablesChanged) {
+      invalidateListings();
+    }
+    metastoreChanged();
+    log.info("Metastore of database " + dbName + " changed, reloaded tables " + changedTables);
+    return changedTables;
+  }
+
+  private static boolean isChanged(org.apache.hadoop.hive.metastore.api.Table cached,
+    org.apache.hadoop.hive.metastore.api.Table current) {
+    String cachedDdlTime = cached.getParameters() == null ? null
+      : cached.getParameters().get(hive_metastoreConstants.DDL_TIME);
+    String currentDdlTime = current.getParameters() == null ? null
+      : current.getParameters().get(hive_metastoreConstants.DDL_TIME);
+    return !StringUtils.equals(cachedDdlTime, currentDdlTime)
+      || !Objects.equal(cached.getParameters(), current.getParameters())
+      || !Objects.equal(cached.getSd(), current.getSd());
+  }
+
+  /** drop partition timelines of the changed storage tables, so that they are loaded again */
+  private void dropTimelines(Set<String> storageTableNames) {
+    if (storageTableNames != null && !storageTableNames.isEmpty()) {
+      synchronized (partitionTimelineCache) {
+        for (String storageTableName : storageTableNames) {
+          partitionTimelineCache.remove(storageTableName);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drop the cached partition statistics of the given storage tables, whose partitions were added, dropped or changed.
+   * Statistics are keyed by partition, so the whole cache is scanned; this is done once per changed storage table.
+   */
+  private void invalidatePartitionStats(Collection<String> storageTableNames) {
+    if (storageTableNames.isEmpty() || partitionStats.size() == 0) {
+      return;
+    }
+    Set<String> tableKeys = new HashSet<String>();
+    for (String storageTableName : storageTableNames) {
+      String tableName = storageTableName.trim().toLowerCase();
+      tableKeys.add(tableName.substring(tableName.lastIndexOf('.') + 1));
+    }
+    Iterator<String> keys = partitionStats.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      String key = keys.next();
+      // keys are <db>.<table>/<partition name>
+      String tableKey = key.substring(key.indexOf('.') + 1, key.indexOf('/'));
+      if (tableKeys.contains(tableKey)) {
+        keys.remove();
+      }
+    }
+  }
+
+  private void invalidatePartitionStats(String storageTableName) {
+    invalidatePartitionStats(Collections.singleton(storageTableName));
+  }
+
+  /**
+   * Version of the metastore. It changes on every change to cubes, dimensions, tables, storages or partitions made
+   * through any metastore client, so results computed from the metastore can be cached against it.
+   *
+   * @return the metastore version
+   */
+  public static long getMetastoreVersion() {
+    return METASTORE_VERSION.get();
+  }
+
+  /**
+   * Mark the metastore as changed, for example when it is changed without going through a metastore client.
+   */
+  public static void metastoreChanged() {
+    METASTORE_VERSION.incrementAndGet();
   }
 
   public List<PartitionTimeline> getTimelines(String factName, String storage, String updatePeriodStr,
@@ -181,6 +582,10 @@ public class CubeMetastoreClient {
     TreeMap<UpdatePeriod,
       CaseInsensitiveStringHashMap<// partition column
         PartitionTimeline>>> {
+    /** loaders of the storage tables whose timelines are being loaded, keyed by lower case storage table name */
+    private final ConcurrentMap<String, FutureTask<Void>> timelineLoaders =
+      new ConcurrentHashMap<String, FutureTask<Void>>();
+
     /**
      * Returns true if all the timelines for fact-storage table are empty for all valid update periods.
      *
@@ -208,8 +613,11 @@ public class CubeMetastoreClient {
     /**
      * get all timelines for all update periods and partition columns for the given fact-storage pair. If already loaded
      * in memory, it'll return that. If not, it'll first try to load it from table properties. If not found in table
-     * properties, it'll get all partitions, compute timelines in memory, write back all loads timelines to table
-     * properties for further usage and return them.
+     * properties, it'll go through all partitions in batches, compute timelines in memory, write back all loads
+     * timelines to table properties for further usage and return them.
+     * <p></p>
+     * Only one caller loads the timelines of a storage table, other callers for the same storage table wait for that
+     * load to finish. Callers for other storage tables are not blocked.
      *
      * @param fact
      * @param storage
@@ -217,40 +625,107 @@ public class CubeMetastoreClient {
      * @throws HiveException
      * @throws LensException
      */
-    public TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> get(String fact, String storage)
-      throws HiveException, LensException {
-      // SUSPEND CHECKSTYLE CHECK DoubleCheckedLockingCheck
-      String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
+    public TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> get(final String fact,
+      final String storage) throws HiveException, LensException {
+      final String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
       if (get(storageTableName) == null) {
-        synchronized (this) {
-          if (get(storageTableName) == null) {
-            Table storageTable = getTable(storageTableName);
-            if ("true".equalsIgnoreCase(storageTable.getParameters().get(
-              MetastoreUtil.getPartitionTimelineCachePresenceKey()))) {
-              try {
-                loadTimelinesFromTableProperties(fact, storage);
-              } catch (Exception e) {
-                // Ideally this should never come. But since we have another source,
-                // let's piggyback on that for loading timeline
-                log.error("Error while loading timelines from table properties.", e);
-                loadTimelinesFromAllPartitions(fact, storage);
-              }
-            } else {
-              loadTimelinesFromAllPartitions(fact, storage);
+        String loaderKey = storageTableName.toLowerCase();
+        FutureTask<Void> loader = new FutureTask<Void>(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // might have been loaded by a loader that finished after the check above
+            if (get(storageTableName) == null) {
+              loadTimelines(fact, storage);
             }
+            return null;
+          }
+        });
+        FutureTask<Void> runningLoader = timelineLoaders.putIfAbsent(loaderKey, loader);
+        if (runningLoader == null) {
+          runningLoader = loader;
+          try {
+            loader.run();
+          } finally {
+            // failed loads are retried by the next caller
+            timelineLoaders.remove(loaderKey, loader);
           }
         }
-        log.info("timeline for " + storageTableName + " is: " + get(storageTableName));
+        waitForLoad(storageTableName, runningLoader);
       }
       // return the final value from memory
       return get(storageTableName);
-      // RESUME CHECKSTYLE CHECK DoubleCheckedLockingCheck
     }
 
-    private void loadTimelinesFromAllPartitions(String fact, String storage) throws HiveException, LensException {
+    private void waitForLoad(String storageTableName, FutureTask<Void> loader) throws HiveException, LensException {
+      try {
+        loader.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HiveException("Interrupted while loading timelines of " + storageTableName, e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof HiveException) {
+          throw (HiveException) e.getCause();
+        } else if (e.getCause() instanceof LensException) {
+          throw (LensException) e.getCause();
+        } else if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new HiveException("Could not load timelines of " + storageTableName, e.getCause());
+      }
+    }
+
+    /**
+     * Recomputes the timelines of the fact-storage table from its partitions, for when the timelines in memory can no
+     * longer be trusted.
+     */
+    public void reload(String fact, String storage) throws HiveException, LensException {
+      String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
+      TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> timelines =
+        loadTimelinesFromAllPartitions(fact, storage);
+      synchronized (this) {
+        put(storageTableName, timelines);
+      }
+    }
+
+    /**
+     * Builds the timelines of the fact-storage table aside and publishes them once complete, so that readers never see
+     * partially loaded timelines.
+     */
+    private void loadTimelines(String fact, String storage) throws HiveException, LensException {
+      String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
+      Table storageTable = getTable(storageTableName);
+      TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> timelines = null;
+      if ("true".equalsIgnoreCase(storageTable.getParameters().get(
+        MetastoreUtil.getPartitionTimelineCachePresenceKey()))) {
+        try {
+          timelines = loadTimelinesFromTableProperties(fact, storage);
+        } catch (Exception e) {
+          // Ideally this should never come. But since we have another source,
+          // let's piggyback on that for loading timeline
+          log.error("Error while loading timelines from table properties.", e);
+        }
+      }
+      boolean fromAllPartitions = timelines == null;
+      if (fromAllPartitions) {
+        timelines = loadTimelinesFromAllPartitions(fact, storage);
+      }
+      synchronized (this) {
+        put(storageTableName, timelines);
+      }
+      if (fromAllPartitions) {
+        // write back, so that next loads are from table properties.
+        alterTablePartitionCache(storageTableName);
+      }
+      log.info("timeline for " + storageTableName + " is: " + timelines);
+    }
+
+    private TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> loadTimelinesFromAllPartitions(
+      String fact, String storage) throws HiveException, LensException {
       // Not found in table properties either, compute from all partitions of the fact-storage table.
       // First make sure all combinations of update period and partition column have an entry even
       // if no partitions exist
+      TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> timelines = new TreeMap<UpdatePeriod,
+        CaseInsensitiveStringHashMap<PartitionTimeline>>();
       String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
       log.info("loading from all partitions: " + storageTableName);
       Table storageTable = getTable(storageTableName);
@@ -258,42 +733,59 @@ public class CubeMetastoreClient {
         storage) != null) {
         for (UpdatePeriod updatePeriod : getCubeFact(fact).getUpdatePeriods().get(storage)) {
           for (String partCol : getTimePartsOfTable(storageTable)) {
-            ensureEntry(storageTableName, updatePeriod, partCol);
+            ensureEntry(timelines, storageTableName, updatePeriod, partCol);
           }
         }
       }
-      // Then add all existing partitions for batch addition in respective timelines.
+      // Then add all existing partitions for batch addition in respective timelines. Partitions are fetched a batch
+      // at a time, so that partition objects of only one batch are held in memory.
       List<String> timeParts = getTimePartsOfTable(storageTable);
       List<FieldSchema> partCols = storageTable.getPartCols();
-      for (Partition partition : getPartitionsByFilter(storageTableName, null)) {
-        UpdatePeriod period = deduceUpdatePeriod(partition);
-        List<String> values = partition.getValues();
-        if (values.contains(StorageConstants.LATEST_PARTITION_VALUE)) {
-          log.info("dropping latest partition from fact storage table: " + storageTableName
-            + ". Spec: " + partition.getSpec());
-          getClient().dropPartition(storageTableName, values, false);
-          continue;
-        }
-        for (int i = 0; i < partCols.size(); i++) {
-          if (timeParts.contains(partCols.get(i).getName())) {
-            addForBatchAddition(storageTableName, period, partCols.get(i).getName(), values.get(i));
+      List<String> partNames = getClient().getPartitionNames(storageTable.getDbName(), storageTable.getTableName(),
+        (short) -1);
+      int batchSize = Math.max(1, config.getInt(MetastoreConstants.PARTITION_TIMELINE_LOAD_BATCH_SIZE,
+        MetastoreConstants.DEFAULT_PARTITION_TIMELINE_LOAD_BATCH_SIZE));
+      for (int from = 0; from < partNames.size(); from += batchSize) {
+        List<String> batch = partNames.subList(from, Math.min(from + batchSize, partNames.size()));
+        for (Partition partition : getClient().getPartitionsByNames(storageTable, batch)) {
+          UpdatePeriod period = deduceUpdatePeriod(partition);
+          List<String> values = partition.getValues();
+          if (values.contains(StorageConstants.LATEST_PARTITION_VALUE)) {
+            log.info("dropping latest partition from fact storage table: " + storageTableName
+              + ". Spec: " + partition.getSpec());
+            getClient().dropPartition(storageTableName, values, false);
+            continue;
+          }
+          for (int i = 0; i < partCols.size(); i++) {
+            if (timeParts.contains(partCols.get(i).getName())) {
+              addForBatchAddition(timelines, storageTableName, period, partCols.get(i).getName(), values.get(i));
+            }
           }
         }
       }
       // commit all batch addition for the storage table,
       // which will in-turn commit all batch additions in all it's timelines.
-      commitAllBatchAdditions(storageTableName);
+      for (CaseInsensitiveStringHashMap<PartitionTimeline> partColTimelines : timelines.values()) {
+        for (PartitionTimeline timeline : partColTimelines.values()) {
+          timeline.commitBatchAdditions();
+        }
+      }
+      return timelines;
     }
 
-    private void loadTimelinesFromTableProperties(String fact, String storage) throws HiveException, LensException {
+    private TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> loadTimelinesFromTableProperties(
+      String fact, String storage) throws HiveException, LensException {
       // found in table properties, load from there.
+      TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> timelines = new TreeMap<UpdatePeriod,
+        CaseInsensitiveStringHashMap<PartitionTimeline>>();
       String storageTableName = MetastoreUtil.getStorageTableName(fact, Storage.getPrefix(storage));
       log.info("loading from table properties: " + storageTableName);
       for (UpdatePeriod updatePeriod : getCubeFact(fact).getUpdatePeriods().get(storage)) {
         for (String partCol : getTimePartsOfTable(storageTableName)) {
-          ensureEntry(storageTableName, updatePeriod, partCol).init(getTable(storageTableName));
+          ensureEntry(timelines, storageTableName, updatePeriod, partCol).init(getTable(storageTableName));
         }
       }
+      return timelines;
     }
 
     /**
@@ -307,9 +799,17 @@ public class CubeMetastoreClient {
      */
     public void addForBatchAddition(String storageTable, UpdatePeriod updatePeriod, String partitionColumn,
       String partition) {
+      if (get(storageTable) == null) {
+        put(storageTable, new TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>>());
+      }
+      addForBatchAddition(get(storageTable), storageTable, updatePeriod, partitionColumn, partition);
+    }
+
+    private void addForBatchAddition(TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>> timelines,
+      String storageTable, UpdatePeriod updatePeriod, String partitionColumn, String partition) {
       try {
-        ensureEntry(storageTable, updatePeriod, partitionColumn).addForBatchAddition(TimePartition.of(updatePeriod,
-          partition));
+        ensureEntry(timelines, storageTable, updatePeriod, partitionColumn).addForBatchAddition(TimePartition.of(
+          updatePeriod, partition));
       } catch (LensException e) {
         // to take care of the case where partition name is something like `latest`
         log.error("Couldn't parse partition: " + partition + " with update period: " + updatePeriod + ", skipping.", e);
@@ -330,14 +830,19 @@ public class CubeMetastoreClient {
       if (get(storageTable) == null) {
         put(storageTable, new TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>>());
       }
-      if (get(storageTable).get(updatePeriod) == null) {
-        get(storageTable).put(updatePeriod, new CaseInsensitiveStringHashMap<PartitionTimeline>());
+      return ensureEntry(get(storageTable), storageTable, updatePeriod, partitionColumn);
+    }
+
+    private PartitionTimeline ensureEntry(TreeMap<UpdatePeriod, CaseInsensitiveStringHashMap<PartitionTimeline>>
+      timelines, String storageTable, UpdatePeriod updatePeriod, String partitionColumn) {
+      if (timelines.get(updatePeriod) == null) {
+        timelines.put(updatePeriod, new CaseInsensitiveStringHashMap<PartitionTimeline>());
       }
-      if (get(storageTable).get(updatePeriod).get(partitionColumn) == null) {
-        get(storageTable).get(updatePeriod).put(partitionColumn, PartitionTimelineFactory.get(
+      if (timelines.get(updatePeriod).get(partitionColumn) == null) {
+        timelines.get(updatePeriod).put(partitionColumn, PartitionTimelineFactory.get(
           CubeMetastoreClient.this, storageTable, updatePeriod, partitionColumn));
       }
-      return get(storageTable).get(updatePeriod).get(partitionColumn);
+      return timelines.get(updatePeriod).get(partitionColumn);
     }
 
     /**
@@ -366,6 +871,13 @@ public class CubeMetastoreClient {
         period, partSpec));
     }
 
+    /** sub ranges of the given time partition range that exist in the timeline */
+    public TimePartitionRangeList existingTimeRanges(String name, String storage, UpdatePeriod period, String partCol,
+      TimePartitionRange range) throws HiveException, LensException {
+      PartitionTimeline timeline = get(name, storage, period, partCol);
+      return timeline == null ? new TimePartitionRangeList() : timeline.existingRanges(range);
+    }
+
     /**
      * returns the timeline corresponding to fact-storage table, updatePeriod, partCol. null if doesn't exist, which
      * would only happen if the combination is not valid/supported
@@ -414,7 +926,7 @@ public class CubeMetastoreClient {
   public static CubeMetastoreClient getInstance(HiveConf conf) throws HiveException {
     String currentdb = SessionState.get().getCurrentDatabase();
     if (CLIENT_MAPPING.get(currentdb) == null) {
-      CLIENT_MAPPING.put(currentdb, new CubeMetastoreClient(conf));
+      CLIENT_MAPPING.put(currentdb, new CubeMetastoreClient(conf, currentdb));
     }
     return CLIENT_MAPPING.get(currentdb);
   }
@@ -448,6 +960,7 @@ public class CubeMetastoreClient {
         alterHiveTable(tbl.getTableName(), tbl);
       } else {
         getClient().createTable(tbl);
+        publishChange(true);
         // do get to update cache
         getTable(tbl.getTableName());
       }
@@ -463,6 +976,10 @@ public class CubeMetastoreClient {
       tbl.getTTable().getSd().setCols(table.getColumns());
       tbl.getTTable().getParameters().putAll(table.getProperties());
       getClient().createTable(tbl);
+      if (table instanceof CubeInterface || table instanceof Dimension) {
+        schemaChanged();
+      }
+      publishChange(true);
       // do get to update cache
       getTable(tbl.getTableName());
       return tbl;
@@ -668,14 +1185,19 @@ public class CubeMetastoreClient {
    */
   public void createCubeTable(AbstractCubeTable cubeTable, Map<String, StorageTableDesc> storageTableDescs)
     throws HiveException {
-    // create virtual cube table in metastore
-    Table cTable = createCubeHiveTable(cubeTable);
+    startChange();
+    try {
+      // create virtual cube table in metastore
+      Table cTable = createCubeHiveTable(cubeTable);
 
-    if (storageTableDescs != null) {
-      // create tables for each storage
-      for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
-        createOrAlterStorageHiveTable(cTable, entry.getKey(), entry.getValue());
+      if (storageTableDescs != null) {
+        // create tables for each storage
+        for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
+          createOrAlterStorageHiveTable(cTable, entry.getKey(), entry.getValue());
+        }
       }
+    } finally {
+      endChange();
     }
   }
 
@@ -690,10 +1212,15 @@ public class CubeMetastoreClient {
    */
   public void addStorage(CubeFactTable fact, String storage, Set<UpdatePeriod> updatePeriods,
     StorageTableDesc storageTableDesc) throws HiveException {
-    fact.addStorage(storage, updatePeriods);
-    createOrAlterStorageHiveTable(getTable(fact.getName()), storage, storageTableDesc);
-    alterCubeTable(fact.getName(), getTable(fact.getName()), fact);
-    updateFactCache(fact.getName());
+    startChange();
+    try {
+      fact.addStorage(storage, updatePeriods);
+      createOrAlterStorageHiveTable(getTable(fact.getName()), storage, storageTableDesc);
+      alterCubeTable(fact.getName(), getTable(fact.getName()), fact);
+      updateFactCache(fact.getName());
+    } finally {
+      endChange();
+    }
   }
 
   /**
@@ -707,10 +1234,15 @@ public class CubeMetastoreClient {
    */
   public void addStorage(CubeDimensionTable dim, String storage, UpdatePeriod dumpPeriod,
     StorageTableDesc storageTableDesc) throws HiveException {
-    dim.alterSnapshotDumpPeriod(storage, dumpPeriod);
-    createOrAlterStorageHiveTable(getTable(dim.getName()), storage, storageTableDesc);
-    alterCubeTable(dim.getName(), getTable(dim.getName()), dim);
-    updateDimCache(dim.getName());
+    startChange();
+    try {
+      dim.alterSnapshotDumpPeriod(storage, dumpPeriod);
+      createOrAlterStorageHiveTable(getTable(dim.getName()), storage, storageTableDesc);
+      alterCubeTable(dim.getName(), getTable(dim.getName()), dim);
+      updateDimCache(dim.getName());
+    } finally {
+      endChange();
+    }
   }
 
   /**
@@ -729,12 +1261,133 @@ public class CubeMetastoreClient {
   /** batch addition */
   public void addPartitions(List<StoragePartitionDesc> storagePartitionDescs, String storageName)
     throws HiveException, LensException {
-    for (Map.Entry<String, Map<UpdatePeriod, List<StoragePartitionDesc>>> group : groupPartitionDescs(
-      storagePartitionDescs).entrySet()) {
-      String fact = group.getKey();
-      for (Map.Entry<UpdatePeriod, List<StoragePartitionDesc>> entry : group.getValue().entrySet()) {
-        addPartitions(fact, storageName, entry.getKey(), entry.getValue());
+    startChange();
+    try {
+      for (Map.Entry<String, Map<UpdatePeriod, List<StoragePartitionDesc>>> group : groupPartitionDescs(
+        storagePartitionDescs).entrySet()) {
+        String fact = group.getKey();
+        for (Map.Entry<UpdatePeriod, List<StoragePartitionDesc>> entry : group.getValue().entrySet()) {
+          addPartitions(fact, storageName, entry.getKey(), entry.getValue());
+        }
+      }
+    } finally {
+      endChange();
+    }
+  }
+
+  /**
+   * Bulk addition of partitions of any number of facts and storages. Partitions of a fact storage table are added to
+   * the metastore in batches of {@link MetastoreConstants#PARTITION_ADD_BATCH_SIZE}, and the timelines of the storage
+   * table are written to its table properties once, after all its batches. A failed batch does not stop the others.
+   * Partitions added to the metastore are reported as added even if updating the timelines fails afterwards, in which
+   * case the timelines of the storage table are recomputed from its partitions.
+   *
+   * @param storagePartitionDescs partitions to add, by storage name
+   * @return failures of the partitions that could not be added, the partitions not in it were added
+   * @throws HiveException
+   * @throws LensException
+   */
+  public Map<StoragePartitionDesc, Exception> addFactPartitions(
+    Map<String, List<StoragePartitionDesc>> storagePartitionDescs) throws HiveException, LensException {
+    startChange();
+    try {
+      Map<StoragePartitionDesc, Exception> failures = Maps.newLinkedHashMap();
+      int batchSize = Math.max(1, config.getInt(MetastoreConstants.PARTITION_ADD_BATCH_SIZE,
+        MetastoreConstants.DEFAULT_PARTITION_ADD_BATCH_SIZE));
+      for (Map.Entry<String, List<StoragePartitionDesc>> storageEntry : storagePartitionDescs.entrySet()) {
+        for (Map.Entry<String, Map<UpdatePeriod, List<StoragePartitionDesc>>> group : groupPartitionDescs(
+          storageEntry.getValue()).entrySet()) {
+          addFactPartitions(group.getKey(), storageEntry.getKey(), group.getValue(), batchSize, failures);
+        }
       }
+      return failures;
+    } finally {
+      endChange();
+    }
+  }
+
+  private void addFactPartitions(String factName, String storageName,
+    Map<UpdatePeriod, List<StoragePartitionDesc>> storagePartitionDescs, int batchSize,
+    Map<StoragePartitionDesc, Exception> failures) {
+    Set<UpdatePeriod> updatePeriods = null;
+    Exception invalid = null;
+    try {
+      CubeFactTable fact = getCubeFact(factName);
+      if (fact == null) {
+        invalid = new HiveException("Not a fact table " + factName);
+      } else if (fact.getUpdatePeriods().get(storageName) == null) {
+        invalid = new HiveException("Storage " + storageName + " does not exist for fact " + factName);
+      } else {
+        updatePeriods = fact.getUpdatePeriods().get(storageName);
+      }
+    } catch (HiveException e) {
+      invalid = e;
+    }
+    String storageTableName = MetastoreUtil.getStorageTableName(factName, Storage.getPrefix(storageName));
+    if (invalid == null) {
+      try {
+        // make sure timelines are loaded before adding, so that new partitions are added to the loaded timelines
+        partitionTimelineCache.get(factName, storageName);
+      } catch (HiveException e) {
+        invalid = e;
+      } catch (LensException e) {
+        invalid = e;
+      }
+    }
+    boolean added = false;
+    boolean timelinesUpdated = true;
+    for (Map.Entry<UpdatePeriod, List<StoragePartitionDesc>> entry : storagePartitionDescs.entrySet()) {
+      UpdatePeriod updatePeriod = entry.getKey();
+      List<StoragePartitionDesc> partitionDescs = entry.getValue();
+      if (invalid != null) {
+        failAll(partitionDescs, invalid, failures);
+        continue;
+      }
+      if (!updatePeriods.contains(updatePeriod)) {
+        failAll(partitionDescs, new HiveException("Update period " + updatePeriod + " is not valid for storage "
+          + storageName + " of fact " + factName), failures);
+        continue;
+      }
+      for (int from = 0; from < partitionDescs.size(); from += batchSize) {
+        List<StoragePartitionDesc> batch = partitionDescs.subList(from, Math.min(from + batchSize,
+          partitionDescs.size()));
+        try {
+          getStorage(storageName).addPartitions(getClient(), factName, updatePeriod, batch, null);
+        } catch (Exception e) {
+          log.error("Could not add " + batch.size() + " partitions to " + storageTableName, e);
+          failAll(batch, e, failures);
+          continue;
+        }
+        added = true;
+        // the batch is in the metastore now, a failed timeline update must not report it as failed
+        try {
+          partitionTimelineCache.updateForAddition(factName, storageName, updatePeriod, getTimePartSpecs(batch));
+        } catch (Exception e) {
+          log.error("Could not update timelines of " + storageTableName + " for " + batch.size() + " added partitions",
+            e);
+          timelinesUpdated = false;
+        }
+      }
+    }
+    if (added) {
+      invalidatePartitionStats(storageTableName);
+      try {
+        if (!timelinesUpdated) {
+          partitionTimelineCache.reload(factName, storageName);
+        }
+        // update hive table, which publishes the change
+        alterTablePartitionCache(storageTableName);
+      } catch (Exception e) {
+        log.error("Could not write timelines of " + storageTableName + " after adding partitions", e);
+        publishChange(false);
+      }
+    }
+  }
+
+  private static void failAll(List<StoragePartitionDesc> storagePartitionDescs, Exception cause,
+    Map<StoragePartitionDesc, Exception> failures) {
+    for (StoragePartitionDesc storagePartitionDesc : storagePartitionDescs) {
+      failures.put(storagePartitionDesc, cause);
     }
   }
 
@@ -752,6 +1405,7 @@ public class CubeMetastoreClient {
       }
       getStorage(storageName).addPartitions(getClient(), factOrDimTable, updatePeriod, storagePartitionDescs,
         latestInfos);
+      publishChange(false);
       latestLookupCache.add(storageTableName);
     } else {
       // first update in memory, then add to hive table's partitions. delete is reverse.
@@ -759,7 +1413,8 @@ public class CubeMetastoreClient {
         getTimePartSpecs(storagePartitionDescs));
       // Adding partition in fact table.
       getStorage(storageName).addPartitions(getClient(), factOrDimTable, updatePeriod, storagePartitionDescs, null);
-      // update hive table
+      invalidatePartitionStats(storageTableName);
+      // update hive table, which publishes the change
       alterTablePartitionCache(MetastoreUtil.getStorageTableName(factOrDimTable, Storage.getPrefix(storageName)));
     }
   }
@@ -948,6 +1603,16 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public void dropPartition(String cubeTableName, String storageName, Map<String, Date> timePartSpec,
+    Map<String, String> nonTimePartSpec, UpdatePeriod updatePeriod) throws HiveException, LensException {
+    startChange();
+    try {
+      dropTablePartition(cubeTableName, storageName, timePartSpec, nonTimePartSpec, updatePeriod);
+    } finally {
+      endChange();
+    }
+  }
+
+  private void dropTablePartition(String cubeTableName, String storageName, Map<String, Date> timePartSpec,
     Map<String, String> nonTimePartSpec, UpdatePeriod updatePeriod) throws HiveException, LensException {
     String storageTableName = MetastoreUtil.getStorageTableName(cubeTableName.trim(),
       Storage.getPrefix(storageName.trim())).toLowerCase();
@@ -1012,6 +1677,7 @@ public class CubeMetastoreClient {
         }
       }
       getStorage(storageName).dropPartition(getClient(), storageTableName, partVals, latest, nonTimePartSpec);
+      publishChange(false);
       if (!latestAvailable) {
         // dropping latest and could not find latest, removing the entry from latest lookup cache
         latestLookupCache.remove(storageTableName);
@@ -1019,8 +1685,11 @@ public class CubeMetastoreClient {
     } else {
       // dropping fact partition
       getStorage(storageName).dropPartition(getClient(), storageTableName, partVals, null, null);
+      invalidatePartitionStats(storageTableName);
       if (partitionTimelineCache.updateForDeletion(cubeTableName, storageName, updatePeriod, timePartSpec)) {
         this.alterTablePartitionCache(storageTableName);
+      } else {
+        publishChange(false);
       }
     }
   }
@@ -1042,6 +1711,23 @@ public class CubeMetastoreClient {
     }
   }
 
+  /**
+   * Loads partition timelines of all storages of the fact, if not loaded already.
+   *
+   * @param factName fact name
+   * @throws HiveException
+   * @throws LensException
+   */
+  public void loadPartitionTimelines(String factName) throws HiveException, LensException {
+    CubeFactTable fact = getCubeFact(factName);
+    if (fact == null) {
+      throw new HiveException("Not a fact table " + factName);
+    }
+    for (String storage : fact.getStorages()) {
+      partitionTimelineCache.get(fact.getName(), storage);
+    }
+  }
+
   /** extract storage name and check in timeline cache for existance */
   public boolean factPartitionExists(CubeFactTable fact, FactPartition part, String storageTableName)
     throws HiveException, LensException {
@@ -1050,6 +1736,25 @@ public class CubeMetastoreClient {
       part.getPartSpec());
   }
 
+  /**
+   * Sub ranges of the given range for which time partitions exist in the fact storage table. Answered from the
+   * partition timeline cache, without a metastore call per partition.
+   *
+   * @param fact             fact table
+   * @param storageTableName fact storage table
+   * @param partCol          time partition column
+   * @param range            range of time partitions to look up
+   * @return existing sub ranges, in increasing order
+   * @throws HiveException
+   * @throws LensException
+   */
+  public TimePartitionRangeList getExistingFactPartitionRanges(CubeFactTable fact, String storageTableName,
+    String partCol, TimePartitionRange range) throws HiveException, LensException {
+    String storage = extractStorageName(fact, storageTableName);
+    return partitionTimelineCache.existingTimeRanges(fact.getName(), storage, range.getBegin().getUpdatePeriod(),
+      partCol, range);
+  }
+
   public boolean factPartitionExists(String factName, String storageName, UpdatePeriod updatePeriod,
     Map<String, Date> partitionTimestamp, Map<String, String> partSpec) throws HiveException {
     String storageTableName = MetastoreUtil.getFactStorageTableName(factName, storageName);
@@ -1082,6 +1787,122 @@ public class CubeMetastoreClient {
     return parts > 0;
   }
 
+  /**
+   * Get the statistics of the given partitions of a fact storage table. Statistics are cached, and the partitions
+   * not in the cache are looked up from the metastore in a single call.
+   *
+   * @param storageTableName fact storage table
+   * @param partitions       partitions of the storage table
+   * @return statistics of each partition, {@link PartitionStats#UNKNOWN} for the partitions which do not exist or
+   * can not be named in the storage table
+   * @throws HiveException
+   */
+  public Map<FactPartition, PartitionStats> getFactPartitionStats(String storageTableName,
+    Collection<FactPartition> partitions) throws HiveException {
+    Table storageTable = getTable(storageTableName);
+    String keyPrefix = storageTable.getDbName().toLowerCase() + "." + storageTable.getTableName().toLowerCase() + "/";
+    Map<FactPartition, PartitionStats> stats = new HashMap<FactPartition, PartitionStats>();
+    Map<String, List<FactPartition>> toFetch = new LinkedHashMap<String, List<FactPartition>>();
+    for (FactPartition partition : partitions) {
+      String partName = getPartitionName(storageTable, partition);
+      if (partName == null) {
+        stats.put(partition, PartitionStats.UNKNOWN);
+        continue;
+      }
+      PartitionStats cached = partitionStats.getIfPresent(keyPrefix + partName);
+      if (cached != null) {
+        stats.put(partition, cached);
+      } else {
+        List<FactPartition> named = toFetch.get(partName);
+        if (named == null) {
+          named = new ArrayList<FactPartition>();
+          toFetch.put(partName, named);
+        }
+        named.add(partition);
+      }
+    }
+    if (!toFetch.isEmpty()) {
+      for (Partition partition : getClient().getPartitionsByNames(storageTable,
+        new ArrayList<String>(toFetch.keySet()))) {
+        PartitionStats partStats = PartitionStats.of(partition.getParameters());
+        List<FactPartition> named = toFetch.remove(partition.getName());
+        if (named != null) {
+          partitionStats.put(keyPrefix + partition.getName(), partStats);
+          for (FactPartition factPartition : named) {
+            stats.put(factPartition, partStats);
+          }
+        }
+      }
+      // partitions not found in the metastore
+      for (List<FactPartition> named : toFetch.values()) {
+        for (FactPartition factPartition : named) {
+          stats.put(factPartition, PartitionStats.UNKNOWN);
+        }
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Get the size of data to be read for each of the given fact partitions. The size of a partition is the least of
+   * the sizes known in its storage tables.
+   *
+   * @param partitions fact partitions
+   * @return data size in bytes of the partitions, partitions whose size is not known in any of their storage tables
+   * are not present
+   * @throws HiveException
+   */
+  public Map<FactPartition, Long> getFactPartitionDataSizes(Collection<FactPartition> partitions)
+    throws HiveException {
+    Map<String, List<FactPartition>> byStorageTable = new HashMap<String, List<FactPartition>>();
+    for (FactPartition partition : partitions) {
+      for (String storageTable : partition.getStorageTables()) {
+        List<FactPartition> storageParts = byStorageTable.get(storageTable);
+        if (storageParts == null) {
+          storageParts = new ArrayList<FactPartition>();
+          byStorageTable.put(storageTable, storageParts);
+        }
+        storageParts.add(partition);
+      }
+    }
+    Map<FactPartition, Long> sizes = new HashMap<FactPartition, Long>();
+    for (Map.Entry<String, List<FactPartition>> entry : byStorageTable.entrySet()) {
+      for (Map.Entry<FactPartition, PartitionStats> stats : getFactPartitionStats(entry.getKey(), entry.getValue())
+        .entrySet()) {
+        long size = stats.getValue().getDataSize();
+        if (size < 0) {
+          continue;
+        }
+        Long known = sizes.get(stats.getKey());
+        if (known == null || size < known) {
+          sizes.put(stats.getKey(), size);
+        }
+      }
+    }
+    return sizes;
+  }
+
+  /** name of the fact partition in the storage table, null if the partition does not give all partition columns */
+  private String getPartitionName(Table storageTable, FactPartition partition) throws HiveException {
+    Map<String, String> partSpec = new HashMap<String, String>();
+    for (FactPartition part = partition; part != null; part = part.getContainingPart()) {
+      partSpec.put(part.getPartCol().toLowerCase(), part.getFormattedPartSpec());
+    }
+    List<String> values = new ArrayList<String>();
+    for (FieldSchema partCol : storageTable.getPartCols()) {
+      String value = partSpec.get(partCol.getName().toLowerCase());
+      if (value == null) {
+        return null;
+      }
+      values.add(value);
+    }
+    try {
+      return Warehouse.makePartName(storageTable.getPartCols(), values);
+    } catch (MetaException e) {
+      throw new HiveException("Could not make partition name of " + partition, e);
+    }
+  }
+
   public List<Partition> getAllParts(String storageTableName) throws HiveException {
     return getClient().getPartitions(getHiveTable(storageTableName));
   }
@@ -1176,26 +1997,33 @@ public class CubeMetastoreClient {
   }
 
   public Table getTable(String tableName) throws HiveException {
+    // SUSPEND CHECKSTYLE CHECK DoubleCheckedLockingCheck
+    checkCache();
     Table tbl;
     try {
       tableName = tableName.trim().toLowerCase();
-      tbl = allHiveTables.get(tableName);
+      tbl = allHiveTables.getIfPresent(tableName);
       if (tbl == null) {
         synchronized (allHiveTables) {
-          if (!allHiveTables.containsKey(tableName)) {
+          tbl = allHiveTables.asMap().get(tableName);
+          if (tbl == null) {
+            cacheMisses.incrementAndGet();
             tbl = getClient().getTable(tableName);
             if (enableCaching) {
               allHiveTables.put(tableName, tbl);
             }
           } else {
-            tbl = allHiveTables.get(tableName);
+            cacheHits.incrementAndGet();
           }
         }
+      } else {
+        cacheHits.incrementAndGet();
       }
     } catch (HiveException e) {
       throw new HiveException("Could not get table: " + tableName, e);
     }
     return tbl;
+    // RESUME CHECKSTYLE CHECK DoubleCheckedLockingCheck
   }
 
   private Table refreshTable(String tableName) throws HiveException {
@@ -1212,7 +2040,9 @@ public class CubeMetastoreClient {
 
   public void dropHiveTable(String table) throws HiveException {
     getClient().dropTable(table);
-    allHiveTables.remove(table.trim().toLowerCase());
+    allHiveTables.invalidate(table.trim().toLowerCase());
+    invalidatePartitionStats(table);
+    publishChange(true);
   }
 
   /**
@@ -1264,6 +2094,7 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public boolean isCube(String tableName) throws HiveException {
+    checkCache();
     if (allCubesPopulated) {
       if (allCubes.containsKey(tableName.trim().toLowerCase())) {
         return true;
@@ -1283,6 +2114,7 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public boolean isDimension(String tableName) throws HiveException {
+    checkCache();
     if (allDimensionsPopulated) {
       if (allDims.containsKey(tableName.trim().toLowerCase())) {
         return true;
@@ -1366,6 +2198,7 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public CubeDimensionTable getDimensionTable(String tableName) throws HiveException {
+    checkCache();
     tableName = tableName.trim().toLowerCase();
     CubeDimensionTable dimTable = allDimTables.get(tableName);
     if (dimTable == null) {
@@ -1410,6 +2243,7 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Storage getStorage(String storageName) throws HiveException {
+    checkCache();
     storageName = storageName.trim().toLowerCase();
     Storage storage = allStorages.get(storageName);
     if (storage == null) {
@@ -1445,6 +2279,7 @@ public class CubeMetastoreClient {
     if (tableName == null) {
       return null;
     }
+    checkCache();
     tableName = tableName.trim().toLowerCase();
     CubeInterface cube = allCubes.get(tableName);
     if (cube == null) {
@@ -1476,6 +2311,7 @@ public class CubeMetastoreClient {
     if (tableName == null) {
       return null;
     }
+    checkCache();
     tableName = tableName.trim().toLowerCase();
     Dimension dim = allDims.get(tableName);
     if (dim == null) {
@@ -1504,6 +2340,7 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public CubeFactTable getCubeFact(String tableName) throws HiveException {
+    checkCache();
     tableName = tableName.trim().toLowerCase();
     CubeFactTable fact = allFactTables.get(tableName);
     if (fact == null) {
@@ -1541,7 +2378,9 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeDimensionTable> getAllDimensionTables() throws HiveException {
+    checkCache();
     if (!allDimTablesPopulated) {
+      long generation = cacheGeneration.get();
       List<CubeDimensionTable> dimTables = new ArrayList<CubeDimensionTable>();
       try {
         for (String table : getAllHiveTableNames()) {
@@ -1553,7 +2392,7 @@ public class CubeMetastoreClient {
       } catch (HiveException e) {
         throw new HiveException("Could not get all dimension tables", e);
       }
-      allDimTablesPopulated = enableCaching;
+      allDimTablesPopulated = enableCaching && generation == cacheGeneration.get();
       return dimTables;
     } else {
       return allDimTables.values();
@@ -1567,7 +2406,9 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<Storage> getAllStorages() throws HiveException {
+    checkCache();
     if (!allStoragesPopulated) {
+      long generation = cacheGeneration.get();
       List<Storage> storages = new ArrayList<Storage>();
       try {
         for (String table : getAllHiveTableNames()) {
@@ -1579,7 +2420,7 @@ public class CubeMetastoreClient {
       } catch (HiveException e) {
         throw new HiveException("Could not get all storages", e);
       }
-      allStoragesPopulated = enableCaching;
+      allStoragesPopulated = enableCaching && generation == cacheGeneration.get();
       return storages;
     } else {
       return allStorages.values();
@@ -1593,7 +2434,9 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeInterface> getAllCubes() throws HiveException {
+    checkCache();
     if (!allCubesPopulated) {
+      long generation = cacheGeneration.get();
       List<CubeInterface> cubes = new ArrayList<CubeInterface>();
       try {
         for (String table : getAllHiveTableNames()) {
@@ -1605,7 +2448,7 @@ public class CubeMetastoreClient {
       } catch (HiveException e) {
         throw new HiveException("Could not get all cubes", e);
       }
-      allCubesPopulated = enableCaching;
+      allCubesPopulated = enableCaching && generation == cacheGeneration.get();
       return cubes;
     } else {
       return allCubes.values();
@@ -1619,7 +2462,9 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<Dimension> getAllDimensions() throws HiveException {
+    checkCache();
     if (!allDimensionsPopulated) {
+      long generation = cacheGeneration.get();
       List<Dimension> dims = new ArrayList<Dimension>();
       try {
         for (String table : getAllHiveTableNames()) {
@@ -1631,7 +2476,7 @@ public class CubeMetastoreClient {
       } catch (HiveException e) {
         throw new HiveException("Could not get all dimensions", e);
       }
-      allDimensionsPopulated = enableCaching;
+      allDimensionsPopulated = enableCaching && generation == cacheGeneration.get();
       return dims;
     } else {
       return allDims.values();
@@ -1645,7 +2490,9 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public Collection<CubeFactTable> getAllFacts() throws HiveException {
+    checkCache();
     if (!allFactTablesPopulated) {
+      long generation = cacheGeneration.get();
       List<CubeFactTable> facts = new ArrayList<CubeFactTable>();
       try {
         for (String table : getAllHiveTableNames()) {
@@ -1657,7 +2504,7 @@ public class CubeMetastoreClient {
       } catch (HiveException e) {
         throw new HiveException("Could not get all fact tables", e);
       }
-      allFactTablesPopulated = enableCaching;
+      allFactTablesPopulated = enableCaching && generation == cacheGeneration.get();
       return facts;
     } else {
       return allFactTables.values();
@@ -1665,16 +2512,18 @@ public class CubeMetastoreClient {
   }
 
   private Collection<String> getAllHiveTableNames() throws HiveException {
+    checkCache();
     if (!allTablesPopulated) {
+      long generation = cacheGeneration.get();
       List<String> allTables = getClient().getAllTables();
       for (String tblName : allTables) {
         // getTable call here would add the table to allHiveTables
         getTable(tblName);
       }
-      allTablesPopulated = enableCaching;
+      allTablesPopulated = enableCaching && generation == cacheGeneration.get();
       return allTables;
     } else {
-      return allHiveTables.keySet();
+      return allHiveTables.asMap().keySet();
     }
   }
 
@@ -1790,12 +2639,19 @@ public class CubeMetastoreClient {
   }
 
   public synchronized SchemaGraph getSchemaGraph() throws HiveException {
-    if (schemaGraph == null) {
+    long version = schemaVersion.get();
+    if (schemaGraph == null || schemaGraphVersion != version) {
       schemaGraph = new SchemaGraph(this);
+      schemaGraphVersion = version;
     }
     return schemaGraph;
   }
 
+  /** mark cubes or dimensions as changed, so that the schema graph is built again when asked for */
+  private void schemaChanged() {
+    schemaVersion.incrementAndGet();
+  }
+
   /**
    * Returns true if columns changed
    *
@@ -1816,6 +2672,7 @@ public class CubeMetastoreClient {
     } catch (InvalidOperationException e) {
       throw new HiveException(e);
     }
+    publishChange(false);
     return columnsChanged;
   }
 
@@ -1829,6 +2686,7 @@ public class CubeMetastoreClient {
     } catch (InvalidOperationException e) {
       throw new HiveException(e);
     }
+    publishChange(false);
     if (enableCaching) {
       // refresh the table in cache
       refreshTable(table);
@@ -1851,6 +2709,7 @@ public class CubeMetastoreClient {
     Table cubeTbl = getTable(cubeName);
     if (isCube(cubeTbl)) {
       alterCubeTable(cubeName, cubeTbl, (AbstractCubeTable) cube);
+      schemaChanged();
       if (enableCaching) {
         allCubes.put(cubeName.trim().toLowerCase(), getCube(refreshTable(cubeName)));
       }
@@ -1870,6 +2729,7 @@ public class CubeMetastoreClient {
     Table tbl = getTable(dimName);
     if (isDimension(tbl)) {
       alterCubeTable(dimName, tbl, (AbstractCubeTable) newDim);
+      schemaChanged();
       if (enableCaching) {
         allDims.put(dimName.trim().toLowerCase(), getDimension(refreshTable(dimName)));
       }
@@ -1923,6 +2783,7 @@ public class CubeMetastoreClient {
     if (isCube(tbl)) {
       allCubes.remove(cubeName.trim().toLowerCase());
       dropHiveTable(cubeName);
+      schemaChanged();
     } else {
       throw new HiveException(cubeName + " is not a cube");
     }
@@ -1939,6 +2800,7 @@ public class CubeMetastoreClient {
     if (isDimension(tbl)) {
       allDims.remove(dimName.trim().toLowerCase());
       dropHiveTable(dimName);
+      schemaChanged();
     } else {
       throw new HiveException(dimName + " is not a dimension");
     }
@@ -1952,17 +2814,22 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public void dropFact(String factName, boolean cascade) throws HiveException {
-    if (isFactTable(factName)) {
-      CubeFactTable fact = getFactTable(factName);
-      if (cascade) {
-        for (String storage : fact.getStorages()) {
-          dropStorageFromFact(factName, storage, false);
+    startChange();
+    try {
+      if (isFactTable(factName)) {
+        CubeFactTable fact = getFactTable(factName);
+        if (cascade) {
+          for (String storage : fact.getStorages()) {
+            dropStorageFromFact(factName, storage, false);
+          }
         }
+        dropHiveTable(factName);
+        allFactTables.remove(factName.trim().toLowerCase());
+      } else {
+        throw new HiveException(factName + " is not a CubeFactTable");
       }
-      dropHiveTable(factName);
-      allFactTables.remove(factName.trim().toLowerCase());
-    } else {
-      throw new HiveException(factName + " is not a CubeFactTable");
+    } finally {
+      endChange();
     }
   }
 
@@ -1974,11 +2841,16 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public void dropStorageFromFact(String factName, String storage) throws HiveException {
-    CubeFactTable cft = getFactTable(factName);
-    cft.dropStorage(storage);
-    dropHiveTable(MetastoreUtil.getFactStorageTableName(factName, storage));
-    alterCubeTable(factName, getTable(factName), cft);
-    updateFactCache(factName);
+    startChange();
+    try {
+      CubeFactTable cft = getFactTable(factName);
+      cft.dropStorage(storage);
+      dropHiveTable(MetastoreUtil.getFactStorageTableName(factName, storage));
+      alterCubeTable(factName, getTable(factName), cft);
+      updateFactCache(factName);
+    } finally {
+      endChange();
+    }
   }
 
   // updateFact will be false when fact is fully dropped
@@ -2000,7 +2872,12 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public void dropStorageFromDim(String dimTblName, String storage) throws HiveException {
-    dropStorageFromDim(dimTblName, storage, true);
+    startChange();
+    try {
+      dropStorageFromDim(dimTblName, storage, true);
+    } finally {
+      endChange();
+    }
   }
 
   // updateDimTbl will be false when dropping dimTbl
@@ -2024,17 +2901,22 @@ public class CubeMetastoreClient {
    * @throws HiveException
    */
   public void dropDimensionTable(String dimTblName, boolean cascade) throws HiveException {
-    if (isDimensionTable(dimTblName)) {
-      CubeDimensionTable dim = getDimensionTable(dimTblName);
-      if (cascade) {
-        for (String storage : dim.getStorages()) {
-          dropStorageFromDim(dimTblName, storage, false);
+    startChange();
+    try {
+      if (isDimensionTable(dimTblName)) {
+        CubeDimensionTable dim = getDimensionTable(dimTblName);
+        if (cascade) {
+          for (String storage : dim.getStorages()) {
+            dropStorageFromDim(dimTblName, storage, false);
+          }
         }
+        dropHiveTable(dimTblName);
+        allDimTables.remove(dimTblName.trim().toLowerCase());
+      } else {
+        throw new HiveException(dimTblName + " is not a dimension table");
       }
-      dropHiveTable(dimTblName);
-      allDimTables.remove(dimTblName.trim().toLowerCase());
-    } else {
-      throw new HiveException(dimTblName + " is not a dimension table");
+    } finally {
+      endChange();
     }
   }
 
@@ -2049,18 +2931,23 @@ public class CubeMetastoreClient {
    */
   public void alterCubeFactTable(String factTableName, CubeFactTable cubeFactTable,
     Map<String, StorageTableDesc> storageTableDescs) throws HiveException {
-    Table factTbl = getTable(factTableName);
-    if (isFactTable(factTbl)) {
-      alterCubeTable(factTableName, factTbl, cubeFactTable);
-      if (storageTableDescs != null) {
-        // create/alter tables for each storage
-        for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
-          createOrAlterStorageHiveTable(getTable(factTableName), entry.getKey(), entry.getValue());
+    startChange();
+    try {
+      Table factTbl = getTable(factTableName);
+      if (isFactTable(factTbl)) {
+        alterCubeTable(factTableName, factTbl, cubeFactTable);
+        if (storageTableDescs != null) {
+          // create/alter tables for each storage
+          for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
+            createOrAlterStorageHiveTable(getTable(factTableName), entry.getKey(), entry.getValue());
+          }
         }
+        updateFactCache(factTableName);
+      } else {
+        throw new HiveException(factTableName + " is not a fact table");
       }
-      updateFactCache(factTableName);
-    } else {
-      throw new HiveException(factTableName + " is not a fact table");
+    } finally {
+      endChange();
     }
   }
 
@@ -2085,18 +2972,23 @@ public class CubeMetastoreClient {
    */
   public void alterCubeDimensionTable(String dimTableName, CubeDimensionTable cubeDimensionTable,
     Map<String, StorageTableDesc> storageTableDescs) throws HiveException {
-    Table dimTbl = getTable(dimTableName);
-    if (isDimensionTable(dimTbl)) {
-      alterCubeTable(dimTableName, dimTbl, cubeDimensionTable);
-      if (storageTableDescs != null) {
-        // create/alter tables for each storage
-        for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
-          createOrAlterStorageHiveTable(getTable(dimTableName), entry.getKey(), entry.getValue());
+    startChange();
+    try {
+      Table dimTbl = getTable(dimTableName);
+      if (isDimensionTable(dimTbl)) {
+        alterCubeTable(dimTableName, dimTbl, cubeDimensionTable);
+        if (storageTableDescs != null) {
+          // create/alter tables for each storage
+          for (Map.Entry<String, StorageTableDesc> entry : storageTableDescs.entrySet()) {
+            createOrAlterStorageHiveTable(getTable(dimTableName), entry.getKey(), entry.getValue());
+          }
         }
+        updateDimCache(dimTableName);
+      } else {
+        throw new HiveException(dimTableName + " is not a dimension table");
       }
-      updateDimCache(dimTableName);
-    } else {
-      throw new HiveException(dimTableName + " is not a dimension table");
+    } finally {
+      endChange();
     }
   }
 }
@@ -95,6 +95,25 @@ public final class MetastoreConstants {
   public static final String HIERARCHY_SFX = ".hierarchy.";
   public static final String CLASS_SFX = ".class";
   public static final String METASTORE_ENABLE_CACHING = "cube.metastore.enable.cache";
+  public static final String METASTORE_CACHE_MAX_SIZE = "cube.metastore.cache.max.size";
+  public static final long DEFAULT_METASTORE_CACHE_MAX_SIZE = 0;
+  public static final String METASTORE_CACHE_EXPIRY_MILLIS = "cube.metastore.cache.expiry.millis";
+  public static final long DEFAULT_METASTORE_CACHE_EXPIRY_MILLIS = 0;
+  public static final String METASTORE_CACHE_VERSIONED = "cube.metastore.cache.versioned";
+  public static final boolean DEFAULT_METASTORE_CACHE_VERSIONED = false;
+  public static final String METASTORE_CACHE_CHECK_INTERVAL_MILLIS = "cube.metastore.cache.check.interval.millis";
+  public static final long DEFAULT_METASTORE_CACHE_CHECK_INTERVAL_MILLIS = 10000;
+  public static final String METASTORE_VERSION_KEY = "cube.metastore.version";
+  public static final String METASTORE_TABLES_VERSION_KEY = "cube.metastore.tables.version";
+  public static final String PARTITION_TIMELINE_DEFAULT_CLASS = "cube.metastore.partition.timeline.default.class";
+  public static final String PARTITION_TIMELINE_LOAD_BATCH_SIZE = "cube.metastore.partition.timeline.load.batch.size";
+  public static final int DEFAULT_PARTITION_TIMELINE_LOAD_BATCH_SIZE = 1000;
+  public static final String PARTITION_ADD_BATCH_SIZE = "cube.metastore.partition.add.batch.size";
+  public static final int DEFAULT_PARTITION_ADD_BATCH_SIZE = 1000;
+  public static final String PARTITION_STATS_CACHE_MAX_SIZE = "cube.metastore.partition.stats.cache.max.size";
+  public static final long DEFAULT_PARTITION_STATS_CACHE_MAX_SIZE = 100000;
+  public static final String PARTITION_STATS_CACHE_EXPIRY_MILLIS = "cube.metastore.partition.stats.cache.expiry.millis";
+  public static final long DEFAULT_PARTITION_STATS_CACHE_EXPIRY_MILLIS = 3600000;
 
   // join chain constants
   public static final String JOIN_CHAIN_KEY = "joinchain.";
@@ -412,6 +412,23 @@ public class MetastoreUtil {
     }
   }
 
+  /**
+   * Puts the value in props, split over multiple keys if it is longer than the maximum param length. Can be read back
+   * with {@link #getNamedStringValue(Map, String)}.
+   */
+  public static void addLongString(Map<String, String> props, String key, String value) {
+    addLongString(props, key, value, maxParamLength);
+  }
+
+  static void addLongString(Map<String, String> props, String key, String value, int maxLength) {
+    int size = Math.max((value.length() + maxLength - 1) / maxLength, 1);
+    props.put(key + ".size", String.valueOf(size));
+    for (int i = 0; i < size; i++) {
+      props.put(key + i, value.substring(Math.min(i * maxLength, value.length()),
+        Math.min((i + 1) * maxLength, value.length())));
+    }
+  }
+
   public static String getNamedStringValue(Map<String, String> props, String key) {
     if (props.containsKey(key + ".size")) {
       int size = Integer.parseInt(props.get(key + ".size"));
@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import java.util.Map;
+
+import org.apache.hadoop.hive.common.StatsSetupConst;
+
+import lombok.Data;
+
+/**
+ * Statistics of a partition, as computed by hive in the partition parameters. Unknown values are -1.
+ */
+@Data
+public class PartitionStats {
+  public static final PartitionStats UNKNOWN = new PartitionStats(-1, -1, -1);
+
+  private final long numRows;
+  private final long rawDataSize;
+  private final long totalSize;
+
+  /**
+   * Reads statistics from partition parameters.
+   *
+   * @param params partition parameters
+   * @return statistics of the partition
+   */
+  public static PartitionStats of(Map<String, String> params) {
+    if (params == null) {
+      return UNKNOWN;
+    }
+    return new PartitionStats(getStat(params, StatsSetupConst.ROW_COUNT), getStat(params,
+      StatsSetupConst.RAW_DATA_SIZE), getStat(params, StatsSetupConst.TOTAL_SIZE));
+  }
+
+  private static long getStat(Map<String, String> params, String key) {
+    String value = params.get(key);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Math.max(-1, Long.parseLong(value.trim()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Size of the data of the partition. Raw data size if computed, total size of the files otherwise.
+   *
+   * @return data size in bytes, -1 if unknown
+   */
+  public long getDataSize() {
+    return rawDataSize > 0 ? rawDataSize : totalSize;
+  }
+}
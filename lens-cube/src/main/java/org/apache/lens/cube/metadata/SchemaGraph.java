@@ -19,6 +19,7 @@
 package org.apache.lens.cube.metadata;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 
@@ -84,6 +85,10 @@ public class SchemaGraph {
       edges = new ArrayList<TableRelationship>(other.edges);
     }
 
+    JoinPath(TableRelationship[] edges) {
+      this.edges = new ArrayList<TableRelationship>(Arrays.asList(edges));
+    }
+
     public void initColumnsForTable() {
       if (!columnsForTable.isEmpty()) {
         // already inited
@@ -152,67 +157,133 @@ public class SchemaGraph {
   public static class GraphSearch {
     private final AbstractCubeTable source;
     private final AbstractCubeTable target;
-    // edges going out of the table
-    private final Map<AbstractCubeTable, Set<TableRelationship>> outGraph;
-    // egds coming into the table
-    private final Map<AbstractCubeTable, Set<TableRelationship>> inGraph;
-    // Used in tests to validate that all paths are searched
+    // index of the graph in which the target is searched
+    private final PathIndex pathIndex;
 
     public GraphSearch(AbstractCubeTable source, AbstractCubeTable target, SchemaGraph graph) {
       this.source = source;
       this.target = target;
 
       if (target instanceof CubeInterface) {
-        this.outGraph = graph.getCubeGraph((CubeInterface) target);
-        this.inGraph = graph.getCubeInGraph((CubeInterface) target);
+        this.pathIndex = graph.cubePathIndex.get(target);
       } else if (target instanceof Dimension) {
-        this.outGraph = graph.getDimOnlyGraph();
-        this.inGraph = graph.getDimOnlyInGraph();
+        this.pathIndex = graph.dimOnlyPathIndex;
       } else {
         throw new IllegalArgumentException("Target neither cube nor dimension");
       }
     }
 
     public List<JoinPath> findAllPathsToTarget() {
-      return findAllPathsToTarget(source, new JoinPath(), new HashSet<AbstractCubeTable>());
+      return findAllPathsToTarget(Integer.MAX_VALUE);
     }
 
     /**
-     * Recursive DFS to get all paths between source and target. Let path till this node = p Paths at node adjacent to
-     * target = [edges leading to target] Path at a random node = [path till this node + p for each p in
-     * path(neighbors)]
+     * Get at most maxPaths paths between source and target, in the order in which the search finds them.
+     *
+     * @param maxPaths maximum number of paths to return
+     * @return paths between source and target
      */
-    List<JoinPath> findAllPathsToTarget(AbstractCubeTable source, JoinPath joinPathTillSource,
-      Set<AbstractCubeTable> visited) {
-      List<JoinPath> joinPaths = new ArrayList<JoinPath>();
-      visited.add(source);
+    public List<JoinPath> findAllPathsToTarget(int maxPaths) {
+      if (pathIndex == null) {
+        return new ArrayList<JoinPath>();
+      }
+      return pathIndex.findPaths(source, target, maxPaths);
+    }
+  }
 
-      if (inGraph.get(source) == null) {
-        return joinPaths;
+  /**
+   * Index of join paths in a graph. Tables are numbered, and incoming edges of each table are kept in arrays, so that
+   * the search for paths does not allocate at every step. Paths found between a source and target are kept, so that
+   * the graph is searched once for every pair of tables. Returned paths are copies, as callers modify them.
+   */
+  static class PathIndex {
+    private final Map<String, Integer> tableIds = new HashMap<String, Integer>();
+    private final boolean[] isDimension;
+    // tables at the source end of the incoming edges of each table
+    private final int[][] inEdgeSources;
+    private final TableRelationship[][] inEdges;
+    // paths for source id * number of tables + target id
+    private final Map<Long, List<TableRelationship[]>> paths = new ConcurrentHashMap<Long, List<TableRelationship[]>>();
+
+    PathIndex(Map<AbstractCubeTable, Set<TableRelationship>> inGraph) {
+      List<AbstractCubeTable> tables = new ArrayList<AbstractCubeTable>();
+      for (Map.Entry<AbstractCubeTable, Set<TableRelationship>> entry : inGraph.entrySet()) {
+        addTable(entry.getKey(), tables);
+        for (TableRelationship edge : entry.getValue()) {
+          addTable(edge.getFromTable(), tables);
+        }
       }
-      for (TableRelationship edge : inGraph.get(source)) {
-        if (visited.contains(edge.getFromTable())) {
-          continue;
+      isDimension = new boolean[tables.size()];
+      inEdgeSources = new int[tables.size()][];
+      inEdges = new TableRelationship[tables.size()][];
+      for (int i = 0; i < tables.size(); i++) {
+        isDimension[i] = tables.get(i) instanceof Dimension;
+        Set<TableRelationship> edges = inGraph.get(tables.get(i));
+        inEdges[i] = edges == null ? new TableRelationship[0] : edges.toArray(new TableRelationship[edges.size()]);
+        inEdgeSources[i] = new int[inEdges[i].length];
+        for (int j = 0; j < inEdges[i].length; j++) {
+          inEdgeSources[i][j] = tableIds.get(inEdges[i][j].getFromTable().getName());
         }
+      }
+    }
 
+    private void addTable(AbstractCubeTable table, List<AbstractCubeTable> tables) {
+      if (!tableIds.containsKey(table.getName())) {
+        tableIds.put(table.getName(), tables.size());
+        tables.add(table);
+      }
+    }
 
-        JoinPath p = new JoinPath(joinPathTillSource);
-        p.addEdge(edge);
-        AbstractCubeTable neighbor = edge.getFromTable();
-        if (neighbor.getName().equals(target.getName())) {
+    List<JoinPath> findPaths(AbstractCubeTable source, AbstractCubeTable target, int maxPaths) {
+      List<JoinPath> joinPaths = new ArrayList<JoinPath>();
+      Integer sourceId = tableIds.get(source.getName());
+      Integer targetId = tableIds.get(target.getName());
+      if (sourceId == null || targetId == null) {
+        return joinPaths;
+      }
+      Long key = (long) sourceId * isDimension.length + targetId;
+      List<TableRelationship[]> found = paths.get(key);
+      if (found == null) {
+        found = new ArrayList<TableRelationship[]>();
+        boolean complete = findPaths(sourceId, targetId, new boolean[isDimension.length],
+          new TableRelationship[isDimension.length], 0, found, maxPaths);
+        if (complete) {
+          paths.put(key, found);
+        }
+      }
+      for (int i = 0; i < found.size() && i < maxPaths; i++) {
+        joinPaths.add(new JoinPath(found.get(i)));
+      }
+      return joinPaths;
+    }
+
+    /**
+     * DFS over incoming edges from the given table towards the target. A table is searched from once, so paths
+     * through an already searched table are not considered again.
+     *
+     * @return false if the search stopped after finding maxPaths paths
+     */
+    private boolean findPaths(int table, int target, boolean[] visited, TableRelationship[] pathTillTable,
+      int pathLength, List<TableRelationship[]> found, int maxPaths) {
+      visited[table] = true;
+      for (int i = 0; i < inEdges[table].length; i++) {
+        int neighbor = inEdgeSources[table][i];
+        if (visited[neighbor]) {
+          continue;
+        }
+        pathTillTable[pathLength] = inEdges[table][i];
+        if (neighbor == target) {
           // Got a direct path
-          joinPaths.add(p);
-        } else if (neighbor instanceof Dimension) {
-          List<JoinPath> pathsFromNeighbor = findAllPathsToTarget(neighbor, new JoinPath(p), visited);
-          for (JoinPath pn : pathsFromNeighbor) {
-            if (!pn.isEmpty()) {
-              joinPaths.add(pn);
-            }
+          if (found.size() == maxPaths) {
+            return false;
           }
+          found.add(Arrays.copyOf(pathTillTable, pathLength + 1));
+        } else if (isDimension[neighbor]
+          && !findPaths(neighbor, target, visited, pathTillTable, pathLength + 1, found, maxPaths)) {
+          return false;
         }
       }
-
-      return joinPaths;
+      return true;
     }
   }
 
@@ -232,6 +303,10 @@ public class SchemaGraph {
   // graph with incoming edges
   private Map<AbstractCubeTable, Set<TableRelationship>> dimOnlyInGraph;
 
+  // path indexes of the cube graphs and the dimension only graph
+  private Map<CubeInterface, PathIndex> cubePathIndex;
+  private PathIndex dimOnlyPathIndex;
+
   public SchemaGraph(CubeMetastoreClient metastore) throws HiveException {
     this.metastore = metastore;
     buildSchemaGraph();
@@ -262,6 +337,7 @@ public class SchemaGraph {
   private void buildSchemaGraph() throws HiveException {
     cubeOutGraph = new HashMap<CubeInterface, Map<AbstractCubeTable, Set<TableRelationship>>>();
     cubeInGraph = new HashMap<CubeInterface, Map<AbstractCubeTable, Set<TableRelationship>>>();
+    cubePathIndex = new HashMap<CubeInterface, PathIndex>();
     for (CubeInterface cube : metastore.getAllCubes()) {
       Map<AbstractCubeTable, Set<TableRelationship>> outGraph
         = new HashMap<AbstractCubeTable, Set<TableRelationship>>();
@@ -275,6 +351,7 @@ public class SchemaGraph {
 
       cubeOutGraph.put(cube, outGraph);
       cubeInGraph.put(cube, inGraph);
+      cubePathIndex.put(cube, new PathIndex(inGraph));
     }
 
     dimOnlyOutGraph = new HashMap<AbstractCubeTable, Set<TableRelationship>>();
@@ -282,6 +359,7 @@ public class SchemaGraph {
     for (Dimension dim : metastore.getAllDimensions()) {
       buildGraph(dim, dimOnlyOutGraph, dimOnlyInGraph);
     }
+    dimOnlyPathIndex = new PathIndex(dimOnlyInGraph);
   }
 
   private List<CubeDimAttribute> getRefDimensions(AbstractCubeTable cube) throws HiveException {
@@ -35,4 +35,27 @@ public class TimePartitionRangeList extends ArrayList<TimePartitionRange> {
   public TimePartitionRange last() {
     return get(size() - 1);
   }
+
+  /**
+   * Whether any of the ranges contains the partition. Assumes ranges are disjoint and in increasing order.
+   *
+   * @param partition
+   * @return true if partition belongs to one of the ranges
+   */
+  public boolean contains(TimePartition partition) {
+    int start = 0;
+    int end = size();
+    while (start < end) {
+      int mid = (start + end) / 2;
+      TimePartitionRange range = get(mid);
+      if (range.getBegin().after(partition)) {
+        end = mid;
+      } else if (!partition.before(range.getEnd())) {
+        start = mid + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
 }
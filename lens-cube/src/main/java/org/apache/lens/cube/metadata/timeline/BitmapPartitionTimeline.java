@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata.timeline;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.lens.cube.metadata.*;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Implementation of PartitionTimeline that stores partitions as a bitmap of their offsets from the first partition.
+ * Takes one bit per partition between the first and the latest partition, and checks existence of a partition in
+ * constant time. The bitmap is deflated when written to table properties. Suited for fine update periods over long
+ * spans of time.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class BitmapPartitionTimeline extends PartitionTimeline {
+  /** partition at offset zero. Always exists, null only if the timeline is empty */
+  private TimePartition first;
+  private BitSet bitmap = new BitSet();
+
+  public BitmapPartitionTimeline(String storageTableName, UpdatePeriod updatePeriod,
+    String partCol) {
+    super(storageTableName, updatePeriod, partCol);
+  }
+
+  @Override
+  public boolean add(@NonNull TimePartition partition) throws LensException {
+    if (isEmpty()) {
+      first = partition;
+      bitmap.set(0);
+      return true;
+    }
+    long offset = offsetOf(partition);
+    if (offset < 0) {
+      // partition before first, shift the bitmap to make it the new first
+      BitSet shifted = new BitSet();
+      int shift = checkedOffset(-offset);
+      for (int i = bitmap.nextSetBit(0); i >= 0; i = bitmap.nextSetBit(i + 1)) {
+        shifted.set(checkedOffset((long) i + shift));
+      }
+      bitmap = shifted;
+      first = partition;
+      offset = 0;
+    }
+    bitmap.set(checkedOffset(offset));
+    return true;
+  }
+
+  @Override
+  public boolean drop(@NonNull TimePartition toDrop) throws LensException {
+    if (!exists(toDrop)) {
+      return false;
+    }
+    bitmap.clear((int) offsetOf(toDrop));
+    if (bitmap.isEmpty()) {
+      first = null;
+    } else if (!bitmap.get(0)) {
+      // keep the first partition at offset zero
+      int newFirst = bitmap.nextSetBit(0);
+      bitmap = bitmap.get(newFirst, bitmap.length());
+      first = first.partitionAtDiff(newFirst);
+    }
+    return true;
+  }
+
+  @Override
+  public TimePartition latest() {
+    return isEmpty() ? null : first.partitionAtDiff(bitmap.length() - 1);
+  }
+
+  @Override
+  public Map<String, String> toProperties() {
+    HashMap<String, String> ret = Maps.newHashMap();
+    ret.put("first", isEmpty() ? "" : first.getDateString());
+    MetastoreUtil.addLongString(ret, "bitmap", isEmpty() ? "" : encode(bitmap));
+    return ret;
+  }
+
+  @Override
+  public boolean initFromProperties(Map<String, String> properties) throws LensException {
+    first = null;
+    bitmap = new BitSet();
+    String firstStr = properties.get("first");
+    String bitmapStr = MetastoreUtil.getNamedStringValue(properties, "bitmap");
+    if (!Strings.isNullOrEmpty(firstStr)) {
+      first = TimePartition.of(getUpdatePeriod(), firstStr);
+      if (!Strings.isNullOrEmpty(bitmapStr)) {
+        bitmap = decode(bitmapStr);
+      }
+    }
+    return isConsistent();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return first == null;
+  }
+
+  @Override
+  public boolean isConsistent() {
+    if (first == null) {
+      return bitmap.isEmpty();
+    }
+    return bitmap.get(0);
+  }
+
+  @Override
+  public boolean exists(TimePartition toCheck) {
+    if (isEmpty()) {
+      return false;
+    }
+    long offset = offsetOf(toCheck);
+    return offset >= 0 && offset < bitmap.length() && bitmap.get((int) offset);
+  }
+
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange range) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    if (isEmpty()) {
+      return ret;
+    }
+    // clamp as longs, offsets of partitions far from the first one don't fit in an int
+    int begin = clampToBitmap(offsetOf(range.getBegin()));
+    int end = clampToBitmap(offsetOf(range.getEnd()));
+    for (int i = begin < end ? bitmap.nextSetBit(begin) : -1; i >= 0 && i < end; i = bitmap.nextSetBit(i)) {
+      int rangeEnd = Math.min(bitmap.nextClearBit(i), end);
+      ret.add(first.partitionAtDiff(i).rangeUpto(first.partitionAtDiff(rangeEnd)));
+      i = rangeEnd;
+    }
+    return ret;
+  }
+
+  @Override
+  public Iterator<TimePartition> iterator() {
+
+    return new Iterator<TimePartition>() {
+      int cur = isEmpty() ? -1 : 0;
+
+      @Override
+      public boolean hasNext() {
+        return cur >= 0;
+      }
+
+      @Override
+      public TimePartition next() {
+        TimePartition toReturn = first.partitionAtDiff(cur);
+        cur = bitmap.nextSetBit(cur + 1);
+        return toReturn;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /** number of update periods from first partition to the given partition */
+  private long offsetOf(TimePartition partition) {
+    switch (getUpdatePeriod()) {
+    case MONTHLY:
+    case QUARTERLY:
+    case YEARLY:
+      Calendar from = Calendar.getInstance();
+      from.setTime(first.getDate());
+      Calendar to = Calendar.getInstance();
+      to.setTime(partition.getDate());
+      long months = (to.get(Calendar.YEAR) - from.get(Calendar.YEAR)) * 12L + to.get(Calendar.MONTH)
+        - from.get(Calendar.MONTH);
+      if (getUpdatePeriod() == UpdatePeriod.QUARTERLY) {
+        return months / 3;
+      } else if (getUpdatePeriod() == UpdatePeriod.YEARLY) {
+        return months / 12;
+      }
+      return months;
+    default:
+      // Periods upto weeks are of fixed length, rounding takes care of daylight saving changes in days and weeks
+      return Math.round((double) (partition.getDate().getTime() - first.getDate().getTime())
+        / getUpdatePeriod().weight());
+    }
+  }
+
+  /** the offset limited to [0, bitmap length] */
+  private int clampToBitmap(long offset) {
+    return (int) Math.min(Math.max(offset, 0L), (long) bitmap.length());
+  }
+
+  private int checkedOffset(long offset) throws LensException {
+    if (offset >= Integer.MAX_VALUE) {
+      throw new LensException("Too many partitions between " + first + " and given partition for "
+        + getStorageTableName() + ", " + getUpdatePeriod() + ", " + getPartCol());
+    }
+    return (int) offset;
+  }
+
+  private static String encode(BitSet bitmap) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    deflater.setInput(bitmap.toByteArray());
+    deflater.finish();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    while (!deflater.finished()) {
+      out.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+    try {
+      return new String(Base64.encodeBase64(out.toByteArray()), "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static BitSet decode(String encoded) throws LensException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(Base64.decodeBase64(encoded.getBytes("UTF-8")));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new LensException("Incomplete partition bitmap: " + encoded);
+        }
+        out.write(buffer, 0, length);
+      }
+      return BitSet.valueOf(out.toByteArray());
+    } catch (DataFormatException | UnsupportedEncodingException e) {
+      throw new LensException("Invalid partition bitmap: " + encoded, e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -23,6 +23,8 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.cube.parse.TimeRange;
 import org.apache.lens.server.api.error.LensException;
@@ -183,6 +185,30 @@ public class EndsAndHolesPartitionTimeline extends PartitionTimeline {
     return !isEmpty() && !toCheck.before(first) && !toCheck.after(latest) && !holes.contains(toCheck);
   }
 
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange range) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    if (isEmpty()) {
+      return ret;
+    }
+    TimePartition begin = range.getBegin().before(first) ? first : range.getBegin();
+    TimePartition end = range.getEnd().after(latest) ? latest.next() : range.getEnd();
+    if (!begin.before(end)) {
+      return ret;
+    }
+    // split [begin, end) at the holes in between
+    for (TimePartition hole : holes.subSet(begin, true, end, false)) {
+      if (begin.before(hole)) {
+        ret.add(begin.rangeUpto(hole));
+      }
+      begin = hole.next();
+    }
+    if (begin.before(end)) {
+      ret.add(begin.rangeUpto(end));
+    }
+    return ret;
+  }
+
   @Override
   public Iterator<TimePartition> iterator() {
 
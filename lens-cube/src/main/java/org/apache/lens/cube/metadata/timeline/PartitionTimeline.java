@@ -24,6 +24,7 @@ import java.util.*;
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
 import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.error.LensException;
 
@@ -41,6 +42,7 @@ import lombok.extern.apachecommons.CommonsLog;
  *
  * @see org.apache.lens.cube.metadata.timeline.EndsAndHolesPartitionTimeline
  * @see org.apache.lens.cube.metadata.timeline.StoreAllPartitionTimeline
+ * @see org.apache.lens.cube.metadata.timeline.BitmapPartitionTimeline
  */
 @Data
 @CommonsLog
@@ -219,4 +221,32 @@ public abstract class PartitionTimeline implements Iterable<TimePartition> {
    * @return
    */
   public abstract boolean exists(TimePartition partition);
+
+  /**
+   * Sub ranges of the given range in which all partitions exist, in increasing order. Lets callers check a whole range
+   * with one call instead of one call per partition. Default implementation checks each partition of the range.
+   * Implementing classes can override.
+   *
+   * @param range
+   * @return existing sub ranges, empty if no partition of the range exists
+   * @throws LensException
+   */
+  public TimePartitionRangeList existingRanges(TimePartitionRange range) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    TimePartition begin = null;
+    for (TimePartition part : range) {
+      if (exists(part)) {
+        if (begin == null) {
+          begin = part;
+        }
+      } else if (begin != null) {
+        ret.add(begin.rangeUpto(part));
+        begin = null;
+      }
+    }
+    if (begin != null) {
+      ret.add(begin.rangeUpto(range.getEnd()));
+    }
+    return ret;
+  }
 }
@@ -22,6 +22,7 @@ package org.apache.lens.cube.metadata.timeline;
 import java.lang.reflect.Constructor;
 
 import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.metadata.MetastoreConstants;
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 
@@ -32,7 +33,8 @@ public final class PartitionTimelineFactory {
   }
 
   /**
-   * Checks in table params if desired implementing class is given. Otherwise by default returns instance of {@link
+   * Checks in table params if desired implementing class is given. Otherwise returns instance of the class set in
+   * {@link org.apache.lens.cube.metadata.MetastoreConstants#PARTITION_TIMELINE_DEFAULT_CLASS}, and by default of {@link
    * org.apache.lens.cube.metadata.timeline.EndsAndHolesPartitionTimeline}.
    *
    * @param client
@@ -47,6 +49,9 @@ public final class PartitionTimelineFactory {
       String storageClassName = client.getTable(storageTable).getParameters().get(
         MetastoreUtil.getPartitionTimelineStorageClassKey(
           updatePeriod, partitionColumn));
+      if (storageClassName == null) {
+        storageClassName = client.getConf().get(MetastoreConstants.PARTITION_TIMELINE_DEFAULT_CLASS);
+      }
       Class<? extends PartitionTimeline> clz = (Class<? extends PartitionTimeline>) Class.forName(storageClassName);
       Constructor<? extends PartitionTimeline> constructor = clz.getConstructor(
         String.class, UpdatePeriod.class, String.class);
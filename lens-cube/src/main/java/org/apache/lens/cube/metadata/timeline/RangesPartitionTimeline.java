@@ -233,6 +233,22 @@ public class RangesPartitionTimeline extends PartitionTimeline {
     return false;
   }
 
+  @Override
+  public TimePartitionRangeList existingRanges(TimePartitionRange range) throws LensException {
+    TimePartitionRangeList ret = new TimePartitionRangeList();
+    // start from the last sub range beginning at or before range begin
+    for (int ind = Math.max(getStrictlyAfterIndex(range.getBegin()) - 1, 0);
+         ind < ranges.size() && ranges.get(ind).getBegin().before(range.getEnd()); ind++) {
+      TimePartitionRange existing = ranges.get(ind);
+      TimePartition begin = existing.getBegin().before(range.getBegin()) ? range.getBegin() : existing.getBegin();
+      TimePartition end = existing.getEnd().after(range.getEnd()) ? range.getEnd() : existing.getEnd();
+      if (begin.before(end)) {
+        ret.add(begin.rangeUpto(end));
+      }
+    }
+    return ret;
+  }
+
   @Override
   public Iterator<TimePartition> iterator() {
 
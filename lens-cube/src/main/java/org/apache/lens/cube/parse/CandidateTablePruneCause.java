@@ -59,6 +59,8 @@ public class CandidateTablePruneCause {
     LESS_DATA("Picked table has less data than the maximum"),
     // cube table has more partitions
     MORE_PARTITIONS("Picked table has more partitions than minimum"),
+    // cube table reads more data, as per partition statistics
+    MORE_DATA_SIZE("Picked table has more data to read than minimum"),
     // invalid cube table
     INVALID("Invalid cube table provided in query"),
     // expression is not evaluable in the candidate
@@ -100,8 +100,16 @@ public final class CubeQueryConfUtil {
   public static final boolean DEFAULT_DISABLE_AGGREGATE_RESOLVER = true;
   public static final String LIGHTEST_FACT_FIRST = "lens.cube.query.pick.lightest.fact.first";
   public static final boolean DEFAULT_LIGHTEST_FACT_FIRST = false;
+  public static final String USE_PARTITION_STATS = "lens.cube.query.use.partition.stats";
+  public static final boolean DEFAULT_USE_PARTITION_STATS = false;
   public static final String TIME_RANGE_WRITER_CLASS = "lens.cube.query.time.range.writer.class";
   public static final Class<? extends TimeRangeWriter> DEFAULT_TIME_RANGE_WRITER = ORTimeRangeWriter.class
     .asSubclass(TimeRangeWriter.class);
   public static final String PART_WHERE_CLAUSE_DATE_FORMAT = "lens.cube.query.partition.where.clause.format";
+  public static final String BULK_PARTITION_LOOKUP = "lens.cube.query.bulk.partition.lookup";
+  public static final boolean DEFAULT_BULK_PARTITION_LOOKUP = true;
+  public static final String CANDIDATE_FACT_PARALLELISM = "lens.cube.query.candidate.fact.parallelism";
+  public static final int DEFAULT_CANDIDATE_FACT_PARALLELISM = 1;
+  public static final String CANDIDATE_FACT_POOL_MAX_THREADS = "lens.cube.query.candidate.fact.pool.max.threads";
+  public static final int DEFAULT_CANDIDATE_FACT_POOL_MAX_THREADS = 8;
 }
@@ -110,6 +110,10 @@ public class CubeQueryRewriter {
    * If LightestFact first flag is enabled, LightestFactResolver is applied
    * before StorageTableResolver.
    *
+   * If partition statistics are enabled, LeastDataSizeResolver is applied
+   * before LightestFactResolver and LeastPartitionResolver, and considers sets
+   * reading least data as per statistics of the queried partitions.
+   *
    * MaxCoveringFactResolver runs just after all candidate facts' partitions
    * are resolved. It then sees how much time range each fact set is able to cover
    * and finds the maximum coverable range. It then prunes all fact sets that
@@ -175,6 +179,9 @@ public class CubeQueryRewriter {
     rewriters.add(denormResolver);
     // Prune candidate facts without any valid expressions
     rewriters.add(exprResolver);
+    // Pick the fact sets reading least data, if partition statistics are known. Weights and number of partitions
+    // break the ties.
+    rewriters.add(new LeastDataSizeResolver(conf));
     // We can have LightestFactResolver before LeastPartitionResolver - that says
     // "if two facts have the same least weight, then the fact with least number of time partitions queried will be
     // picked". This will be useful, if users did not set fact weights.
@@ -36,9 +36,13 @@ import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
 import org.apache.hadoop.hive.ql.lib.Node;
 import org.apache.hadoop.hive.ql.parse.*;
 
+import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.tree.Tree;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -51,6 +55,22 @@ public final class HQLParser {
   }
   public static final Pattern P_WSPACE = Pattern.compile("\\s+");
 
+  /** Default maximum number of parsed queries and of parsed expressions kept in the AST caches */
+  public static final long DEFAULT_AST_CACHE_MAX_SIZE = 10000;
+
+  // Parsed trees by query and by expression, null if caching is disabled. Cached trees are never handed out, callers
+  // get copies.
+  private static volatile Cache<String, ASTNode> queryASTCache = newASTCache(DEFAULT_AST_CACHE_MAX_SIZE);
+  private static volatile Cache<String, ASTNode> exprASTCache = newASTCache(DEFAULT_AST_CACHE_MAX_SIZE);
+
+  // Parser reused by all the parse calls of a thread
+  private static final ThreadLocal<ParseDriver> PARSE_DRIVER = new ThreadLocal<ParseDriver>() {
+    @Override
+    protected ParseDriver initialValue() {
+      return new ParseDriver();
+    }
+  };
+
   public interface ASTNodeVisitor {
     void visit(TreeNode node) throws SemanticException;
   }
@@ -140,13 +160,20 @@ public final class HQLParser {
   }
 
   public static ASTNode parseHQL(String query, HiveConf conf) throws LensException {
-    ParseDriver driver = new ParseDriver();
-    ASTNode tree = null;
+    Cache<String, ASTNode> cache = queryASTCache;
+    ASTNode tree = cache == null ? null : cache.getIfPresent(query);
+    if (tree != null) {
+      return copyCachedAST(tree);
+    }
     Context ctx = null;
     try {
       ctx = new Context(conf);
-      tree = driver.parse(query, ctx);
+      tree = PARSE_DRIVER.get().parse(query, ctx);
       tree = ParseUtils.findRootNonNullToken(tree);
+      if (cache == null) {
+        return tree;
+      }
+      cache.put(query, tree);
     } catch (ParseException e) {
       throw new LensException(SYNTAX_ERROR.getValue(), e, e.getMessage());
     } catch (IOException e) {
@@ -160,13 +187,86 @@ public final class HQLParser {
         }
       }
     }
-    return tree;
+    return copyCachedAST(tree);
   }
 
   public static ASTNode parseExpr(String expr) throws ParseException {
-    ParseDriver driver = new ParseDriver();
-    ASTNode tree = driver.parseExpression(expr);
-    return ParseUtils.findRootNonNullToken(tree);
+    Cache<String, ASTNode> cache = exprASTCache;
+    if (cache == null) {
+      return ParseUtils.findRootNonNullToken(PARSE_DRIVER.get().parseExpression(expr));
+    }
+    ASTNode tree = cache.getIfPresent(expr);
+    if (tree == null) {
+      tree = ParseUtils.findRootNonNullToken(PARSE_DRIVER.get().parseExpression(expr));
+      cache.put(expr, tree);
+    }
+    return copyCachedAST(tree);
+  }
+
+  /**
+   * Set the maximum number of parsed queries, and of parsed expressions, whose trees are kept for
+   * {@link #parseHQL(String, HiveConf)} and {@link #parseExpr(String)} called again with the same text. The cached
+   * trees are dropped.
+   *
+   * @param maxSize the maximum size of each cache, caching is disabled if 0
+   */
+  public static synchronized void setASTCacheMaxSize(long maxSize) {
+    queryASTCache = newASTCache(maxSize);
+    exprASTCache = newASTCache(maxSize);
+  }
+
+  private static Cache<String, ASTNode> newASTCache(long maxSize) {
+    return maxSize > 0 ? CacheBuilder.newBuilder().maximumSize(maxSize).<String, ASTNode>build() : null;
+  }
+
+  /**
+   * Drop all the cached trees of queries and expressions, so that the next calls to {@link #parseHQL(String, HiveConf)}
+   * and {@link #parseExpr(String)} parse again.
+   */
+  @VisibleForTesting
+  static void clearASTCache() {
+    Cache<String, ASTNode> cache = queryASTCache;
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+    cache = exprASTCache;
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Copy of a cached tree. Unlike {@link #copyAST(ASTNode)}, tokens are copied too, since callers change the text and
+   * type of tokens in the trees they get. Copies without recursion, as filters on long time ranges make very deep
+   * trees.
+   *
+   * @param cached the cached tree
+   * @return the copy
+   */
+  private static ASTNode copyCachedAST(ASTNode cached) {
+    ASTNode root = copyCachedNode(cached);
+    Deque<ASTNode[]> pending = new ArrayDeque<ASTNode[]>();
+    pending.push(new ASTNode[]{cached, root});
+    while (!pending.isEmpty()) {
+      ASTNode[] next = pending.pop();
+      if (next[0].getChildren() != null) {
+        for (Object o : next[0].getChildren()) {
+          ASTNode childCopy = copyCachedNode((ASTNode) o);
+          childCopy.setParent(next[1]);
+          next[1].addChild(childCopy);
+          pending.push(new ASTNode[]{(ASTNode) o, childCopy});
+        }
+      }
+    }
+    return root;
+  }
+
+  private static ASTNode copyCachedNode(ASTNode cached) {
+    ASTNode copy = new ASTNode(cached);
+    if (cached.getToken() != null) {
+      copy.token = new CommonToken(cached.getToken());
+    }
+    return copy;
   }
 
   public static void printAST(ASTNode node) {
@@ -1041,7 +1041,7 @@ class JoinResolver implements ContextRewriter {
         List<SchemaGraph.JoinPath> joinPaths = search.findAllPathsToTarget();
         if (joinPaths != null && !joinPaths.isEmpty()) {
           Aliased<Dimension> aliasedJoinee = Aliased.create(joinee);
-          multipleJoinPaths.put(aliasedJoinee, new ArrayList<SchemaGraph.JoinPath>(search.findAllPathsToTarget()));
+          multipleJoinPaths.put(aliasedJoinee, joinPaths);
           addOptionalTables(cubeql, multipleJoinPaths.get(aliasedJoinee), cubeql.getDimensions().contains(joinee));
         } else {
           // No link to cube from this dim, can't proceed with query
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.parse;
+
+import java.util.*;
+
+import org.apache.lens.cube.metadata.FactPartition;
+import org.apache.lens.cube.parse.CandidateTablePruneCause.CandidateTablePruneCode;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+
+/**
+ * Prune candidate fact sets which read more data than the minimum, as estimated from the statistics of the queried
+ * partitions. Nothing is pruned if the data size of any queried partition is not known.
+ */
+class LeastDataSizeResolver implements ContextRewriter {
+  public static final Log LOG = LogFactory.getLog(LeastDataSizeResolver.class.getName());
+
+  private final boolean usePartitionStats;
+
+  public LeastDataSizeResolver(Configuration conf) {
+    this.usePartitionStats = conf.getBoolean(CubeQueryConfUtil.USE_PARTITION_STATS,
+      CubeQueryConfUtil.DEFAULT_USE_PARTITION_STATS);
+  }
+
+  @Override
+  public void rewriteContext(CubeQueryContext cubeql) throws SemanticException {
+    if (!usePartitionStats || cubeql.getCube() == null || cubeql.getCandidateFactSets().size() <= 1) {
+      return;
+    }
+    Set<FactPartition> partitions = new HashSet<FactPartition>();
+    for (Set<CandidateFact> facts : cubeql.getCandidateFactSets()) {
+      for (CandidateFact fact : facts) {
+        partitions.addAll(fact.getPartsQueried());
+      }
+    }
+    Map<FactPartition, Long> partitionSizes;
+    try {
+      partitionSizes = cubeql.getMetastoreClient().getFactPartitionDataSizes(partitions);
+    } catch (HiveException e) {
+      LOG.warn("Could not get statistics of queried partitions, not pruning candidate facts on data size", e);
+      return;
+    }
+    Map<Set<CandidateFact>, Long> factDataSize = new HashMap<Set<CandidateFact>, Long>();
+    for (Set<CandidateFact> facts : cubeql.getCandidateFactSets()) {
+      long size = 0;
+      for (CandidateFact fact : facts) {
+        for (FactPartition partition : fact.getPartsQueried()) {
+          Long partitionSize = partitionSizes.get(partition);
+          if (partitionSize == null) {
+            LOG.info("Data size of partition " + partition + " of " + fact + " is not known, not pruning candidate"
+              + " facts on data size");
+            return;
+          }
+          size += partitionSize;
+        }
+      }
+      factDataSize.put(facts, size);
+    }
+
+    long minDataSize = Collections.min(factDataSize.values());
+
+    for (Iterator<Set<CandidateFact>> i = cubeql.getCandidateFactSets().iterator(); i.hasNext();) {
+      Set<CandidateFact> facts = i.next();
+      if (factDataSize.get(facts) > minDataSize) {
+        LOG.info("Not considering facts:" + facts + " from candidate fact tables as it requires more data to be read:"
+          + factDataSize.get(facts) + " minimum:" + minDataSize);
+        i.remove();
+      }
+    }
+    cubeql.pruneCandidateFactWithCandidateSet(CandidateTablePruneCode.MORE_DATA_SIZE);
+  }
+}
@@ -28,6 +28,8 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +46,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hadoop.util.ReflectionUtils;
 
 import com.google.common.collect.Lists;
@@ -69,6 +72,8 @@ class StorageTableResolver implements ContextRewriter {
   private TimeRangeWriter rangeWriter;
   private DateFormat partWhereClauseFormat = null;
   private PHASE phase;
+  private final int factParallelism;
+  private final boolean bulkPartitionLookup;
 
   enum PHASE {
     FACT_TABLES, FACT_PARTITIONS, DIM_TABLE_AND_PARTITIONS;
@@ -107,6 +112,10 @@ class StorageTableResolver implements ContextRewriter {
     if (formatStr != null) {
       partWhereClauseFormat = new SimpleDateFormat(formatStr);
     }
+    this.factParallelism = conf.getInt(CubeQueryConfUtil.CANDIDATE_FACT_PARALLELISM,
+      CubeQueryConfUtil.DEFAULT_CANDIDATE_FACT_PARALLELISM);
+    this.bulkPartitionLookup = conf.getBoolean(CubeQueryConfUtil.BULK_PARTITION_LOOKUP,
+      CubeQueryConfUtil.DEFAULT_BULK_PARTITION_LOOKUP);
     this.phase = PHASE.first();
   }
 
@@ -353,53 +362,23 @@ class StorageTableResolver implements ContextRewriter {
   }
 
   private void resolveFactStoragePartitions(CubeQueryContext cubeql) throws SemanticException {
-    // Find candidate tables wrt supported storages
+    // Look up partitions of all candidate facts first, possibly in parallel, and then apply them to the facts and
+    // prune in the iteration order of candidate facts, so that results do not depend on the parallelism
+    List<CandidateFact> facts = new ArrayList<CandidateFact>(cubeql.getCandidateFacts());
+    List<FactPartitionLookup> lookups = lookupFactPartitions(cubeql, facts);
     Iterator<CandidateFact> i = cubeql.getCandidateFacts().iterator();
-    Map<TimeRange, String> whereClauseForFallback = new LinkedHashMap<TimeRange, String>();
+    int factIndex = 0;
     while (i.hasNext()) {
       CandidateFact cfact = i.next();
+      FactPartitionLookup lookup = lookups.get(factIndex++);
+      Map<TimeRange, String> whereClauseForFallback = lookup.whereClauseForFallback;
       List<FactPartition> answeringParts = new ArrayList<>();
-      HashMap<String, SkipStorageCause> skipStorageCauses = new HashMap<>();
-      PartitionRangesForPartitionColumns missingParts = new PartitionRangesForPartitionColumns();
+      HashMap<String, SkipStorageCause> skipStorageCauses = lookup.skipStorageCauses;
+      PartitionRangesForPartitionColumns missingParts = lookup.missingParts;
       boolean noPartsForRange = false;
-      Set<String> unsupportedTimeDims = Sets.newHashSet();
+      Set<String> unsupportedTimeDims = lookup.unsupportedTimeDims;
       for (TimeRange range : cubeql.getTimeRanges()) {
-        StringBuilder extraWhereClause = new StringBuilder();
-        Set<FactPartition> rangeParts = getPartitions(cfact.fact, range, skipStorageCauses, missingParts);
-        // If no partitions were found, then we'll fallback.
-        String partCol = range.getPartitionColumn();
-        boolean partColNotSupported = rangeParts.isEmpty();
-        for(String storage: cfact.fact.getStorages()) {
-          String storageTableName = MetastoreUtil.getFactStorageTableName(cfact.fact.getName(), storage).toLowerCase();
-          partColNotSupported &= skipStorageCauses.containsKey(storageTableName)
-            && skipStorageCauses.get(storageTableName).getCause().equals(PART_COL_DOES_NOT_EXIST)
-            && skipStorageCauses.get(storageTableName).getNonExistantPartCols().contains(partCol);
-        }
-        TimeRange prevRange = range;
-        String sep = "";
-        while (rangeParts.isEmpty()) {
-          // TODO: should we add a condition whether on range's partcol any missing partitions are not there
-          String timeDim = cubeql.getBaseCube().getTimeDimOfPartitionColumn(partCol);
-          if (partColNotSupported && !cfact.getColumns().contains(timeDim)) {
-            unsupportedTimeDims.add(cubeql.getBaseCube().getTimeDimOfPartitionColumn(range.getPartitionColumn()));
-            break;
-          }
-          TimeRange fallBackRange = getFallbackRange(prevRange, cfact, cubeql);
-          LOG.info("No partitions for range:" + range + ". fallback range: " + fallBackRange);
-          if (fallBackRange == null) {
-            break;
-          }
-          rangeParts = getPartitions(cfact.fact, fallBackRange, skipStorageCauses, missingParts);
-          extraWhereClause.append(sep)
-            .append(prevRange.toTimeDimWhereClause(cubeql.getAliasForTableName(cubeql.getCube()), timeDim));
-          sep = " AND ";
-          prevRange = fallBackRange;
-          partCol = prevRange.getPartitionColumn();
-          if (!rangeParts.isEmpty()) {
-            break;
-          }
-        }
-        whereClauseForFallback.put(range, extraWhereClause.toString());
+        Set<FactPartition> rangeParts = lookup.rangeParts.get(range);
         if (rangeParts.isEmpty()) {
           LOG.info("No partitions for fallback range:" + range);
           noPartsForRange = true;
@@ -424,7 +403,7 @@ class StorageTableResolver implements ContextRewriter {
         cfact.getPartsQueried().addAll(rangeParts);
         String rangeWhereClause = rangeWriter.getTimeRangeWhereClause(cubeql,
           cubeql.getAliasForTableName(cubeql.getCube().getName()), rangeParts);
-        cfact.getRangeToWhereClause().put(range, joinWithAnd(rangeWhereClause, extraWhereClause.toString()));
+        cfact.getRangeToWhereClause().put(range, joinWithAnd(rangeWhereClause, whereClauseForFallback.get(range)));
       }
       if (!unsupportedTimeDims.isEmpty()) {
         LOG.info("Not considering fact table:" + cfact.fact + " as it doesn't support time dimensions: "
@@ -498,6 +477,169 @@ class StorageTableResolver implements ContextRewriter {
   }
 
 
+  /**
+   * Partitions looked up for a candidate fact over all queried time ranges, along with the reasons for skipping its
+   * storages. Nothing in it is applied to the fact or the query context until all candidate facts are looked up.
+   */
+  private static class FactPartitionLookup {
+    private final Map<TimeRange, Set<FactPartition>> rangeParts = new HashMap<TimeRange, Set<FactPartition>>();
+    private final Map<TimeRange, String> whereClauseForFallback = new HashMap<TimeRange, String>();
+    private final HashMap<String, SkipStorageCause> skipStorageCauses = new HashMap<String, SkipStorageCause>();
+    private final PartitionRangesForPartitionColumns missingParts = new PartitionRangesForPartitionColumns();
+    private final Set<String> unsupportedTimeDims = Sets.newHashSet();
+  }
+
+  private static ExecutorService candidateFactPool;
+
+  private static synchronized ExecutorService getCandidateFactPool(Configuration conf) {
+    if (candidateFactPool == null) {
+      int maxThreads = conf.getInt(CubeQueryConfUtil.CANDIDATE_FACT_POOL_MAX_THREADS,
+        CubeQueryConfUtil.DEFAULT_CANDIDATE_FACT_POOL_MAX_THREADS);
+      final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+      final AtomicInteger thId = new AtomicInteger();
+      ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread th = defaultFactory.newThread(r);
+          th.setName("candidate-fact-" + thId.incrementAndGet());
+          th.setDaemon(true);
+          return th;
+        }
+      };
+      // Pool threads look up partitions through their thread local metastore client, so they never expire, which
+      // would leak the client's connection. No queue, so that a busy pool rejects work and the rewriting thread does
+      // it instead of waiting
+      candidateFactPool = new ThreadPoolExecutor(maxThreads, maxThreads, 0, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), threadFactory);
+    }
+    return candidateFactPool;
+  }
+
+  /**
+   * Looks up partitions of the given candidate facts with up to the configured number of facts at a time. The
+   * rewriting thread always takes part in the lookup, and pool threads help it when available.
+   *
+   * @param cubeql query context
+   * @param facts  candidate facts
+   * @return lookups in the same order as facts
+   * @throws SemanticException the exception of the first fact in order whose lookup failed
+   */
+  private List<FactPartitionLookup> lookupFactPartitions(final CubeQueryContext cubeql,
+    final List<CandidateFact> facts) throws SemanticException {
+    final FactPartitionLookup[] lookups = new FactPartitionLookup[facts.size()];
+    final Exception[] errors = new Exception[facts.size()];
+    final AtomicInteger nextFact = new AtomicInteger();
+    final Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int index;
+        // facts are picked in order, so all facts before a failed one are looked up before the workers stop
+        while ((index = nextFact.getAndIncrement()) < facts.size()) {
+          try {
+            lookups[index] = lookupFactPartitions(cubeql, facts.get(index));
+          } catch (SemanticException | RuntimeException e) {
+            errors[index] = e;
+            nextFact.set(facts.size());
+          }
+        }
+      }
+    };
+    // metastore lookups resolve unqualified table names against the current database of the session, so pool threads
+    // run with the session of the rewriting thread
+    final SessionState sessionState = SessionState.get();
+    Runnable helper = new Runnable() {
+      @Override
+      public void run() {
+        SessionState.setCurrentSessionState(sessionState);
+        try {
+          worker.run();
+        } finally {
+          SessionState.detachSession();
+        }
+      }
+    };
+    List<Future<?>> helpers = new ArrayList<Future<?>>();
+    int workers = Math.min(factParallelism, facts.size());
+    if (workers > 1) {
+      ExecutorService pool = getCandidateFactPool(conf);
+      for (int w = 1; w < workers; w++) {
+        try {
+          helpers.add(pool.submit(helper));
+        } catch (RejectedExecutionException e) {
+          LOG.debug("No free threads to resolve candidate fact partitions, continuing with " + w + " workers");
+          break;
+        }
+      }
+    }
+    worker.run();
+    for (Future<?> future : helpers) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SemanticException("Interrupted while resolving candidate fact partitions", e);
+      } catch (ExecutionException e) {
+        throw new SemanticException(e.getCause());
+      }
+    }
+    for (Exception e : errors) {
+      if (e instanceof SemanticException) {
+        throw (SemanticException) e;
+      } else if (e != null) {
+        throw (RuntimeException) e;
+      }
+    }
+    return Arrays.asList(lookups);
+  }
+
+  private FactPartitionLookup lookupFactPartitions(CubeQueryContext cubeql, CandidateFact cfact)
+    throws SemanticException {
+    FactPartitionLookup lookup = new FactPartitionLookup();
+    HashMap<String, SkipStorageCause> skipStorageCauses = lookup.skipStorageCauses;
+    PartitionRangesForPartitionColumns missingParts = lookup.missingParts;
+    for (TimeRange range : cubeql.getTimeRanges()) {
+      StringBuilder extraWhereClause = new StringBuilder();
+      Set<FactPartition> rangeParts = getPartitions(cfact.fact, range, skipStorageCauses, missingParts);
+      // If no partitions were found, then we'll fallback.
+      String partCol = range.getPartitionColumn();
+      boolean partColNotSupported = rangeParts.isEmpty();
+      for(String storage: cfact.fact.getStorages()) {
+        String storageTableName = MetastoreUtil.getFactStorageTableName(cfact.fact.getName(), storage).toLowerCase();
+        partColNotSupported &= skipStorageCauses.containsKey(storageTableName)
+          && skipStorageCauses.get(storageTableName).getCause().equals(PART_COL_DOES_NOT_EXIST)
+          && skipStorageCauses.get(storageTableName).getNonExistantPartCols().contains(partCol);
+      }
+      TimeRange prevRange = range;
+      String sep = "";
+      while (rangeParts.isEmpty()) {
+        // TODO: should we add a condition whether on range's partcol any missing partitions are not there
+        String timeDim = cubeql.getBaseCube().getTimeDimOfPartitionColumn(partCol);
+        if (partColNotSupported && !cfact.getColumns().contains(timeDim)) {
+          lookup.unsupportedTimeDims.add(
+            cubeql.getBaseCube().getTimeDimOfPartitionColumn(range.getPartitionColumn()));
+          break;
+        }
+        TimeRange fallBackRange = getFallbackRange(prevRange, cfact, cubeql);
+        LOG.info("No partitions for range:" + range + ". fallback range: " + fallBackRange);
+        if (fallBackRange == null) {
+          break;
+        }
+        rangeParts = getPartitions(cfact.fact, fallBackRange, skipStorageCauses, missingParts);
+        extraWhereClause.append(sep)
+          .append(prevRange.toTimeDimWhereClause(cubeql.getAliasForTableName(cubeql.getCube()), timeDim));
+        sep = " AND ";
+        prevRange = fallBackRange;
+        partCol = prevRange.getPartitionColumn();
+        if (!rangeParts.isEmpty()) {
+          break;
+        }
+      }
+      lookup.whereClauseForFallback.put(range, extraWhereClause.toString());
+      lookup.rangeParts.put(range, rangeParts);
+    }
+    return lookup;
+  }
+
   void addNonExistingParts(String name, Set<String> nonExistingParts) {
     nonExistingPartitions.put(name, nonExistingParts);
   }
@@ -562,6 +704,19 @@ class StorageTableResolver implements ContextRewriter {
     Date ceilFromDate = DateUtil.getCeilDate(fromDate, interval);
     Date floorToDate = DateUtil.getFloorDate(toDate, interval);
 
+    // Look up the existing ranges of each storage table once instead of checking each partition
+    Map<String, TimePartitionRangeList> existingRanges = null;
+    if (bulkPartitionLookup && ceilFromDate.before(floorToDate)) {
+      // the range ends after the partition of floorToDate, in case it is not aligned with the partition boundary
+      TimePartitionRange lookupRange = TimePartition.of(interval, ceilFromDate)
+        .rangeUpto(TimePartition.of(interval, floorToDate).next());
+      existingRanges = new LinkedHashMap<String, TimePartitionRangeList>();
+      for (String storageTableName : storageTbls) {
+        existingRanges.put(storageTableName,
+          client.getExistingFactPartitionRanges(fact, storageTableName, partCol, lookupRange));
+      }
+    }
+
     int lookAheadNumParts =
       conf.getInt(CubeQueryConfUtil.getLookAheadPTPartsKey(interval), CubeQueryConfUtil.DEFAULT_LOOK_AHEAD_PT_PARTS);
 
@@ -573,7 +728,11 @@ class StorageTableResolver implements ContextRewriter {
       Date nextDt = iter.peekNext();
       FactPartition part = new FactPartition(partCol, dt, interval, null, partWhereClauseFormat);
       LOG.info("candidate storage tables for searching partitions: " + storageTbls);
-      updateFactPartitionStorageTablesFrom(fact, part, storageTbls);
+      if (existingRanges != null) {
+        updateFactPartitionStorageTablesFrom(part, existingRanges);
+      } else {
+        updateFactPartitionStorageTablesFrom(fact, part, storageTbls);
+      }
       LOG.info("Storage tables containing Partition " + part + " are: " + part.getStorageTables());
       if (part.isFound()) {
         LOG.info("Adding existing partition" + part);
@@ -677,4 +836,15 @@ class StorageTableResolver implements ContextRewriter {
       }
     }
   }
+
+  private void updateFactPartitionStorageTablesFrom(FactPartition part,
+    Map<String, TimePartitionRangeList> existingRanges) throws LensException {
+    TimePartition timePartition = TimePartition.of(part.getPeriod(), part.getPartSpec());
+    for (Map.Entry<String, TimePartitionRangeList> entry : existingRanges.entrySet()) {
+      if (entry.getValue().contains(timePartition)) {
+        part.getStorageTables().add(entry.getKey());
+        part.setFound(true);
+      }
+    }
+  }
 }
@@ -18,11 +18,14 @@
  */
 package org.apache.lens.cube.query.cost;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.metadata.UpdatePeriod;
+import org.apache.lens.driver.cube.RewriterPlan;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.AbstractQueryContext;
@@ -36,6 +39,11 @@ import com.google.common.collect.Maps;
 public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculator {
 
   public static final String UPDATE_PERIOD_WEIGHT_PREFIX = "update.period.weight.";
+  /**
+   * Bytes of partition data that cost one unit. If set, partitions whose data size is known from partition statistics
+   * are priced by their size instead of their update period.
+   */
+  public static final String DATA_SIZE_COST_UNIT_BYTES = "partition.data.size.cost.unit.bytes";
 
   /**
    * Calculates total cost based on weights of selected tables and their selected partitions
@@ -50,6 +58,9 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
   private double getTotalPartitionCost(final AbstractQueryContext queryContext, LensDriver driver)
     throws LensException {
     double cost = 0;
+    long costUnitBytes = driver.getConf().getLong(DATA_SIZE_COST_UNIT_BYTES, 0);
+    Map<FactPartition, Long> partitionDataSizes = costUnitBytes > 0 ? getPartitionDataSizes(queryContext, driver)
+      : Collections.<FactPartition, Long>emptyMap();
     for (Map.Entry<String, Set<?>> entry : getAllPartitions(queryContext, driver).entrySet()) {
       // Have to do instanceof check, since it can't be handled by polymorphism.
       // The '?' is either a FactPartition or a String. When we decide to write a
@@ -62,7 +73,12 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
           if (allTableWeights == 0) {
             allTableWeights = 1;
           }
-          cost += allTableWeights * getNormalizedUpdatePeriodCost(partition.getPeriod(), driver);
+          Long dataSize = partitionDataSizes.get(partition);
+          if (dataSize != null) {
+            cost += allTableWeights * dataSize / costUnitBytes;
+          } else {
+            cost += allTableWeights * getNormalizedUpdatePeriodCost(partition.getPeriod(), driver);
+          }
         }
       }
     }
@@ -95,4 +111,12 @@ public class FactPartitionBasedQueryCostCalculator implements QueryCostCalculato
     }
     return Maps.newHashMap();
   }
+
+  private Map<FactPartition, Long> getPartitionDataSizes(AbstractQueryContext queryContext, LensDriver driver) {
+    DriverQueryPlan plan = queryContext.getDriverRewriterPlan(driver);
+    if (plan instanceof RewriterPlan) {
+      return ((RewriterPlan) plan).getPartitionDataSizes();
+    }
+    return Collections.emptyMap();
+  }
 }
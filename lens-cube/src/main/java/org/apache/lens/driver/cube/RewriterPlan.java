@@ -19,11 +19,14 @@
 package org.apache.lens.driver.cube;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.parse.CandidateTable;
+import org.apache.lens.cube.parse.CubeQueryConfUtil;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
@@ -32,6 +35,7 @@ import org.apache.lens.server.api.query.cost.QueryCost;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.metadata.Table;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -40,10 +44,28 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public final class RewriterPlan extends DriverQueryPlan {
 
+  /**
+   * Data size in bytes of the fact partitions queried, as per partition statistics. Filled only if partition
+   * statistics are enabled, and only for the partitions whose size is known.
+   */
+  @Getter
+  private final Map<FactPartition, Long> partitionDataSizes = new HashMap<FactPartition, Long>();
+
   public RewriterPlan(Collection<CubeQueryContext> cubeQueries) {
     extractPlan(cubeQueries);
   }
 
+  private RewriterPlan() {
+  }
+
+  @Override
+  public RewriterPlan copy() {
+    RewriterPlan plan = new RewriterPlan();
+    copyTo(plan);
+    plan.partitionDataSizes.putAll(partitionDataSizes);
+    return plan;
+  }
+
   @SuppressWarnings("unchecked") // required for (Set<FactPartition>) casting
   void extractPlan(Collection<CubeQueryContext> cubeQueries) {
 
@@ -66,6 +88,15 @@ public final class RewriterPlan extends DriverQueryPlan {
             partitions.put(fact.getName(), factParts);
           }
           factParts.addAll((Set<FactPartition>) fact.getPartsQueried());
+          if (ctx.getConf().getBoolean(CubeQueryConfUtil.USE_PARTITION_STATS,
+            CubeQueryConfUtil.DEFAULT_USE_PARTITION_STATS)) {
+            try {
+              partitionDataSizes.putAll(ctx.getMetastoreClient().getFactPartitionDataSizes(
+                (Set<FactPartition>) fact.getPartsQueried()));
+            } catch (HiveException e) {
+              log.error("Error while getting partition statistics of fact:" + fact.getName(), e);
+            }
+          }
         }
       }
       for (String table : getTablesQueried()) {
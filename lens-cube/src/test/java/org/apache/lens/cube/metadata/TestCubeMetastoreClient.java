@@ -20,6 +20,10 @@
 package org.apache.lens.cube.metadata;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.lens.cube.metadata.ExprColumn.ExprSpec;
 import org.apache.lens.cube.metadata.timeline.EndsAndHolesPartitionTimeline;
@@ -28,6 +32,7 @@ import org.apache.lens.cube.metadata.timeline.StoreAllPartitionTimeline;
 import org.apache.lens.cube.parse.TimeRange;
 import org.apache.lens.server.api.error.LensException;
 
+import org.apache.hadoop.hive.common.StatsSetupConst;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.api.AlreadyExistsException;
 import org.apache.hadoop.hive.metastore.api.Database;
@@ -50,6 +55,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 public class TestCubeMetastoreClient {
 
@@ -2560,4 +2566,263 @@ public class TestCubeMetastoreClient {
     conf.setBoolean(MetastoreConstants.METASTORE_ENABLE_CACHING, true);
     client = CubeMetastoreClient.getInstance(conf);
   }
+
+  @Test(priority = 4)
+  public void testVersionedCache() throws Exception {
+    HiveConf versionedConf = new HiveConf(conf);
+    versionedConf.setBoolean(MetastoreConstants.METASTORE_CACHE_VERSIONED, true);
+    versionedConf.setLong(MetastoreConstants.METASTORE_CACHE_CHECK_INTERVAL_MILLIS, 0);
+    // clients of two lens servers sharing the metastore
+    String dbName = TestCubeMetastoreClient.class.getSimpleName();
+    CubeMetastoreClient client1 = new CubeMetastoreClient(versionedConf, dbName);
+    CubeMetastoreClient client2 = new CubeMetastoreClient(versionedConf, dbName);
+    int numCubes = client2.getAllCubes().size();
+
+    Map<String, String> stamps = Hive.get(conf).getDatabase(dbName).getParameters();
+    client1.createCube("testversion", cubeMeasures, cubeDimensions);
+    Map<String, String> createdStamps = Hive.get(conf).getDatabase(dbName).getParameters();
+    Assert.assertNotEquals(createdStamps.get(MetastoreConstants.METASTORE_VERSION_KEY),
+      stamps.get(MetastoreConstants.METASTORE_VERSION_KEY));
+    Assert.assertNotEquals(createdStamps.get(MetastoreConstants.METASTORE_TABLES_VERSION_KEY),
+      stamps.get(MetastoreConstants.METASTORE_TABLES_VERSION_KEY));
+    Assert.assertEquals(client2.getAllCubes().size(), numCubes + 1);
+    Assert.assertNull(((Cube) client2.getCube("testversion")).getProperties().get("cube.testversion.prop"));
+
+    Map<String, String> props = new HashMap<String, String>();
+    props.put("cube.testversion.prop", "altered");
+    client1.alterCube("testversion", new Cube("testversion", cubeMeasures, cubeDimensions, props));
+    // altering a table does not change the listings
+    Map<String, String> alteredStamps = Hive.get(conf).getDatabase(dbName).getParameters();
+    Assert.assertNotEquals(alteredStamps.get(MetastoreConstants.METASTORE_VERSION_KEY),
+      createdStamps.get(MetastoreConstants.METASTORE_VERSION_KEY));
+    Assert.assertEquals(alteredStamps.get(MetastoreConstants.METASTORE_TABLES_VERSION_KEY),
+      createdStamps.get(MetastoreConstants.METASTORE_TABLES_VERSION_KEY));
+    Assert.assertEquals(((Cube) client2.getCube("testversion")).getProperties().get("cube.testversion.prop"),
+      "altered");
+
+    client1.dropCube("testversion");
+    Assert.assertEquals(client2.getAllCubes().size(), numCubes);
+
+    client.invalidateCache();
+    long hits = CubeMetastoreClient.getCacheHitCount();
+    long misses = CubeMetastoreClient.getCacheMissCount();
+    client.getTable(CUBE_NAME);
+    client.getTable(CUBE_NAME);
+    Assert.assertEquals(CubeMetastoreClient.getCacheHitCount(), hits + 1);
+    Assert.assertEquals(CubeMetastoreClient.getCacheMissCount(), misses + 1);
+  }
+
+  @Test(priority = 4)
+  public void testTimelineLoadingFromAllPartitions() throws Exception {
+    String factName = "testTimelineLoadFact";
+    List<FieldSchema> factColumns = new ArrayList<FieldSchema>(cubeMeasures.size());
+    for (CubeMeasure measure : cubeMeasures) {
+      factColumns.add(measure.getColumn());
+    }
+    Map<String, Set<UpdatePeriod>> updatePeriods = new HashMap<String, Set<UpdatePeriod>>();
+    updatePeriods.put(c1, Sets.newHashSet(UpdatePeriod.HOURLY));
+    StorageTableDesc s1 = new StorageTableDesc();
+    s1.setInputFormat(TextInputFormat.class.getCanonicalName());
+    s1.setOutputFormat(HiveIgnoreKeyTextOutputFormat.class.getCanonicalName());
+    s1.setPartCols(Lists.newArrayList(getDatePartition()));
+    s1.setTimePartCols(Lists.newArrayList(getDatePartitionKey()));
+    Map<String, StorageTableDesc> storageTables = new HashMap<String, StorageTableDesc>();
+    storageTables.put(c1, s1);
+    client.createCubeFactTable(CUBE_NAME, factName, factColumns, updatePeriods, 0L, null, storageTables);
+
+    List<StoragePartitionDesc> partSpecs = new ArrayList<StoragePartitionDesc>();
+    for (int i = 0; i < 10; i++) {
+      if (i != 4) {
+        partSpecs.add(getStoragePartSpec(factName, UpdatePeriod.HOURLY, new String[]{getDatePartitionKey()},
+          new int[]{-i}));
+      }
+    }
+    client.addPartitions(partSpecs, c1);
+
+    // drop timelines from table properties, so that they get computed from all partitions
+    String storageTableName = MetastoreUtil.getFactStorageTableName(factName, c1);
+    Table storageTable = Hive.get(conf).getTable(storageTableName);
+    storageTable.getParameters().remove(MetastoreUtil.getPartitionTimelineCachePresenceKey());
+    Hive.get(conf).alterTable(storageTableName, storageTable);
+
+    HiveConf loadConf = new HiveConf(conf);
+    loadConf.setInt(MetastoreConstants.PARTITION_TIMELINE_LOAD_BATCH_SIZE, 3);
+    final CubeMetastoreClient loadClient = new CubeMetastoreClient(loadConf,
+      TestCubeMetastoreClient.class.getSimpleName());
+    final String fact = factName;
+    final String currentDb = SessionState.get().getCurrentDatabase();
+    List<Callable<Object>> loads = new ArrayList<Callable<Object>>();
+    for (int i = 0; i < 8; i++) {
+      loads.add(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          SessionState.start(conf).setCurrentDatabase(currentDb);
+          return loadClient.partitionTimelineCache.get(fact, c1);
+        }
+      });
+    }
+    ExecutorService loaders = Executors.newFixedThreadPool(loads.size());
+    try {
+      List<Future<Object>> results = loaders.invokeAll(loads);
+      for (Future<Object> result : results) {
+        // everyone gets the timelines of one load
+        Assert.assertSame(result.get(), results.get(0).get());
+      }
+    } finally {
+      loaders.shutdownNow();
+    }
+
+    assertSameTimelines(client.partitionTimelineCache.get(factName, c1, UpdatePeriod.HOURLY, getDatePartitionKey()),
+      loadClient.partitionTimelineCache.get(factName, c1, UpdatePeriod.HOURLY, getDatePartitionKey()));
+    Assert.assertEquals(Hive.get(conf).getTable(storageTableName).getParameters().get(
+      MetastoreUtil.getPartitionTimelineCachePresenceKey()), "true");
+  }
+
+  @Test(priority = 4)
+  public void testBulkFactPartitionAddition() throws Exception {
+    String factName = "testBulkPartitionFact";
+    List<FieldSchema> factColumns = new ArrayList<FieldSchema>(cubeMeasures.size());
+    for (CubeMeasure measure : cubeMeasures) {
+      factColumns.add(measure.getColumn());
+    }
+    Map<String, Set<UpdatePeriod>> updatePeriods = new HashMap<String, Set<UpdatePeriod>>();
+    Map<String, StorageTableDesc> storageTables = new HashMap<String, StorageTableDesc>();
+    for (String storage : new String[]{c1, c2}) {
+      updatePeriods.put(storage, Sets.newHashSet(UpdatePeriod.HOURLY));
+      StorageTableDesc storageTableDesc = new StorageTableDesc();
+      storageTableDesc.setInputFormat(TextInputFormat.class.getCanonicalName());
+      storageTableDesc.setOutputFormat(HiveIgnoreKeyTextOutputFormat.class.getCanonicalName());
+      storageTableDesc.setPartCols(Lists.newArrayList(getDatePartition()));
+      storageTableDesc.setTimePartCols(Lists.newArrayList(getDatePartitionKey()));
+      storageTables.put(storage, storageTableDesc);
+    }
+    client.createCubeFactTable(CUBE_NAME, factName, factColumns, updatePeriods, 0L, null, storageTables);
+
+    String[] partCols = new String[]{getDatePartitionKey()};
+    Map<String, List<StoragePartitionDesc>> partitions = new LinkedHashMap<String, List<StoragePartitionDesc>>();
+    partitions.put(c1, new ArrayList<StoragePartitionDesc>());
+    for (int i = 0; i < 5; i++) {
+      partitions.get(c1).add(getStoragePartSpec(factName, UpdatePeriod.HOURLY, partCols, new int[]{-i}));
+    }
+    StoragePartitionDesc invalidPeriod = getStoragePartSpec(factName, UpdatePeriod.DAILY, partCols, new int[]{0});
+    StoragePartitionDesc invalidFact = getStoragePartSpec("testBulkNoSuchFact", UpdatePeriod.HOURLY, partCols,
+      new int[]{0});
+    partitions.get(c1).add(invalidPeriod);
+    partitions.get(c1).add(invalidFact);
+    partitions.put(c2, new ArrayList<StoragePartitionDesc>());
+    for (int i = 0; i < 3; i++) {
+      partitions.get(c2).add(getStoragePartSpec(factName, UpdatePeriod.HOURLY, partCols, new int[]{-i}));
+    }
+
+    HiveConf bulkConf = new HiveConf(conf);
+    bulkConf.setInt(MetastoreConstants.PARTITION_ADD_BATCH_SIZE, 2);
+    CubeMetastoreClient bulkClient = new CubeMetastoreClient(bulkConf, TestCubeMetastoreClient.class.getSimpleName());
+    Map<StoragePartitionDesc, Exception> failures = bulkClient.addFactPartitions(partitions);
+
+    Assert.assertEquals(failures.keySet(), Sets.newHashSet(invalidPeriod, invalidFact));
+    String c1TableName = MetastoreUtil.getFactStorageTableName(factName, c1);
+    String c2TableName = MetastoreUtil.getFactStorageTableName(factName, c2);
+    Assert.assertEquals(bulkClient.getAllParts(c1TableName).size(), 5);
+    Assert.assertEquals(bulkClient.getAllParts(c2TableName).size(), 3);
+    assertNoPartitionNamedLatest(c1TableName, partCols);
+    Calendar cal = Calendar.getInstance();
+    for (int i = 0; i < 5; i++) {
+      cal.setTime(now);
+      cal.add(Calendar.HOUR_OF_DAY, -i);
+      Assert.assertTrue(bulkClient.partitionTimelineCache.partitionTimeExists(factName, c1, UpdatePeriod.HOURLY,
+        getDatePartitionKey(), cal.getTime()));
+      Assert.assertEquals(bulkClient.partitionTimelineCache.partitionTimeExists(factName, c2, UpdatePeriod.HOURLY,
+        getDatePartitionKey(), cal.getTime()), i < 3);
+    }
+    // timelines are saved in table properties
+    Assert.assertEquals(Hive.get(conf).getTable(c1TableName).getParameters().get(
+      MetastoreUtil.getPartitionTimelineCachePresenceKey()), "true");
+    assertSameTimelines(bulkClient.partitionTimelineCache.get(factName, c1, UpdatePeriod.HOURLY, getDatePartitionKey()),
+      new CubeMetastoreClient(conf, TestCubeMetastoreClient.class.getSimpleName()).partitionTimelineCache.get(
+        factName, c1, UpdatePeriod.HOURLY, getDatePartitionKey()));
+  }
+
+  @Test(priority = 4)
+  public void testFactPartitionStats() throws Exception {
+    String factName = "testPartitionStatsFact";
+    List<FieldSchema> factColumns = new ArrayList<FieldSchema>(cubeMeasures.size());
+    for (CubeMeasure measure : cubeMeasures) {
+      factColumns.add(measure.getColumn());
+    }
+    Map<String, Set<UpdatePeriod>> updatePeriods = new HashMap<String, Set<UpdatePeriod>>();
+    Map<String, StorageTableDesc> storageTables = new HashMap<String, StorageTableDesc>();
+    for (String storage : new String[]{c1, c2}) {
+      updatePeriods.put(storage, Sets.newHashSet(UpdatePeriod.HOURLY));
+      StorageTableDesc storageTableDesc = new StorageTableDesc();
+      storageTableDesc.setInputFormat(TextInputFormat.class.getCanonicalName());
+      storageTableDesc.setOutputFormat(HiveIgnoreKeyTextOutputFormat.class.getCanonicalName());
+      storageTableDesc.setPartCols(Lists.newArrayList(getDatePartition()));
+      storageTableDesc.setTimePartCols(Lists.newArrayList(getDatePartitionKey()));
+      storageTables.put(storage, storageTableDesc);
+    }
+    client.createCubeFactTable(CUBE_NAME, factName, factColumns, updatePeriods, 0L, null, storageTables);
+
+    String[] partCols = new String[]{getDatePartitionKey()};
+    client.addPartition(getStoragePartSpecWithStats(factName, partCols, 0, 1000), c1);
+    client.addPartition(getStoragePartSpecWithStats(factName, partCols, -1, 2000), c1);
+    client.addPartition(getStoragePartSpecWithStats(factName, partCols, 0, 500), c2);
+
+    String c1TableName = MetastoreUtil.getFactStorageTableName(factName, c1);
+    String c2TableName = MetastoreUtil.getFactStorageTableName(factName, c2);
+    // hive computes quick statistics for partitions of some storages on addition, publish the statistics again as
+    // a stats task would
+    for (Partition partition : client.getAllParts(c2TableName)) {
+      partition.getParameters().put(StatsSetupConst.ROW_COUNT, "10");
+      partition.getParameters().put(StatsSetupConst.RAW_DATA_SIZE, "500");
+      partition.getParameters().put(StatsSetupConst.STATS_GENERATED_VIA_STATS_TASK, StatsSetupConst.TRUE);
+      Hive.get(conf).alterPartition(TestCubeMetastoreClient.class.getSimpleName() + "." + c2TableName, partition);
+    }
+    Set<String> bothTables = Sets.newHashSet(c1TableName, c2TableName);
+    FactPartition current = getHourlyFactPartition(0, bothTables);
+    FactPartition previous = getHourlyFactPartition(-1, bothTables);
+    FactPartition missing = getHourlyFactPartition(-2, bothTables);
+
+    Map<FactPartition, PartitionStats> c1Stats = client.getFactPartitionStats(c1TableName,
+      Lists.newArrayList(current, previous, missing));
+    Assert.assertEquals(c1Stats.get(current).getNumRows(), 10);
+    Assert.assertEquals(c1Stats.get(current).getDataSize(), 1000);
+    Assert.assertEquals(c1Stats.get(previous).getDataSize(), 2000);
+    Assert.assertEquals(c1Stats.get(missing), PartitionStats.UNKNOWN);
+    // served from the cache
+    Assert.assertSame(client.getFactPartitionStats(c1TableName, Lists.newArrayList(current)).get(current),
+      c1Stats.get(current));
+
+    Map<FactPartition, Long> sizes = client.getFactPartitionDataSizes(Lists.newArrayList(current, previous, missing));
+    // least of the sizes in the storage tables
+    Assert.assertEquals(sizes.get(current), Long.valueOf(500));
+    Assert.assertEquals(sizes.get(previous), Long.valueOf(2000));
+    Assert.assertFalse(sizes.containsKey(missing));
+
+    // dropping and adding partitions invalidates their cached statistics
+    Map<String, Date> previousSpec = new HashMap<String, Date>();
+    previousSpec.put(getDatePartitionKey(), previous.getPartSpec());
+    client.dropPartition(factName, c1, previousSpec, new HashMap<String, String>(), UpdatePeriod.HOURLY);
+    Assert.assertEquals(client.getFactPartitionStats(c1TableName, Lists.newArrayList(previous)).get(previous),
+      PartitionStats.UNKNOWN);
+    client.addPartition(getStoragePartSpecWithStats(factName, partCols, -1, 3000), c1);
+    Assert.assertTrue(client.getFactPartitionStats(c1TableName, Lists.newArrayList(previous)).get(previous)
+      .getDataSize() >= 0);
+  }
+
+  private StoragePartitionDesc getStoragePartSpecWithStats(String factName, String[] partCols, int offset,
+    long rawDataSize) {
+    StoragePartitionDesc partSpec = getStoragePartSpec(factName, UpdatePeriod.HOURLY, partCols, new int[]{offset});
+    Map<String, String> partParams = new HashMap<String, String>();
+    partParams.put(StatsSetupConst.ROW_COUNT, "10");
+    partParams.put(StatsSetupConst.RAW_DATA_SIZE, String.valueOf(rawDataSize));
+    partSpec.setPartParams(partParams);
+    return partSpec;
+  }
+
+  private FactPartition getHourlyFactPartition(int offset, Set<String> storageTables) {
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(now);
+    cal.add(Calendar.HOUR_OF_DAY, offset);
+    return new FactPartition(getDatePartitionKey(), cal.getTime(), UpdatePeriod.HOURLY, null, null, storageTables);
+  }
 }
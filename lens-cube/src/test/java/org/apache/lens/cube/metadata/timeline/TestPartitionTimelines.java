@@ -22,6 +22,8 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.TestTimePartition;
 import org.apache.lens.cube.metadata.TimePartition;
+import org.apache.lens.cube.metadata.TimePartitionRange;
+import org.apache.lens.cube.metadata.TimePartitionRangeList;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.error.LensException;
 
@@ -41,6 +43,7 @@ public class TestPartitionTimelines {
   private static final List<Class<? extends PartitionTimeline>> TIMELINE_IMPLEMENTATIONS = Arrays.asList(
     StoreAllPartitionTimeline.class,
     EndsAndHolesPartitionTimeline.class,
+    BitmapPartitionTimeline.class,
     RangesPartitionTimeline.class
   );
 
@@ -101,6 +104,114 @@ public class TestPartitionTimelines {
     }
   }
 
+  @Test
+  public void testExistingRanges() throws LensException {
+    Random randomGenerator = new Random();
+    List<PartitionTimeline> timelines = Lists.newArrayList();
+    for (Class<? extends PartitionTimeline> clazz : TIMELINE_IMPLEMENTATIONS) {
+      timelines.add(getInstance(clazz));
+    }
+    for (PartitionTimeline timeline : timelines) {
+      Assert.assertTrue(timeline.existingRanges(TimePartition.of(PERIOD, TestTimePartition.NOW).singletonRange())
+        .isEmpty());
+    }
+    for (int i = 0; i < 100; i++) {
+      TimePartition part = TimePartition.of(PERIOD, TestTimePartition.timeAtDiff(TestTimePartition.NOW, PERIOD,
+        randomGenerator.nextInt(100) - 50));
+      for (PartitionTimeline timeline : timelines) {
+        timeline.add(part);
+      }
+    }
+    for (int j = 0; j < 50; j++) {
+      int begin = randomGenerator.nextInt(140) - 70;
+      TimePartition from = TimePartition.of(PERIOD, TestTimePartition.timeAtDiff(TestTimePartition.NOW, PERIOD, begin));
+      TimePartitionRange range = from.rangeUpto(from.partitionAtDiff(randomGenerator.nextInt(70)));
+      TimePartitionRangeList expected = null;
+      for (PartitionTimeline timeline : timelines) {
+        TimePartitionRangeList existing = timeline.existingRanges(range);
+        for (TimePartition part : range) {
+          Assert.assertEquals(existing.contains(part), timeline.exists(part), timeline + " " + part);
+        }
+        for (int i = 0; i < existing.size(); i++) {
+          Assert.assertTrue(existing.get(i).isValidAndNonEmpty());
+          if (i > 0) {
+            // maximal sub ranges, so consecutive ranges have at least one missing partition in between
+            Assert.assertTrue(existing.get(i - 1).getEnd().before(existing.get(i).getBegin()));
+          }
+        }
+        if (expected == null) {
+          expected = existing;
+        } else {
+          Assert.assertEquals(existing, expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBitmapTimeline() throws LensException {
+    BitmapPartitionTimeline timeline = getInstance(BitmapPartitionTimeline.class);
+    TimePartition first = TimePartition.of(PERIOD, TestTimePartition.NOW);
+    // three years of hourly partitions with a few holes
+    List<TimePartition> holes = Arrays.asList(first.partitionAtDiff(100), first.partitionAtDiff(5000),
+      first.partitionAtDiff(20000));
+    List<TimePartition> partitions = Lists.newArrayList();
+    for (int i = 0; i < 3 * 365 * 24; i++) {
+      TimePartition part = first.partitionAtDiff(i);
+      if (!holes.contains(part)) {
+        partitions.add(part);
+      }
+    }
+    Assert.assertTrue(timeline.add(partitions));
+    Assert.assertEquals(timeline.getFirst(), first);
+    Assert.assertEquals(timeline.latest(), first.partitionAtDiff(3 * 365 * 24 - 1));
+    for (TimePartition hole : holes) {
+      Assert.assertFalse(timeline.exists(hole));
+      Assert.assertTrue(timeline.exists(hole.next()));
+    }
+    Assert.assertFalse(timeline.exists(first.previous()));
+    Assert.assertFalse(timeline.exists(timeline.latest().next()));
+    Assert.assertEquals(timeline.existingRanges(first.previous().rangeUpto(first.partitionAtDiff(200))).toString(),
+      "[" + first + ", " + holes.get(0) + ")U[" + holes.get(0).next() + ", " + first.partitionAtDiff(200) + ")");
+
+    // properties stay small and read back to the same timeline
+    Map<String, String> props = timeline.toProperties();
+    int length = 0;
+    for (String value : props.values()) {
+      length += value.length();
+    }
+    Assert.assertTrue(length < 1000, "properties of length " + length);
+    BitmapPartitionTimeline copy = getInstance(BitmapPartitionTimeline.class);
+    Assert.assertTrue(copy.initFromProperties(props));
+    Assert.assertEquals(copy, timeline);
+
+    // adding before first and dropping first move the offsets
+    Assert.assertTrue(timeline.add(first.partitionAtDiff(-10)));
+    Assert.assertEquals(timeline.getFirst(), first.partitionAtDiff(-10));
+    Assert.assertTrue(timeline.exists(first));
+    Assert.assertTrue(timeline.drop(first.partitionAtDiff(-10)));
+    Assert.assertFalse(timeline.drop(first.partitionAtDiff(-10)));
+    Assert.assertEquals(timeline, copy);
+  }
+
+  @Test
+  public void testBitmapTimelineFarRanges() throws LensException {
+    BitmapPartitionTimeline timeline = new BitmapPartitionTimeline(TABLE_NAME, UpdatePeriod.SECONDLY, PART_COL);
+    TimePartition first = TimePartition.of(UpdatePeriod.SECONDLY, TestTimePartition.NOW);
+    Assert.assertTrue(timeline.add(Arrays.asList(first, first.next(), first.partitionAtDiff(10))));
+    // more seconds than an int can hold between the first partition and the ranges
+    Calendar cal = Calendar.getInstance();
+    cal.setTime(TestTimePartition.NOW);
+    cal.add(Calendar.YEAR, 80);
+    TimePartition after = TimePartition.of(UpdatePeriod.SECONDLY, cal.getTime());
+    cal.add(Calendar.YEAR, -160);
+    TimePartition before = TimePartition.of(UpdatePeriod.SECONDLY, cal.getTime());
+    Assert.assertTrue(timeline.existingRanges(after.rangeUpto(after.partitionAtDiff(10))).isEmpty());
+    Assert.assertTrue(timeline.existingRanges(before.rangeUpto(before.partitionAtDiff(10))).isEmpty());
+    Assert.assertEquals(timeline.existingRanges(before.rangeUpto(after)).toString(),
+      "[" + first + ", " + first.partitionAtDiff(2) + ")U[" + first.partitionAtDiff(10) + ", "
+        + first.partitionAtDiff(11) + ")");
+  }
 
   private <T extends PartitionTimeline> T getInstance(Class<T> clz) {
     try {
@@ -24,6 +24,7 @@ import static org.apache.lens.cube.parse.CubeTestSetup.*;
 
 import static org.testng.Assert.*;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.apache.lens.cube.metadata.*;
@@ -41,6 +42,9 @@ import org.apache.hadoop.hive.ql.parse.ParseException;
 import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.processors.CommandProcessorResponse;
 
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
@@ -119,6 +123,93 @@ public class TestCubeRewriter extends TestQueryRewrite {
     assertTrue(lessDataCauses > 0);
   }
 
+  @Test
+  public void testParallelCandidateFactResolution() throws Exception {
+    Configuration serialConf = getConf();
+    serialConf.setClass(CubeQueryConfUtil.TIME_RANGE_WRITER_CLASS, AbridgedTimeRangeWriter.class,
+      TimeRangeWriter.class);
+    serialConf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C1,C2,C4");
+    Configuration parallelConf = new Configuration(serialConf);
+    parallelConf.setInt(CubeQueryConfUtil.CANDIDATE_FACT_PARALLELISM, 4);
+
+    String query = "select SUM(msr2) from testCube where " + THIS_YEAR_RANGE;
+    // the first rewrite writes partition timelines to the fact tables, which changes their equality
+    rewriteCtx(query, serialConf);
+    CubeQueryContext serial = rewriteCtx(query, serialConf);
+    CubeQueryContext parallel = rewriteCtx(query, parallelConf);
+    assertEquals(parallel.toHQL(), serial.toHQL());
+    assertEquals(parallel.getFactPruningMsgs(), serial.getFactPruningMsgs());
+    assertEquals(parallel.getNonExistingParts(), serial.getNonExistingParts());
+
+    // all facts pruned, the error should carry the same causes
+    serialConf.setBoolean(CubeQueryConfUtil.FAIL_QUERY_ON_PARTIAL_DATA, true);
+    parallelConf.setBoolean(CubeQueryConfUtil.FAIL_QUERY_ON_PARTIAL_DATA, true);
+    query = "select SUM(msr2) from testCube where " + TWO_MONTHS_RANGE_UPTO_HOURS;
+    getSemanticExceptionInRewrite(query, serialConf);
+    assertEquals(extractPruneCause(getSemanticExceptionInRewrite(query, parallelConf)),
+      extractPruneCause(getSemanticExceptionInRewrite(query, serialConf)));
+  }
+
+  @Test
+  public void testParallelCandidateFactResolutionWithColdCache() throws Exception {
+    Configuration serialConf = getConf();
+    serialConf.setClass(CubeQueryConfUtil.TIME_RANGE_WRITER_CLASS, AbridgedTimeRangeWriter.class,
+      TimeRangeWriter.class);
+    serialConf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C1,C2,C4");
+    Configuration parallelConf = new Configuration(serialConf);
+    parallelConf.setInt(CubeQueryConfUtil.CANDIDATE_FACT_PARALLELISM, 4);
+
+    String query = "select SUM(msr2) from testCube where " + THIS_YEAR_RANGE;
+    rewriteCtx(query, serialConf);
+    CubeQueryContext serial = rewriteCtx(query, serialConf);
+    // with nothing cached, pool threads look up storage tables in the database of the rewriting session
+    CubeMetastoreClient.getInstance(new HiveConf(getConf(), HiveConf.class)).invalidateCache();
+    CubeQueryContext parallel = rewriteCtx(query, parallelConf);
+    assertEquals(parallel.toHQL(), serial.toHQL());
+    assertEquals(parallel.getFactPruningMsgs(), serial.getFactPruningMsgs());
+    assertEquals(parallel.getNonExistingParts(), serial.getNonExistingParts());
+  }
+
+  private static Map<String, Set<String>> nonExistingParts(CubeQueryContext cubeql) throws IOException {
+    return new ObjectMapper().readValue(cubeql.getNonExistingParts(), new TypeReference<Map<String, Set<String>>>() {
+    });
+  }
+
+  // Details are keyed by comma separated fact names, in no particular order
+  private static Map<String, Set<CandidateTablePruneCause>> pruneCausesByFact(
+    PruneCauses.BriefAndDetailedError error) {
+    Map<String, Set<CandidateTablePruneCause>> byFact = new HashMap<String, Set<CandidateTablePruneCause>>();
+    for (Map.Entry<String, List<CandidateTablePruneCause>> entry : error.getDetails().entrySet()) {
+      for (String fact : entry.getKey().split(",")) {
+        if (!byFact.containsKey(fact)) {
+          byFact.put(fact, new HashSet<CandidateTablePruneCause>());
+        }
+        byFact.get(fact).addAll(entry.getValue());
+      }
+    }
+    return byFact;
+  }
+
+  @Test
+  public void testBulkPartitionLookup() throws Exception {
+    Configuration bulkConf = getConf();
+    bulkConf.setClass(CubeQueryConfUtil.TIME_RANGE_WRITER_CLASS, AbridgedTimeRangeWriter.class, TimeRangeWriter.class);
+    bulkConf.set(CubeQueryConfUtil.DRIVER_SUPPORTED_STORAGES, "C1,C2,C4");
+    bulkConf.setBoolean(CubeQueryConfUtil.BULK_PARTITION_LOOKUP, true);
+    Configuration perPartitionConf = new Configuration(bulkConf);
+    perPartitionConf.setBoolean(CubeQueryConfUtil.BULK_PARTITION_LOOKUP, false);
+
+    for (String range : new String[]{TWO_DAYS_RANGE, THIS_YEAR_RANGE, TWO_MONTHS_RANGE_UPTO_HOURS}) {
+      String query = "select SUM(msr2) from testCube where " + range;
+      CubeQueryContext bulk = rewriteCtx(query, bulkConf);
+      CubeQueryContext perPartition = rewriteCtx(query, perPartitionConf);
+      assertEquals(bulk.toHQL(), perPartition.toHQL());
+      assertEquals(pruneCausesByFact(bulk.getFactPruningMsgs().toJsonObject()),
+        pruneCausesByFact(perPartition.getFactPruningMsgs().toJsonObject()));
+      assertEquals(nonExistingParts(bulk), nonExistingParts(perPartition));
+    }
+  }
+
   @Test
   public void testLightestFactFirst() throws Exception {
     // testFact is lighter than testFact2.
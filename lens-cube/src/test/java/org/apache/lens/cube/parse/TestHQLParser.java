@@ -37,6 +37,44 @@ import lombok.extern.slf4j.Slf4j;
 public class TestHQLParser {
 
   HiveConf conf = new HiveConf();
+
+  @Test
+  public void testCachedParse() throws Exception {
+    String query = "SELECT a, sum(b) FROM tab WHERE c = 'x' GROUP BY a";
+    ASTNode first = HQLParser.parseHQL(query, conf);
+    ASTNode second = HQLParser.parseHQL(query, conf);
+    Assert.assertNotSame(first, second);
+    Assert.assertTrue(HQLParser.equalsAST(first, second));
+
+    // changes to a parsed tree, including its tokens, are not seen by later parses
+    ASTNode table = HQLParser.findNodeByPath(first, TOK_FROM, TOK_TABREF, TOK_TABNAME, Identifier);
+    table.getToken().setText("changed");
+    first.deleteChild(0);
+    Assert.assertTrue(HQLParser.equalsAST(second, HQLParser.parseHQL(query, conf)));
+
+    ASTNode expr = HQLParser.parseExpr("a + b");
+    expr.getToken().setType(MINUS);
+    Assert.assertEquals(HQLParser.parseExpr("a + b").getToken().getType(), PLUS);
+  }
+
+  @Test
+  public void testASTCacheDisabled() throws Exception {
+    String query = "SELECT a FROM tab WHERE b = 'y'";
+    HQLParser.clearASTCache();
+    HQLParser.setASTCacheMaxSize(0);
+    try {
+      ASTNode first = HQLParser.parseHQL(query, conf);
+      ASTNode second = HQLParser.parseHQL(query, conf);
+      Assert.assertNotSame(first, second);
+      Assert.assertTrue(HQLParser.equalsAST(first, second));
+      Assert.assertEquals(HQLParser.parseExpr("a + b").getToken().getType(), PLUS);
+      HQLParser.clearASTCache();
+    } finally {
+      HQLParser.setASTCacheMaxSize(HQLParser.DEFAULT_AST_CACHE_MAX_SIZE);
+    }
+    Assert.assertTrue(HQLParser.equalsAST(HQLParser.parseHQL(query, conf), HQLParser.parseHQL(query, conf)));
+  }
+
   @Test
   public void testGroupByOrderByGetString() throws Exception {
     String query = "SELECT a,b, sum(c) FROM tab GROUP BY a,f(b), d+e ORDER BY a, g(b), e/100";
@@ -136,6 +136,27 @@ public class TestJoinResolver extends TestQueryRewrite {
     validatePath(paths.get(5), zipDim, cityDim, testDim2, (AbstractCubeTable) testCube);
   }
 
+  @Test
+  public void testBoundedSearch() throws Exception {
+    SchemaGraph schemaGraph = new SchemaGraph(metastore);
+    CubeInterface testCube = metastore.getCube("testcube");
+    Dimension zipDim = metastore.getDimension("zipdim");
+    SchemaGraph.GraphSearch search = new SchemaGraph.GraphSearch(zipDim, (AbstractCubeTable) testCube, schemaGraph);
+
+    List<SchemaGraph.JoinPath> firstPaths = search.findAllPathsToTarget(2);
+    List<SchemaGraph.JoinPath> allPaths = search.findAllPathsToTarget();
+    Assert.assertEquals(firstPaths.size(), 2);
+    Assert.assertEquals(allPaths.size(), 6);
+    for (int i = 0; i < firstPaths.size(); i++) {
+      Assert.assertEquals(firstPaths.get(i).getEdges(), allPaths.get(i).getEdges());
+    }
+
+    // paths are copies, changing them does not change the paths found later
+    allPaths.get(0).getEdges().clear();
+    Assert.assertEquals(search.findAllPathsToTarget().get(0).getEdges(), firstPaths.get(0).getEdges());
+    Assert.assertSame(metastore.getSchemaGraph(), metastore.getSchemaGraph());
+  }
+
   private void validatePath(SchemaGraph.JoinPath jp, AbstractCubeTable... tables) {
     Assert.assertTrue(!jp.getEdges().isEmpty());
     Set<AbstractCubeTable> expected = new HashSet<AbstractCubeTable>(Arrays.asList(tables));
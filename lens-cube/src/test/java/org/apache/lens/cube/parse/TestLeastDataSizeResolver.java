@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.parse;
+
+import static org.apache.lens.cube.metadata.UpdatePeriod.DAILY;
+import static org.apache.lens.cube.metadata.UpdatePeriod.MONTHLY;
+import static org.apache.lens.cube.parse.CandidateTablePruneCause.CandidateTablePruneCode.MORE_DATA_SIZE;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+import java.util.*;
+
+import org.apache.lens.cube.metadata.*;
+import org.apache.lens.cube.parse.CandidateTablePruneCause.CandidateTablePruneCode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestLeastDataSizeResolver {
+
+  private CubeQueryContext cubeql;
+  private Map<FactPartition, Long> partitionSizes;
+  private CandidateFact monthlyFact;
+  private CandidateFact dailyFact;
+  private FactPartition month;
+  private FactPartition day1;
+  private FactPartition day2;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    Date start = new Date(0);
+    month = new FactPartition("dt", start, MONTHLY, null, null);
+    day1 = new FactPartition("dt", start, DAILY, null, null);
+    day2 = new FactPartition("dt", new Date(DAILY.weight()), DAILY, null, null);
+    monthlyFact = createCandidateFact("monthlyfact", month);
+    dailyFact = createCandidateFact("dailyfact", day1, day2);
+
+    Set<Set<CandidateFact>> candidateFactSets = new HashSet<Set<CandidateFact>>();
+    candidateFactSets.add(Collections.singleton(monthlyFact));
+    candidateFactSets.add(Collections.singleton(dailyFact));
+    partitionSizes = new HashMap<FactPartition, Long>();
+    CubeMetastoreClient client = mock(CubeMetastoreClient.class);
+    when(client.getFactPartitionDataSizes(anyCollectionOf(FactPartition.class))).thenReturn(partitionSizes);
+
+    cubeql = mock(CubeQueryContext.class);
+    when(cubeql.getCube()).thenReturn(mock(CubeInterface.class));
+    when(cubeql.getCandidateFactSets()).thenReturn(candidateFactSets);
+    when(cubeql.getMetastoreClient()).thenReturn(client);
+  }
+
+  private CandidateFact createCandidateFact(String name, FactPartition... partitions) {
+    CubeFactTable fact = new CubeFactTable("testcube", name, new ArrayList<FieldSchema>(),
+      new HashMap<String, Set<UpdatePeriod>>());
+    CandidateFact candidateFact = new CandidateFact(fact, null);
+    candidateFact.getPartsQueried().addAll(Arrays.asList(partitions));
+    return candidateFact;
+  }
+
+  private LeastDataSizeResolver createResolver() {
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(CubeQueryConfUtil.USE_PARTITION_STATS, true);
+    return new LeastDataSizeResolver(conf);
+  }
+
+  @Test
+  public void testMoreDataSizePruned() throws Exception {
+    partitionSizes.put(month, 5000L);
+    partitionSizes.put(day1, 1000L);
+    partitionSizes.put(day2, 1500L);
+    createResolver().rewriteContext(cubeql);
+
+    assertEquals(cubeql.getCandidateFactSets(), Collections.singleton(Collections.singleton(dailyFact)));
+    verify(cubeql).pruneCandidateFactWithCandidateSet(MORE_DATA_SIZE);
+  }
+
+  @Test
+  public void testUnknownDataSizeNotPruned() throws Exception {
+    partitionSizes.put(month, 5000L);
+    partitionSizes.put(day1, 1000L);
+    createResolver().rewriteContext(cubeql);
+
+    assertEquals(cubeql.getCandidateFactSets().size(), 2);
+    verify(cubeql, never()).pruneCandidateFactWithCandidateSet(any(CandidateTablePruneCode.class));
+  }
+}
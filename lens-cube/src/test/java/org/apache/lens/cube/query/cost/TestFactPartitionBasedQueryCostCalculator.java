@@ -26,11 +26,14 @@ import static org.apache.lens.cube.metadata.UpdatePeriod.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
 
 import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.metadata.UpdatePeriod;
+import org.apache.lens.cube.parse.CubeQueryContext;
+import org.apache.lens.driver.cube.RewriterPlan;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.AbstractQueryContext;
@@ -89,6 +92,35 @@ public class TestFactPartitionBasedQueryCostCalculator {
     Assert.assertTrue(cost.getEstimatedResourceUsage() < 19.0);
   }
 
+  @Test
+  public void testCalculateCostFromDataSize() throws Exception {
+    LensDriver sizeDriver = mock(LensDriver.class);
+    Configuration conf = new Configuration();
+    conf.setLong(FactPartitionBasedQueryCostCalculator.DATA_SIZE_COST_UNIT_BYTES, 1000);
+    when(sizeDriver.getConf()).thenReturn(conf);
+    AbstractQueryContext sizeContext = mock(AbstractQueryContext.class);
+    ImmutableMap<String, Double> tableWeights = mock(ImmutableMap.class);
+    when(sizeContext.getTableWeights(sizeDriver)).thenReturn(tableWeights);
+
+    FactPartition hourly = mockFactPartition(HOURLY, tableWeights, 1);
+    FactPartition daily = mockFactPartition(DAILY, tableWeights, 2);
+    RewriterPlan plan = new RewriterPlan(Collections.<CubeQueryContext>emptyList());
+    plan.getPartitions().put("fact", Sets.newHashSet(hourly, daily));
+    // size of the daily partition is not known, it is priced by its update period
+    plan.getPartitionDataSizes().put(hourly, 5000L);
+    when(sizeContext.getDriverRewriterPlan(sizeDriver)).thenReturn(plan);
+
+    QueryCost cost = calculator.calculateCost(sizeContext, sizeDriver);
+    double dailyCost = 2 * DAILY.getNormalizationFactor();
+    Assert.assertEquals(5.0 + dailyCost, cost.getEstimatedResourceUsage(), 0.001);
+
+    // without the unit, all partitions are priced by their update periods
+    conf.unset(FactPartitionBasedQueryCostCalculator.DATA_SIZE_COST_UNIT_BYTES);
+    cost = calculator.calculateCost(sizeContext, sizeDriver);
+    Assert.assertEquals(HOURLY.getNormalizationFactor() * HOURLY.weight() / DAILY.weight() + dailyCost,
+      cost.getEstimatedResourceUsage(), 0.001);
+  }
+
   @Test
   public void testGetAllPartitions() throws Exception {
 
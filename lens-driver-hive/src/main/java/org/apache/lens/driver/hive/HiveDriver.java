@@ -83,6 +83,9 @@ public class HiveDriver implements LensDriver {
    */
   public static final String HS2_PRIORITY_RANGES = "lens.driver.hive.priority.ranges";
 
+  /** The Constant COMPLETION_POLL_INTERVAL. */
+  public static final String COMPLETION_POLL_INTERVAL = "lens.driver.hive.completion.poll.interval.millis";
+
   // Default values of conf params
   public static final long DEFAULT_EXPIRY_DELAY = 600 * 1000;
   public static final String HS2_PRIORITY_DEFAULT_RANGES = "VERY_HIGH,7.0,HIGH,30.0,NORMAL,90,LOW";
@@ -105,6 +108,9 @@ public class HiveDriver implements LensDriver {
   private final Map<String, ExpirableConnection> threadConnections =
     new ConcurrentHashMap<String, ExpirableConnection>();
 
+  /** Notifies completion of queries registered for completion notification. */
+  private QueryCompletionNotifier completionNotifier;
+
   /** The thrift conn expiry queue. */
   private final DelayQueue<ExpirableConnection> thriftConnExpiryQueue = new DelayQueue<ExpirableConnection>();
 
@@ -341,6 +347,8 @@ public class HiveDriver implements LensDriver {
     queryPriorityDecider = new CostRangePriorityDecider(
       new CostToPriorityRangeConf(driverConf.get(HS2_PRIORITY_RANGES, HS2_PRIORITY_DEFAULT_RANGES))
     );
+    completionNotifier = new QueryCompletionNotifier("hive-driver", driverConf.getLong(COMPLETION_POLL_INTERVAL,
+      QueryCompletionNotifier.DEFAULT_POLL_INTERVAL_MILLIS), new CompletionPoller());
   }
 
   private QueryCost calculateQueryCost(AbstractQueryContext qctx) throws LensException {
@@ -644,6 +652,39 @@ public class HiveDriver implements LensDriver {
     }
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.driver.LensDriver#updateStatus(java.util.Collection)
+   */
+  @Override
+  public void updateStatus(Collection<QueryContext> contexts) throws LensException {
+    // HiveServer2 has no bulk operation status call, so get the status one operation at a time
+    for (QueryContext context : contexts) {
+      updateStatus(context);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.driver.LensDriver#supportsCompletionPush()
+   */
+  @Override
+  public boolean supportsCompletionPush() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.driver.LensDriver#getQueryPriorityDecider()
+   */
+  @Override
+  public QueryPriorityDecider getQueryPriorityDecider() {
+    return queryPriorityDecider;
+  }
+
   /**
    * Append task ids.
    *
@@ -731,6 +772,9 @@ public class HiveDriver implements LensDriver {
   public void close() {
     log.info("CloseDriver");
     // Close this driver and release all resources
+    if (completionNotifier != null) {
+      completionNotifier.close();
+    }
     sessionLock.lock();
     try {
       for (String lensSessionDbKey : lensToHiveSession.keySet()) {
@@ -929,92 +973,55 @@ public class HiveDriver implements LensDriver {
   }
 
   /**
-   * The Class QueryCompletionNotifier.
+   * Polls the status of all the queries registered for completion notification with one client.
    */
-  private class QueryCompletionNotifier implements Runnable {
-
-    /** The poll interval. */
-    long pollInterval;
-
-    /** The hive handle. */
-    OperationHandle hiveHandle;
-
-    /** The timeout millis. */
-    long timeoutMillis;
-
-    /** The listener. */
-    QueryCompletionListener listener;
-
-    /** The handle. */
-    QueryHandle handle;
-
-    /**
-     * Instantiates a new query completion notifier.
-     *
-     * @param handle        the handle
-     * @param timeoutMillis the timeout millis
-     * @param listener      the listener
-     * @throws LensException the lens exception
-     */
-    QueryCompletionNotifier(QueryHandle handle, long timeoutMillis, QueryCompletionListener listener)
-      throws LensException {
-      this.handle = handle;
-      this.timeoutMillis = timeoutMillis;
-      this.listener = listener;
-      this.pollInterval = timeoutMillis / 10;
-    }
+  private class CompletionPoller implements QueryCompletionNotifier.CompletionPoller {
 
     /*
      * (non-Javadoc)
      *
-     * @see java.lang.Runnable#run()
+     * @see org.apache.lens.server.api.driver.QueryCompletionNotifier.CompletionPoller#poll(java.util.Collection,
+     * org.apache.lens.server.api.driver.QueryCompletionNotifier)
      */
     @Override
-    public void run() {
-      // till query is complete or timeout has reached
-      long timeSpent = 0;
-      String error;
+    public void poll(Collection<QueryHandle> handles, QueryCompletionNotifier notifier) {
+      CLIServiceClient client;
       try {
-        while (timeSpent <= timeoutMillis) {
-          try {
-            hiveHandle = getHiveHandle(handle);
-            if (isFinished(hiveHandle)) {
-              listener.onCompletion(handle);
-              return;
-            }
-          } catch(LensException e) {
-            log.debug("query handle: {} Not yet launched on driver", handle);
+        client = getClient();
+      } catch (LensException e) {
+        log.warn("Could not get client to poll for status", e);
+        return;
+      }
+      // HiveServer2 has no bulk operation status call, so get the status one operation at a time
+      for (QueryHandle handle : handles) {
+        OperationHandle hiveHandle = hiveHandles.get(handle);
+        if (hiveHandle == null) {
+          log.debug("query handle: {} Not yet launched on driver", handle);
+          continue;
+        }
+        try {
+          if (isFinished(client, hiveHandle)) {
+            notifier.notifyCompletion(handle);
           }
-          Thread.sleep(pollInterval);
-          timeSpent += pollInterval;
+        } catch (HiveSQLException e) {
+          log.warn("Error while polling for status", e);
+          notifier.notifyError(handle, "error polling");
         }
-        error = "timedout";
-      } catch (Exception e) {
-        log.warn("Error while polling for status", e);
-        error = "error polling";
       }
-      listener.onError(handle, error);
     }
 
     /**
      * Checks if is finished.
      *
+     * @param client     the client
      * @param hiveHandle the hive handle
      * @return true, if is finished
-     * @throws LensException the lens exception
+     * @throws HiveSQLException the hive sql exception
      */
-    private boolean isFinished(OperationHandle hiveHandle) throws LensException {
-      OperationState state;
-      try {
-        state = getClient().getOperationStatus(hiveHandle).getState();
-      } catch (HiveSQLException e) {
-        throw new LensException("Could not get Status", e);
-      }
-      if (state.equals(OperationState.FINISHED) || state.equals(OperationState.CANCELED)
-        || state.equals(OperationState.ERROR) || state.equals(OperationState.CLOSED)) {
-        return true;
-      }
-      return false;
+    private boolean isFinished(CLIServiceClient client, OperationHandle hiveHandle) throws HiveSQLException {
+      OperationState state = client.getOperationStatus(hiveHandle).getState();
+      return state.equals(OperationState.FINISHED) || state.equals(OperationState.CANCELED)
+        || state.equals(OperationState.ERROR) || state.equals(OperationState.CLOSED);
     }
   }
 
@@ -1029,8 +1036,7 @@ public class HiveDriver implements LensDriver {
   public void registerForCompletionNotification(
     QueryHandle handle, long timeoutMillis, QueryCompletionListener listener)
     throws LensException {
-    Thread th = new Thread(new QueryCompletionNotifier(handle, timeoutMillis, listener));
-    th.start();
+    completionNotifier.register(handle, timeoutMillis, listener);
   }
 
   /*
@@ -106,6 +106,7 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
   @Override
   public boolean seekToStart() {
     orientation = FetchOrientation.FETCH_FIRST;
+    fetchedRowsItr = null;
     return true;
   }
 
@@ -116,6 +117,10 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
      */
   @Override
   public boolean hasNext() throws LensException {
+    if (noMoreResults && closeAfterFecth) {
+      // operation is already closed, there is nothing more to fetch
+      return false;
+    }
     if (fetchedRowsItr == null || !fetchedRowsItr.hasNext()) {
       try {
         rowSet = client.fetchResults(opHandle, orientation, fetchSize);
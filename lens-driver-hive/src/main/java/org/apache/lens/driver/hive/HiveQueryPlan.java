@@ -108,6 +108,17 @@ public class HiveQueryPlan extends DriverQueryPlan {
     extractPlanDetails(explainOutput, metastoreConf);
   }
 
+  private HiveQueryPlan(HiveQueryPlan plan) {
+    this.cost = plan.cost;
+    this.explainOutput = plan.explainOutput;
+    plan.copyTo(this);
+  }
+
+  @Override
+  public HiveQueryPlan copy() {
+    return new HiveQueryPlan(this);
+  }
+
   /**
    * Extract plan details.
    *
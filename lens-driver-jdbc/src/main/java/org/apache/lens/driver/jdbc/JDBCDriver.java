@@ -22,18 +22,19 @@ import static org.apache.lens.driver.jdbc.JDBCDriverConfConstants.*;
 
 import static org.apache.hadoop.hive.ql.parse.HiveParser.TOK_TMP_FILE;
 
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectOutput;
+import java.io.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.query.*;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.cube.parse.HQLParser;
 import org.apache.lens.server.api.driver.*;
 import org.apache.lens.server.api.driver.DriverQueryStatus.DriverQueryState;
@@ -44,12 +45,15 @@ import org.apache.lens.server.api.metrics.MethodMetricsFactory;
 import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
 import org.apache.lens.server.api.user.UserConfigLoader;
 import org.apache.lens.server.model.LogSegregationContext;
 import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.parse.ASTNode;
 import org.apache.hadoop.hive.ql.parse.HiveParser;
@@ -67,6 +71,18 @@ public class JDBCDriver implements LensDriver {
   /** The Constant LOG. */
   public static final Logger LOG = Logger.getLogger(JDBCDriver.class);
 
+  /** Database product name reported by MySQL JDBC driver */
+  private static final String MYSQL_PRODUCT_NAME = "MySQL";
+
+  /** Database product name reported by PostgreSQL JDBC driver */
+  private static final String POSTGRESQL_PRODUCT_NAME = "PostgreSQL";
+
+  /** Name of the file holding a persisted result, in the form expected for part files of persisted results */
+  static final String PERSISTENT_RESULT_FILE_NAME = "000000_0";
+
+  /** Size of the buffer in which rows are collected before writing them to the persisted result */
+  private static final int PERSISTENT_RESULT_BUFFER_SIZE = 1024 * 1024;
+
   /** The Constant THID. */
   public static final AtomicInteger THID = new AtomicInteger();
 
@@ -77,7 +93,10 @@ public class JDBCDriver implements LensDriver {
   boolean configured = false;
 
   /** The async query pool. */
-  private ExecutorService asyncQueryPool;
+  private JDBCQueryExecutor asyncQueryPool;
+
+  /** Notifies completion of queries registered for completion notification. */
+  private QueryCompletionNotifier completionNotifier;
 
   /** The query context map. */
   private ConcurrentHashMap<QueryHandle, JdbcQueryContext> queryContextMap;
@@ -85,11 +104,17 @@ public class JDBCDriver implements LensDriver {
   /** The conf. */
   private Configuration conf;
 
+  /** The query rewriter shared by all the queries, if the configured rewriter is known to be stateless. */
+  private volatile QueryRewriter queryRewriter;
+
   /** Configuration for estimate connection pool */
   private Configuration estimateConf;
   /** Estimate connection provider */
   private ConnectionProvider estimateConnectionProvider;
 
+  /** Queries validated through prepare, null if caching is disabled. */
+  private JDBCValidationCache validationCache;
+
   private LogSegregationContext logSegregationContext;
   private UserConfigLoader userConfigLoader;
 
@@ -105,7 +130,7 @@ public class JDBCDriver implements LensDriver {
     /** The result future. */
     @Getter
     @Setter
-    private Future<QueryResult> resultFuture;
+    private JDBCQueryExecutor.QueryTask<QueryResult> resultFuture;
 
     /** The rewritten query. */
     @Getter
@@ -126,10 +151,14 @@ public class JDBCDriver implements LensDriver {
     @Getter
     private boolean isClosed;
 
-    /** The listener. */
+    /** Whether the query has started to run, after waiting for its turn in the driver. */
     @Getter
     @Setter
-    private QueryCompletionListener listener;
+    private volatile boolean isStarted;
+
+    /** Whether the query has completed and listeners have been notified. */
+    @Getter
+    private volatile boolean isDone;
 
     /** The query result. */
     @Getter
@@ -159,24 +188,23 @@ public class JDBCDriver implements LensDriver {
     }
 
     /**
-     * Notify error.
-     *
-     * @param th the th
-     */
-    public void notifyError(Throwable th) {
-      // If query is closed in another thread while the callable is still waiting for result
-      // set, then it throws an SQLException in the callable. We don't want to send that exception
-      if (listener != null && !isClosed) {
-        listener.onError(lensContext.getQueryHandle(), th.getMessage());
-      }
-    }
-
-    /**
-     * Notify complete.
+     * Notify the listeners registered for the query once the result future is done.
      */
-    public void notifyComplete() {
-      if (listener != null) {
-        listener.onCompletion(lensContext.getQueryHandle());
+    void notifyDone() {
+      isDone = true;
+      QueryHandle handle = lensContext.getQueryHandle();
+      if (resultFuture.isCancelled()) {
+        completionNotifier.notifyError(handle, handle + " cancelled");
+      } else if (queryResult != null && queryResult.error != null) {
+        // If query is closed in another thread while the callable is still waiting for result
+        // set, then it throws an SQLException in the callable. We don't want to send that exception
+        if (!isClosed) {
+          completionNotifier.notifyError(handle, queryResult.error.getMessage());
+        } else {
+          completionNotifier.cancel(handle);
+        }
+      } else {
+        completionNotifier.notifyCompletion(handle);
       }
     }
 
@@ -216,9 +244,15 @@ public class JDBCDriver implements LensDriver {
     /** The is closed. */
     private boolean isClosed;
 
+    /** Whether rows are streamed from the database, in which case the result set can be read only once. */
+    private boolean isStreaming;
+
     /** The lens result set. */
     private JDBCResultSet lensResultSet;
 
+    /** The result written to files by the driver, if the result was persisted. */
+    private JDBCPersistentResultSet persistentResultSet;
+
     /**
      * Close.
      */
@@ -226,6 +260,9 @@ public class JDBCDriver implements LensDriver {
       if (isClosed) {
         return;
       }
+      if (lensResultSet != null) {
+        lensResultSet.publishMetrics();
+      }
 
       try {
         if (stmt != null) {
@@ -238,6 +275,10 @@ public class JDBCDriver implements LensDriver {
       } finally {
         if (conn != null) {
           try {
+            // streaming may have turned off auto commit to read through a cursor
+            if (isStreaming && !conn.getAutoCommit()) {
+              conn.setAutoCommit(true);
+            }
             conn.close();
           } catch (SQLException e) {
             LOG.error("Error closing SQL Connection", e);
@@ -258,8 +299,22 @@ public class JDBCDriver implements LensDriver {
       if (error != null) {
         throw new LensException("Query failed!", error);
       }
+      if (persistentResultSet != null) {
+        return persistentResultSet;
+      }
+      return getJDBCResultSet(closeAfterFetch);
+    }
+
+    /**
+     * Gets the result set of the query read from the database.
+     *
+     * @param closeAfterFetch the close after fetch
+     * @return the JDBC result set
+     * @throws LensException the lens exception
+     */
+    private synchronized JDBCResultSet getJDBCResultSet(boolean closeAfterFetch) throws LensException {
       if (lensResultSet == null) {
-        lensResultSet = new JDBCResultSet(this, resultSet, closeAfterFetch);
+        lensResultSet = new JDBCResultSet(this, resultSet, closeAfterFetch, isStreaming);
       }
       return lensResultSet;
     }
@@ -294,6 +349,7 @@ public class JDBCDriver implements LensDriver {
     public QueryResult call() {
 
       logSegregationContext.set(this.queryContext.getQueryHandleString());
+      queryContext.setStarted(true);
 
       Statement stmt = null;
       Connection conn = null;
@@ -311,13 +367,21 @@ public class JDBCDriver implements LensDriver {
 
         if (conn != null) {
           try {
+            result.isStreaming = isStreamingEnabled();
             stmt = createStatement(conn);
             result.stmt = stmt;
             Boolean isResultAvailable = stmt.execute(queryContext.getRewrittenQuery());
             if (isResultAvailable) {
               result.resultSet = stmt.getResultSet();
+              if (isPersistingResult()) {
+                persistResult(result);
+              }
             }
-            queryContext.notifyComplete();
+          } catch (IOException | LensException e) {
+            LOG.error("Error persisting result of query: " + queryContext.getLensContext().getQueryHandle()
+              + " reason: " + e.getMessage(), e);
+            result.error = e;
+            result.close();
           } catch (SQLException sqlEx) {
             if (queryContext.isClosed()) {
               LOG.info("Ignored exception on already closed query: " + queryContext.getLensContext().getQueryHandle()
@@ -329,7 +393,6 @@ public class JDBCDriver implements LensDriver {
               // Close connection in case of failed queries. For successful queries, connection is closed
               // When result set is closed or driver.closeQuery is called
               result.close();
-              queryContext.notifyError(sqlEx);
             }
           }
         }
@@ -349,11 +412,11 @@ public class JDBCDriver implements LensDriver {
     public Statement createStatement(Connection conn) throws SQLException {
       Statement stmt;
 
-      boolean enabledRowRetrieval = queryContext.getLensContext().getSelectedDriverConf().getBoolean(
-        JDBCDriverConfConstants.JDBC_ENABLE_RESULTSET_STREAMING_RETRIEVAL,
-        JDBCDriverConfConstants.DEFAULT_JDBC_ENABLE_RESULTSET_STREAMING_RETRIEVAL);
+      // Get default fetch size from conf if not overridden in query conf
+      int fetchSize = queryContext.getLensContext().getSelectedDriverConf().getInt(
+        JDBCDriverConfConstants.JDBC_FETCH_SIZE, JDBCDriverConfConstants.DEFAULT_JDBC_FETCH_SIZE);
 
-      if (enabledRowRetrieval) {
+      if (isStreamingEnabled()) {
         LOG.info("JDBC streaming retrieval is enabled for " + queryContext.getLensContext().getQueryHandle());
         if (queryContext.isPrepared()) {
           stmt = conn.prepareStatement(queryContext.getRewrittenQuery(),
@@ -361,20 +424,105 @@ public class JDBCDriver implements LensDriver {
         } else {
           stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         }
-        stmt.setFetchSize(Integer.MIN_VALUE);
+        setStreamingFetchSize(conn, stmt, fetchSize);
       } else {
         stmt = queryContext.isPrepared() ? conn.prepareStatement(queryContext.getRewrittenQuery())
           : conn.createStatement();
-
-        // Get default fetch size from conf if not overridden in query conf
-        int fetchSize = queryContext.getLensContext().getSelectedDriverConf().getInt(
-          JDBCDriverConfConstants.JDBC_FETCH_SIZE, JDBCDriverConfConstants.DEFAULT_JDBC_FETCH_SIZE);
         stmt.setFetchSize(fetchSize);
       }
 
       stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
       return stmt;
     }
+
+    private boolean isPersistingResult() {
+      Configuration driverConf = queryContext.getLensContext().getSelectedDriverConf();
+      return queryContext.getLensContext().isDriverPersistent() && driverConf.getBoolean(
+        JDBCDriverConfConstants.JDBC_ENABLE_PERSISTENT_RESULTSET,
+        JDBCDriverConfConstants.DEFAULT_JDBC_ENABLE_PERSISTENT_RESULTSET);
+    }
+
+    /**
+     * Write all rows of the result to the result directory of the query. The statement and connection are released as
+     * soon as all the rows are read, instead of being held until the result is formatted.
+     *
+     * @param result the query result
+     * @throws IOException   Signals that an I/O exception has occurred.
+     * @throws LensException the lens exception
+     */
+    private void persistResult(QueryResult result) throws IOException, LensException {
+      QueryContext context = queryContext.getLensContext();
+      Path resultDir = context.getHDFSResultDir();
+      FileSystem fs = resultDir.getFileSystem(context.getConf());
+      JDBCResultSet rows = result.getJDBCResultSet(false);
+      LensResultSetMetadata metadata = rows.getMetadata();
+      int numRows = 0;
+      Writer out = new BufferedWriter(new OutputStreamWriter(
+        fs.create(new Path(resultDir, PERSISTENT_RESULT_FILE_NAME), true), "UTF-8"), PERSISTENT_RESULT_BUFFER_SIZE);
+      try {
+        while (rows.hasNext()) {
+          writeRow(out, rows.next().getValues());
+          numRows++;
+        }
+      } finally {
+        out.close();
+      }
+      result.close();
+
+      context.setHdfsoutPath(fs.makeQualified(resultDir).toString());
+      result.persistentResultSet = new JDBCPersistentResultSet(context.getHdfsoutPath(), metadata, numRows);
+      LOG.info("Persisted " + numRows + " rows of " + context.getQueryHandle() + " in " + context.getHdfsoutPath());
+    }
+
+    private boolean isStreamingEnabled() {
+      return queryContext.getLensContext().getSelectedDriverConf().getBoolean(
+        JDBCDriverConfConstants.JDBC_ENABLE_RESULTSET_STREAMING_RETRIEVAL,
+        JDBCDriverConfConstants.DEFAULT_JDBC_ENABLE_RESULTSET_STREAMING_RETRIEVAL);
+    }
+
+    /**
+     * Set fetch size of a forward only statement, so that the JDBC driver of the database fetches rows in batches
+     * instead of buffering the whole result.
+     *
+     * @param conn      the connection
+     * @param stmt      the statement
+     * @param fetchSize the fetch size from conf
+     * @throws SQLException the SQL exception
+     */
+    private void setStreamingFetchSize(Connection conn, Statement stmt, int fetchSize) throws SQLException {
+      String database = conn.getMetaData().getDatabaseProductName();
+      if (MYSQL_PRODUCT_NAME.equalsIgnoreCase(database)) {
+        // MySQL streams rows only for this fetch size, other fetch sizes buffer the whole result
+        stmt.setFetchSize(Integer.MIN_VALUE);
+      } else {
+        if (POSTGRESQL_PRODUCT_NAME.equalsIgnoreCase(database)) {
+          // PostgreSQL reads through a cursor only within a transaction
+          conn.setAutoCommit(false);
+        }
+        stmt.setFetchSize(fetchSize);
+      }
+    }
+  }
+
+  /**
+   * Write a row of a persisted result as a line of quoted values, the way the default result serde writes rows with
+   * default settings.
+   *
+   * @param out    the writer
+   * @param values the values of the row
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static void writeRow(Writer out, List<Object> values) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      Object value = values.get(i);
+      out.write('"');
+      out.write(value == null ? "NULL" : value.toString().replace("\"", "\"\""));
+      out.write('"');
+    }
+    out.write('\n');
   }
 
   /**
@@ -430,14 +578,14 @@ public class JDBCDriver implements LensDriver {
    */
   protected void init(Configuration conf) throws LensException {
     queryContextMap = new ConcurrentHashMap<QueryHandle, JdbcQueryContext>();
-    asyncQueryPool = Executors.newCachedThreadPool(new ThreadFactory() {
-      @Override
-      public Thread newThread(Runnable runnable) {
-        Thread th = new Thread(runnable);
-        th.setName("lens-driver-jdbc-" + THID.incrementAndGet());
-        return th;
-      }
-    });
+    // completion is notified when the result future is done, the notifier thread only times out listeners
+    completionNotifier = new QueryCompletionNotifier("jdbc-driver",
+      QueryCompletionNotifier.DEFAULT_POLL_INTERVAL_MILLIS, null);
+    // queries beyond the connection pool size would only wait for a connection, so they wait in priority order
+    // in the executor instead
+    String maxConcurrentQueries = getKeyOrFallBack(this.conf, JDBC_MAX_CONCURRENT_QUERIES, JDBC_POOL_MAX_SIZE);
+    asyncQueryPool = new JDBCQueryExecutor(StringUtils.isBlank(maxConcurrentQueries) ? JDBC_POOL_MAX_SIZE_DEFAULT
+      : Integer.parseInt(maxConcurrentQueries.trim()));
 
     Class<? extends ConnectionProvider> cpClass = conf.getClass(JDBC_CONNECTION_PROVIDER,
       DataSourceConnectionProvider.class, ConnectionProvider.class);
@@ -448,6 +596,13 @@ public class JDBCDriver implements LensDriver {
       LOG.error("Error initializing connection provider: " + e.getMessage(), e);
       throw new LensException(e);
     }
+    long validationCacheMaxSize = this.conf.getLong(JDBC_VALIDATION_CACHE_MAX_SIZE,
+      DEFAULT_JDBC_VALIDATION_CACHE_MAX_SIZE);
+    if (validationCacheMaxSize > 0) {
+      validationCache = new JDBCValidationCache(validationCacheMaxSize, this.conf.getLong(
+        JDBC_VALIDATION_CACHE_EXPIRY_MILLIS, DEFAULT_JDBC_VALIDATION_CACHE_EXPIRY_MILLIS),
+        getEstimateConnectionConf());
+    }
     this.logSegregationContext = new MappedDiagnosticLogSegregationContext();
   }
 
@@ -473,13 +628,17 @@ public class JDBCDriver implements LensDriver {
   }
 
   /**
-   * Gets the query rewriter.
+   * Gets the query rewriter. A rewriter known to hold no state of a query is created once and shared by all the
+   * queries, any other rewriter is created for each call.
    *
    * @return the query rewriter
    * @throws LensException the lens exception
    */
   protected QueryRewriter getQueryRewriter() throws LensException {
-    QueryRewriter rewriter;
+    QueryRewriter rewriter = queryRewriter;
+    if (rewriter != null) {
+      return rewriter;
+    }
     Class<? extends QueryRewriter> queryRewriterClass = conf.getClass(JDBC_QUERY_REWRITER_CLASS,
       DummyQueryRewriter.class, QueryRewriter.class);
     try {
@@ -490,9 +649,22 @@ public class JDBCDriver implements LensDriver {
       throw new LensException(e);
     }
     rewriter.init(conf);
+    if (isStateless(queryRewriterClass)) {
+      queryRewriter = rewriter;
+    }
     return rewriter;
   }
 
+  /**
+   * Whether rewriters of the class can be called concurrently. Subclasses are not trusted, as they can add state.
+   *
+   * @param queryRewriterClass the query rewriter class
+   * @return true for the rewriters of this module, which hold no state of a query
+   */
+  private static boolean isStateless(Class<? extends QueryRewriter> queryRewriterClass) {
+    return queryRewriterClass == ColumnarSQLRewriter.class || queryRewriterClass == DummyQueryRewriter.class;
+  }
+
   /**
    * Gets the query context.
    *
@@ -549,6 +721,13 @@ public class JDBCDriver implements LensDriver {
    * Dummy JDBC query Plan class to get min cost selector working.
    */
   private static class JDBCQueryPlan extends DriverQueryPlan {
+    @Override
+    public JDBCQueryPlan copy() {
+      JDBCQueryPlan plan = new JDBCQueryPlan();
+      copyTo(plan);
+      return plan;
+    }
+
     @Override
     public String getPlan() {
       return "";
@@ -626,7 +805,7 @@ public class JDBCDriver implements LensDriver {
   }
 
   /**
-   * Validate query using prepare
+   * Validate query using prepare. Queries validated earlier are not prepared again, if validation cache is enabled.
    *
    * @param pContext
    * @throws LensException
@@ -638,10 +817,22 @@ public class JDBCDriver implements LensDriver {
     boolean validateThroughPrepare = pContext.getDriverConf(this).getBoolean(JDBC_VALIDATE_THROUGH_PREPARE,
       DEFAULT_JDBC_VALIDATE_THROUGH_PREPARE);
     if (validateThroughPrepare) {
+      checkConfigured();
+      // taken before the rewrite, which reads the storage tables from metastore
+      long metastoreVersion = CubeMetastoreClient.getMetastoreVersion();
+      String rewrittenQuery = rewriteQuery(pContext, "validate-");
+      String cacheKey = null;
+      if (validationCache != null) {
+        cacheKey = JDBCValidationCache.getKey(rewrittenQuery, pContext.getDatabase(), getEstimateConnectionConf());
+        if (validationCache.isValidated(cacheKey)) {
+          LOG.info("Validated earlier: " + rewrittenQuery);
+          return;
+        }
+      }
       PreparedStatement stmt = null;
       // Estimate queries need to get connection from estimate pool to make sure
       // we are not blocked by data queries.
-      stmt = prepareInternal(pContext, true, true, "validate-");
+      stmt = prepareStatement(pContext, rewrittenQuery, true, "validate-");
       if (stmt != null) {
         try {
           stmt.close();
@@ -649,6 +840,9 @@ public class JDBCDriver implements LensDriver {
           throw new LensException();
         }
       }
+      if (cacheKey != null) {
+        validationCache.validated(cacheKey, metastoreVersion);
+      }
     }
   }
 
@@ -754,10 +948,37 @@ public class JDBCDriver implements LensDriver {
     }
 
     // Only create a prepared statement and then close it
+    return prepareStatement(pContext, rewriteQuery(pContext, metricCallStack), calledForEstimate, metricCallStack);
+  }
+
+  /**
+   * Rewrite the query, measuring the time taken
+   *
+   * @param pContext        query context
+   * @param metricCallStack stack for metrics API
+   * @return the rewritten query
+   * @throws LensException
+   */
+  private String rewriteQuery(AbstractQueryContext pContext, String metricCallStack) throws LensException {
     MethodMetricsContext sqlRewriteGauge = MethodMetricsFactory.createMethodGauge(pContext.getDriverConf(this), true,
       metricCallStack + COLUMNAR_SQL_REWRITE_GAUGE);
     String rewrittenQuery = rewriteQuery(pContext);
     sqlRewriteGauge.markSuccess();
+    return rewrittenQuery;
+  }
+
+  /**
+   * Prepare the rewritten query on the database server
+   *
+   * @param pContext          query context
+   * @param rewrittenQuery    the rewritten query
+   * @param calledForEstimate set this to true if this call will use the estimate connection pool
+   * @param metricCallStack   stack for metrics API
+   * @return prepared statement
+   * @throws LensException
+   */
+  private PreparedStatement prepareStatement(AbstractQueryContext pContext, String rewrittenQuery,
+    boolean calledForEstimate, String metricCallStack) throws LensException {
     MethodMetricsContext jdbcPrepareGauge = MethodMetricsFactory.createMethodGauge(pContext.getDriverConf(this), true,
       metricCallStack + JDBC_PREPARE_GAUGE);
 
@@ -886,14 +1107,23 @@ public class JDBCDriver implements LensDriver {
     // Always use the driver rewritten query not user query. Since the
     // conf we are passing here is query context conf, we need to add jdbc xml in resource path
     String rewrittenQuery = rewriteQuery(context);
-    JdbcQueryContext jdbcCtx = new JdbcQueryContext(context, logSegregationContext);
+    final JdbcQueryContext jdbcCtx = new JdbcQueryContext(context, logSegregationContext);
     jdbcCtx.setRewrittenQuery(rewrittenQuery);
     if (userConfigLoader != null) {
       userConfigLoader.preSubmit(context);
     }
+    // listeners are notified only after the future is done, so that a status update triggered by the
+    // notification sees the query as finished
+    JDBCQueryExecutor.QueryTask<QueryResult> future = new JDBCQueryExecutor.QueryTask<QueryResult>(
+      new QueryCallable(jdbcCtx, logSegregationContext), context.getPriority()) {
+      @Override
+      protected void done() {
+        jdbcCtx.notifyDone();
+      }
+    };
+    jdbcCtx.setResultFuture(future);
     try {
-      Future<QueryResult> future = asyncQueryPool.submit(new QueryCallable(jdbcCtx, logSegregationContext));
-      jdbcCtx.setResultFuture(future);
+      asyncQueryPool.execute(future);
     } catch (RejectedExecutionException e) {
       LOG.error("Query execution rejected: " + context.getQueryHandle() + " reason:" + e.getMessage(), e);
       throw new LensException("Query execution rejected: " + context.getQueryHandle() + " reason:" + e.getMessage(), e);
@@ -914,7 +1144,12 @@ public class JDBCDriver implements LensDriver {
   public void registerForCompletionNotification(QueryHandle handle, long timeoutMillis,
     QueryCompletionListener listener) throws LensException {
     checkConfigured();
-    getQueryContext(handle).setListener(listener);
+    JdbcQueryContext ctx = getQueryContext(handle);
+    completionNotifier.register(handle, timeoutMillis, listener);
+    if (ctx.isDone()) {
+      // query completed before the listener was registered
+      ctx.notifyDone();
+    }
   }
 
   /**
@@ -944,6 +1179,10 @@ public class JDBCDriver implements LensDriver {
         context.getDriverStatus().setStatusMessage(context.getQueryHandle() + " successful");
         context.getDriverStatus().setResultSetAvailable(true);
       }
+    } else if (!ctx.isStarted()) {
+      context.getDriverStatus().setProgress(0.0);
+      context.getDriverStatus().setState(DriverQueryState.PENDING);
+      context.getDriverStatus().setStatusMessage(context.getQueryHandle() + " is waiting to run");
     } else {
       context.getDriverStatus().setProgress(0.0);
       context.getDriverStatus().setState(DriverQueryState.RUNNING);
@@ -951,6 +1190,39 @@ public class JDBCDriver implements LensDriver {
     }
   }
 
+  /**
+   * Get status of all the given queries. Status is read from the in memory result futures, so no remote call is made.
+   *
+   * @param contexts The query contexts
+   * @throws LensException the lens exception
+   */
+  @Override
+  public void updateStatus(Collection<QueryContext> contexts) throws LensException {
+    for (QueryContext context : contexts) {
+      updateStatus(context);
+    }
+  }
+
+  /**
+   * JDBC driver notifies the registered listeners as soon as the result future of the query is done.
+   *
+   * @return true
+   */
+  @Override
+  public boolean supportsCompletionPush() {
+    return true;
+  }
+
+  /**
+   * JDBC driver runs queries in the order they are launched, without priorities.
+   *
+   * @return null
+   */
+  @Override
+  public QueryPriorityDecider getQueryPriorityDecider() {
+    return null;
+  }
+
   /**
    * Fetch the results of the query, specified by the handle.
    *
@@ -1005,6 +1277,8 @@ public class JDBCDriver implements LensDriver {
     JdbcQueryContext context = getQueryContext(handle);
     boolean cancelResult = context.getResultFuture().cancel(true);
     if (cancelResult) {
+      // a query which has not started yet need not wait in the queue any more
+      asyncQueryPool.remove(context.getResultFuture());
       context.setCancelled(true);
       // this is required because future.cancel does not guarantee
       // that finally block is always called.
@@ -1029,6 +1303,7 @@ public class JDBCDriver implements LensDriver {
     try {
       JdbcQueryContext ctx = getQueryContext(handle);
       ctx.getResultFuture().cancel(true);
+      asyncQueryPool.remove(ctx.getResultFuture());
       ctx.closeResult();
     } finally {
       queryContextMap.remove(handle);
@@ -1065,6 +1340,11 @@ public class JDBCDriver implements LensDriver {
       }
     } finally {
       queryContextMap.clear();
+      if (validationCache != null) {
+        validationCache.invalidateAll();
+      }
+      asyncQueryPool.shutdownNow();
+      completionNotifier.close();
     }
   }
 
@@ -64,6 +64,9 @@ public final class JDBCDriverConfConstants {
   /** The Constant JDBC_MAX_STATEMENTS_PER_CONNECTION_DEFAULT. */
   public static final int JDBC_MAX_STATEMENTS_PER_CONNECTION_DEFAULT = 20;
 
+  /** Maximum number of queries run at a time, defaults to {@link #JDBC_POOL_MAX_SIZE} if blank. */
+  public static final String JDBC_MAX_CONCURRENT_QUERIES = JDBC_DRIVER_PFX + "max.concurrent.queries";
+
   /** The Constant JDBC_GET_CONNECTION_TIMEOUT. */
   public static final String JDBC_GET_CONNECTION_TIMEOUT = JDBC_DRIVER_PFX + "get.connection.timeout";
 
@@ -94,4 +97,24 @@ public final class JDBCDriverConfConstants {
 
   public static final String JDBC_FETCH_SIZE = JDBC_DRIVER_PFX + "fetch.size";
   public static final int DEFAULT_JDBC_FETCH_SIZE = 1000;
+
+  /** Whether results are written to files by the driver, when persistence of results in driver is enabled. */
+  public static final String JDBC_ENABLE_PERSISTENT_RESULTSET = JDBC_DRIVER_PFX + "enable.persistent.resultset";
+  public static final boolean DEFAULT_JDBC_ENABLE_PERSISTENT_RESULTSET = false;
+
+  /** Maximum number of queries whose rewritten SQL is cached by the columnar rewriter, caching is disabled if 0. */
+  public static final String JDBC_REWRITE_CACHE_MAX_SIZE = JDBC_DRIVER_PFX + "rewrite.cache.max.size";
+  public static final long DEFAULT_JDBC_REWRITE_CACHE_MAX_SIZE = 0;
+
+  /** Time after which a query in the rewrite cache of the columnar rewriter is rewritten again, in milliseconds. */
+  public static final String JDBC_REWRITE_CACHE_EXPIRY_MILLIS = JDBC_DRIVER_PFX + "rewrite.cache.expiry.millis";
+  public static final long DEFAULT_JDBC_REWRITE_CACHE_EXPIRY_MILLIS = 600000;
+
+  /** Maximum number of queries validated through prepare which are cached, caching is disabled if 0. */
+  public static final String JDBC_VALIDATION_CACHE_MAX_SIZE = JDBC_DRIVER_PFX + "validation.cache.max.size";
+  public static final long DEFAULT_JDBC_VALIDATION_CACHE_MAX_SIZE = 0;
+
+  /** Time after which a query in the validation cache is prepared again on validation, in milliseconds. */
+  public static final String JDBC_VALIDATION_CACHE_EXPIRY_MILLIS = JDBC_DRIVER_PFX + "validation.cache.expiry.millis";
+  public static final long DEFAULT_JDBC_VALIDATION_CACHE_EXPIRY_MILLIS = 600000;
 }
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.jdbc;
+
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.driver.PersistentResultSet;
+import org.apache.lens.server.api.error.LensException;
+
+/**
+ * Result of a JDBC query written to the result directory of the query by the driver.
+ */
+public class JDBCPersistentResultSet extends PersistentResultSet {
+
+  /** The output path. */
+  private final String outputPath;
+
+  /** The metadata. */
+  private final LensResultSetMetadata metadata;
+
+  /** The num rows. */
+  private final int numRows;
+
+  /**
+   * Instantiates a new JDBC persistent result set.
+   *
+   * @param outputPath the directory holding the result
+   * @param metadata   the metadata
+   * @param numRows    the num rows
+   */
+  public JDBCPersistentResultSet(String outputPath, LensResultSetMetadata metadata, int numRows) {
+    this.outputPath = outputPath;
+    this.metadata = metadata;
+    this.numRows = numRows;
+  }
+
+  @Override
+  public String getOutputPath() throws LensException {
+    return outputPath;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.driver.LensResultSet#size()
+   */
+  @Override
+  public int size() throws LensException {
+    return numRows;
+  }
+
+  @Override
+  public LensResultSetMetadata getMetadata() throws LensException {
+    return metadata;
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.jdbc;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Executor of JDBC queries, which runs at most a fixed number of queries at a time. Queries waiting to run are ordered
+ * by their priority and then by their submission time.
+ *
+ * Number of waiting queries, number of running queries and time spent by queries waiting to run are published to
+ * {@link LensMetricsRegistry}.
+ */
+class JDBCQueryExecutor extends ThreadPoolExecutor {
+
+  /** Name of the gauge of number of queries waiting to run */
+  public static final String QUEUED_QUERIES = MetricRegistry.name(JDBCDriver.class, "queued.queries");
+
+  /** Name of the gauge of number of running queries */
+  public static final String RUNNING_QUERIES = MetricRegistry.name(JDBCDriver.class, "running.queries");
+
+  /** Name of the timer of time spent by queries waiting to run */
+  public static final String QUERY_WAIT_TIME = MetricRegistry.name(JDBCDriver.class, "query.wait.time");
+
+  /** Time after which idle threads are stopped */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private static final AtomicLong SUBMISSION_SEQUENCE = new AtomicLong();
+
+  private final Timer waitTimer;
+
+  private final Gauge<Integer> queuedQueries = new Gauge<Integer>() {
+    @Override
+    public Integer getValue() {
+      return getQueue().size();
+    }
+  };
+
+  private final Gauge<Integer> runningQueries = new Gauge<Integer>() {
+    @Override
+    public Integer getValue() {
+      return getActiveCount();
+    }
+  };
+
+  /**
+   * Query submitted to {@link JDBCQueryExecutor}.
+   *
+   * @param <V> the result type
+   */
+  static class QueryTask<V> extends FutureTask<V> implements Comparable<QueryTask<?>> {
+
+    /** The priority. */
+    @Getter
+    private final Priority priority;
+
+    /** The submission time. */
+    @Getter
+    private final long submissionTime;
+
+    /** Orders queries of same priority submitted in the same millisecond */
+    private final long sequence;
+
+    /**
+     * Instantiates a new query task.
+     *
+     * @param callable the callable running the query
+     * @param priority the priority of the query
+     */
+    QueryTask(Callable<V> callable, @NonNull Priority priority) {
+      super(callable);
+      this.priority = priority;
+      this.submissionTime = System.currentTimeMillis();
+      this.sequence = SUBMISSION_SEQUENCE.incrementAndGet();
+    }
+
+    @Override
+    public int compareTo(QueryTask<?> other) {
+      int cmp = priority.compareTo(other.priority);
+      return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  /**
+   * Instantiates a new JDBC query executor.
+   *
+   * @param maxConcurrentQueries maximum number of queries running at a time
+   */
+  JDBCQueryExecutor(int maxConcurrentQueries) {
+    super(maxConcurrentQueries, maxConcurrentQueries, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread th = new Thread(runnable);
+          th.setName("lens-driver-jdbc-" + JDBCDriver.THID.incrementAndGet());
+          return th;
+        }
+      });
+    allowCoreThreadTimeOut(true);
+
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    // gauges of the executor of an earlier instance of the driver are replaced
+    registry.remove(QUEUED_QUERIES);
+    registry.register(QUEUED_QUERIES, queuedQueries);
+    registry.remove(RUNNING_QUERIES);
+    registry.register(RUNNING_QUERIES, runningQueries);
+    waitTimer = registry.timer(QUERY_WAIT_TIME);
+  }
+
+  @Override
+  protected void beforeExecute(Thread thread, Runnable runnable) {
+    super.beforeExecute(thread, runnable);
+    if (runnable instanceof QueryTask) {
+      waitTimer.update(System.currentTimeMillis() - ((QueryTask<?>) runnable).getSubmissionTime(),
+        TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  protected void terminated() {
+    super.terminated();
+    removeGauge(QUEUED_QUERIES, queuedQueries);
+    removeGauge(RUNNING_QUERIES, runningQueries);
+  }
+
+  private static void removeGauge(String name, Gauge<Integer> gauge) {
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    // the gauge may have been replaced by the executor of a newer instance of the driver
+    if (registry.getGauges().get(name) == gauge) {
+      registry.remove(name);
+    }
+  }
+}
@@ -30,6 +30,7 @@ import org.apache.lens.driver.jdbc.JDBCDriver.QueryResult;
 import org.apache.lens.server.api.driver.InMemoryResultSet;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
 
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
@@ -41,6 +42,8 @@ import org.apache.log4j.Logger;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
 
+import com.codahale.metrics.MetricRegistry;
+
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -54,6 +57,12 @@ public class JDBCResultSet extends InMemoryResultSet {
   /** The Constant LOG. */
   public static final Logger LOG = Logger.getLogger(JDBCResultSet.class);
 
+  /** Name of the histogram of number of rows read from result sets */
+  public static final String ROWS_READ = MetricRegistry.name(JDBCResultSet.class, "rows.read");
+
+  /** Name of the histogram of estimated size in bytes of the rows read from result sets */
+  public static final String BYTES_READ = MetricRegistry.name(JDBCResultSet.class, "bytes.read");
+
   /** The result meta. */
   ResultSetMetaData resultMeta;
 
@@ -69,6 +78,18 @@ public class JDBCResultSet extends InMemoryResultSet {
   /** The close after fetch. */
   private final boolean closeAfterFetch;
 
+  /** Whether rows are streamed from the database, so that they can be read only once. */
+  private final boolean isStreaming;
+
+  /** Number of rows read. */
+  private long rowsRead;
+
+  /** Estimated size in bytes of the rows read. */
+  private long bytesRead;
+
+  /** Whether the metrics have been published. */
+  private boolean isMetricsPublished;
+
   /**
    * Instantiates a new JDBC result set.
    *
@@ -77,9 +98,23 @@ public class JDBCResultSet extends InMemoryResultSet {
    * @param closeAfterFetch the close after fetch
    */
   public JDBCResultSet(QueryResult queryResult, ResultSet resultSet, boolean closeAfterFetch) throws LensException {
+    this(queryResult, resultSet, closeAfterFetch, false);
+  }
+
+  /**
+   * Instantiates a new JDBC result set.
+   *
+   * @param queryResult     the query result
+   * @param resultSet       the result set
+   * @param closeAfterFetch the close after fetch
+   * @param isStreaming     whether rows are streamed from the database
+   */
+  public JDBCResultSet(QueryResult queryResult, ResultSet resultSet, boolean closeAfterFetch, boolean isStreaming)
+    throws LensException {
     this.queryResult = queryResult;
     this.resultSet = resultSet;
     this.closeAfterFetch = closeAfterFetch;
+    this.isStreaming = isStreaming;
     seekToStart();
   }
 
@@ -269,8 +304,14 @@ public class JDBCResultSet extends InMemoryResultSet {
 
   @Override
   public void setFetchSize(int size) throws LensException {
+    if (isStreaming) {
+      // fetch size of a streaming result set is set on its statement for the database it is read from
+      return;
+    }
     try {
-      resultSet.setFetchSize(size);
+      if (!resultSet.isClosed()) {
+        resultSet.setFetchSize(size);
+      }
     } catch (SQLException e) {
       throw new LensException(e);
     }
@@ -287,8 +328,11 @@ public class JDBCResultSet extends InMemoryResultSet {
     try {
       List<Object> row = new ArrayList<Object>(meta.getColumnCount());
       for (int i = 0; i < meta.getColumnCount(); i++) {
-        row.add(resultSet.getObject(i + 1));
+        Object value = resultSet.getObject(i + 1);
+        bytesRead += estimateSize(value);
+        row.add(value);
       }
+      rowsRead++;
       return new ResultRow(row);
     } catch (SQLException e) {
       throw new LensException(e);
@@ -297,6 +341,10 @@ public class JDBCResultSet extends InMemoryResultSet {
 
   @Override
   public boolean seekToStart() throws LensException {
+    if (isStreaming) {
+      // a forward only result set can not go back once a row is read
+      return rowsRead == 0;
+    }
     try {
       if (!resultSet.isClosed() && !resultSet.isBeforeFirst()) {
         resultSet.beforeFirst();
@@ -315,6 +363,9 @@ public class JDBCResultSet extends InMemoryResultSet {
   @Override
   public synchronized boolean hasNext() throws LensException {
     try {
+      if (resultSet.isClosed()) {
+        return false;
+      }
       boolean hasMore = resultSet.next();
       if (!hasMore && closeAfterFetch) {
         close();
@@ -331,4 +382,36 @@ public class JDBCResultSet extends InMemoryResultSet {
   public void close() {
     queryResult.close();
   }
+
+  /**
+   * Publish number and estimated size of the rows read to {@link LensMetricsRegistry}, once the result set is done.
+   */
+  synchronized void publishMetrics() {
+    if (isMetricsPublished) {
+      return;
+    }
+    isMetricsPublished = true;
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    registry.histogram(ROWS_READ).update(rowsRead);
+    registry.histogram(BYTES_READ).update(bytesRead);
+    LOG.info("Read " + rowsRead + " rows of about " + bytesRead + " bytes" + (isStreaming ? " by streaming" : ""));
+  }
+
+  /**
+   * Estimate the memory taken by a value read from the result set.
+   *
+   * @param value the value
+   * @return size in bytes
+   */
+  static long estimateSize(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof String) {
+      return 2L * ((String) value).length();
+    } else if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    }
+    // numbers, dates and booleans
+    return 8;
+  }
 }
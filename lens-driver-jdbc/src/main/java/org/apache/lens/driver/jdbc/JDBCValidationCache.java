@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.jdbc;
+
+import static org.apache.lens.driver.jdbc.JDBCDriverConfConstants.JDBC_DB_URI;
+import static org.apache.lens.driver.jdbc.JDBCDriverConfConstants.JDBC_USER;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the queries validated by preparing them on the database, so that a query estimated again is not prepared
+ * again. Entries are keyed by the rewritten query, the database of the query and the database connection used for
+ * validation.
+ * <p/>
+ * All the entries are dropped when the version of the metastore changes, since changes to tables or storages can make
+ * a query invalid. Changes made directly on the database, like tables dropped or altered outside of lens, are not
+ * tracked: a query made invalid by them is served from the cache till its entry expires, and fails on execution.
+ * Queries which failed validation are not cached. Lookups served from the cache and lookups which needed a prepare
+ * are counted in {@link LensMetricsRegistry}, under names of the database connection, so that drivers on different
+ * databases have their own counters.
+ */
+class JDBCValidationCache {
+
+  /** Name of the counter of validations served from the cache, under the name of the connection */
+  public static final String HITS = "validation.cache.hits";
+
+  /** Name of the counter of validations not found in the cache, under the name of the connection */
+  public static final String MISSES = "validation.cache.misses";
+
+  /** Validated queries by key, the values are not used. */
+  private final Cache<String, Boolean> cache;
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  /** Version of the metastore, against which the cached queries were validated. */
+  private long metastoreVersion = CubeMetastoreClient.getMetastoreVersion();
+
+  /**
+   * Instantiates a new validation cache.
+   *
+   * @param maxSize        maximum number of cached queries
+   * @param expiryMillis   time after which a cached query is validated again
+   * @param connectionConf configuration of the connection used for validation
+   */
+  JDBCValidationCache(long maxSize, long expiryMillis, Configuration connectionConf) {
+    cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS)
+      .build();
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    hits = registry.counter(getMetricName(connectionConf, HITS));
+    misses = registry.counter(getMetricName(connectionConf, MISSES));
+  }
+
+  /**
+   * Name of a metric of the cache of a connection. The name is made of the user and of the database uri without its
+   * parameters, which can hold passwords.
+   *
+   * @param connectionConf configuration of the connection used for validation
+   * @param metric         {@link #HITS} or {@link #MISSES}
+   * @return the name
+   */
+  static String getMetricName(Configuration connectionConf, String metric) {
+    String uri = connectionConf.get(JDBC_DB_URI, "");
+    int paramsStart = uri.length();
+    for (char separator : new char[]{'?', ';'}) {
+      int index = uri.indexOf(separator);
+      if (index >= 0 && index < paramsStart) {
+        paramsStart = index;
+      }
+    }
+    return MetricRegistry.name(JDBCDriver.class, connectionConf.get(JDBC_USER) + "@" + uri.substring(0, paramsStart),
+      metric);
+  }
+
+  /**
+   * Key of a query in the cache.
+   *
+   * @param rewrittenQuery the query rewritten for the database
+   * @param database       the database of the query
+   * @param connectionConf configuration of the connection used for validation
+   * @return the key
+   */
+  static String getKey(String rewrittenQuery, String database, Configuration connectionConf) {
+    return connectionConf.get(JDBC_DB_URI) + "\n" + connectionConf.get(JDBC_USER) + "\n" + database + "\n"
+      + rewrittenQuery;
+  }
+
+  /**
+   * Whether the query was validated.
+   *
+   * @param key the key of the query
+   * @return true if the query is found in the cache
+   */
+  boolean isValidated(String key) {
+    checkMetastoreVersion();
+    if (cache.getIfPresent(key) != null) {
+      hits.inc();
+      return true;
+    }
+    misses.inc();
+    return false;
+  }
+
+  /**
+   * Cache a validated query.
+   *
+   * @param key              the key of the query
+   * @param metastoreVersion version of the metastore before the query was rewritten
+   */
+  synchronized void validated(String key, long metastoreVersion) {
+    // metastore changed while the query was validated
+    if (metastoreVersion != CubeMetastoreClient.getMetastoreVersion()) {
+      return;
+    }
+    checkMetastoreVersion();
+    cache.put(key, Boolean.TRUE);
+  }
+
+  /**
+   * Number of cached queries.
+   *
+   * @return the size
+   */
+  long size() {
+    return cache.size();
+  }
+
+  /**
+   * Drop all the cached queries.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private synchronized void checkMetastoreVersion() {
+    long currentVersion = CubeMetastoreClient.getMetastoreVersion();
+    if (currentVersion != metastoreVersion) {
+      cache.invalidateAll();
+      metastoreVersion = currentVersion;
+    }
+  }
+}
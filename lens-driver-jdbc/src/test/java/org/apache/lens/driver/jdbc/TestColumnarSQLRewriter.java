@@ -25,6 +25,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.*;
 
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.cube.parse.HQLParser;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
@@ -275,12 +276,13 @@ public class TestColumnarSQLRewriter {
 
     SessionState.start(hconf);
 
-    String rwq = qtest.rewrite(query, conf, hconf);
+    ColumnarSQLRewriteContext ctx = qtest.createContext(query, hconf);
+    String rwq = ctx.buildQuery(conf, hconf);
     String expected = "inner join time_dim time_dim___time_dim on (( sales_fact___fact . time_key ) = "
       + "( time_dim___time_dim . time_key ))  inner join location_dim location_dim___location_dim on "
       + "((( sales_fact___fact . location_key ) = ( location_dim___location_dim . location_key )) "
       + "and (( location_dim___location_dim . location_name ) =  'test123' ))";
-    String actual = qtest.joinCondition.toString();
+    String actual = ctx.joinCondition.toString();
 
     compareQueries(expected, actual);
   }
@@ -307,11 +309,12 @@ public class TestColumnarSQLRewriter {
 
     SessionState.start(hconf);
 
-    String rwq = qtest.rewrite(query, conf, hconf);
+    ColumnarSQLRewriteContext ctx = qtest.createContext(query, hconf);
+    String rwq = ctx.buildQuery(conf, hconf);
     String expected = "[(( location_dim___location_dim . location_name ) =  "
       + "'test123' ), , , ( time_dim___time_dim . time_key ) between  '2013-01-01'  and  '2013-01-31' "
       + ", , ( time_dim___time_dim . time_key ) between  '2013-01-01'  and  '2013-01-31' ]";
-    String actual = qtest.rightFilter.toString();
+    String actual = ctx.rightFilter.toString();
 
     compareQueries(expected, actual);
 
@@ -340,8 +343,9 @@ public class TestColumnarSQLRewriter {
 
     SessionState.start(hconf);
 
-    String rwq = qtest.rewrite(query, conf, hconf);
-    String actual = qtest.aggColumn.toString();
+    ColumnarSQLRewriteContext ctx = qtest.createContext(query, hconf);
+    String rwq = ctx.buildQuery(conf, hconf);
+    String actual = ctx.aggColumn.toString();
     String expected = "[sum(( sales_fact___fact . dollars_sold )) as alias1, "
         + "sum(( sales_fact___fact . dollars_sold )) as alias2, "
         + "sum(( sales_fact___fact . units_sold )) as alias3, "
@@ -374,9 +378,10 @@ public class TestColumnarSQLRewriter {
 
     SessionState.start(hconf);
 
-    String rwq = qtest.rewrite(query, conf, hconf);
+    ColumnarSQLRewriteContext ctx = qtest.createContext(query, hconf);
+    String rwq = ctx.buildQuery(conf, hconf);
     String expected = "sales_fact___fact.time_key,sales_fact___fact.location_key,sales_fact___fact.item_key,";
-    String actual = qtest.factKeys.toString();
+    String actual = ctx.factKeys.toString();
     compareQueries(expected, actual);
   }
 
@@ -404,14 +409,15 @@ public class TestColumnarSQLRewriter {
 
     SessionState.start(hconf);
 
-    String rwq = qtest.rewrite(query, conf, hconf);
+    ColumnarSQLRewriteContext ctx = qtest.createContext(query, hconf);
+    String rwq = ctx.buildQuery(conf, hconf);
     String expected = "sales_fact___fact.time_key in  (  select time_dim .time_key from time_dim where "
       + "( time_dim. time_key ) between  '2013-01-01'  and  '2013-01-31'  ) and sales_fact___fact.location_key in  "
       + "(  select location_dim .location_key from location_dim "
       + "where (( location_dim. location_name ) =  'test123' ) ) "
       + "and sales_fact___fact.item_key in  (  select item_dim .item_key from "
       + "item_dim where (( item_dim. item_name ) =  'item_1' ) ) and";
-    String actual = qtest.allSubQueries.toString();
+    String actual = ctx.allSubQueries.toString();
     compareQueries(expected, actual);
   }
 
@@ -869,16 +875,15 @@ public class TestColumnarSQLRewriter {
 
     ColumnarSQLRewriter rewriter = new ColumnarSQLRewriter();
     rewriter.init(conf);
-    rewriter.ast = HQLParser.parseHQL(query, hconf);
-    rewriter.query = query;
-    rewriter.analyzeInternal(conf, hconf);
+    ColumnarSQLRewriteContext ctx = rewriter.createContext(query, hconf);
+    ctx.analyzeInternal(conf, hconf);
 
-    String joinTreeBeforeRewrite = HQLParser.getString(rewriter.fromAST);
+    String joinTreeBeforeRewrite = HQLParser.getString(ctx.fromAST);
     System.out.println(joinTreeBeforeRewrite);
 
     // Rewrite
-    rewriter.replaceWithUnderlyingStorage(hconf, rewriter.fromAST);
-    String joinTreeAfterRewrite = HQLParser.getString(rewriter.fromAST);
+    rewriter.replaceWithUnderlyingStorage(hconf, ctx.fromAST);
+    String joinTreeAfterRewrite = HQLParser.getString(ctx.fromAST);
     System.out.println("joinTreeAfterRewrite:" + joinTreeAfterRewrite);
 
     // Tests
@@ -897,16 +902,15 @@ public class TestColumnarSQLRewriter {
     // Rewrite one more query where table and db name is not set
     createTable(hconf, "mydb", "mytable_4", null, null);
     String query2 = "SELECT * FROM mydb.mytable_4 WHERE a = 100";
-    rewriter.ast = HQLParser.parseHQL(query2, hconf);
-    rewriter.query = query2;
-    rewriter.analyzeInternal(conf, hconf);
+    ctx = rewriter.createContext(query2, hconf);
+    ctx.analyzeInternal(conf, hconf);
 
-    joinTreeBeforeRewrite = HQLParser.getString(rewriter.fromAST);
+    joinTreeBeforeRewrite = HQLParser.getString(ctx.fromAST);
     System.out.println(joinTreeBeforeRewrite);
 
     // Rewrite
-    rewriter.replaceWithUnderlyingStorage(hconf, rewriter.fromAST);
-    joinTreeAfterRewrite = HQLParser.getString(rewriter.fromAST);
+    rewriter.replaceWithUnderlyingStorage(hconf, ctx.fromAST);
+    joinTreeAfterRewrite = HQLParser.getString(ctx.fromAST);
     System.out.println(joinTreeAfterRewrite);
 
     // Rewrite should not replace db and table name since its not set
@@ -920,12 +924,11 @@ public class TestColumnarSQLRewriter {
     createTable(hconf, "examples", "mytable", "default", null);
 
     String defaultQuery = "SELECT * FROM examples.mytable t1 WHERE A = 100";
-    rewriter.ast = HQLParser.parseHQL(defaultQuery, hconf);
-    rewriter.query = defaultQuery;
-    rewriter.analyzeInternal(conf, hconf);
-    joinTreeBeforeRewrite = HQLParser.getString(rewriter.fromAST);
-    rewriter.replaceWithUnderlyingStorage(hconf, rewriter.fromAST);
-    joinTreeAfterRewrite = HQLParser.getString(rewriter.fromAST);
+    ctx = rewriter.createContext(defaultQuery, hconf);
+    ctx.analyzeInternal(conf, hconf);
+    joinTreeBeforeRewrite = HQLParser.getString(ctx.fromAST);
+    rewriter.replaceWithUnderlyingStorage(hconf, ctx.fromAST);
+    joinTreeAfterRewrite = HQLParser.getString(ctx.fromAST);
     assertTrue(joinTreeBeforeRewrite.contains("examples"), joinTreeBeforeRewrite);
     assertFalse(joinTreeAfterRewrite.contains("examples"), joinTreeAfterRewrite);
     System.out.println("default case: " + joinTreeAfterRewrite);
@@ -939,6 +942,46 @@ public class TestColumnarSQLRewriter {
     SessionState.get().setCurrentDatabase("default");
   }
 
+  /**
+   * Test split of union queries.
+   */
+  @Test
+  public void testSplitUnionAll() {
+    assertEquals(ColumnarSQLRewriter.splitUnionAll("select a from t"), Arrays.asList("select a from t"));
+    assertEquals(ColumnarSQLRewriter.splitUnionAll("select a from t UNION  ALL select a from s where b = 'union all'"),
+      Arrays.asList("select a from t ", " select a from s where b = 'union all'"));
+    String subQuery = "select a from (select a from t union all select a from s) u";
+    assertEquals(ColumnarSQLRewriter.splitUnionAll(subQuery), Arrays.asList(subQuery));
+  }
+
+  /**
+   * Test rewritten queries are cached till the metastore changes.
+   *
+   * @throws LensException the lens exception
+   */
+  @Test
+  public void testRewriteCache() throws LensException {
+    String query = "select fact.time_key, sum(fact.dollars_sold) from sales_fact fact "
+      + "inner join time_dim time_dim on fact.time_key = time_dim.time_key group by fact.time_key";
+    SessionState.start(hconf);
+
+    Configuration cacheConf = new Configuration(conf);
+    cacheConf.setLong(JDBCDriverConfConstants.JDBC_REWRITE_CACHE_MAX_SIZE, 10);
+    ColumnarSQLRewriter rewriter = new ColumnarSQLRewriter();
+    rewriter.init(cacheConf);
+    String rewritten = rewriter.rewrite(query, conf, hconf);
+    assertSame(rewriter.rewrite(query, conf, hconf), rewritten);
+
+    CubeMetastoreClient.metastoreChanged();
+    String rewrittenAgain = rewriter.rewrite(query, conf, hconf);
+    assertNotSame(rewrittenAgain, rewritten);
+    assertEquals(rewrittenAgain, rewritten);
+
+    // caching is off by default
+    rewriter.init(conf);
+    assertNotSame(rewriter.rewrite(query, conf, hconf), rewriter.rewrite(query, conf, hconf));
+  }
+
   /**
    * Creates the table.
    *
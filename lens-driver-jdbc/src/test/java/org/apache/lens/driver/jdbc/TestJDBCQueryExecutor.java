@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.jdbc;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests for {@link JDBCQueryExecutor}.
+ */
+public class TestJDBCQueryExecutor {
+
+  /**
+   * Create a query which records its name once it runs.
+   */
+  private static JDBCQueryExecutor.QueryTask<String> createTask(final String name, Priority priority,
+    final List<String> runOrder) {
+    return new JDBCQueryExecutor.QueryTask<String>(new Callable<String>() {
+      @Override
+      public String call() {
+        runOrder.add(name);
+        return name;
+      }
+    }, priority);
+  }
+
+  /**
+   * Test that queries waiting to run are ordered by priority and submission time, and that cancelled queries leave
+   * the queue immediately.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPriorityOrder() throws Exception {
+    JDBCQueryExecutor executor = new JDBCQueryExecutor(1);
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    long waitCount = registry.timer(JDBCQueryExecutor.QUERY_WAIT_TIME).getCount();
+    try {
+      final CountDownLatch running = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      JDBCQueryExecutor.QueryTask<String> blocking = new JDBCQueryExecutor.QueryTask<String>(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          running.countDown();
+          release.await();
+          return "blocking";
+        }
+      }, Priority.NORMAL);
+      executor.execute(blocking);
+      assertTrue(running.await(10, TimeUnit.SECONDS));
+
+      List<String> runOrder = Collections.synchronizedList(new ArrayList<String>());
+      JDBCQueryExecutor.QueryTask<String> low = createTask("low", Priority.LOW, runOrder);
+      JDBCQueryExecutor.QueryTask<String> normal1 = createTask("normal1", Priority.NORMAL, runOrder);
+      JDBCQueryExecutor.QueryTask<String> cancelled = createTask("cancelled", Priority.VERY_HIGH, runOrder);
+      JDBCQueryExecutor.QueryTask<String> normal2 = createTask("normal2", Priority.NORMAL, runOrder);
+      JDBCQueryExecutor.QueryTask<String> high = createTask("high", Priority.HIGH, runOrder);
+      for (JDBCQueryExecutor.QueryTask<String> task : Arrays.asList(low, normal1, cancelled, normal2, high)) {
+        executor.execute(task);
+      }
+      assertEquals(registry.getGauges().get(JDBCQueryExecutor.QUEUED_QUERIES).getValue(), 5);
+      assertEquals(registry.getGauges().get(JDBCQueryExecutor.RUNNING_QUERIES).getValue(), 1);
+
+      assertTrue(cancelled.cancel(true));
+      executor.remove(cancelled);
+      assertTrue(cancelled.isDone());
+      assertEquals(registry.getGauges().get(JDBCQueryExecutor.QUEUED_QUERIES).getValue(), 4);
+
+      release.countDown();
+      assertEquals(low.get(10, TimeUnit.SECONDS), "low");
+      assertEquals(runOrder, Arrays.asList("high", "normal1", "normal2", "low"));
+      assertEquals(registry.timer(JDBCQueryExecutor.QUERY_WAIT_TIME).getCount(), waitCount + 5);
+    } finally {
+      executor.shutdownNow();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    assertNull(registry.getGauges().get(JDBCQueryExecutor.QUEUED_QUERIES));
+  }
+}
@@ -23,14 +23,18 @@ import static org.apache.lens.server.api.user.MockUserConfigLoader.VALUE;
 
 import static org.testng.Assert.*;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.InMemoryQueryResult;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.*;
 import org.apache.lens.server.api.driver.DriverQueryStatus.DriverQueryState;
@@ -44,6 +48,7 @@ import org.apache.lens.server.api.user.MockUserConfigLoader;
 import org.apache.lens.server.api.util.LensUtil;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hive.service.cli.ColumnDescriptor;
@@ -51,6 +56,7 @@ import org.apache.hive.service.cli.ColumnDescriptor;
 import org.testng.Assert;
 import org.testng.annotations.*;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import lombok.extern.slf4j.Slf4j;
@@ -125,8 +131,13 @@ public class TestJdbcDriver {
   }
 
   protected ExplainQueryContext createExplainContext(final String query, Configuration conf) {
+    return createExplainContext(query, conf, drivers);
+  }
+
+  private ExplainQueryContext createExplainContext(final String query, Configuration conf,
+    Collection<LensDriver> queryDrivers) {
     ExplainQueryContext ectx = new ExplainQueryContext(UUID.randomUUID().toString(), query, "testuser", null, conf,
-      drivers);
+      queryDrivers);
     return ectx;
   }
 
@@ -319,6 +330,65 @@ public class TestJdbcDriver {
       "lens.MethodMetricGauge.TestJdbcDriver-JDBCDriver-jdbc-check-allowed-query")));
   }
 
+  /**
+   * Test queries validated through prepare are cached till the metastore changes.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testValidationCache() throws Exception {
+    createTable("validation_cache_test", driver.getEstimateConnection());
+    String query = "SELECT * FROM validation_cache_test";
+    Configuration cacheConf = new Configuration(baseConf);
+    cacheConf.setLong(JDBCDriverConfConstants.JDBC_VALIDATION_CACHE_MAX_SIZE, 10);
+    final JDBCDriver cachingDriver = new JDBCDriver();
+    cachingDriver.configure(cacheConf);
+    cachingDriver.registerUserConfigLoader(new MockUserConfigLoader(hConf));
+    List<LensDriver> cachingDrivers = new ArrayList<LensDriver>() {
+      {
+        add(cachingDriver);
+      }
+    };
+    Configuration connectionConf = cachingDriver.getEstimateConnectionConf();
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    Counter hits = registry.counter(JDBCValidationCache.getMetricName(connectionConf, JDBCValidationCache.HITS));
+    Counter misses = registry.counter(JDBCValidationCache.getMetricName(connectionConf, JDBCValidationCache.MISSES));
+    long hitCount = hits.getCount();
+    long missCount = misses.getCount();
+    try {
+      cachingDriver.estimate(createExplainContext(query, cacheConf, cachingDrivers));
+      assertEquals(misses.getCount(), missCount + 1);
+      cachingDriver.estimate(createExplainContext(query, cacheConf, cachingDrivers));
+      assertEquals(hits.getCount(), hitCount + 1);
+
+      // the query is prepared again once the metastore changes
+      CubeMetastoreClient.metastoreChanged();
+      cachingDriver.estimate(createExplainContext(query, cacheConf, cachingDrivers));
+      assertEquals(misses.getCount(), missCount + 2);
+      assertEquals(hits.getCount(), hitCount + 1);
+
+      // failed validations are not cached
+      String failingQuery = "SELECT * FROM validation_cache_test2";
+      for (int i = 0; i < 2; i++) {
+        try {
+          cachingDriver.estimate(createExplainContext(failingQuery, cacheConf, cachingDrivers));
+          fail("Running estimate on a non existing table.");
+        } catch (LensException e) {
+          assertEquals(misses.getCount(), missCount + 3 + i);
+        }
+      }
+
+      // the counters are kept per connection, and the cache is disabled by default
+      assertNotEquals(JDBCValidationCache.getMetricName(connectionConf, JDBCValidationCache.HITS),
+        JDBCValidationCache.getMetricName(new Configuration(false), JDBCValidationCache.HITS));
+      driver.estimate(createExplainContext(query, baseConf));
+      assertEquals(misses.getCount(), missCount + 4);
+      assertEquals(hits.getCount(), hitCount + 1);
+    } finally {
+      cachingDriver.close();
+    }
+  }
+
   @Test
   public void testMetricsEnabled() throws Exception {
     createTable("test_metrics", driver.getEstimateConnection()); // Create table
@@ -413,6 +483,66 @@ public class TestJdbcDriver {
     }
   }
 
+  /**
+   * Test reading the result of a query in pages.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPagedFetch() throws Exception {
+    createTable("paged_fetch_test");
+    insertData("paged_fetch_test");
+
+    QueryContext context = createQueryContext("SELECT * FROM paged_fetch_test");
+    InMemoryResultSet rs = (InMemoryResultSet) driver.execute(context);
+    List<Object> ids = new ArrayList<Object>();
+    for (long start = 0; start < 12; start += 3) {
+      List<ResultRow> rows = ((InMemoryQueryResult) rs.toQueryResult(start, 3)).getRows();
+      assertEquals(rows.size(), start < 9 ? 3 : 1);
+      for (ResultRow row : rows) {
+        ids.add(row.getValues().get(0));
+      }
+    }
+    assertEquals(ids.size(), 10);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(((Number) ids.get(i)).intValue(), i);
+    }
+    // reading past the end gives an empty page
+    assertTrue(((InMemoryQueryResult) rs.toQueryResult(10, 3)).getRows().isEmpty());
+    ((JDBCResultSet) rs).close();
+  }
+
+  /**
+   * Test that a streaming result set is read forward only, and that the rows read are published as metrics.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testStreamingFetch() throws Exception {
+    createTable("streaming_fetch_test");
+    insertData("streaming_fetch_test");
+
+    Configuration streamingConf = new Configuration(baseConf);
+    streamingConf.setBoolean(JDBCDriverConfConstants.JDBC_ENABLE_RESULTSET_STREAMING_RETRIEVAL, true);
+    streamingConf.setInt(JDBCDriverConfConstants.JDBC_FETCH_SIZE, 4);
+    QueryContext context = createQueryContext("SELECT * FROM streaming_fetch_test", streamingConf);
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    long resultSetsRead = registry.histogram(JDBCResultSet.ROWS_READ).getCount();
+
+    InMemoryResultSet rs = (InMemoryResultSet) driver.execute(context);
+    rs.setFetchSize(3);
+    assertEquals(((InMemoryQueryResult) rs.toQueryResult(0, 3)).getRows().size(), 3);
+    assertEquals(((InMemoryQueryResult) rs.toQueryResult(3, 3)).getRows().size(), 3);
+    try {
+      rs.toQueryResult(0, 3);
+      fail("Rows of a streaming result set should not be read again");
+    } catch (LensException e) {
+      log.info("Expected exception", e);
+    }
+    ((JDBCResultSet) rs).close();
+    assertEquals(registry.histogram(JDBCResultSet.ROWS_READ).getCount(), resultSetsRead + 1);
+  }
+
   /**
    * Test type casting of char, varchar, nvarchar and decimal type
    *
@@ -612,6 +742,86 @@ public class TestJdbcDriver {
 
   }
 
+  /**
+   * Test that a listener registered after the query completed is notified, and that batched status update reports the
+   * completion.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCompletionNotificationAfterQueryDone() throws Exception {
+    createTable("late_listener_test");
+    insertData("late_listener_test");
+    QueryContext context = createQueryContext("SELECT * FROM late_listener_test");
+    assertTrue(driver.supportsCompletionPush());
+    executeAsync(context);
+    QueryHandle handle = context.getQueryHandle();
+    driver.fetchResultSet(context);
+
+    final CountDownLatch listenerNotificationLatch = new CountDownLatch(1);
+    driver.registerForCompletionNotification(handle, 0, new QueryCompletionListener() {
+      @Override
+      public void onError(QueryHandle handle, String error) {
+        fail("Query failed " + handle + " message" + error);
+      }
+
+      @Override
+      public void onCompletion(QueryHandle handle) {
+        listenerNotificationLatch.countDown();
+      }
+    });
+    assertTrue(listenerNotificationLatch.await(1, TimeUnit.SECONDS));
+
+    driver.updateStatus(Collections.singletonList(context));
+    assertEquals(context.getDriverStatus().getState(), DriverQueryState.SUCCESSFUL);
+    driver.closeQuery(handle);
+  }
+
+  /**
+   * Test that the result is written to the result directory of the query, when persistence in driver is enabled.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPersistentResult() throws Exception {
+    createTable("persistent_result_test");
+    insertData("persistent_result_test");
+
+    Configuration persistConf = new Configuration(baseConf);
+    persistConf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, true);
+    persistConf.setBoolean(JDBCDriverConfConstants.JDBC_ENABLE_PERSISTENT_RESULTSET, true);
+    persistConf.set(LensConfConstants.RESULT_SET_PARENT_DIR, "target/persistent-results");
+    QueryContext context = createQueryContext("SELECT ID, 'a\"b' FROM persistent_result_test", persistConf);
+    executeAsync(context);
+    LensResultSet resultSet = driver.fetchResultSet(context);
+    assertTrue(resultSet instanceof JDBCPersistentResultSet);
+    assertEquals(resultSet.size(), 10);
+    assertEquals(resultSet.getMetadata().getColumns().size(), 2);
+
+    Path resultFile = new Path(((JDBCPersistentResultSet) resultSet).getOutputPath(),
+      JDBCDriver.PERSISTENT_RESULT_FILE_NAME);
+    assertEquals(resultFile.toUri().getPath(), context.getHDFSResultDir().makeQualified(
+      resultFile.getFileSystem(persistConf)).toUri().getPath() + "/" + JDBCDriver.PERSISTENT_RESULT_FILE_NAME);
+    List<String> lines = new ArrayList<String>();
+    BufferedReader in = new BufferedReader(new InputStreamReader(resultFile.getFileSystem(persistConf).open(
+      resultFile), "UTF-8"));
+    try {
+      String line = in.readLine();
+      while (line != null) {
+        lines.add(line);
+        line = in.readLine();
+      }
+    } finally {
+      in.close();
+    }
+    assertEquals(lines.size(), 10);
+    assertEquals(lines.get(0), "\"0\",\"a\"\"b\"");
+
+    driver.updateStatus(context);
+    assertEquals(context.getDriverStatus().getState(), DriverQueryState.SUCCESSFUL);
+    driver.closeQuery(context.getQueryHandle());
+  }
+
   /**
    * Test connection close for failed queries.
    *
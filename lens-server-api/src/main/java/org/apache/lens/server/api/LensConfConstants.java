@@ -768,6 +768,32 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_FINISHED_QUERIES = 100;
 
+  /**
+   * Key used to get the maximum number of finished queries persisted in a single batch.
+   */
+  public static final String PURGE_BATCH_SIZE = SERVER_PFX + "purge.batch.size";
+  public static final int DEFAULT_PURGE_BATCH_SIZE = 100;
+
+  /**
+   * Key used to get the maximum time the purger waits to fill a batch of finished queries, in milliseconds.
+   */
+  public static final String PURGE_BATCH_INTERVAL_MILLIS = SERVER_PFX + "purge.batch.interval.millis";
+  public static final long DEFAULT_PURGE_BATCH_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Key used to get the number of threads closing persisted queries on their drivers.
+   */
+  public static final String PURGE_POOL_SIZE = SERVER_PFX + "purge.pool.size";
+  public static final int DEFAULT_PURGE_POOL_SIZE = 5;
+
+  /**
+   * Key used to get the maximum time to wait for the purge pool to close the purged queries when the server is
+   * stopping, in milliseconds.
+   */
+  public static final String PURGE_POOL_TERMINATION_TIMEOUT_MILLIS = SERVER_PFX
+    + "purge.pool.termination.timeout.millis";
+  public static final long DEFAULT_PURGE_POOL_TERMINATION_TIMEOUT_MILLIS = 60000;
+
   // Server DB configuration
   /**
    * The Constant SERVER_DB_DRIVER_NAME.
@@ -831,6 +857,19 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_STATE_PERSIST_OUT_STREAM_BUFF_SIZE = 1048576;
 
+  /**
+   * Key used to enable persisting server state as a log of state changes, instead of full snapshots.
+   */
+  public static final String STATE_PERSIST_LOG_ENABLED = SERVER_PFX + "state.persist.log.enabled";
+  public static final boolean DEFAULT_STATE_PERSIST_LOG_ENABLED = false;
+
+  /**
+   * Key used to get the interval at which state changes are appended to the state log, in milliseconds.
+   */
+  public static final String STATE_PERSIST_LOG_FLUSH_INTERVAL_MILLIS = SERVER_PFX
+    + "state.persist.log.flush.interval.millis";
+  public static final long DEFAULT_STATE_PERSIST_LOG_FLUSH_INTERVAL_MILLIS = 1000;
+
   /**
    * Key for top level dir of database specific resources
    */
@@ -892,4 +931,94 @@ public final class LensConfConstants {
   public static final String ESTIMATE_POOL_KEEP_ALIVE_MILLIS = SERVER_PFX + "estimate.pool.keepalive.millis";
   public static final int DEFAULT_ESTIMATE_POOL_KEEP_ALIVE_MILLIS = 60000; // 1 minute
 
+  /**
+   * Key used to enable caching of rewritten queries and their estimates, reused when the same query is submitted again.
+   */
+  public static final String REWRITE_CACHE_ENABLED = SERVER_PFX + "rewrite.cache.enabled";
+  public static final boolean DEFAULT_REWRITE_CACHE_ENABLED = false;
+
+  /**
+   * Key used to get the maximum number of queries in the rewrite cache.
+   */
+  public static final String REWRITE_CACHE_MAX_SIZE = SERVER_PFX + "rewrite.cache.max.size";
+  public static final long DEFAULT_REWRITE_CACHE_MAX_SIZE = 1000;
+
+  /**
+   * Key used to get the time after which a query in the rewrite cache is rewritten again, in milliseconds.
+   */
+  public static final String REWRITE_CACHE_EXPIRY_MILLIS = SERVER_PFX + "rewrite.cache.expiry.millis";
+  public static final long DEFAULT_REWRITE_CACHE_EXPIRY_MILLIS = 600000; // 10 minutes
+
+  /**
+   * Key used to get the maximum number of parsed queries, and of parsed expressions, whose syntax trees are cached.
+   */
+  public static final String AST_CACHE_MAX_SIZE = SERVER_PFX + "ast.cache.max.size";
+  public static final long DEFAULT_AST_CACHE_MAX_SIZE = 10000;
+
+  /**
+   * Key used to get the number of threads in the query launcher pool. Queued queries are launched concurrently on
+   * these threads.
+   */
+  public static final String LAUNCHER_POOL_SIZE = SERVER_PFX + "query.launcher.pool.size";
+  public static final int DEFAULT_LAUNCHER_POOL_SIZE = 10;
+
+  /**
+   * Key used to get the number of threads updating status of launched queries.
+   */
+  public static final String STATUS_UPDATE_POOL_SIZE = SERVER_PFX + "status.update.pool.size";
+  public static final int DEFAULT_STATUS_UPDATE_POOL_SIZE = 10;
+
+  /**
+   * Key used to get the maximum number of queries of a driver whose status is asked for in a single call.
+   */
+  public static final String STATUS_UPDATE_BATCH_SIZE = SERVER_PFX + "status.update.batch.size";
+  public static final int DEFAULT_STATUS_UPDATE_BATCH_SIZE = 100;
+
+  /**
+   * Key used to get the minimum interval between two status polls of a launched query, in milliseconds.
+   */
+  public static final String STATUS_POLL_MIN_INTERVAL_MILLIS = SERVER_PFX + "status.poll.interval.min.millis";
+  public static final long DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Key used to get the maximum interval between two status polls of a launched query, in milliseconds.
+   */
+  public static final String STATUS_POLL_MAX_INTERVAL_MILLIS = SERVER_PFX + "status.poll.interval.max.millis";
+  public static final long DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS = 10000;
+
+  /**
+   * Key used to get the fraction of the time since launch which is used as poll interval of a launched query.
+   */
+  public static final String STATUS_POLL_BACKOFF_RATIO = SERVER_PFX + "status.poll.backoff.ratio";
+  public static final float DEFAULT_STATUS_POLL_BACKOFF_RATIO = 0.1f;
+
+  /**
+   * Key used to get the classes of constraints evaluated before launching a query.
+   */
+  public static final String QUERY_LAUNCHING_CONSTRAINTS = SERVER_PFX + "query.launching.constraints";
+
+  /**
+   * Key used to get the maximum number of queries launched concurrently on a driver. Can be overridden in driver
+   * configuration.
+   */
+  public static final String MAX_CONCURRENT_QUERIES_PER_DRIVER = SERVER_PFX + "max.concurrent.queries.per.driver";
+  public static final int DEFAULT_MAX_CONCURRENT_QUERIES_PER_DRIVER = 100;
+
+  /**
+   * Key used to get the maximum number of queries of a user launched concurrently.
+   */
+  public static final String MAX_CONCURRENT_QUERIES_PER_USER = SERVER_PFX + "max.concurrent.queries.per.user";
+  public static final int DEFAULT_MAX_CONCURRENT_QUERIES_PER_USER = 0;
+
+  /**
+   * Key used to get the maximum number of queries launched concurrently with each priority.
+   */
+  public static final String MAX_CONCURRENT_QUERIES_PER_PRIORITY = SERVER_PFX + "max.concurrent.queries.per.priority";
+
+  /**
+   * Key used to get the facts whose partition timelines are loaded in background when the server starts, as comma
+   * separated database.fact names. database.* stands for all facts of the database.
+   */
+  public static final String METASTORE_TIMELINE_PREWARM_FACTS = SERVER_PFX + "metastore.timeline.prewarm.facts";
+
 }
@@ -296,6 +296,33 @@ public abstract class DriverQueryPlan {
     return partitions;
   }
 
+  /**
+   * Copy of the plan, sharing no mutable state with it, so that a plan computed once can be handed to many queries.
+   *
+   * @return the copy, null if the plan can not be copied
+   */
+  public DriverQueryPlan copy() {
+    return null;
+  }
+
+  /**
+   * Copy the state kept by this class to the given plan, for {@link #copy()} of sub classes.
+   *
+   * @param plan the copy
+   */
+  protected void copyTo(DriverQueryPlan plan) {
+    plan.tablesQueried.addAll(tablesQueried);
+    plan.hasSubQuery = hasSubQuery;
+    plan.resultDestination = resultDestination;
+    plan.execMode = execMode;
+    plan.scanMode = scanMode;
+    plan.tableWeights.putAll(tableWeights);
+    plan.handle = handle;
+    for (Map.Entry<String, Set<?>> entry : partitions.entrySet()) {
+      plan.partitions.put(entry.getKey(), entry.getValue() == null ? null : new HashSet<Object>(entry.getValue()));
+    }
+  }
+
   /**
    * To query plan.
    *
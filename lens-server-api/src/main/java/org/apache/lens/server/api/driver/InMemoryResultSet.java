@@ -31,6 +31,9 @@ import org.apache.lens.server.api.error.LensException;
  */
 public abstract class InMemoryResultSet extends LensResultSet {
 
+  /** Index of the row that will be returned by the next call to {@link #next()}. */
+  private long cursor;
+
   public abstract boolean seekToStart() throws LensException;
   /**
    * Whether there is another result row available.
@@ -60,10 +63,60 @@ public abstract class InMemoryResultSet extends LensResultSet {
    *
    * @see org.apache.lens.server.api.driver.LensResultSet#toQueryResult()
    */
-  public QueryResult toQueryResult() throws LensException {
+  public synchronized QueryResult toQueryResult() throws LensException {
     List<ResultRow> rows = new ArrayList<ResultRow>();
     while (hasNext()) {
       rows.add(next());
+      cursor++;
+    }
+    return new InMemoryQueryResult(rows);
+  }
+
+  /**
+   * Rewind the result set to its first row. The position is left unchanged if the result set can not be rewound.
+   *
+   * @return true if the result set could be rewound
+   * @throws LensException the lens exception
+   */
+  public synchronized boolean rewind() throws LensException {
+    if (!seekToStart()) {
+      return false;
+    }
+    cursor = 0;
+    return true;
+  }
+
+  /**
+   * Read a window of rows starting at the given index. The position of the last read row is remembered, so reading
+   * consecutive windows only moves forward over the underlying result set. Going back to an earlier row rewinds the
+   * result set and skips rows up to the requested index.
+   * <p></p>
+   * A positive fetch size is also set as the number of rows fetched at a time, under the same lock as the read, so
+   * that concurrent reads of the result set do not change the fetch size of one another.
+   *
+   * @param startIndex index of the first row to return
+   * @param fetchSize  maximum number of rows to return, all the remaining rows if not positive
+   * @return the query result holding the requested rows
+   * @throws LensException if the rows were already read and the result set can not be rewound
+   */
+  public synchronized QueryResult toQueryResult(long startIndex, int fetchSize) throws LensException {
+    if (fetchSize > 0) {
+      setFetchSize(fetchSize);
+    }
+    if (startIndex < cursor && !rewind()) {
+      throw new LensException("Rows before " + cursor + " have already been read and can not be read again");
+    }
+    // hasNext() may advance the underlying cursor, so it is called only when a row is going to be read
+    while (cursor < startIndex && hasNext()) {
+      next();
+      cursor++;
+    }
+    List<ResultRow> rows = new ArrayList<ResultRow>();
+    if (cursor == startIndex) {
+      while ((fetchSize <= 0 || rows.size() < fetchSize) && hasNext()) {
+        rows.add(next());
+        cursor++;
+      }
     }
     return new InMemoryQueryResult(rows);
   }
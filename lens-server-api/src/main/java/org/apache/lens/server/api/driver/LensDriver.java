@@ -19,6 +19,7 @@
 package org.apache.lens.server.api.driver;
 
 import java.io.Externalizable;
+import java.util.Collection;
 
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryPrepareHandle;
@@ -26,6 +27,7 @@ import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.LensEventListener;
 import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
 import org.apache.lens.server.api.user.UserConfigLoader;
 
 import org.apache.hadoop.conf.Configuration;
@@ -134,6 +136,31 @@ public interface LensDriver extends Externalizable {
    */
   void updateStatus(QueryContext context) throws LensException;
 
+  /**
+   * Update driver query status of all the given queries in their context objects. Drivers which can answer for many
+   * queries in a single call should do so here, others can update the contexts one after the other.
+   *
+   * @param contexts The query contexts
+   * @throws LensException the lens exception
+   */
+  void updateStatus(Collection<QueryContext> contexts) throws LensException;
+
+  /**
+   * Whether the driver pushes query completion to listeners registered through
+   * {@link #registerForCompletionNotification(QueryHandle, long, QueryCompletionListener)} as soon as the query
+   * finishes, without the caller having to poll for it.
+   *
+   * @return true if completion is pushed by the driver, false otherwise
+   */
+  boolean supportsCompletionPush();
+
+  /**
+   * The decider of the priority with which the driver runs queries, from their estimated cost.
+   *
+   * @return the priority decider, null if the driver does not prioritize queries
+   */
+  QueryPriorityDecider getQueryPriorityDecider();
+
   /**
    * Fetch the results of the query, specified by the handle.
    *
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Notifies completion of queries to the listeners registered with a driver. A single scheduled thread serves all the
+ * registered queries of the driver, instead of a thread per registration.
+ * <p/>
+ * Drivers which know when a query completes call {@link #notifyCompletion(QueryHandle)} or
+ * {@link #notifyError(QueryHandle, String)}. Drivers which have to ask for the status provide a
+ * {@link CompletionPoller}, which is called with all the registered queries due for a poll together. A query is due
+ * for a poll every tenth of its timeout, but not more often than the poll interval of the notifier. Listeners of
+ * queries not finished within their timeout are notified with an error.
+ */
+@Slf4j
+public class QueryCompletionNotifier {
+
+  /** Default poll interval in milliseconds. */
+  public static final long DEFAULT_POLL_INTERVAL_MILLIS = 100;
+
+  /**
+   * Checks the status of registered queries.
+   */
+  public interface CompletionPoller {
+
+    /**
+     * Check whether the queries have finished, and notify the finished ones on the notifier.
+     *
+     * @param handles  the queries due for a poll
+     * @param notifier the notifier
+     */
+    void poll(Collection<QueryHandle> handles, QueryCompletionNotifier notifier);
+  }
+
+  /**
+   * A listener registered for a query.
+   */
+  private static class Registration {
+    private final QueryCompletionListener listener;
+    private final long deadline;
+    private final long pollInterval;
+    private long nextPoll;
+
+    Registration(QueryCompletionListener listener, long now, long timeoutMillis, long minPollInterval) {
+      this.listener = listener;
+      this.deadline = timeoutMillis > 0 ? now + timeoutMillis : Long.MAX_VALUE;
+      this.pollInterval = Math.max(minPollInterval, timeoutMillis / 10);
+      this.nextPoll = now;
+    }
+  }
+
+  /** The name, used for the notifier thread. */
+  private final String name;
+
+  /** The poll interval. */
+  private final long pollIntervalMillis;
+
+  /** The poller, null if completion is only notified by the driver. */
+  private final CompletionPoller poller;
+
+  /** Registered listeners of the queries. */
+  private final Map<QueryHandle, List<Registration>> registrations = new HashMap<QueryHandle, List<Registration>>();
+
+  /** The notifier thread, started on the first registration. */
+  private ScheduledExecutorService executor;
+
+  /**
+   * Instantiates a new query completion notifier.
+   *
+   * @param name               the name
+   * @param pollIntervalMillis the poll interval
+   * @param poller             the poller, null if completion is only notified by the driver
+   */
+  public QueryCompletionNotifier(String name, long pollIntervalMillis, CompletionPoller poller) {
+    this.name = name;
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.poller = poller;
+  }
+
+  /**
+   * Register a listener to be notified when the query completes.
+   *
+   * @param handle        the query handle
+   * @param timeoutMillis the timeout after which the listener is notified with an error, no timeout if not positive
+   * @param listener      the listener
+   */
+  public synchronized void register(QueryHandle handle, long timeoutMillis, QueryCompletionListener listener) {
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread th = new Thread(runnable, name + "-completion-notifier");
+          th.setDaemon(true);
+          return th;
+        }
+      });
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            check();
+          } catch (Exception e) {
+            log.warn("Error in completion notifier " + name, e);
+          }
+        }
+      }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    List<Registration> queryRegistrations = registrations.get(handle);
+    if (queryRegistrations == null) {
+      queryRegistrations = new ArrayList<Registration>(1);
+      registrations.put(handle, queryRegistrations);
+    }
+    queryRegistrations.add(new Registration(listener, System.currentTimeMillis(), timeoutMillis, pollIntervalMillis));
+  }
+
+  /**
+   * Notify the listeners registered for the query that it completed, and remove them.
+   *
+   * @param handle the query handle
+   */
+  public void notifyCompletion(QueryHandle handle) {
+    for (Registration registration : unregister(handle)) {
+      registration.listener.onCompletion(handle);
+    }
+  }
+
+  /**
+   * Notify the listeners registered for the query that it failed, and remove them.
+   *
+   * @param handle the query handle
+   * @param error  the error
+   */
+  public void notifyError(QueryHandle handle, String error) {
+    for (Registration registration : unregister(handle)) {
+      registration.listener.onError(handle, error);
+    }
+  }
+
+  /**
+   * Remove the listeners registered for the query without notifying them.
+   *
+   * @param handle the query handle
+   * @return the removed registrations
+   */
+  private synchronized List<Registration> unregister(QueryHandle handle) {
+    List<Registration> removed = registrations.remove(handle);
+    return removed == null ? Collections.<Registration>emptyList() : removed;
+  }
+
+  /**
+   * Remove the listeners registered for the query without notifying them.
+   *
+   * @param handle the query handle
+   */
+  public void cancel(QueryHandle handle) {
+    unregister(handle);
+  }
+
+  /**
+   * Number of queries with registered listeners.
+   *
+   * @return the number of queries
+   */
+  public synchronized int size() {
+    return registrations.size();
+  }
+
+  /**
+   * Notify listeners of timed out queries, and poll queries due for a poll.
+   */
+  void check() {
+    long now = System.currentTimeMillis();
+    Map<QueryHandle, List<Registration>> timedOut = new HashMap<QueryHandle, List<Registration>>();
+    List<QueryHandle> due = new ArrayList<QueryHandle>();
+    synchronized (this) {
+      Iterator<Map.Entry<QueryHandle, List<Registration>>> itr = registrations.entrySet().iterator();
+      while (itr.hasNext()) {
+        Map.Entry<QueryHandle, List<Registration>> entry = itr.next();
+        boolean isDue = false;
+        Iterator<Registration> regItr = entry.getValue().iterator();
+        while (regItr.hasNext()) {
+          Registration registration = regItr.next();
+          if (registration.deadline <= now) {
+            regItr.remove();
+            List<Registration> queryTimedOut = timedOut.get(entry.getKey());
+            if (queryTimedOut == null) {
+              queryTimedOut = new ArrayList<Registration>(1);
+              timedOut.put(entry.getKey(), queryTimedOut);
+            }
+            queryTimedOut.add(registration);
+          } else if (registration.nextPoll <= now) {
+            registration.nextPoll = now + registration.pollInterval;
+            isDue = true;
+          }
+        }
+        if (entry.getValue().isEmpty()) {
+          itr.remove();
+        } else if (isDue) {
+          due.add(entry.getKey());
+        }
+      }
+    }
+    for (Map.Entry<QueryHandle, List<Registration>> entry : timedOut.entrySet()) {
+      for (Registration registration : entry.getValue()) {
+        registration.listener.onError(entry.getKey(), "timedout");
+      }
+    }
+    if (poller != null && !due.isEmpty()) {
+      poller.poll(due, this);
+    }
+  }
+
+  /**
+   * Stop the notifier thread and remove all registrations, without notifying the listeners. The thread is started
+   * again by the next registration.
+   */
+  public synchronized void close() {
+    registrations.clear();
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+}
@@ -57,6 +57,13 @@ public interface CubeMetastoreService {
    */
   void dropDatabase(LensSessionHandle sessionid, String database, boolean cascade) throws LensException;
 
+  /**
+   * Drop the cached metadata of the current database, so that it is loaded again from the metastore
+   *
+   * @param sessionid session id
+   */
+  void invalidateCache(LensSessionHandle sessionid) throws LensException;
+
   /**
    * Create a database in the metastore
    *
@@ -505,6 +512,18 @@ public interface CubeMetastoreService {
   void addPartitionsToFactStorage(LensSessionHandle sessionid, String fact, String storageName,
     XPartitionList partitions) throws LensException;
 
+  /**
+   * Add partitions of any number of facts and storages together. Partitions are added to the metastore in batches and
+   * partition timelines of each fact storage table are saved once.
+   *
+   * @param sessionid  The sessionid
+   * @param partitions {@link org.apache.lens.api.metastore.XBulkPartitions}
+   * @return {@link org.apache.lens.api.metastore.XPartitionAddResults} with the result of each partition
+   * @throws LensException
+   */
+  XPartitionAddResults addPartitionsToFactStorages(LensSessionHandle sessionid, XBulkPartitions partitions)
+    throws LensException;
+
   /**
    * Drop partition from storage with spec specified as comma separated string
    *
@@ -92,6 +92,15 @@ public interface MetricsService {
    */
   long getCounter(Class<?> cls, String counter);
 
+  /**
+   * Add a value to the histogram.
+   *
+   * @param cls       the cls
+   * @param histogram the histogram
+   * @param value     the value
+   */
+  void updateHistogram(Class<?> cls, String histogram, long value);
+
   /**
    * Query engine counter names.
    */
@@ -122,6 +131,30 @@ public interface MetricsService {
    */
   String FINISHED_QUERIES = "finished-queries";
 
+  /**
+   * The Constant LAUNCHING_QUERIES.
+   */
+  String LAUNCHING_QUERIES = "launching-queries";
+
+  /**
+   * The Constant WAITING_QUERIES.
+   */
+  String WAITING_QUERIES = "waiting-queries";
+
+  /**
+   * The Constant RUNNABLE_QUERIES.
+   */
+  String RUNNABLE_QUERIES = "runnable-queries";
+
+  /**
+   * Query engine histogram names.
+   */
+  String QUERY_LAUNCH_LATENCY = "query-launch-latency";
+
+  String QUERY_PURGE_LAG = "query-purge-lag";
+
+  String QUERY_PURGE_BATCH_SIZE = "query-purge-batch-size";
+
   String OPENED_SESSIONS = "opened-sessions";
 
   String CLOSED_SESSIONS = "closed-sessions";
@@ -130,6 +163,20 @@ public interface MetricsService {
 
   String ACTIVE_SESSIONS = "active-sessions";
 
+  /**
+   * Metastore cache gauge names.
+   */
+  String METASTORE_CACHE_HITS = "metastore-cache-hits";
+
+  String METASTORE_CACHE_MISSES = "metastore-cache-misses";
+
+  String METASTORE_CACHE_HIT_RATIO = "metastore-cache-hit-ratio";
+
+  /**
+   * Health check of the indexes supporting the finished query search.
+   */
+  String FINISHED_QUERIES_INDEXES = "finished-queries-indexes";
+
   long getTotalDatabaseResourceLoadErrors();
 
   long getQueuedQueries();
@@ -138,6 +185,12 @@ public interface MetricsService {
 
   long getFinishedQueries();
 
+  long getLaunchingQueries();
+
+  long getWaitingQueries();
+
+  long getRunnableQueries();
+
   long getTotalAcceptedQueries();
 
   long getTotalSuccessfulQueries();
@@ -100,6 +100,13 @@ public abstract class AbstractQueryContext implements Serializable {
   @Setter
   private String lensSessionIdentifier;
 
+  /**
+   * Digest of the session conf the query conf was created from. Not set when the conf does not come from a session.
+   */
+  @Getter
+  @Setter
+  private transient String sessionConfDigest;
+
   /**
    * Will be set to true when the driver queries are explicitly set
    * This will help avoiding rewrites in case of system restarts.
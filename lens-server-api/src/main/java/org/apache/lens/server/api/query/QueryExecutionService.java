@@ -19,6 +19,7 @@
 package org.apache.lens.server.api.query;
 
 import java.util.List;
+import java.util.Set;
 
 import javax.ws.rs.core.Response;
 
@@ -237,6 +238,25 @@ public interface QueryExecutionService {
   List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String user, String queryName,
     long fromDate, long toDate) throws LensException;
 
+  /**
+   * Returns a page of the queries in the specified state, for the given user and matching query name. Queries are
+   * ordered by submission time, the next page is got by passing the last handle of a page as afterHandle.
+   *
+   * @param sessionHandle the session handle
+   * @param state         return queries in this state. if null, all queries will be returned
+   * @param user          Get queries submitted by a specific user.
+   *                      If this set to "all", queries of all users are returned
+   * @param queryName     return queries containing the query name. If null, all queries will be returned
+   * @param fromDate      start date of time range interval
+   * @param toDate        end date of the time range interval
+   * @param afterHandle   handle of the last query of the previous page, null for the first page
+   * @param limit         maximum number of queries returned, all the queries if not positive
+   * @return List of query handles
+   * @throws LensException the lens exception
+   */
+  List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String user, String queryName,
+    long fromDate, long toDate, QueryHandle afterHandle, int limit) throws LensException;
+
   /**
    * Returns all the prepared queries for the specified user. If no user is passed, queries of all users will be
    * returned.
@@ -288,12 +308,26 @@ public interface QueryExecutionService {
     throws LensException;
 
   /**
-   * Get queued queries count
+   * Get queued queries count, including the queries waiting for launching constraints
    *
    * @return queued queries count
    */
   long getQueuedQueriesCount();
 
+  /**
+   * Get count of queued queries not allowed to launch by the launching constraints yet
+   *
+   * @return waiting queries count
+   */
+  long getWaitingQueriesCount();
+
+  /**
+   * Get count of queued queries which can be taken up for launch
+   *
+   * @return runnable queries count
+   */
+  long getRunnableQueriesCount();
+
   /**
    * Get running queries count
    *
@@ -301,10 +335,24 @@ public interface QueryExecutionService {
    */
   long getRunningQueriesCount();
 
+  /**
+   * Get the indexes supporting the finished query search which are missing in the server database
+   *
+   * @return names of the missing indexes, empty if all of them exist
+   */
+  Set<String> getMissingFinishedQueriesIndexes();
+
   /**
    * Get finished queries count
    *
    * @return finished queries count
    */
   long getFinishedQueriesCount();
+
+  /**
+   * Get count of queries taken off the queue and being launched
+   *
+   * @return launching queries count
+   */
+  long getLaunchingQueriesCount();
 }
@@ -0,0 +1,53 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.constraint;
+
+import org.apache.lens.server.api.query.QueryContext;
+
+/**
+ * A constraint evaluated before launching a queued query on its selected driver. A query is launched only when all the
+ * configured constraints allow it, otherwise it keeps waiting in queued state until a launched query finishes.
+ * <p></p>
+ * Constraints are called holding a single server wide lock, so implementations need not be thread safe. If the
+ * implementation is {@link org.apache.hadoop.conf.Configurable}, server configuration is set on it after creation.
+ */
+public interface QueryLaunchingConstraint {
+
+  /**
+   * Whether the query can be launched now. Driver has been selected for the query when this is called.
+   *
+   * @param candidateQuery the query waiting to be launched
+   * @return true if the query can be launched, false if it should wait
+   */
+  boolean allowsLaunchOf(QueryContext candidateQuery);
+
+  /**
+   * Called when the query has been allowed by all the constraints and is being launched.
+   *
+   * @param query the query
+   */
+  void queryLaunched(QueryContext query);
+
+  /**
+   * Called when a query for which {@link #queryLaunched(QueryContext)} was called finishes, or fails to launch.
+   *
+   * @param query the query
+   */
+  void queryFinished(QueryContext query);
+}
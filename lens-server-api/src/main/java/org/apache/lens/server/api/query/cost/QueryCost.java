@@ -26,7 +26,8 @@ import org.apache.lens.api.Addable;
 import org.apache.lens.api.query.QueryCostType;
 
 /**
- * QueryCost Interface.
+ * QueryCost Interface. Costs are immutable, <code>add</code> returns a new cost, so that a cost can be shared by
+ * queries.
  * @param <T>
  */
 public interface QueryCost<T extends QueryCost<T>> extends Comparable<T>, Addable<T> {
@@ -21,6 +21,7 @@ package org.apache.lens.server.api.driver;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,6 +37,9 @@ import org.apache.lens.server.api.query.PreparedQueryContext;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.priority.CostRangePriorityDecider;
+import org.apache.lens.server.api.query.priority.CostToPriorityRangeConf;
+import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
 import org.apache.lens.server.api.user.UserConfigLoader;
 
 import org.apache.hadoop.conf.Configuration;
@@ -62,6 +66,11 @@ public class  MockDriver implements LensDriver {
    */
   private int ioTestVal = -1;
 
+  /**
+   * The priority decider.
+   */
+  private QueryPriorityDecider priorityDecider;
+
   private final int driverId;
 
   /**
@@ -90,6 +99,8 @@ public class  MockDriver implements LensDriver {
   public void configure(Configuration conf) throws LensException {
     this.conf = conf;
     ioTestVal = conf.getInt("mock.driver.test.val", -1);
+    priorityDecider = new CostRangePriorityDecider(new CostToPriorityRangeConf(conf.get("mock.driver.priority.ranges",
+      "VERY_HIGH,7.0,HIGH,30.0,NORMAL,90,LOW")));
   }
 
   /**
@@ -124,6 +135,13 @@ public class  MockDriver implements LensDriver {
     public QueryCost getCost() {
       return new FactPartitionBasedQueryCost(0);
     }
+
+    @Override
+    public MockQueryPlan copy() {
+      MockQueryPlan plan = new MockQueryPlan(query);
+      copyTo(plan);
+      return plan;
+    }
   }
 
   /*
@@ -149,6 +167,23 @@ public class  MockDriver implements LensDriver {
     context.getDriverStatus().setState(DriverQueryState.SUCCESSFUL);
   }
 
+  @Override
+  public void updateStatus(Collection<QueryContext> contexts) throws LensException {
+    for (QueryContext context : contexts) {
+      updateStatus(context);
+    }
+  }
+
+  @Override
+  public boolean supportsCompletionPush() {
+    return false;
+  }
+
+  @Override
+  public QueryPriorityDecider getQueryPriorityDecider() {
+    return priorityDecider;
+  }
+
   /*
    * (non-Javadoc)
    *
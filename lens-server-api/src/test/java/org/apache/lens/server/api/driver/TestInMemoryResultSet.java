@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lens.api.query.InMemoryQueryResult;
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.error.LensException;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for reading windows of rows from an in memory result set.
+ */
+public class TestInMemoryResultSet {
+
+  /**
+   * Result set over integer rows, which can be rewound only if it is not forward only or no row was read yet.
+   */
+  private static class IntResultSet extends InMemoryResultSet {
+    private final int size;
+    private final boolean forwardOnly;
+    private int next;
+    private int fetchSize;
+    private boolean fetchSizeSetUnderLock;
+
+    IntResultSet(int size, boolean forwardOnly) {
+      this.size = size;
+      this.forwardOnly = forwardOnly;
+    }
+
+    @Override
+    public boolean seekToStart() throws LensException {
+      if (forwardOnly && next > 0) {
+        return false;
+      }
+      next = 0;
+      return true;
+    }
+
+    @Override
+    public boolean hasNext() throws LensException {
+      return next < size;
+    }
+
+    @Override
+    public ResultRow next() throws LensException {
+      return new ResultRow(Collections.<Object>singletonList(next++));
+    }
+
+    @Override
+    public void setFetchSize(int size) throws LensException {
+      fetchSize = size;
+      fetchSizeSetUnderLock = Thread.holdsLock(this);
+    }
+
+    @Override
+    public int size() throws LensException {
+      return size;
+    }
+
+    @Override
+    public LensResultSetMetadata getMetadata() throws LensException {
+      return null;
+    }
+  }
+
+  private static List<Object> values(InMemoryResultSet resultSet, long startIndex, int fetchSize)
+    throws LensException {
+    List<Object> values = new ArrayList<Object>();
+    for (ResultRow row : ((InMemoryQueryResult) resultSet.toQueryResult(startIndex, fetchSize)).getRows()) {
+      values.add(row.getValues().get(0));
+    }
+    return values;
+  }
+
+  @Test
+  public void testRewind() throws LensException {
+    IntResultSet resultSet = new IntResultSet(5, false);
+    assertEquals(values(resultSet, 0, 2), list(0, 1));
+    assertEquals(values(resultSet, 2, 2), list(2, 3));
+    assertTrue(resultSet.rewind());
+    assertEquals(values(resultSet, 0, 2), list(0, 1));
+    // reading an earlier window rewinds the result set
+    assertEquals(values(resultSet, 1, 0), list(1, 2, 3, 4));
+  }
+
+  @Test
+  public void testFailedRewindKeepsPosition() throws LensException {
+    IntResultSet resultSet = new IntResultSet(5, true);
+    assertTrue(resultSet.rewind());
+    assertEquals(values(resultSet, 0, 2), list(0, 1));
+    assertFalse(resultSet.rewind());
+    // the next window is still served from the right rows
+    assertEquals(values(resultSet, 2, 2), list(2, 3));
+    try {
+      resultSet.toQueryResult(0, 2);
+      fail("Rows already read from a forward only result set should not be served again");
+    } catch (LensException e) {
+      // expected
+    }
+    assertEquals(values(resultSet, 4, 2), list(4));
+  }
+
+  @Test
+  public void testFetchSizeSetPerRead() throws LensException {
+    IntResultSet resultSet = new IntResultSet(5, false);
+    assertEquals(values(resultSet, 0, 2), list(0, 1));
+    assertEquals(resultSet.fetchSize, 2);
+    assertTrue(resultSet.fetchSizeSetUnderLock);
+    // reading all the remaining rows leaves the fetch size alone
+    assertEquals(values(resultSet, 2, 0), list(2, 3, 4));
+    assertEquals(resultSet.fetchSize, 2);
+  }
+
+  private static List<Object> list(Object... values) {
+    List<Object> list = new ArrayList<Object>();
+    Collections.addAll(list, values);
+    return list;
+  }
+}
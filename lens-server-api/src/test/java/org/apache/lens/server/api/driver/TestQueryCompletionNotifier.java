@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.driver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.*;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the query completion notifier.
+ */
+public class TestQueryCompletionNotifier {
+
+  /**
+   * Listener recording notifications.
+   */
+  private static class RecordingListener implements QueryCompletionListener {
+    private final List<QueryHandle> completed = new ArrayList<QueryHandle>();
+    private final Map<QueryHandle, String> errors = new HashMap<QueryHandle, String>();
+
+    @Override
+    public synchronized void onCompletion(QueryHandle handle) {
+      completed.add(handle);
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void onError(QueryHandle handle, String error) {
+      errors.put(handle, error);
+      notifyAll();
+    }
+
+    /**
+     * Wait till the listener has received the given number of notifications, or the wait times out.
+     */
+    synchronized void awaitNotifications(int count, long timeoutMillis) throws InterruptedException {
+      long waitUntil = System.currentTimeMillis() + timeoutMillis;
+      long remaining = timeoutMillis;
+      while (completed.size() + errors.size() < count && remaining > 0) {
+        wait(remaining);
+        remaining = waitUntil - System.currentTimeMillis();
+      }
+    }
+  }
+
+  @Test
+  public void testPolledCompletion() throws Exception {
+    final Set<QueryHandle> finished = Collections.synchronizedSet(new HashSet<QueryHandle>());
+    final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+    QueryCompletionNotifier notifier = new QueryCompletionNotifier("test", 10,
+      new QueryCompletionNotifier.CompletionPoller() {
+        @Override
+        public void poll(Collection<QueryHandle> handles, QueryCompletionNotifier notifier) {
+          batchSizes.add(handles.size());
+          for (QueryHandle handle : handles) {
+            if (finished.contains(handle)) {
+              notifier.notifyCompletion(handle);
+            }
+          }
+        }
+      });
+    try {
+      RecordingListener listener = new RecordingListener();
+      QueryHandle handle1 = new QueryHandle(UUID.randomUUID());
+      QueryHandle handle2 = new QueryHandle(UUID.randomUUID());
+      synchronized (notifier) {
+        notifier.register(handle1, 0, listener);
+        notifier.register(handle2, 0, listener);
+      }
+      finished.add(handle1);
+      listener.awaitNotifications(1, 5000);
+      synchronized (listener) {
+        assertEquals(listener.completed, Collections.singletonList(handle1));
+      }
+      // both the registered queries are polled in one batch
+      assertEquals(batchSizes.get(0), Integer.valueOf(2));
+
+      notifier.notifyCompletion(handle2);
+      assertEquals(notifier.size(), 0);
+      synchronized (listener) {
+        assertEquals(listener.completed, Arrays.asList(handle1, handle2));
+        assertTrue(listener.errors.isEmpty());
+      }
+    } finally {
+      notifier.close();
+    }
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    QueryCompletionNotifier notifier = new QueryCompletionNotifier("test", 10, null);
+    try {
+      RecordingListener listener = new RecordingListener();
+      QueryHandle handle1 = new QueryHandle(UUID.randomUUID());
+      QueryHandle handle2 = new QueryHandle(UUID.randomUUID());
+      notifier.register(handle1, 50, listener);
+      notifier.register(handle2, 0, listener);
+      listener.awaitNotifications(1, 5000);
+      synchronized (listener) {
+        assertEquals(listener.errors, Collections.singletonMap(handle1, "timedout"));
+        assertTrue(listener.completed.isEmpty());
+      }
+
+      // notifications after a time out reach only the remaining listeners
+      notifier.notifyCompletion(handle1);
+      notifier.notifyError(handle2, "failed");
+      synchronized (listener) {
+        assertTrue(listener.completed.isEmpty());
+        assertEquals(listener.errors.get(handle2), "failed");
+      }
+    } finally {
+      notifier.close();
+    }
+  }
+}
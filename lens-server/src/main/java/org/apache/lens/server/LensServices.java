@@ -36,6 +36,8 @@ import org.apache.lens.server.metrics.MetricsServiceImpl;
 import org.apache.lens.server.model.LogSegregationContext;
 import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
 import org.apache.lens.server.session.LensSessionImpl;
+import org.apache.lens.server.state.IncrementalStatePersistable;
+import org.apache.lens.server.state.ServiceStateLog;
 import org.apache.lens.server.stats.StatisticsService;
 import org.apache.lens.server.user.UserConfigLoaderFactory;
 
@@ -92,6 +94,9 @@ public class LensServices extends CompositeService implements ServiceProvider {
   /** The persistence file system. */
   private FileSystem persistenceFS;
 
+  /** The state logs of services persisting their state incrementally, by service name. */
+  private final Map<String, ServiceStateLog> stateLogs = new LinkedHashMap<String, ServiceStateLog>();
+
   /** The stopping. */
   private boolean stopping = false;
 
@@ -255,6 +260,7 @@ public class LensServices extends CompositeService implements ServiceProvider {
         LOG.info("STATE_PERSIST_OUT_STREAM_BUFF_SIZE IN BYTES:" + outStreamBufferSize);
         persistenceFS = FileSystem.newInstance(persistDir.toUri(), configuration);
         setupPersistedState();
+        setupStateLogs();
       } catch (Exception e) {
         LOG.error("Could not recover from persisted state", e);
         throw new RuntimeException("Could not recover from persisted state", e);
@@ -289,6 +295,16 @@ public class LensServices extends CompositeService implements ServiceProvider {
         }
       }
     }, snapShotInterval, snapShotInterval);
+    if (!stateLogs.isEmpty()) {
+      long flushInterval = conf.getLong(STATE_PERSIST_LOG_FLUSH_INTERVAL_MILLIS,
+        DEFAULT_STATE_PERSIST_LOG_FLUSH_INTERVAL_MILLIS);
+      timer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          flushStateLogs();
+        }
+      }, flushInterval, flushInterval);
+    }
   }
 
   /**
@@ -302,6 +318,15 @@ public class LensServices extends CompositeService implements ServiceProvider {
       DEFAULT_SERVER_RECOVER_ON_RESTART)) {
 
       for (LensService service : lensServices) {
+        if (service instanceof IncrementalStatePersistable) {
+          // state log is more recent than the snapshot, if both exist
+          ServiceStateLog stateLog = createStateLog((IncrementalStatePersistable) service);
+          if (stateLog.exists()) {
+            int numEntries = stateLog.restore();
+            LOG.info("Recovered service " + service.getName() + " from " + numEntries + " entries of state log");
+            continue;
+          }
+        }
         ObjectInputStream in = null;
         try {
           try {
@@ -321,6 +346,53 @@ public class LensServices extends CompositeService implements ServiceProvider {
     }
   }
 
+  /**
+   * Setup state logs of the services persisting their state incrementally, if enabled.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void setupStateLogs() throws IOException {
+    if (!conf.getBoolean(SERVER_RESTART_ENABLED, DEFAULT_SERVER_RESTART_ENABLED)
+      || !conf.getBoolean(STATE_PERSIST_LOG_ENABLED, DEFAULT_STATE_PERSIST_LOG_ENABLED)) {
+      return;
+    }
+    boolean recovered = conf.getBoolean(SERVER_RECOVER_ON_RESTART, DEFAULT_SERVER_RECOVER_ON_RESTART);
+    for (LensService service : lensServices) {
+      if (service instanceof IncrementalStatePersistable) {
+        IncrementalStatePersistable persistable = (IncrementalStatePersistable) service;
+        ServiceStateLog stateLog = createStateLog(persistable);
+        if (!recovered) {
+          stateLog.delete();
+        }
+        if (!stateLog.exists()) {
+          // state was not recovered from the log, write all of it
+          stateLog.markChanged(persistable.getStateEntryKeys());
+        }
+        persistable.setStateLog(stateLog);
+        stateLogs.put(service.getName(), stateLog);
+        LOG.info("State of service " + service.getName() + " is persisted in state log");
+      }
+    }
+  }
+
+  /**
+   * Append changes to state logs.
+   */
+  private void flushStateLogs() {
+    for (Map.Entry<String, ServiceStateLog> entry : stateLogs.entrySet()) {
+      try {
+        entry.getValue().flush();
+      } catch (IOException e) {
+        incrCounter(SERVER_STATE_PERSISTENCE_ERRORS);
+        LOG.warn("Unable to write state log of service " + entry.getKey(), e);
+      }
+    }
+  }
+
+  private ServiceStateLog createStateLog(IncrementalStatePersistable service) {
+    return new ServiceStateLog(service, persistenceFS, new Path(persistDir, service.getName() + ".log"));
+  }
+
   /**
    * Persist lens service state.
    *
@@ -335,6 +407,16 @@ public class LensServices extends CompositeService implements ServiceProvider {
 
           long now = System.currentTimeMillis();
           for (LensService service : lensServices) {
+            ServiceStateLog stateLog = stateLogs.get(service.getName());
+            if (stateLog != null) {
+              LOG.info("Compacting state log of service:" + service.getName());
+              stateLog.compact();
+              // snapshot is stale, the state log is recovered from
+              if (persistenceFS.exists(getServicePersistPath(service))) {
+                persistenceFS.delete(getServicePersistPath(service), true);
+              }
+              continue;
+            }
             LOG.info("Persisting state of service:" + service.getName());
             Path serviceWritePath = new Path(persistDir, service.getName() + ".out" + "." + now);
             ObjectOutputStream out = null;
@@ -358,6 +440,10 @@ public class LensServices extends CompositeService implements ServiceProvider {
               LOG.error("Failed to persist " + service.getName() + " to [" + servicePath + "]");
             } else {
               LOG.info("Persisted service " + service.getName() + " to [" + servicePath + "]");
+              if (service instanceof IncrementalStatePersistable) {
+                // state log of an earlier run is stale, the snapshot is recovered from
+                createStateLog((IncrementalStatePersistable) service).delete();
+              }
             }
           }
         } else {
@@ -395,8 +481,18 @@ public class LensServices extends CompositeService implements ServiceProvider {
       }
 
       try {
+        // entries may have changed without being marked, like progress of running queries
+        for (LensService service : lensServices) {
+          ServiceStateLog stateLog = stateLogs.get(service.getName());
+          if (stateLog != null) {
+            stateLog.markChanged(((IncrementalStatePersistable) service).getStateEntryKeys());
+          }
+        }
         // persist all the services
         persistLensServiceState();
+        for (ServiceStateLog stateLog : stateLogs.values()) {
+          stateLog.close();
+        }
 
         persistenceFS.close();
         LOG.info("Persistence File system object close complete");
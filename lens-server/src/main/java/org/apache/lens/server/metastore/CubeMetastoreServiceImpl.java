@@ -29,16 +29,19 @@ import org.apache.lens.cube.metadata.*;
 import org.apache.lens.cube.metadata.Dimension;
 import org.apache.lens.cube.metadata.timeline.PartitionTimeline;
 import org.apache.lens.server.LensService;
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.metastore.CubeMetastoreService;
 import org.apache.lens.server.session.LensSessionImpl;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.api.*;
 import org.apache.hadoop.hive.ql.metadata.*;
 import org.apache.hadoop.hive.ql.metadata.Partition;
 import org.apache.hadoop.hive.ql.metadata.Table;
 import org.apache.hadoop.hive.ql.parse.ParseException;
+import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.hive.service.cli.CLIService;
 import org.apache.hive.service.cli.HiveSQLException;
 import org.apache.thrift.TException;
@@ -57,6 +60,70 @@ public class CubeMetastoreServiceImpl extends LensService implements CubeMetasto
     return ((LensSessionImpl) getSession(sessionid)).getCubeMetastoreClient();
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.hive.service.CompositeService#start()
+   */
+  @Override
+  public synchronized void start() {
+    super.start();
+    final String[] prewarmFacts = getHiveConf().getTrimmedStrings(LensConfConstants.METASTORE_TIMELINE_PREWARM_FACTS);
+    if (prewarmFacts.length > 0) {
+      Thread prewarmThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          prewarmTimelines(prewarmFacts);
+        }
+      }, "Lens-timeline-prewarm");
+      prewarmThread.setDaemon(true);
+      prewarmThread.start();
+    }
+  }
+
+  /**
+   * Load partition timelines of the given facts, so that first queries on them do not wait for the load.
+   *
+   * @param prewarmFacts database.fact names, database.* for all facts of the database
+   */
+  private void prewarmTimelines(String[] prewarmFacts) {
+    HiveConf conf = new HiveConf(getHiveConf());
+    SessionState.start(conf);
+    try {
+      for (String prewarmFact : prewarmFacts) {
+        int dot = prewarmFact.indexOf('.');
+        if (dot <= 0 || dot == prewarmFact.length() - 1) {
+          log.warn("Skipping timeline prewarm of " + prewarmFact + ", expected database.fact");
+          continue;
+        }
+        String database = prewarmFact.substring(0, dot);
+        String factName = prewarmFact.substring(dot + 1);
+        try {
+          SessionState.get().setCurrentDatabase(database);
+          CubeMetastoreClient client = CubeMetastoreClient.getInstance(conf);
+          List<String> factNames = new ArrayList<String>();
+          if ("*".equals(factName)) {
+            for (CubeFactTable fact : client.getAllFacts(null)) {
+              factNames.add(fact.getName());
+            }
+          } else {
+            factNames.add(factName);
+          }
+          for (String name : factNames) {
+            long start = System.currentTimeMillis();
+            client.loadPartitionTimelines(name);
+            log.info("Loaded partition timelines of " + database + "." + name + " in "
+              + (System.currentTimeMillis() - start) + " millis");
+          }
+        } catch (Exception e) {
+          log.error("Could not prewarm partition timelines of " + prewarmFact, e);
+        }
+      }
+    } finally {
+      SessionState.detachSession();
+    }
+  }
+
 
   /**
    * Get current database used by the CubeMetastoreClient
@@ -73,6 +140,22 @@ public class CubeMetastoreServiceImpl extends LensService implements CubeMetasto
     }
   }
 
+  /**
+   * Drop the cached metadata of the current database
+   *
+   * @param sessionid session id
+   */
+  @Override
+  public void invalidateCache(LensSessionHandle sessionid) throws LensException {
+    try {
+      acquire(sessionid);
+      getClient(sessionid).invalidateCache();
+      log.info("Invalidated metastore cache of database " + getSession(sessionid).getCurrentDatabase());
+    } finally {
+      release(sessionid);
+    }
+  }
+
   /**
    * Change the current database used by the CubeMetastoreClient
    *
@@ -747,6 +830,64 @@ public class CubeMetastoreServiceImpl extends LensService implements CubeMetasto
     }
   }
 
+  @Override
+  public XPartitionAddResults addPartitionsToFactStorages(LensSessionHandle sessionid, XBulkPartitions partitions)
+    throws LensException {
+    try {
+      acquire(sessionid);
+      Map<String, List<StoragePartitionDesc>> storagePartitionDescs =
+        new LinkedHashMap<String, List<StoragePartitionDesc>>();
+      // partitions are converted one at a time, so that a bad partition is reported instead of failing the request
+      Map<XPartition, StoragePartitionDesc> converted = new IdentityHashMap<XPartition, StoragePartitionDesc>();
+      Map<XPartition, Exception> conversionFailures = new IdentityHashMap<XPartition, Exception>();
+      for (XStoragePartitions storagePartitions : partitions.getStoragePartitions()) {
+        List<StoragePartitionDesc> partitionDescs = storagePartitionDescs.get(storagePartitions.getStorageName());
+        if (partitionDescs == null) {
+          partitionDescs = new ArrayList<StoragePartitionDesc>();
+          storagePartitionDescs.put(storagePartitions.getStorageName(), partitionDescs);
+        }
+        for (XPartition partition : storagePartitions.getPartition()) {
+          try {
+            StoragePartitionDesc partitionDesc = JAXBUtils.storagePartSpecFromXPartition(partition);
+            converted.put(partition, partitionDesc);
+            partitionDescs.add(partitionDesc);
+          } catch (Exception e) {
+            log.error("Could not convert partition of " + partition.getFactOrDimensionTableName() + " for storage "
+              + storagePartitions.getStorageName(), e);
+            conversionFailures.put(partition, e);
+          }
+        }
+      }
+      Map<StoragePartitionDesc, Exception> failures = getClient(sessionid).addFactPartitions(storagePartitionDescs);
+      XPartitionAddResults results = new XPartitionAddResults();
+      int added = 0;
+      for (XStoragePartitions storagePartitions : partitions.getStoragePartitions()) {
+        for (XPartition partition : storagePartitions.getPartition()) {
+          StoragePartitionDesc partitionDesc = converted.get(partition);
+          XPartitionAddResult result;
+          if (partitionDesc == null) {
+            result = JAXBUtils.xpartitionAddResult(storagePartitions.getStorageName(), partition,
+              conversionFailures.get(partition));
+          } else {
+            result = JAXBUtils.xpartitionAddResult(storagePartitions.getStorageName(), partitionDesc,
+              failures.get(partitionDesc));
+          }
+          if (result.isAdded()) {
+            added++;
+          }
+          results.getResult().add(result);
+        }
+      }
+      log.info("Added " + added + " of " + results.getResult().size()
+        + " partitions");
+      return results;
+    } catch (HiveException exc) {
+      throw new LensException(exc);
+    } finally {
+      release(sessionid);
+    }
+  }
+
   private CubeDimensionTable checkDimensionStorage(LensSessionHandle sessionid, String dimension, String storage)
     throws HiveException, LensException {
     CubeMetastoreClient client = getClient(sessionid);
@@ -832,6 +832,50 @@ public final class JAXBUtils {
     return ret;
   }
 
+  public static XPartitionAddResult xpartitionAddResult(String storageName, StoragePartitionDesc partDesc,
+    Exception failure) {
+    XPartitionAddResult result = XCF.createXPartitionAddResult();
+    result.setFactName(partDesc.getCubeTableName());
+    result.setStorageName(storageName);
+    result.setPartitionSpec(new XPartSpec());
+    for (Map.Entry<String, String> entry : partDesc.getStoragePartSpec().entrySet()) {
+      XPartSpecElement e = new XPartSpecElement();
+      e.setKey(entry.getKey());
+      e.setValue(entry.getValue());
+      result.getPartitionSpec().getPartSpecElement().add(e);
+    }
+    result.setAdded(failure == null);
+    if (failure != null) {
+      result.setMessage(failure.getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * Result for a partition that could not be converted to a {@link StoragePartitionDesc}, with the partition spec as
+   * given in the request.
+   */
+  public static XPartitionAddResult xpartitionAddResult(String storageName, XPartition xpart, Exception failure) {
+    XPartitionAddResult result = XCF.createXPartitionAddResult();
+    result.setFactName(xpart.getFactOrDimensionTableName());
+    result.setStorageName(storageName);
+    result.setPartitionSpec(new XPartSpec());
+    if (xpart.getTimePartitionSpec() != null) {
+      for (XTimePartSpecElement xtimePart : xpart.getTimePartitionSpec().getPartSpecElement()) {
+        XPartSpecElement e = new XPartSpecElement();
+        e.setKey(xtimePart.getKey());
+        e.setValue(xtimePart.getValue() == null ? null : xtimePart.getValue().toXMLFormat());
+        result.getPartitionSpec().getPartSpecElement().add(e);
+      }
+    }
+    if (xpart.getNonTimePartitionSpec() != null) {
+      result.getPartitionSpec().getPartSpecElement().addAll(xpart.getNonTimePartitionSpec().getPartSpecElement());
+    }
+    result.setAdded(false);
+    result.setMessage(failure.getMessage() == null ? failure.toString() : failure.getMessage());
+    return result;
+  }
+
   public static Dimension dimensionFromXDimension(XDimension dimension) throws ParseException {
     Set<CubeDimAttribute> dims = new LinkedHashSet<CubeDimAttribute>();
     for (XDimAttribute xd : dimension.getAttributes().getDimAttribute()) {
@@ -142,6 +142,29 @@ public class MetastoreResource {
     return SUCCESS;
   }
 
+  /**
+   * Drop the cached metadata of the current db, so that changes made to the metastore outside of lens are seen. Other
+   * lens servers sharing the metastore drop their cached metadata of the db too, if cube.metastore.cache.versioned is
+   * enabled.
+   *
+   * @param sessionid The sessionid in which user is working
+   * @return {@link APIResult} with state {@link Status#SUCCEEDED}, if invalidation was successful. {@link APIResult}
+   * with state {@link Status#FAILED}, if invalidation has failed
+   */
+  @POST
+  @Path("databases/current/cache/invalidate")
+  public APIResult invalidateCache(@QueryParam("sessionid") LensSessionHandle sessionid) {
+    checkSessionId(sessionid);
+    LOG.info("Invalidate metastore cache");
+    try {
+      getSvc().invalidateCache(sessionid);
+    } catch (LensException e) {
+      LOG.error("Error invalidating metastore cache", e);
+      return new APIResult(Status.FAILED, e.getMessage());
+    }
+    return SUCCESS;
+  }
+
   /**
    * Delete the db specified by name. Deleting underlying tables is optional. If db does not exist, delete is ignored.
    *
@@ -1137,6 +1160,24 @@ public class MetastoreResource {
     return SUCCESS;
   }
 
+  /**
+   * Batch Add partitions of any number of facts and storages. Partitions are added to the metastore in batches and
+   * partition timelines of each fact storage table are saved once, which suits adding many partitions together.
+   *
+   * @param sessionid  The sessionid in which user is working
+   * @param partitions {@link XBulkPartitions} representation of partitions, grouped by storage
+   * @return JAXB representation of {@link XPartitionAddResults} with the result of each partition
+   */
+  @POST
+  @Path("/partitions")
+  public JAXBElement<XPartitionAddResults> addPartitionsToFactStorages(
+    @QueryParam("sessionid") LensSessionHandle sessionid, XBulkPartitions partitions) throws LensException {
+    checkSessionId(sessionid);
+    checkNonNullArgs("Partitions are null", partitions);
+    return X_CUBE_OBJECT_FACTORY.createXPartitionAddResults(getSvc().addPartitionsToFactStorages(sessionid,
+      partitions));
+  }
+
   /**
    * Drop the partitions in the storage of a fact table, specified by exact values
    *
@@ -26,14 +26,17 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.server.LensService;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.events.AsyncEventListener;
 import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.metastore.CubeMetastoreService;
 import org.apache.lens.server.api.metrics.*;
 import org.apache.lens.server.api.query.QueryExecutionService;
 import org.apache.lens.server.api.query.StatusChange;
@@ -54,6 +57,7 @@ import com.codahale.metrics.*;
 import com.codahale.metrics.ganglia.GangliaReporter;
 import com.codahale.metrics.graphite.Graphite;
 import com.codahale.metrics.graphite.GraphiteReporter;
+import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.codahale.metrics.jvm.GarbageCollectorMetricSet;
 import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
@@ -130,6 +134,15 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
   /** The finished queries. */
   private Gauge<Long> finishedQueries;
 
+  /** The queries taken off the queue and being launched. */
+  private Gauge<Long> launchingQueries;
+
+  /** The queued queries waiting for launching constraints. */
+  private Gauge<Long> waitingQueries;
+
+  /** The queued queries which can be taken up for launch. */
+  private Gauge<Long> runnableQueries;
+
   /** All method meters. Factory for creation + caching */
   @Getter
   private MethodMetricsFactory methodMetricsFactory;
@@ -249,6 +262,17 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     methodMetricsFactory = new MethodMetricsFactory(metricRegistry);
     setEnableResourceMethodMetering(hiveConf.getBoolean(LensConfConstants.ENABLE_RESOURCE_METHOD_METERING, false));
     healthCheck = new HealthCheckRegistry();
+    healthCheck.register(FINISHED_QUERIES_INDEXES, new HealthCheck() {
+      @Override
+      protected Result check() throws Exception {
+        QueryExecutionService querySvc = getQuerySvc();
+        Set<String> missing = querySvc == null ? null : querySvc.getMissingFinishedQueriesIndexes();
+        if (missing == null || missing.isEmpty()) {
+          return Result.healthy();
+        }
+        return Result.unhealthy("Indexes missing on finished queries table: " + missing);
+      }
+    });
     initCounters();
     timeBetweenPolls = hiveConf.getInt(LensConfConstants.REPORTING_PERIOD, 10);
 
@@ -338,6 +362,55 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
         }
       });
 
+    launchingQueries = metricRegistry.register(MetricRegistry.name(QueryExecutionService.class, LAUNCHING_QUERIES),
+      new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return getQuerySvc().getLaunchingQueriesCount();
+        }
+      });
+
+    waitingQueries = metricRegistry.register(MetricRegistry.name(QueryExecutionService.class, WAITING_QUERIES),
+      new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return getQuerySvc().getWaitingQueriesCount();
+        }
+      });
+
+    runnableQueries = metricRegistry.register(MetricRegistry.name(QueryExecutionService.class, RUNNABLE_QUERIES),
+      new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return getQuerySvc().getRunnableQueriesCount();
+        }
+      });
+
+    metricRegistry.register(MetricRegistry.name(CubeMetastoreService.class, METASTORE_CACHE_HITS),
+      new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return CubeMetastoreClient.getCacheHitCount();
+        }
+      });
+
+    metricRegistry.register(MetricRegistry.name(CubeMetastoreService.class, METASTORE_CACHE_MISSES),
+      new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return CubeMetastoreClient.getCacheMissCount();
+        }
+      });
+
+    metricRegistry.register(MetricRegistry.name(CubeMetastoreService.class, METASTORE_CACHE_HIT_RATIO),
+      new RatioGauge() {
+        @Override
+        protected Ratio getRatio() {
+          long hits = CubeMetastoreClient.getCacheHitCount();
+          return Ratio.of(hits, hits + CubeMetastoreClient.getCacheMissCount());
+        }
+      });
+
     totalDatabaseResourceLoadErrors = metricRegistry.counter(MetricRegistry.name(DatabaseResourceService.class,
         DatabaseResourceService.LOAD_RESOURCES_ERRORS));
 
@@ -492,6 +565,16 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     return metricRegistry.counter(MetricRegistry.name(cls, counter)).getCount();
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.metrics.MetricsService#updateHistogram(java.lang.Class, java.lang.String, long)
+   */
+  @Override
+  public void updateHistogram(Class<?> cls, String histogram, long value) {
+    metricRegistry.histogram(MetricRegistry.name(cls, histogram)).update(value);
+  }
+
   @Override
   public long getTotalDatabaseResourceLoadErrors() {
     return totalDatabaseResourceLoadErrors.getCount();
@@ -512,6 +595,21 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     return finishedQueries.getValue();
   }
 
+  @Override
+  public long getLaunchingQueries() {
+    return launchingQueries.getValue();
+  }
+
+  @Override
+  public long getWaitingQueries() {
+    return waitingQueries.getValue();
+  }
+
+  @Override
+  public long getRunnableQueries() {
+    return runnableQueries.getValue();
+  }
+
   @Override
   public long getTotalAcceptedQueries() {
     return totalAcceptedQueries.getCount();
@@ -19,10 +19,16 @@
 package org.apache.lens.server.query;
 
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.sql.DataSource;
 
@@ -31,9 +37,12 @@ import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.FinishedLensQuery;
 import org.apache.lens.server.util.UtilityMethods;
 
+import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.dbutils.handlers.BeanHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 
@@ -48,6 +57,9 @@ public class LensServerDAO {
   /** The ds. */
   private DataSource ds;
 
+  /** Indexes on finished queries table which could not be created. */
+  private final Set<String> missingIndexes = Collections.synchronizedSet(new TreeSet<String>());
+
   /**
    * Inits the.
    *
@@ -103,6 +115,67 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.warn("Unable to create finished queries table", e);
     }
+    // indexes supporting the finished query search, ordered by submission time
+    createIndex("finished_queries_submitter_idx", "submitter, status, submissiontime");
+    createIndex("finished_queries_status_idx", "status, submissiontime");
+    createIndex("finished_queries_submissiontime_idx", "submissiontime");
+  }
+
+  /**
+   * Create an index on finished queries table, unless it exists already. An index which can't be created is reported
+   * by {@link #getMissingIndexes()}.
+   *
+   * @param name    the index name
+   * @param columns the indexed columns
+   */
+  private void createIndex(String name, String columns) {
+    try {
+      if (!indexExists(name)) {
+        QueryRunner runner = new QueryRunner(ds);
+        runner.update("CREATE INDEX " + name + " ON finished_queries (" + columns + ")");
+        log.info("Created index " + name + " on finished queries table");
+      }
+      missingIndexes.remove(name);
+    } catch (SQLException e) {
+      log.error("Unable to create index " + name + " on finished queries table, finished query search will be slow",
+        e);
+      missingIndexes.add(name);
+    }
+  }
+
+  private boolean indexExists(String name) throws SQLException {
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      DatabaseMetaData metaData = conn.getMetaData();
+      // unquoted table names are stored in upper case by some databases and in lower case by others
+      for (String table : new String[]{"finished_queries", "FINISHED_QUERIES"}) {
+        ResultSet rs = metaData.getIndexInfo(null, null, table, false, true);
+        try {
+          while (rs.next()) {
+            if (name.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+              return true;
+            }
+          }
+        } finally {
+          DbUtils.closeQuietly(rs);
+        }
+      }
+      return false;
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
+  }
+
+  /**
+   * Indexes supporting the finished query search which could not be created in the server database.
+   *
+   * @return names of the missing indexes, empty if all of them exist
+   */
+  public Set<String> getMissingIndexes() {
+    synchronized (missingIndexes) {
+      return new TreeSet<String>(missingIndexes);
+    }
   }
 
   /**
@@ -139,6 +212,73 @@ public class LensServerDAO {
 
   }
 
+  /**
+   * DAO method to insert a batch of finished queries into table. New queries are inserted with a single batch statement
+   * in one transaction, queries already present in the table are handled as in
+   * {@link #insertFinishedQuery(FinishedLensQuery)}.
+   *
+   * @param queries to be inserted
+   * @throws SQLException the exception
+   */
+  public void insertFinishedQueries(List<FinishedLensQuery> queries) throws SQLException {
+    if (queries.isEmpty()) {
+      return;
+    }
+    Set<String> existing = getExistingHandles(queries);
+    List<Object[]> params = new ArrayList<Object[]>(queries.size());
+    for (FinishedLensQuery query : queries) {
+      if (existing.contains(query.getHandle())) {
+        insertFinishedQuery(query);
+      } else {
+        params.add(new Object[]{query.getHandle(), query.getUserQuery(), query.getSubmitter(), query.getStartTime(),
+          query.getEndTime(), query.getResult(), query.getStatus(), query.getMetadata(), query.getRows(),
+          query.getErrorMessage(), query.getDriverStartTime(), query.getDriverEndTime(), query.getMetadataClass(),
+          query.getQueryName(), query.getSubmissionTime(), });
+      }
+    }
+    if (params.isEmpty()) {
+      return;
+    }
+    String sql = "insert into finished_queries (handle, userquery,submitter,"
+      + "starttime,endtime,result,status,metadata,rows,"
+      + "errormessage,driverstarttime,driverendtime, metadataclass, queryname, submissiontime)"
+      + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    Connection conn = ds.getConnection();
+    try {
+      boolean autoCommit = conn.getAutoCommit();
+      conn.setAutoCommit(false);
+      try {
+        new QueryRunner().batch(conn, sql, params.toArray(new Object[params.size()][]));
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.setAutoCommit(autoCommit);
+      }
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
+  }
+
+  /**
+   * Get the handles of given queries which are already present in finished queries table.
+   *
+   * @param queries the queries
+   * @return the handles found in table
+   * @throws SQLException the exception
+   */
+  private Set<String> getExistingHandles(List<FinishedLensQuery> queries) throws SQLException {
+    List<String> handles = new ArrayList<String>(queries.size());
+    for (FinishedLensQuery query : queries) {
+      handles.add(query.getHandle());
+    }
+    String sql = "select handle from finished_queries where handle in ("
+      + StringUtils.repeat("?", ",", handles.size()) + ")";
+    QueryRunner runner = new QueryRunner(ds);
+    return new HashSet<String>(runner.query(sql, new ColumnListHandler<String>(), handles.toArray()));
+  }
+
   /**
    * Fetch Finished query from Database.
    *
@@ -170,63 +310,85 @@ public class LensServerDAO {
    */
   public List<QueryHandle> findFinishedQueries(String state, String user, String queryName, long fromDate, long toDate)
     throws LensException {
-    boolean addFilter = StringUtils.isNotBlank(state) || StringUtils.isNotBlank(user)
-      || StringUtils.isNotBlank(queryName);
-    StringBuilder builder = new StringBuilder("SELECT handle FROM finished_queries");
-    List<Object> params = null;
-    if (addFilter) {
-      builder.append(" WHERE ");
-      List<String> filters = new ArrayList<String>(3);
-      params = new ArrayList<Object>(3);
-
-      if (StringUtils.isNotBlank(state)) {
-        filters.add("status=?");
-        params.add(state);
+    List<QueryHandle> queryHandleList = new ArrayList<QueryHandle>();
+    for (FinishedLensQuery query : findFinishedQueries(state, user, queryName, fromDate, toDate, 0, null, 0)) {
+      try {
+        queryHandleList.add(QueryHandle.fromString(query.getHandle()));
+      } catch (IllegalArgumentException exc) {
+        log.warn("Warning invalid query handle found in DB " + query.getHandle());
       }
+    }
+    return queryHandleList;
+  }
 
-      if (StringUtils.isNotBlank(user)) {
-        filters.add("submitter=?");
-        params.add(user);
-      }
+  /**
+   * Find a page of finished queries, ordered by submission time and handle. The page starts after the position given by
+   * afterSubmissionTime and afterHandle, which is the position of the last query of the previous page. Only handle and
+   * submission time of the returned queries are populated.
+   *
+   * @param state               the state
+   * @param user                the user
+   * @param queryName           the query name
+   * @param fromDate            the from date
+   * @param toDate              the to date
+   * @param afterSubmissionTime submission time of the last query of previous page
+   * @param afterHandle         handle of the last query of previous page, null for the first page
+   * @param limit               maximum number of queries returned, all the matching queries if not positive
+   * @return the list
+   * @throws LensException the lens exception
+   */
+  public List<FinishedLensQuery> findFinishedQueries(String state, String user, String queryName, long fromDate,
+    long toDate, long afterSubmissionTime, String afterHandle, final int limit) throws LensException {
+    StringBuilder builder = new StringBuilder("SELECT handle, submissiontime FROM finished_queries WHERE ");
+    List<String> filters = new ArrayList<String>(5);
+    List<Object> params = new ArrayList<Object>(7);
 
-      if (StringUtils.isNotBlank(queryName)) {
-        filters.add("queryname like ?");
-        params.add("%" + queryName + "%");
-      }
+    if (StringUtils.isNotBlank(state)) {
+      filters.add("status=?");
+      params.add(state);
+    }
+
+    if (StringUtils.isNotBlank(user)) {
+      filters.add("submitter=?");
+      params.add(user);
+    }
+
+    if (StringUtils.isNotBlank(queryName)) {
+      filters.add("queryname like ?");
+      params.add("%" + queryName + "%");
+    }
+
+    filters.add("submissiontime BETWEEN ? AND ?");
+    params.add(fromDate);
+    params.add(toDate);
 
-      filters.add("submissiontime BETWEEN ? AND ?");
-      params.add(fromDate);
-      params.add(toDate);
-      builder.append(StringUtils.join(filters, " AND "));
+    if (afterHandle != null) {
+      filters.add("(submissiontime > ? OR (submissiontime = ? AND handle > ?))");
+      params.add(afterSubmissionTime);
+      params.add(afterSubmissionTime);
+      params.add(afterHandle);
     }
+    builder.append(StringUtils.join(filters, " AND "));
+    builder.append(" ORDER BY submissiontime, handle");
 
-    ResultSetHandler<List<QueryHandle>> resultSetHandler = new ResultSetHandler<List<QueryHandle>>() {
+    // limit the rows through the statement, as the syntax for it in sql differs across databases
+    QueryRunner runner = new QueryRunner(ds) {
       @Override
-      public List<QueryHandle> handle(ResultSet resultSet) throws SQLException {
-        List<QueryHandle> queryHandleList = new ArrayList<QueryHandle>();
-        while (resultSet.next()) {
-          String handle = resultSet.getString(1);
-          try {
-            queryHandleList.add(QueryHandle.fromString(handle));
-          } catch (IllegalArgumentException exc) {
-            log.warn("Warning invalid query handle found in DB " + handle);
-          }
+      protected PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        PreparedStatement statement = super.prepareStatement(conn, sql);
+        if (limit > 0) {
+          statement.setMaxRows(limit);
         }
-        return queryHandleList;
+        return statement;
       }
     };
-
-    QueryRunner runner = new QueryRunner(ds);
-    String query = builder.toString();
     try {
-      if (addFilter) {
-        return runner.query(query, resultSetHandler, params.toArray());
-      } else {
-        return runner.query(query, resultSetHandler);
-      }
+      return runner.query(builder.toString(), new BeanListHandler<FinishedLensQuery>(FinishedLensQuery.class),
+        params.toArray());
     } catch (SQLException e) {
       throw new LensException(e);
     }
   }
 
+
 }
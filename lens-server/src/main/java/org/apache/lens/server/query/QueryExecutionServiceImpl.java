@@ -40,6 +40,8 @@ import org.apache.lens.api.error.ErrorCollection;
 import org.apache.lens.api.query.*;
 import org.apache.lens.api.query.QueryStatus.Status;
 import org.apache.lens.api.result.LensErrorTO;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.parse.HQLParser;
 import org.apache.lens.driver.cube.RewriteUtil;
 import org.apache.lens.driver.hive.HiveDriver;
 import org.apache.lens.server.LensServerConf;
@@ -54,10 +56,13 @@ import org.apache.lens.server.api.metrics.MethodMetricsContext;
 import org.apache.lens.server.api.metrics.MethodMetricsFactory;
 import org.apache.lens.server.api.metrics.MetricsService;
 import org.apache.lens.server.api.query.*;
+import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
 import org.apache.lens.server.api.query.cost.QueryCost;
 import org.apache.lens.server.model.LogSegregationContext;
 import org.apache.lens.server.model.MappedDiagnosticLogSegregationContext;
 import org.apache.lens.server.session.LensSessionImpl;
+import org.apache.lens.server.state.IncrementalStatePersistable;
+import org.apache.lens.server.state.ServiceStateLog;
 import org.apache.lens.server.stats.StatisticsService;
 import org.apache.lens.server.user.UserConfigLoaderFactory;
 import org.apache.lens.server.util.UtilityMethods;
@@ -71,6 +76,7 @@ import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hive.service.cli.CLIService;
 import org.apache.hive.service.cli.ColumnDescriptor;
 import org.apache.hive.service.cli.TypeDescriptor;
@@ -88,7 +94,8 @@ import lombok.extern.slf4j.Slf4j;
  * The Class QueryExecutionServiceImpl.
  */
 @Slf4j
-public class QueryExecutionServiceImpl extends LensService implements QueryExecutionService {
+public class QueryExecutionServiceImpl extends LensService implements QueryExecutionService,
+  IncrementalStatePersistable {
 
   /**
    * The Constant PREPARED_QUERIES_COUNTER.
@@ -115,6 +122,16 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    */
   public static final String PREPARED_QUERY_PURGER_COUNTER = "prepared-query-purger-errors";
 
+  /**
+   * The Constant REWRITE_CACHE_HITS_COUNTER.
+   */
+  public static final String REWRITE_CACHE_HITS_COUNTER = "rewrite-cache-hits";
+
+  /**
+   * The Constant REWRITE_CACHE_MISSES_COUNTER.
+   */
+  public static final String REWRITE_CACHE_MISSES_COUNTER = "rewrite-cache-misses";
+
   /**
    * The millis in week.
    */
@@ -138,7 +155,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
   /**
    * The launched queries.
    */
-  private List<QueryContext> launchedQueries = new ArrayList<QueryContext>();
+  private List<QueryContext> launchedQueries = Collections.synchronizedList(new ArrayList<QueryContext>());
 
   /**
    * The finished queries.
@@ -161,6 +178,26 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    */
   protected ConcurrentMap<QueryHandle, QueryContext> allQueries = new ConcurrentHashMap<QueryHandle, QueryContext>();
 
+  /**
+   * Prefix of state log keys of queries.
+   */
+  private static final String QUERY_STATE_KEY_PREFIX = "query:";
+
+  /**
+   * Prefix of state log keys of drivers.
+   */
+  private static final String DRIVER_STATE_KEY_PREFIX = "driver:";
+
+  /**
+   * The state log on which changed queries are marked, null if state is persisted only in snapshots.
+   */
+  private volatile ServiceStateLog stateLog;
+
+  /**
+   * Indexes over the queries in {@link #allQueries}, used for listing queries.
+   */
+  private final QueryIndex queryIndex = new QueryIndex();
+
   /**
    * The conf.
    */
@@ -176,16 +213,56 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    */
   protected final Thread querySubmitter = new Thread(querySubmitterRunnable, "QuerySubmitter");
 
+  /**
+   * The query launcher pool.
+   */
+  private ExecutorService queryLauncherPool;
+
+  /**
+   * Permits for free threads in the query launcher pool.
+   */
+  private Semaphore launcherPermits;
+
+  /**
+   * The number of queries taken off the queue and being launched.
+   */
+  private final AtomicInteger launchingQueries = new AtomicInteger();
+
   /**
    * The status poller.
    */
   private final Thread statusPoller = new Thread(new StatusPoller(), "StatusPoller");
 
+  /**
+   * The pool on which status of launched queries is updated.
+   */
+  private ExecutorService statusUpdatePool;
+
+  /**
+   * The listener which updates status of queries on drivers pushing completion.
+   */
+  private final StatusUpdateNotifier statusUpdateNotifier = new StatusUpdateNotifier();
+
   /**
    * The query purger.
    */
   private final Thread queryPurger = new Thread(new QueryPurger(), "QueryPurger");
 
+  /**
+   * The pool on which purged queries are closed on their drivers.
+   */
+  private ExecutorService purgePool;
+
+  /**
+   * The maximum number of finished queries saved to DB in a batch.
+   */
+  private int purgeBatchSize;
+
+  /**
+   * The maximum time to wait for filling a batch of finished queries.
+   */
+  private long purgeBatchIntervalMillis;
+
   /**
    * The prepare query purger.
    */
@@ -196,6 +273,21 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    */
   private List<QueryAcceptor> queryAcceptors = new ArrayList<QueryAcceptor>();
 
+  /**
+   * The query launching constraints. Also the lock guarding waiting and admitted queries.
+   */
+  private final List<QueryLaunchingConstraint> launchingConstraints = new ArrayList<QueryLaunchingConstraint>();
+
+  /**
+   * Queries not allowed to launch by the launching constraints, waiting for a launched query to finish.
+   */
+  private final Map<QueryHandle, QueryContext> waitingQueries = new LinkedHashMap<QueryHandle, QueryContext>();
+
+  /**
+   * Queries allowed to launch by the launching constraints, which have not finished yet.
+   */
+  private final Set<QueryHandle> admittedQueries = new HashSet<QueryHandle>();
+
   /**
    * The drivers.
    */
@@ -236,6 +328,11 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    */
   private ExecutorService estimatePool;
 
+  /**
+   * Cache of rewritten queries and their estimates, null if caching is not enabled
+   */
+  private RewriteEstimateCache rewriteEstimateCache;
+
   private final LogSegregationContext logSegregationContext;
 
   private final ErrorCollection errorCollection = LensServices.get().getErrorCollection();
@@ -287,6 +384,26 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     }
   }
 
+  /**
+   * Initialize query launching constraints.
+   */
+  private void initializeLaunchingConstraints() throws LensException {
+    String[] constraintClasses = conf.getStrings(LensConfConstants.QUERY_LAUNCHING_CONSTRAINTS);
+    if (constraintClasses != null) {
+      for (String constraintClass : constraintClasses) {
+        try {
+          Class<?> clazz = Class.forName(constraintClass);
+          QueryLaunchingConstraint constraint = (QueryLaunchingConstraint) ReflectionUtils.newInstance(clazz, conf);
+          log.info("initialized query launching constraint: " + constraint);
+          launchingConstraints.add(constraint);
+        } catch (Exception e) {
+          log.warn("Could not load the launching constraint:" + constraintClass, e);
+          throw new LensException("Could not load launching constraint" + constraintClass, e);
+        }
+      }
+    }
+  }
+
   private void initializeListeners() {
     if (conf.getBoolean(LensConfConstants.QUERY_STATE_LOGGER_ENABLED, true)) {
       getEventService().addListenerForType(new QueryStatusLogger(), StatusChange.class);
@@ -475,7 +592,8 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
   }
 
   /**
-   * The Class QuerySubmitter.
+   * The Class QuerySubmitter. Takes queries off the queue in priority order and hands them over to the launcher pool.
+   * A query is taken only when a launcher thread is free, so that waiting queries stay ordered by the queue.
    */
   private class QuerySubmitter implements Runnable {
 
@@ -499,44 +617,21 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       log.info("Starting QuerySubmitter thread");
       while (!pausedForTest && !stopped && !querySubmitter.isInterrupted()) {
         try {
-          QueryContext ctx = queuedQueries.take();
-
-          /* Setting log segregation id */
-          logSegregationContext.set(ctx.getQueryHandleString());
-
-          synchronized (ctx) {
-            if (ctx.getStatus().getStatus().equals(QUEUED)) {
-              log.info("Launching query:" + ctx.getUserQuery());
-              try {
-                // acquire session before any query operation.
-                acquire(ctx.getLensSessionIdentifier());
-                // the check to see if the query was already rewritten and selected driver's rewritten query is set
-                if (!ctx.isDriverQueryExplicitlySet()) {
-                  rewriteAndSelect(ctx);
-                } else {
-                  log.info("Submitting to already selected driver");
-                }
-                // Check if we need to pass session's effective resources to selected driver
-                addSessionResourcesToDriver(ctx);
-                ctx.getSelectedDriver().executeAsync(ctx);
-              } catch (LensException e) {
-
-                LOG.error("Error launching query " + ctx.getQueryHandle(), e);
-                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-                setFailedStatus(ctx, "Launching query failed", reason, e.buildLensErrorTO(this.errorCollection));
-                continue;
-
-              } catch (Exception e) {
-                log.error("Error launching query " + ctx.getQueryHandle(), e);
-                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
-                setFailedStatus(ctx, "Launching query failed", reason, null);
-                continue;
-              } finally {
-                release(ctx.getLensSessionIdentifier());
-              }
-              setLaunchedStatus(ctx);
-              log.info("Launched query " + ctx.getQueryHandle());
-            }
+          launcherPermits.acquire();
+          QueryContext ctx;
+          try {
+            ctx = queuedQueries.take();
+          } catch (InterruptedException e) {
+            launcherPermits.release();
+            throw e;
+          }
+          launchingQueries.incrementAndGet();
+          try {
+            queryLauncherPool.execute(new QueryLauncher(ctx, errorCollection));
+          } catch (RejectedExecutionException e) {
+            launchingQueries.decrementAndGet();
+            launcherPermits.release();
+            throw e;
           }
         } catch (InterruptedException e) {
           log.info("Query Submitter has been interrupted, exiting");
@@ -550,6 +645,97 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     }
   }
 
+  /**
+   * The Class QueryLauncher. Launches a single query on its selected driver, running on the launcher pool.
+   */
+  private class QueryLauncher implements Runnable {
+
+    /**
+     * The query to launch.
+     */
+    private final QueryContext ctx;
+
+    private final ErrorCollection errorCollection;
+
+    QueryLauncher(QueryContext ctx, ErrorCollection errorCollection) {
+      this.ctx = ctx;
+      this.errorCollection = errorCollection;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      try {
+        /* Setting log segregation id */
+        logSegregationContext.set(ctx.getQueryHandleString());
+        launchQuery();
+      } catch (Exception e) {
+        incrCounter(QUERY_SUBMITTER_COUNTER);
+        log.error("Error launching query " + ctx.getQueryHandle(), e);
+      } finally {
+        launchingQueries.decrementAndGet();
+        launcherPermits.release();
+      }
+    }
+
+    private void launchQuery() throws LensException {
+      synchronized (ctx) {
+        if (!ctx.getStatus().getStatus().equals(QUEUED)) {
+          return;
+        }
+        log.info("Launching query:" + ctx.getUserQuery());
+        try {
+          // acquire session before any query operation.
+          acquire(ctx.getLensSessionIdentifier());
+          // the check to see if the query was already rewritten and selected driver's rewritten query is set.
+          // A waiting query admitted by the constraints keeps the driver it was admitted for.
+          if (isAdmitted(ctx)) {
+            log.info("Launching waiting query on already selected driver");
+          } else if (!ctx.isDriverQueryExplicitlySet()) {
+            rewriteAndSelect(ctx);
+          } else {
+            log.info("Submitting to already selected driver");
+          }
+          if (!admitForLaunch(ctx)) {
+            log.info("Query " + ctx.getQueryHandle() + " is waiting for launching constraints to allow it");
+            return;
+          }
+          // Check if we need to pass session's effective resources to selected driver
+          addSessionResourcesToDriver(ctx);
+          ctx.getSelectedDriver().executeAsync(ctx);
+        } catch (LensException e) {
+
+          log.error("Error launching query " + ctx.getQueryHandle(), e);
+          String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+          setFailedStatus(ctx, "Launching query failed", reason, e.buildLensErrorTO(this.errorCollection));
+          return;
+
+        } catch (Exception e) {
+          log.error("Error launching query " + ctx.getQueryHandle(), e);
+          String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+          setFailedStatus(ctx, "Launching query failed", reason, null);
+          return;
+        } finally {
+          release(ctx.getLensSessionIdentifier());
+        }
+        setLaunchedStatus(ctx);
+        log.info("Launched query " + ctx.getQueryHandle());
+        if (ctx.getSelectedDriver().supportsCompletionPush()) {
+          try {
+            ctx.getSelectedDriver().registerForCompletionNotification(ctx.getQueryHandle(), 0, statusUpdateNotifier);
+          } catch (LensException e) {
+            // status poller would still find out the completion
+            log.warn("Could not register for completion of query " + ctx.getQueryHandle(), e);
+          }
+        }
+      }
+    }
+  }
+
   // used in tests
 
   /**
@@ -560,14 +746,16 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
   }
 
   /**
-   * The Class StatusPoller.
+   * The Class StatusPoller. Picks up launched queries which are due for a status poll, groups them by driver and
+   * updates their status in batches on the status update pool. Queries are polled less often as they grow older, and
+   * queries on drivers which push completion are polled only at the maximum interval.
    */
   private class StatusPoller implements Runnable {
 
     /**
-     * The poll interval.
+     * The next poll time of launched queries. Accessed only from the status poller thread.
      */
-    long pollInterval = 1000;
+    private final Map<QueryHandle, Long> nextPollTimes = new HashMap<QueryHandle, Long>();
 
     /*
      * (non-Javadoc)
@@ -577,26 +765,61 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     @Override
     public void run() {
       log.info("Starting Status poller thread");
+      long minInterval = conf.getLong(LensConfConstants.STATUS_POLL_MIN_INTERVAL_MILLIS,
+        LensConfConstants.DEFAULT_STATUS_POLL_MIN_INTERVAL_MILLIS);
+      long maxInterval = conf.getLong(LensConfConstants.STATUS_POLL_MAX_INTERVAL_MILLIS,
+        LensConfConstants.DEFAULT_STATUS_POLL_MAX_INTERVAL_MILLIS);
+      float backoffRatio = conf.getFloat(LensConfConstants.STATUS_POLL_BACKOFF_RATIO,
+        LensConfConstants.DEFAULT_STATUS_POLL_BACKOFF_RATIO);
+      int batchSize = conf.getInt(LensConfConstants.STATUS_UPDATE_BATCH_SIZE,
+        LensConfConstants.DEFAULT_STATUS_UPDATE_BATCH_SIZE);
       while (!stopped && !statusPoller.isInterrupted()) {
         try {
           List<QueryContext> launched = new ArrayList<QueryContext>();
           launched.addAll(launchedQueries);
+          long now = System.currentTimeMillis();
+          Set<QueryHandle> launchedHandles = new HashSet<QueryHandle>();
+          Map<LensDriver, List<QueryContext>> dueQueries = new HashMap<LensDriver, List<QueryContext>>();
+          int dueCount = 0;
           for (QueryContext ctx : launched) {
-            if (stopped || statusPoller.isInterrupted()) {
-              return;
+            launchedHandles.add(ctx.getQueryHandle());
+            Long nextPollTime = nextPollTimes.get(ctx.getQueryHandle());
+            if (nextPollTime != null && nextPollTime > now) {
+              continue;
             }
-
-            logSegregationContext.set(ctx.getQueryHandleString());
-            log.info("Polling status for " + ctx.getQueryHandle());
-            try {
-              // session is not required to update status of the query
-              // don't need to wrap this with acquire/release
-              updateStatus(ctx.getQueryHandle());
-            } catch (LensException e) {
-              log.error("Error updating status ", e);
+            LensDriver driver = ctx.getSelectedDriver();
+            List<QueryContext> driverQueries = dueQueries.get(driver);
+            if (driverQueries == null) {
+              driverQueries = new ArrayList<QueryContext>();
+              dueQueries.put(driver, driverQueries);
+            }
+            driverQueries.add(ctx);
+            dueCount++;
+            long interval;
+            if (driver.supportsCompletionPush()) {
+              interval = maxInterval;
+            } else {
+              interval = (long) ((now - ctx.getLaunchTime()) * backoffRatio);
+              interval = Math.min(maxInterval, Math.max(minInterval, interval));
+            }
+            nextPollTimes.put(ctx.getQueryHandle(), now + interval);
+          }
+          nextPollTimes.keySet().retainAll(launchedHandles);
+
+          List<Callable<Void>> updaters = new ArrayList<Callable<Void>>();
+          for (Map.Entry<LensDriver, List<QueryContext>> entry : dueQueries.entrySet()) {
+            List<QueryContext> driverQueries = entry.getValue();
+            for (int i = 0; i < driverQueries.size(); i += batchSize) {
+              updaters.add(new StatusUpdater(entry.getKey(),
+                driverQueries.subList(i, Math.min(i + batchSize, driverQueries.size()))));
             }
           }
-          Thread.sleep(pollInterval);
+          if (!updaters.isEmpty()) {
+            log.debug("Polling status of " + dueCount + " queries on " + dueQueries.size() + " drivers");
+            // wait for this round to complete, so that status of a query is not updated concurrently
+            statusUpdatePool.invokeAll(updaters);
+          }
+          Thread.sleep(minInterval);
         } catch (InterruptedException e) {
           log.info("Status poller has been interrupted, exiting");
           return;
@@ -609,6 +832,80 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     }
   }
 
+  /**
+   * Updates status of a batch of launched queries of a driver with a single call to the driver.
+   */
+  private class StatusUpdater implements Callable<Void> {
+
+    /**
+     * The driver.
+     */
+    private final LensDriver driver;
+
+    /**
+     * The queries.
+     */
+    private final List<QueryContext> queries;
+
+    StatusUpdater(LensDriver driver, List<QueryContext> queries) {
+      this.driver = driver;
+      this.queries = queries;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.util.concurrent.Callable#call()
+     */
+    @Override
+    public Void call() {
+      try {
+        updateStatus(driver, queries);
+      } catch (Exception e) {
+        incrCounter(STATUS_UPDATE_COUNTER);
+        log.error("Error updating status of queries on driver " + driver, e);
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Listener registered with drivers pushing completion. Updates status of the query as soon as the driver notifies
+   * its completion, instead of waiting for the status poller.
+   */
+  private class StatusUpdateNotifier implements QueryCompletionListener {
+
+    @Override
+    public void onCompletion(QueryHandle handle) {
+      scheduleStatusUpdate(handle);
+    }
+
+    @Override
+    public void onError(QueryHandle handle, String error) {
+      scheduleStatusUpdate(handle);
+    }
+
+    private void scheduleStatusUpdate(final QueryHandle handle) {
+      try {
+        statusUpdatePool.execute(new Runnable() {
+          @Override
+          public void run() {
+            logSegregationContext.set(handle.getHandleIdString());
+            try {
+              updateStatus(handle);
+            } catch (Exception e) {
+              incrCounter(STATUS_UPDATE_COUNTER);
+              log.error("Error updating status of query " + handle, e);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // status poller would still find out the completion
+        log.warn("Could not schedule status update of query " + handle, e);
+      }
+    }
+  }
+
   /**
    * Sets the failed status.
    *
@@ -632,6 +929,8 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       false, null, null, null));
     launchedQueries.add(ctx);
     ctx.setLaunchTime(System.currentTimeMillis());
+    getMetrics().updateHistogram(QueryExecutionService.class, MetricsService.QUERY_LAUNCH_LATENCY,
+      ctx.getLaunchTime() - ctx.getSubmissionTime());
     fireStatusChangeEvent(ctx, ctx.getStatus(), before);
     ctx.clearTransientStateAfterLaunch();
   }
@@ -667,6 +966,103 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     }
     finishedQueries.add(new FinishedQuery(ctx));
     ctx.clearTransientStateAfterLaunch();
+    releaseLaunchSlot(ctx);
+  }
+
+  /**
+   * Check the launching constraints for the query. If the query is allowed to launch, it is counted as launched by the
+   * constraints, otherwise it is moved to the waiting queries.
+   *
+   * @param ctx the query context, with driver selected
+   * @return true if the query can be launched
+   */
+  private boolean admitForLaunch(QueryContext ctx) {
+    synchronized (launchingConstraints) {
+      if (admittedQueries.contains(ctx.getQueryHandle())) {
+        return true;
+      }
+      if (allowsLaunch(ctx)) {
+        markAdmitted(ctx);
+        return true;
+      }
+      waitingQueries.put(ctx.getQueryHandle(), ctx);
+      return false;
+    }
+  }
+
+  /**
+   * Whether the query is already admitted by the launching constraints, which happens when a waiting query is queued
+   * again after a launched query finished.
+   *
+   * @param ctx the query context
+   * @return true if the query is admitted
+   */
+  private boolean isAdmitted(QueryContext ctx) {
+    synchronized (launchingConstraints) {
+      return admittedQueries.contains(ctx.getQueryHandle());
+    }
+  }
+
+  /**
+   * Whether all the launching constraints allow launch of the query. Should be called holding the constraints lock.
+   *
+   * @param ctx the query context
+   * @return true if the query can be launched
+   */
+  private boolean allowsLaunch(QueryContext ctx) {
+    for (QueryLaunchingConstraint constraint : launchingConstraints) {
+      if (!constraint.allowsLaunchOf(ctx)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Count the query as launched in all the constraints. Should be called holding the constraints lock.
+   *
+   * @param ctx the query context
+   */
+  private void markAdmitted(QueryContext ctx) {
+    admittedQueries.add(ctx.getQueryHandle());
+    for (QueryLaunchingConstraint constraint : launchingConstraints) {
+      constraint.queryLaunched(ctx);
+    }
+  }
+
+  /**
+   * Release the launch slot held by a finished query, and queue the waiting queries which the constraints allow now.
+   * Waiting queries are checked in priority order.
+   *
+   * @param ctx the finished query context
+   */
+  private void releaseLaunchSlot(QueryContext ctx) {
+    List<QueryContext> runnable = new ArrayList<QueryContext>();
+    synchronized (launchingConstraints) {
+      waitingQueries.remove(ctx.getQueryHandle());
+      if (!admittedQueries.remove(ctx.getQueryHandle())) {
+        return;
+      }
+      for (QueryLaunchingConstraint constraint : launchingConstraints) {
+        constraint.queryFinished(ctx);
+      }
+      if (waitingQueries.isEmpty()) {
+        return;
+      }
+      List<QueryContext> candidates = new ArrayList<QueryContext>(waitingQueries.values());
+      Collections.sort(candidates);
+      for (QueryContext candidate : candidates) {
+        if (allowsLaunch(candidate)) {
+          markAdmitted(candidate);
+          waitingQueries.remove(candidate.getQueryHandle());
+          runnable.add(candidate);
+        }
+      }
+    }
+    if (!runnable.isEmpty()) {
+      log.info("Queueing " + runnable.size() + " waiting queries allowed by launching constraints");
+      queuedQueries.addAll(runnable);
+    }
   }
 
   void setSuccessState(QueryContext ctx) throws LensException {
@@ -687,35 +1083,112 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     QueryContext ctx = allQueries.get(handle);
     if (ctx != null) {
       synchronized (ctx) {
-        QueryStatus before = ctx.getStatus();
-        if (!ctx.getStatus().getStatus().equals(QUEUED) && !ctx.getDriverStatus().isFinished()
-          && !ctx.getStatus().finished()) {
+        if (isStatusUpdatable(ctx)) {
           log.info("Updating status for " + ctx.getQueryHandle());
+          LensException error = null;
           try {
             ctx.getSelectedDriver().updateStatus(ctx);
-            ctx.setStatus(ctx.getDriverStatus().toQueryStatus());
           } catch (LensException exc) {
-            // Driver gave exception while updating status
-
-            setFailedStatus(ctx, "Status update failed", exc.getMessage(), exc.buildLensErrorTO(this.errorCollection));
-            log.error("Status update failed for " + handle, exc);
-
-          }
-          // query is successfully executed by driver and
-          // if query result need not be persisted or there is no result available in driver, move the query to
-          // succeeded state immediately, otherwise result formatter will format the result and move it to succeeded
-          if (ctx.getStatus().getStatus().equals(EXECUTED) && (!ctx.isPersistent()
-            || !ctx.isResultAvailableInDriver())) {
-            setSuccessState(ctx);
-          } else {
-            if (ctx.getStatus().finished()) {
-              updateFinishedQuery(ctx, before);
-            }
-            fireStatusChangeEvent(ctx, ctx.getStatus(), before);
+            error = exc;
           }
+          applyDriverStatus(ctx, error);
+        }
+      }
+    }
+  }
+
+  /**
+   * Update status of the given launched queries of a driver, with a single call to the driver. If the driver fails to
+   * update the batch, status of the queries is updated one by one, so that only the queries for which the driver fails
+   * are marked as failed.
+   *
+   * @param driver  the driver
+   * @param queries the queries launched on the driver
+   * @throws LensException the lens exception
+   */
+  private void updateStatus(LensDriver driver, List<QueryContext> queries) throws LensException {
+    // pick the updatable queries holding the lock of one query at a time, and call the driver without any lock held,
+    // so that a slow driver does not block cancellation or completion of the queries
+    List<QueryContext> updatable = new ArrayList<QueryContext>(queries.size());
+    Map<QueryContext, QueryStatus> statusBefore = new IdentityHashMap<QueryContext, QueryStatus>();
+    for (QueryContext ctx : queries) {
+      synchronized (ctx) {
+        if (isStatusUpdatable(ctx)) {
+          updatable.add(ctx);
+          statusBefore.put(ctx, ctx.getStatus());
         }
       }
     }
+    if (updatable.isEmpty()) {
+      return;
+    }
+    try {
+      driver.updateStatus(updatable);
+    } catch (LensException e) {
+      log.warn("Status update of " + updatable.size() + " queries failed on driver " + driver
+        + ", updating one query at a time", e);
+      for (QueryContext ctx : updatable) {
+        logSegregationContext.set(ctx.getQueryHandleString());
+        updateStatus(ctx.getQueryHandle());
+      }
+      return;
+    }
+    for (QueryContext ctx : updatable) {
+      logSegregationContext.set(ctx.getQueryHandleString());
+      synchronized (ctx) {
+        // the query was cancelled, or its status was updated by the completion notifier, in the meantime
+        if (ctx.getStatus() != statusBefore.get(ctx)) {
+          log.debug("Status of " + ctx.getQueryHandle() + " changed during the status update, skipping it");
+          continue;
+        }
+        applyDriverStatus(ctx, null);
+      }
+    }
+  }
+
+  /**
+   * Whether status of the query has to be updated from its driver. Should be called holding the lock on the query
+   * context.
+   *
+   * @param ctx the query context
+   * @return true if the query is launched and has not finished yet
+   */
+  private boolean isStatusUpdatable(QueryContext ctx) {
+    return !ctx.getStatus().getStatus().equals(QUEUED) && !ctx.getDriverStatus().isFinished()
+      && !ctx.getStatus().finished();
+  }
+
+  /**
+   * Move the query to the state reported by its driver, and fire the status change events. Should be called holding
+   * the lock on the query context.
+   *
+   * @param ctx   the query context, whose driver status has just been updated
+   * @param error exception thrown by the driver while updating the status, null if the update succeeded
+   * @throws LensException the lens exception
+   */
+  private void applyDriverStatus(QueryContext ctx, LensException error) throws LensException {
+    QueryStatus before = ctx.getStatus();
+    if (error == null) {
+      ctx.setStatus(ctx.getDriverStatus().toQueryStatus());
+    } else {
+      // Driver gave exception while updating status
+
+      setFailedStatus(ctx, "Status update failed", error.getMessage(), error.buildLensErrorTO(this.errorCollection));
+      log.error("Status update failed for " + ctx.getQueryHandle(), error);
+
+    }
+    // query is successfully executed by driver and
+    // if query result need not be persisted or there is no result available in driver, move the query to
+    // succeeded state immediately, otherwise result formatter will format the result and move it to succeeded
+    if (ctx.getStatus().getStatus().equals(EXECUTED) && (!ctx.isPersistent()
+      || !ctx.isResultAvailableInDriver())) {
+      setSuccessState(ctx);
+    } else {
+      if (ctx.getStatus().finished()) {
+        updateFinishedQuery(ctx, before);
+      }
+      fireStatusChangeEvent(ctx, ctx.getStatus(), before);
+    }
   }
 
   /**
@@ -773,27 +1246,181 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       return;
     }
 
-    QueryStatus.Status prevState = before.getStatus();
-    QueryStatus.Status currentStatus = current.getStatus();
-    if (currentStatus.equals(prevState)) {
-      // No need to fire event since the state hasn't changed
-      return;
+    QueryStatus.Status prevState = before.getStatus();
+    QueryStatus.Status currentStatus = current.getStatus();
+    if (currentStatus.equals(prevState)) {
+      // No need to fire event since the state hasn't changed
+      return;
+    }
+    queryIndex.statusChanged(ctx);
+    markStateChanged(ctx);
+
+    StatusChange event = newStatusChangeEvent(ctx, prevState, currentStatus);
+    if (event != null) {
+      try {
+        getEventService().notifyEvent(event);
+      } catch (LensException e) {
+        log.warn("LensEventService encountered error while handling event: " + event.getEventId(), e);
+      }
+    }
+  }
+
+  /**
+   * The Class QueryPurger.
+   */
+  private class QueryPurger implements Runnable {
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      log.info("Starting Query purger thread");
+      while (!stopped && !queryPurger.isInterrupted()) {
+        List<FinishedQuery> batch;
+        try {
+          batch = takePurgeBatch();
+        } catch (InterruptedException e) {
+          log.info("QueryPurger has been interrupted, exiting");
+          return;
+        }
+        try {
+          persistFinishedQueries(batch);
+        } catch (Exception e) {
+          incrCounter(QUERY_PURGER_COUNTER);
+          log.error("Error in query purger", e);
+        }
+      }
+      log.info("QueryPurger exited");
+    }
+
+    /**
+     * Take a batch of purgeable queries. Waits for the first one, and then for more of them until the batch is full or
+     * the batch interval has elapsed.
+     *
+     * @return the batch
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private List<FinishedQuery> takePurgeBatch() throws InterruptedException {
+      List<FinishedQuery> batch = new ArrayList<FinishedQuery>();
+      batch.add(finishedQueries.take());
+      long deadline = System.currentTimeMillis() + purgeBatchIntervalMillis;
+      while (batch.size() < purgeBatchSize) {
+        finishedQueries.drainTo(batch, purgeBatchSize - batch.size());
+        long wait = deadline - System.currentTimeMillis();
+        if (batch.size() >= purgeBatchSize || wait <= 0) {
+          break;
+        }
+        FinishedQuery next = finishedQueries.poll(wait, TimeUnit.MILLISECONDS);
+        if (next == null) {
+          break;
+        }
+        batch.add(next);
+      }
+      return batch;
+    }
+
+    /**
+     * Save the batch of finished queries to DB, and close the saved ones on the purge pool. Queries which could not be
+     * saved are put back to be purged again.
+     *
+     * @param batch the batch
+     */
+    private void persistFinishedQueries(List<FinishedQuery> batch) {
+      Map<FinishedQuery, FinishedLensQuery> toPersist = new LinkedHashMap<FinishedQuery, FinishedLensQuery>();
+      for (FinishedQuery finished : batch) {
+        logSegregationContext.set(finished.getQueryHandleString());
+        try {
+          toPersist.put(finished, toFinishedLensQuery(finished));
+        } catch (LensException e) {
+          incrCounter(QUERY_PURGER_COUNTER);
+          log.error("Error closing  query ", e);
+        } catch (Exception e) {
+          incrCounter(QUERY_PURGER_COUNTER);
+          log.error("Error in query purger", e);
+        }
+      }
+      if (toPersist.isEmpty()) {
+        return;
+      }
+
+      List<FinishedQuery> persisted = new ArrayList<FinishedQuery>(toPersist.keySet());
+      try {
+        lensServerDao.insertFinishedQueries(new ArrayList<FinishedLensQuery>(toPersist.values()));
+        log.info("Saved " + toPersist.size() + " queries to DB");
+      } catch (Exception e) {
+        log.warn("Exception while saving batch of " + toPersist.size() + " queries, saving one at a time", e);
+        persisted.clear();
+        for (Map.Entry<FinishedQuery, FinishedLensQuery> entry : toPersist.entrySet()) {
+          logSegregationContext.set(entry.getKey().getQueryHandleString());
+          try {
+            lensServerDao.insertFinishedQuery(entry.getValue());
+            log.info("Saved query " + entry.getValue().getHandle() + " to DB");
+            persisted.add(entry.getKey());
+          } catch (Exception ex) {
+            log.warn("Exception while purging query ", ex);
+            finishedQueries.add(entry.getKey());
+          }
+        }
+      }
+      getMetrics().updateHistogram(QueryExecutionService.class, MetricsService.QUERY_PURGE_BATCH_SIZE,
+        persisted.size());
+
+      long now = System.currentTimeMillis();
+      for (FinishedQuery finished : persisted) {
+        getMetrics().updateHistogram(QueryExecutionService.class, MetricsService.QUERY_PURGE_LAG,
+          now - finished.getFinishTime().getTime());
+        purgePool.execute(new FinishedQueryCloser(finished));
+      }
     }
 
-    StatusChange event = newStatusChangeEvent(ctx, prevState, currentStatus);
-    if (event != null) {
-      try {
-        getEventService().notifyEvent(event);
-      } catch (LensException e) {
-        log.warn("LensEventService encountered error while handling event: " + event.getEventId(), e);
+    /**
+     * Create the finished query to be saved in DB.
+     *
+     * @param finished the finished query
+     * @return the finished lens query
+     * @throws Exception the exception
+     */
+    private FinishedLensQuery toFinishedLensQuery(FinishedQuery finished) throws Exception {
+      FinishedLensQuery finishedQuery = new FinishedLensQuery(finished.getCtx());
+      if (finished.ctx.getStatus().getStatus() == SUCCESSFUL) {
+        if (finished.ctx.getStatus().isResultSetAvailable()) {
+          LensResultSet set = getResultset(finished.getCtx().getQueryHandle(), false);
+          if (set != null && PersistentResultSet.class.isAssignableFrom(set.getClass())) {
+            LensResultSetMetadata metadata = set.getMetadata();
+            String outputPath = ((PersistentResultSet) set).getOutputPath();
+            int rows = set.size();
+            finishedQuery.setMetadataClass(metadata.getClass().getName());
+            finishedQuery.setResult(outputPath);
+            finishedQuery.setMetadata(MAPPER.writeValueAsString(metadata));
+            finishedQuery.setRows(rows);
+          }
+        }
       }
+      return finishedQuery;
     }
   }
 
   /**
-   * The Class QueryPurger.
+   * Closes a query saved to DB on its driver and removes it from memory.
    */
-  private class QueryPurger implements Runnable {
+  private class FinishedQueryCloser implements Runnable {
+
+    /**
+     * The finished query.
+     */
+    private final FinishedQuery finished;
+
+    /**
+     * Instantiates a new finished query closer.
+     *
+     * @param finished the finished query
+     */
+    FinishedQueryCloser(FinishedQuery finished) {
+      this.finished = finished;
+    }
 
     /*
      * (non-Javadoc)
@@ -802,67 +1429,29 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
      */
     @Override
     public void run() {
-      log.info("Starting Query purger thread");
-      while (!stopped && !queryPurger.isInterrupted()) {
-        FinishedQuery finished = null;
-        try {
-          finished = finishedQueries.take();
-          logSegregationContext.set(finished.getQueryHandleString());
-        } catch (InterruptedException e) {
-          log.info("QueryPurger has been interrupted, exiting");
-          return;
-        }
-        try {
-          FinishedLensQuery finishedQuery = new FinishedLensQuery(finished.getCtx());
-          if (finished.ctx.getStatus().getStatus() == SUCCESSFUL) {
-            if (finished.ctx.getStatus().isResultSetAvailable()) {
-              LensResultSet set = getResultset(finished.getCtx().getQueryHandle());
-              if (set != null && PersistentResultSet.class.isAssignableFrom(set.getClass())) {
-                LensResultSetMetadata metadata = set.getMetadata();
-                String outputPath = ((PersistentResultSet) set).getOutputPath();
-                int rows = set.size();
-                finishedQuery.setMetadataClass(metadata.getClass().getName());
-                finishedQuery.setResult(outputPath);
-                finishedQuery.setMetadata(MAPPER.writeValueAsString(metadata));
-                finishedQuery.setRows(rows);
-              }
-            }
-          }
+      logSegregationContext.set(finished.getQueryHandleString());
+      try {
+        synchronized (finished.ctx) {
+          finished.ctx.setFinishedQueryPersisted(true);
           try {
-            lensServerDao.insertFinishedQuery(finishedQuery);
-            log.info("Saved query " + finishedQuery.getHandle() + " to DB");
-          } catch (Exception e) {
-            log.warn("Exception while purging query ", e);
-            finishedQueries.add(finished);
-            continue;
-          }
-
-          synchronized (finished.ctx) {
-            finished.ctx.setFinishedQueryPersisted(true);
-            try {
-              if (finished.getCtx().getSelectedDriver() != null) {
-                finished.getCtx().getSelectedDriver().closeQuery(finished.getCtx().getQueryHandle());
-              }
-            } catch (Exception e) {
-              log.warn("Exception while closing query with selected driver.", e);
+            if (finished.getCtx().getSelectedDriver() != null) {
+              finished.getCtx().getSelectedDriver().closeQuery(finished.getCtx().getQueryHandle());
             }
-            log.info("Purging: " + finished.getCtx().getQueryHandle());
-            allQueries.remove(finished.getCtx().getQueryHandle());
-            resultSets.remove(finished.getCtx().getQueryHandle());
+          } catch (Exception e) {
+            log.warn("Exception while closing query with selected driver.", e);
           }
-          fireStatusChangeEvent(finished.getCtx(),
-            new QueryStatus(1f, CLOSED, "Query purged", false, null, null, null), finished.getCtx().getStatus());
-          log.info("Query purged: " + finished.getCtx().getQueryHandle());
-
-        } catch (LensException e) {
-          incrCounter(QUERY_PURGER_COUNTER);
-          log.error("Error closing  query ", e);
-        } catch (Exception e) {
-          incrCounter(QUERY_PURGER_COUNTER);
-          log.error("Error in query purger", e);
+          log.info("Purging: " + finished.getCtx().getQueryHandle());
+          allQueries.remove(finished.getCtx().getQueryHandle());
+          queryIndex.remove(finished.getCtx());
+          resultSets.remove(finished.getCtx().getQueryHandle());
         }
+        fireStatusChangeEvent(finished.getCtx(),
+          new QueryStatus(1f, CLOSED, "Query purged", false, null, null, null), finished.getCtx().getStatus());
+        log.info("Query purged: " + finished.getCtx().getQueryHandle());
+      } catch (Exception e) {
+        incrCounter(QUERY_PURGER_COUNTER);
+        log.error("Error in query purger", e);
       }
-      log.info("QueryPurger exited");
     }
   }
 
@@ -913,6 +1502,11 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     } catch (LensException e) {
       throw new IllegalStateException("Could not load acceptors");
     }
+    try {
+      initializeLaunchingConstraints();
+    } catch (LensException e) {
+      throw new IllegalStateException("Could not load launching constraints", e);
+    }
     initializeListeners();
     try {
       loadDriversAndSelector();
@@ -922,6 +1516,18 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     }
     maxFinishedQueries = conf.getInt(LensConfConstants.MAX_NUMBER_OF_FINISHED_QUERY,
       LensConfConstants.DEFAULT_FINISHED_QUERIES);
+    purgeBatchSize = Math.max(1, conf.getInt(LensConfConstants.PURGE_BATCH_SIZE,
+      LensConfConstants.DEFAULT_PURGE_BATCH_SIZE));
+    purgeBatchIntervalMillis = conf.getLong(LensConfConstants.PURGE_BATCH_INTERVAL_MILLIS,
+      LensConfConstants.DEFAULT_PURGE_BATCH_INTERVAL_MILLIS);
+    if (conf.getBoolean(LensConfConstants.REWRITE_CACHE_ENABLED, LensConfConstants.DEFAULT_REWRITE_CACHE_ENABLED)) {
+      rewriteEstimateCache = new RewriteEstimateCache(
+        conf.getLong(LensConfConstants.REWRITE_CACHE_MAX_SIZE, LensConfConstants.DEFAULT_REWRITE_CACHE_MAX_SIZE),
+        conf.getLong(LensConfConstants.REWRITE_CACHE_EXPIRY_MILLIS,
+          LensConfConstants.DEFAULT_REWRITE_CACHE_EXPIRY_MILLIS));
+    }
+    HQLParser.setASTCacheMaxSize(conf.getLong(LensConfConstants.AST_CACHE_MAX_SIZE,
+      LensConfConstants.DEFAULT_AST_CACHE_MAX_SIZE));
     initalizeFinishedQueryStore(conf);
     log.info("Query execution service initialized");
   }
@@ -977,6 +1583,29 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     statusPoller.interrupt();
     queryPurger.interrupt();
     prepareQueryPurger.interrupt();
+    awaitPurgePool();
+  }
+
+  /**
+   * Wait for the purge pool to close the queries already saved to DB, so that they are not part of the persisted
+   * server state. Waits at most for the configured termination timeout.
+   */
+  private void awaitPurgePool() {
+    if (purgePool == null) {
+      return;
+    }
+    try {
+      // the purger submits to the pool until it exits
+      queryPurger.join();
+      purgePool.shutdown();
+      long timeout = conf.getLong(LensConfConstants.PURGE_POOL_TERMINATION_TIMEOUT_MILLIS,
+        LensConfConstants.DEFAULT_PURGE_POOL_TERMINATION_TIMEOUT_MILLIS);
+      if (!purgePool.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+        log.warn("Purge pool did not terminate in " + timeout + " millis");
+      }
+    } catch (InterruptedException e) {
+      log.error("Error waiting for purge pool termination", e);
+    }
   }
 
   /*
@@ -995,6 +1624,15 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       }
     }
 
+    if (queryLauncherPool != null) {
+      queryLauncherPool.shutdownNow();
+    }
+    if (statusUpdatePool != null) {
+      statusUpdatePool.shutdownNow();
+    }
+    if (purgePool != null) {
+      purgePool.shutdown();
+    }
     estimatePool.shutdownNow();
     log.info("Query execution service stopped");
   }
@@ -1026,6 +1664,9 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       }
     }
     super.start();
+    startQueryLauncherPool();
+    startStatusUpdatePool();
+    startPurgePool();
     querySubmitter.start();
     statusPoller.start();
     queryPurger.start();
@@ -1062,6 +1703,65 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     this.estimatePool = estimatePool;
   }
 
+  private void startQueryLauncherPool() {
+    int poolSize = conf.getInt(LensConfConstants.LAUNCHER_POOL_SIZE, LensConfConstants.DEFAULT_LAUNCHER_POOL_SIZE);
+
+    final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    final AtomicInteger thId = new AtomicInteger();
+    // We are creating our own thread factory, just so that we can override thread name for easy debugging
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread th = defaultFactory.newThread(r);
+        th.setName("query-launcher-" + thId.incrementAndGet());
+        return th;
+      }
+    };
+
+    log.debug("starting query launcher pool of size " + poolSize);
+    launcherPermits = new Semaphore(poolSize);
+    queryLauncherPool = Executors.newFixedThreadPool(poolSize, threadFactory);
+  }
+
+  private void startStatusUpdatePool() {
+    int poolSize = conf.getInt(LensConfConstants.STATUS_UPDATE_POOL_SIZE,
+      LensConfConstants.DEFAULT_STATUS_UPDATE_POOL_SIZE);
+
+    final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    final AtomicInteger thId = new AtomicInteger();
+    // We are creating our own thread factory, just so that we can override thread name for easy debugging
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread th = defaultFactory.newThread(r);
+        th.setName("status-updater-" + thId.incrementAndGet());
+        return th;
+      }
+    };
+
+    log.debug("starting status update pool of size " + poolSize);
+    statusUpdatePool = Executors.newFixedThreadPool(poolSize, threadFactory);
+  }
+
+  private void startPurgePool() {
+    int poolSize = conf.getInt(LensConfConstants.PURGE_POOL_SIZE, LensConfConstants.DEFAULT_PURGE_POOL_SIZE);
+
+    final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    final AtomicInteger thId = new AtomicInteger();
+    // We are creating our own thread factory, just so that we can override thread name for easy debugging
+    ThreadFactory threadFactory = new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread th = defaultFactory.newThread(r);
+        th.setName("query-purger-" + thId.incrementAndGet());
+        return th;
+      }
+    };
+
+    log.debug("starting query purge pool of size " + poolSize);
+    purgePool = Executors.newFixedThreadPool(poolSize, threadFactory);
+  }
+
   private static final String REWRITE_GAUGE = "CUBE_REWRITE";
   private static final String DRIVER_ESTIMATE_GAUGE = "DRIVER_ESTIMATE";
   private static final String DRIVER_SELECTOR_GAUGE = "DRIVER_SELECTION";
@@ -1075,6 +1775,19 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    * @throws LensException the lens exception
    */
   private void rewriteAndSelect(final AbstractQueryContext ctx) throws LensException {
+    String cacheKey = null;
+    long metastoreVersion = CubeMetastoreClient.getMetastoreVersion();
+    if (rewriteEstimateCache != null) {
+      cacheKey = rewriteEstimateCache.getKey(ctx);
+      if (cacheKey != null) {
+        if (rewriteEstimateCache.load(cacheKey, ctx)) {
+          incrCounter(REWRITE_CACHE_HITS_COUNTER);
+          selectDriver(ctx);
+          return;
+        }
+        incrCounter(REWRITE_CACHE_MISSES_COUNTER);
+      }
+    }
     MethodMetricsContext parallelCallGauge = MethodMetricsFactory.createMethodGauge(ctx.getConf(), false,
       PARALLEL_CALL_GAUGE);
     try {
@@ -1162,18 +1875,31 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
         }
       }
 
-      MethodMetricsContext selectGauge = MethodMetricsFactory.createMethodGauge(ctx.getConf(), false,
-        DRIVER_SELECTOR_GAUGE);
-      // 2. select driver to run the query
-      LensDriver driver = driverSelector.select(ctx, conf);
-      selectGauge.markSuccess();
-
-      ctx.setSelectedDriver(driver);
+      if (cacheKey != null) {
+        rewriteEstimateCache.store(cacheKey, metastoreVersion, ctx);
+      }
+      selectDriver(ctx);
     } finally {
       parallelCallGauge.markSuccess();
     }
   }
 
+  /**
+   * Select the driver to run the query, among the drivers for which the query is rewritten and estimated.
+   *
+   * @param ctx query context
+   * @throws LensException the lens exception
+   */
+  private void selectDriver(AbstractQueryContext ctx) throws LensException {
+    MethodMetricsContext selectGauge = MethodMetricsFactory.createMethodGauge(ctx.getConf(), false,
+      DRIVER_SELECTOR_GAUGE);
+    // 2. select driver to run the query
+    LensDriver driver = driverSelector.select(ctx, conf);
+    selectGauge.markSuccess();
+
+    ctx.setSelectedDriver(driver);
+  }
+
   /**
    * Chains driver specific rewrite and estimate of the query in a single runnable, which can be processed in a
    * background thread
@@ -1313,6 +2039,18 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
    * @throws LensException the lens exception
    */
   private LensResultSet getResultset(QueryHandle queryHandle) throws LensException {
+    return getResultset(queryHandle, true);
+  }
+
+  /**
+   * Gets the resultset.
+   *
+   * @param queryHandle the query handle
+   * @param rewind      whether an in memory result set should be rewound to its first row
+   * @return the resultset
+   * @throws LensException if the in memory result set has to be rewound and its rows can not be read again
+   */
+  private LensResultSet getResultset(QueryHandle queryHandle, boolean rewind) throws LensException {
     QueryContext ctx = allQueries.get(queryHandle);
     if (ctx == null) {
       return getResultsetFromDAO(queryHandle);
@@ -1338,8 +2076,10 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
           }
         }
       }
-      if (resultSets.get(queryHandle) instanceof InMemoryResultSet) {
-        ((InMemoryResultSet) resultSets.get(queryHandle)).seekToStart();
+      if (rewind && resultSets.get(queryHandle) instanceof InMemoryResultSet
+        && !((InMemoryResultSet) resultSets.get(queryHandle)).rewind()) {
+        throw new LensException("Result set of query " + queryHandle + " has already been read and can not be read"
+          + " again from its first row");
       }
       return resultSets.get(queryHandle);
     }
@@ -1399,6 +2139,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     PreparedQueryContext prepared = new PreparedQueryContext(query, getSession(sessionHandle).getLoggedInUser(), conf,
       lensConf, drivers.values());
     prepared.setLensSessionIdentifier(sessionHandle.getPublicId().toString());
+    prepared.setSessionConfDigest(getSession(sessionHandle).getSessionConfDigest());
     rewriteAndSelect(prepared);
     preparedQueries.put(prepared.getPrepareHandle(), prepared);
     preparedQueryQueue.add(prepared);
@@ -1517,6 +2258,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       Configuration qconf = getLensConf(sessionHandle, conf);
       accept(query, qconf, SubmitOp.EXECUTE);
       QueryContext ctx = createContext(query, getSession(sessionHandle).getLoggedInUser(), conf, qconf);
+      ctx.setSessionConfDigest(getSession(sessionHandle).getSessionConfDigest());
       ctx.setQueryName(queryName);
       return executeAsyncInternal(sessionHandle, ctx);
     } finally {
@@ -1570,6 +2312,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     ctx.setStatus(new QueryStatus(0.0, QUEUED, "Query is queued", false, null, null, null));
     queuedQueries.add(ctx);
     allQueries.put(ctx.getQueryHandle(), ctx);
+    queryIndex.add(ctx);
     fireStatusChangeEvent(ctx, ctx.getStatus(), before);
     log.info("Returning handle " + ctx.getQueryHandle().getHandleId());
     return ctx.getQueryHandle();
@@ -1718,6 +2461,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       Configuration qconf = getLensConf(sessionHandle, conf);
       accept(query, qconf, SubmitOp.EXECUTE);
       QueryContext ctx = createContext(query, getSession(sessionHandle).getLoggedInUser(), conf, qconf);
+      ctx.setSessionConfDigest(getSession(sessionHandle).getSessionConfDigest());
       ctx.setQueryName(queryName);
       return executeTimeoutInternal(sessionHandle, ctx, timeoutMillis, qconf);
     } finally {
@@ -1747,7 +2491,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
         log.error("Encountered Interrupted exception.", e);
       }
     }
-    QueryCompletionListener listener = new QueryCompletionListenerImpl(handle);
+    QueryCompletionListenerImpl listener = new QueryCompletionListenerImpl(handle);
     if (getQueryContext(sessionHandle, handle).getSelectedDriver() == null) {
       return result;
     }
@@ -1756,9 +2500,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
         getQueryContext(sessionHandle, handle).getSelectedDriver()
           .registerForCompletionNotification(handle, timeoutMillis, listener);
         try {
-          synchronized (listener) {
-            listener.wait(timeoutMillis);
-          }
+          listener.waitForNotification(timeoutMillis);
         } catch (InterruptedException e) {
           log.info("Waiting thread interrupted");
         }
@@ -1783,6 +2525,11 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
      */
     boolean succeeded = false;
 
+    /**
+     * Whether completion or error has been notified.
+     */
+    private boolean notified = false;
+
     /**
      * The handle.
      */
@@ -1807,6 +2554,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     public void onCompletion(QueryHandle handle) {
       synchronized (this) {
         succeeded = true;
+        notified = true;
         log.info("Query " + handle + " with time out succeeded");
         this.notify();
       }
@@ -1822,10 +2570,33 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     public void onError(QueryHandle handle, String error) {
       synchronized (this) {
         succeeded = false;
+        notified = true;
         log.info("Query " + handle + " with time out failed");
         this.notify();
       }
     }
+
+    /**
+     * Wait till completion or error is notified. The driver may notify from its notifier thread before the caller
+     * starts waiting, in which case this returns right away.
+     *
+     * @param timeoutMillis the maximum time to wait, no limit if not positive
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    synchronized void waitForNotification(long timeoutMillis) throws InterruptedException {
+      if (timeoutMillis <= 0) {
+        while (!notified) {
+          wait();
+        }
+        return;
+      }
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      long remaining = timeoutMillis;
+      while (!notified && remaining > 0) {
+        wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+    }
   }
 
   /*
@@ -1841,7 +2612,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     try {
       log.info("GetResultSetMetadata: " + sessionHandle.toString() + " query: " + queryHandle);
       acquire(sessionHandle);
-      LensResultSet resultSet = getResultset(queryHandle);
+      LensResultSet resultSet = getResultset(queryHandle, false);
       if (resultSet != null) {
         return resultSet.getMetadata().toQueryResultSetMetadata();
       } else {
@@ -1865,7 +2636,12 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     try {
       log.info("FetchResultSet:" + sessionHandle.toString() + " query:" + queryHandle);
       acquire(sessionHandle);
-      return getResultset(queryHandle).toQueryResult();
+      LensResultSet resultSet = getResultset(queryHandle, false);
+      if (resultSet instanceof InMemoryResultSet) {
+        // the result set applies the fetch size under the same lock as the read
+        return ((InMemoryResultSet) resultSet).toQueryResult(startIndex, fetchSize);
+      }
+      return resultSet.toQueryResult();
     } finally {
       release(sessionHandle);
     }
@@ -1931,6 +2707,18 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
   @Override
   public List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String userName,
     String queryName, long fromDate, long toDate) throws LensException {
+    return getAllQueries(sessionHandle, state, userName, queryName, fromDate, toDate, null, 0);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getAllQueries(org.apache.lens.api.LensSessionHandle,
+   * java.lang.String, java.lang.String, java.lang.String, long, long, org.apache.lens.api.query.QueryHandle, int)
+   */
+  @Override
+  public List<QueryHandle> getAllQueries(LensSessionHandle sessionHandle, String state, String userName,
+    String queryName, long fromDate, long toDate, QueryHandle afterHandle, int limit) throws LensException {
     validateTimeRange(fromDate, toDate);
     userName = UtilityMethods.removeDomain(userName);
     try {
@@ -1941,42 +2729,42 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       } catch (IllegalArgumentException e) {
         throw new BadRequestException("Bad state argument passed, possible" + " values are " + Status.values(), e);
       }
-      boolean filterByStatus = status != null;
       queryName = queryName.toLowerCase();
-      boolean filterByQueryName = StringUtils.isNotBlank(queryName);
 
       if (StringUtils.isBlank(userName)) {
         userName = getSession(sessionHandle).getLoggedInUser();
       }
+      if ("all".equalsIgnoreCase(userName)) {
+        userName = null;
+      }
 
-      List<QueryHandle> all = new ArrayList<QueryHandle>(allQueries.keySet());
-      Iterator<QueryHandle> itr = all.iterator();
-      while (itr.hasNext()) {
-        QueryHandle q = itr.next();
-        QueryContext context = allQueries.get(q);
-        long querySubmitTime = context.getSubmissionTime();
-        if ((filterByStatus && status != context.getStatus().getStatus())
-          || (filterByQueryName && !context.getQueryName().toLowerCase().contains(queryName))
-          || (!"all".equalsIgnoreCase(userName) && !userName.equalsIgnoreCase(context.getSubmittedUser()))
-          || (!(fromDate <= querySubmitTime && querySubmitTime <= toDate))) {
-          itr.remove();
+      long afterSubmissionTime = 0;
+      String after = null;
+      if (afterHandle != null) {
+        after = afterHandle.toString();
+        QueryContext afterCtx = allQueries.get(afterHandle);
+        FinishedLensQuery afterFinished = afterCtx == null ? lensServerDao.getQuery(after) : null;
+        if (afterCtx != null) {
+          afterSubmissionTime = afterCtx.getSubmissionTime();
+        } else if (afterFinished != null) {
+          afterSubmissionTime = afterFinished.getSubmissionTime();
+        } else {
+          throw new NotFoundException("Query not found " + afterHandle);
         }
       }
 
+      List<QueryContext> inMemory = queryIndex.findAfter(status, userName, queryName, fromDate, toDate,
+        afterSubmissionTime, after, limit);
+      List<FinishedLensQuery> persisted = Collections.emptyList();
       // Unless user wants to get queries in 'non finished' state, get finished queries from DB as well
       if (status == null || status == CANCELED || status == SUCCESSFUL || status == FAILED) {
-        if ("all".equalsIgnoreCase(userName)) {
-          userName = null;
-        }
-        List<QueryHandle> persistedQueries = lensServerDao.findFinishedQueries(state, userName, queryName, fromDate,
-          toDate);
-        if (persistedQueries != null && !persistedQueries.isEmpty()) {
-          log.info("Adding persisted queries " + persistedQueries.size());
-          all.addAll(persistedQueries);
+        persisted = lensServerDao.findFinishedQueries(state, userName, queryName, fromDate, toDate,
+          afterSubmissionTime, after, limit);
+        if (!persisted.isEmpty()) {
+          log.info("Adding persisted queries " + persisted.size());
         }
       }
-
-      return all;
+      return QueryIndex.mergeInSubmissionOrder(inMemory, persisted, limit);
     } finally {
       release(sessionHandle);
     }
@@ -2088,6 +2876,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       ExplainQueryContext estimateQueryContext = new ExplainQueryContext(requestId, query,
         getSession(sessionHandle).getLoggedInUser(), lensConf, qconf, drivers.values());
       estimateQueryContext.setLensSessionIdentifier(sessionHandle.getPublicId().toString());
+      estimateQueryContext.setSessionConfDigest(getSession(sessionHandle).getSessionConfDigest());
       accept(query, qconf, SubmitOp.ESTIMATE);
       rewriteAndSelect(estimateQueryContext);
       return estimateQueryContext.getSelectedDriverQueryCost();
@@ -2112,6 +2901,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       ExplainQueryContext explainQueryContext = new ExplainQueryContext(requestId, query,
         getSession(sessionHandle).getLoggedInUser(), lensConf, qconf, drivers.values());
       explainQueryContext.setLensSessionIdentifier(sessionHandle.getPublicId().toString());
+      explainQueryContext.setSessionConfDigest(getSession(sessionHandle).getSessionConfDigest());
       accept(query, qconf, SubmitOp.EXPLAIN);
       rewriteAndSelect(explainQueryContext);
       addSessionResourcesToDriver(explainQueryContext);
@@ -2184,21 +2974,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       int numDrivers = in.readInt();
       for (int i = 0; i < numDrivers; i++) {
         String driverClsName = in.readUTF();
-        LensDriver driver = drivers.get(driverClsName);
-        if (driver == null) {
-          // this driver is removed in the current server restart
-          // we will create an instance and read its state still.
-          try {
-            Class<? extends LensDriver> driverCls = (Class<? extends LensDriver>) Class.forName(driverClsName);
-            driver = (LensDriver) driverCls.newInstance();
-            driver.configure(conf);
-          } catch (Exception e) {
-            log.error("Could not instantiate driver:" + driverClsName, e);
-            throw new IOException(e);
-          }
-          log.info("Driver state for " + driverClsName + " will be ignored");
-        }
-        driver.readExternal(in);
+        restoreDriver(driverClsName, in);
       }
     }
 
@@ -2207,46 +2983,95 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
       int numQueries = in.readInt();
 
       for (int i = 0; i < numQueries; i++) {
-        QueryContext ctx = (QueryContext) in.readObject();
-        ctx.initTransientState();
-
-        //Create DriverSelectorQueryContext by passing all the drivers and the user query
-        //Driver conf gets reset in start
-        DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
-          drivers.values());
-        ctx.setDriverContext(driverCtx);
-        boolean driverAvailable = in.readBoolean();
-        // set the selected driver if available, if not available for the cases of queued queries,
-        // query service will do the selection from existing drivers and update
-        if (driverAvailable) {
-          String clsName = in.readUTF();
-          ctx.getDriverContext().setSelectedDriver(drivers.get(clsName));
-        }
-        allQueries.put(ctx.getQueryHandle(), ctx);
+        restoreQuery(in);
       }
+      populateQueryQueues();
+    }
+  }
 
-      // populate the query queues
-      for (QueryContext ctx : allQueries.values()) {
-        switch (ctx.getStatus().getStatus()) {
-        case NEW:
-        case QUEUED:
-          queuedQueries.add(ctx);
-          break;
-        case LAUNCHED:
-        case RUNNING:
-          launchedQueries.add(ctx);
-          break;
-        case SUCCESSFUL:
-        case FAILED:
-        case CANCELED:
-          updateFinishedQuery(ctx, null);
-          break;
-        case CLOSED:
-          allQueries.remove(ctx.getQueryHandle());
+  /**
+   * Restore state of a driver.
+   *
+   * @param driverClsName the driver class name
+   * @param in            the input to read from
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  private void restoreDriver(String driverClsName, ObjectInput in) throws IOException, ClassNotFoundException {
+    LensDriver driver = drivers.get(driverClsName);
+    if (driver == null) {
+      // this driver is removed in the current server restart
+      // we will create an instance and read its state still.
+      try {
+        Class<? extends LensDriver> driverCls = (Class<? extends LensDriver>) Class.forName(driverClsName);
+        driver = (LensDriver) driverCls.newInstance();
+        driver.configure(conf);
+      } catch (Exception e) {
+        log.error("Could not instantiate driver:" + driverClsName, e);
+        throw new IOException(e);
+      }
+      log.info("Driver state for " + driverClsName + " will be ignored");
+    }
+    driver.readExternal(in);
+  }
+
+  /**
+   * Restore a query and its selected driver.
+   *
+   * @param in the input to read from
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  private void restoreQuery(ObjectInput in) throws IOException, ClassNotFoundException {
+    QueryContext ctx = (QueryContext) in.readObject();
+    ctx.initTransientState();
+
+    //Create DriverSelectorQueryContext by passing all the drivers and the user query
+    //Driver conf gets reset in start
+    DriverSelectorQueryContext driverCtx = new DriverSelectorQueryContext(ctx.getUserQuery(), new Configuration(),
+      drivers.values());
+    ctx.setDriverContext(driverCtx);
+    boolean driverAvailable = in.readBoolean();
+    // set the selected driver if available, if not available for the cases of queued queries,
+    // query service will do the selection from existing drivers and update
+    if (driverAvailable) {
+      String clsName = in.readUTF();
+      ctx.getDriverContext().setSelectedDriver(drivers.get(clsName));
+    }
+    allQueries.put(ctx.getQueryHandle(), ctx);
+    queryIndex.add(ctx);
+  }
+
+  /**
+   * Populate the query queues from the restored queries.
+   */
+  private void populateQueryQueues() {
+    for (QueryContext ctx : allQueries.values()) {
+      switch (ctx.getStatus().getStatus()) {
+      case NEW:
+      case QUEUED:
+        queuedQueries.add(ctx);
+        break;
+      case LAUNCHED:
+      case RUNNING:
+        launchedQueries.add(ctx);
+        if (ctx.getSelectedDriver() != null) {
+          synchronized (launchingConstraints) {
+            markAdmitted(ctx);
+          }
         }
+        break;
+      case SUCCESSFUL:
+      case FAILED:
+      case CANCELED:
+        updateFinishedQuery(ctx, null);
+        break;
+      case CLOSED:
+        allQueries.remove(ctx.getQueryHandle());
+        queryIndex.remove(ctx);
       }
-      log.info("Recovered " + allQueries.size() + " queries");
     }
+    log.info("Recovered " + allQueries.size() + " queries");
   }
 
   /*
@@ -2280,6 +3105,85 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     log.info("Persisted " + allQueries.size() + " queries");
   }
 
+  @Override
+  public void setStateLog(ServiceStateLog stateLog) {
+    this.stateLog = stateLog;
+  }
+
+  @Override
+  public Collection<String> getStateEntryKeys() {
+    List<String> keys = new ArrayList<String>();
+    synchronized (drivers) {
+      for (String driverClsName : drivers.keySet()) {
+        keys.add(DRIVER_STATE_KEY_PREFIX + driverClsName);
+      }
+    }
+    for (QueryHandle handle : allQueries.keySet()) {
+      keys.add(QUERY_STATE_KEY_PREFIX + handle.getHandleIdString());
+    }
+    return keys;
+  }
+
+  @Override
+  public boolean writeStateEntry(String key, ObjectOutput out) throws IOException {
+    if (key.startsWith(DRIVER_STATE_KEY_PREFIX)) {
+      synchronized (drivers) {
+        LensDriver driver = drivers.get(key.substring(DRIVER_STATE_KEY_PREFIX.length()));
+        if (driver == null) {
+          return false;
+        }
+        driver.writeExternal(out);
+      }
+      return true;
+    }
+    QueryContext ctx = allQueries.get(QueryHandle.fromString(key.substring(QUERY_STATE_KEY_PREFIX.length())));
+    if (ctx == null) {
+      return false;
+    }
+    out.writeObject(ctx);
+    boolean isDriverAvailable = (ctx.getSelectedDriver() != null);
+    out.writeBoolean(isDriverAvailable);
+    if (isDriverAvailable) {
+      out.writeUTF(ctx.getSelectedDriver().getClass().getName());
+    }
+    return true;
+  }
+
+  @Override
+  public void readStateEntry(String key, ObjectInput in) throws IOException, ClassNotFoundException {
+    if (key.startsWith(DRIVER_STATE_KEY_PREFIX)) {
+      synchronized (drivers) {
+        restoreDriver(key.substring(DRIVER_STATE_KEY_PREFIX.length()), in);
+      }
+    } else {
+      synchronized (allQueries) {
+        restoreQuery(in);
+      }
+    }
+  }
+
+  @Override
+  public void stateEntriesRestored() {
+    synchronized (allQueries) {
+      populateQueryQueues();
+    }
+  }
+
+  /**
+   * Mark the query and its selected driver as changed on the state log, if state is persisted incrementally.
+   *
+   * @param ctx the query context
+   */
+  private void markStateChanged(QueryContext ctx) {
+    ServiceStateLog changes = stateLog;
+    if (changes != null) {
+      changes.markChanged(QUERY_STATE_KEY_PREFIX + ctx.getQueryHandleString());
+      if (ctx.getSelectedDriver() != null) {
+        changes.markChanged(DRIVER_STATE_KEY_PREFIX + ctx.getSelectedDriver().getClass().getName());
+      }
+    }
+  }
+
   /**
    * Pipe.
    *
@@ -2305,7 +3209,7 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
   @Override
   public Response getHttpResultSet(LensSessionHandle sessionHandle, QueryHandle queryHandle) throws LensException {
     final QueryContext ctx = getQueryContext(sessionHandle, queryHandle);
-    LensResultSet result = getResultset(queryHandle);
+    LensResultSet result = getResultset(queryHandle, false);
     if (result instanceof LensPersistentResult) {
       final Path resultPath = new Path(((PersistentResultSet) result).getOutputPath());
       try {
@@ -2387,11 +3291,33 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     return drivers.values();
   }
 
+  // Used in test code
+  int getAvailableLauncherPermits() {
+    return launcherPermits.availablePermits();
+  }
+
   @Override
   public long getQueuedQueriesCount() {
+    return queuedQueries.size() + getWaitingQueriesCount();
+  }
+
+  @Override
+  public long getWaitingQueriesCount() {
+    synchronized (launchingConstraints) {
+      return waitingQueries.size();
+    }
+  }
+
+  @Override
+  public long getRunnableQueriesCount() {
     return queuedQueries.size();
   }
 
+  @Override
+  public Set<String> getMissingFinishedQueriesIndexes() {
+    return lensServerDao.getMissingIndexes();
+  }
+
   @Override
   public long getRunningQueriesCount() {
     return launchedQueries.size();
@@ -2402,6 +3328,11 @@ public class QueryExecutionServiceImpl extends LensService implements QueryExecu
     return finishedQueries.size();
   }
 
+  @Override
+  public long getLaunchingQueriesCount() {
+    return launchingQueries.get();
+  }
+
   /**
    * Handle driver session start.
    *
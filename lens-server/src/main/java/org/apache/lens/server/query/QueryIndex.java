@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.*;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.server.api.query.FinishedLensQuery;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Secondary indexes over the queries kept in memory by the query service: by submitting user and by status, each
+ * ordered by submission time. A lookup walks the most selective index in submission order from the requested position
+ * and stops once it has found enough queries, so a page costs about its size rather than the number of queries in
+ * memory.
+ * <p/>
+ * Status of a query changes outside the index, so {@link #statusChanged(QueryContext)} has to be called on every
+ * transition. Lookups verify the status of each candidate all the same.
+ */
+@Slf4j
+class QueryIndex {
+
+  /**
+   * Position of a query in submission order: by submission time, and by handle string for queries submitted at the
+   * same time. This is the order in which finished queries are listed from the server database as well.
+   */
+  private static final class Position implements Comparable<Position> {
+    private final long submissionTime;
+    private final String handle;
+
+    Position(long submissionTime, String handle) {
+      this.submissionTime = submissionTime;
+      this.handle = handle;
+    }
+
+    Position(QueryContext ctx) {
+      this(ctx.getSubmissionTime(), ctx.getQueryHandle().toString());
+    }
+
+    @Override
+    public int compareTo(Position other) {
+      return compareSubmission(submissionTime, handle, other.submissionTime, other.handle);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Position && compareTo((Position) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (int) (submissionTime ^ (submissionTime >>> 32)) + handle.hashCode();
+    }
+  }
+
+  /** The indexed queries. */
+  private final Map<QueryHandle, QueryContext> queries = new HashMap<QueryHandle, QueryContext>();
+
+  /** All the indexed queries in submission order. */
+  private final NavigableMap<Position, QueryContext> bySubmission = new TreeMap<Position, QueryContext>();
+
+  /** Queries by lower cased submitting user. */
+  private final Map<String, NavigableMap<Position, QueryContext>> byUser =
+    new HashMap<String, NavigableMap<Position, QueryContext>>();
+
+  /** Queries by status. */
+  private final Map<Status, NavigableMap<Position, QueryContext>> byStatus =
+    new EnumMap<Status, NavigableMap<Position, QueryContext>>(Status.class);
+
+  /** The status under which each query is indexed in {@link #byStatus}. */
+  private final Map<QueryHandle, Status> indexedStatus = new HashMap<QueryHandle, Status>();
+
+  /**
+   * Add a query to the index.
+   *
+   * @param ctx the query context
+   */
+  synchronized void add(QueryContext ctx) {
+    QueryHandle handle = ctx.getQueryHandle();
+    QueryContext previous = queries.put(handle, ctx);
+    if (previous != null) {
+      removeFromIndexes(previous);
+    }
+    Position position = new Position(ctx);
+    bySubmission.put(position, ctx);
+    addTo(byUser, userKey(ctx.getSubmittedUser()), position, ctx);
+    Status status = ctx.getStatus().getStatus();
+    addTo(byStatus, status, position, ctx);
+    indexedStatus.put(handle, status);
+  }
+
+  /**
+   * Remove a query from the index.
+   *
+   * @param ctx the query context
+   */
+  synchronized void remove(QueryContext ctx) {
+    QueryContext removed = queries.remove(ctx.getQueryHandle());
+    if (removed != null) {
+      removeFromIndexes(removed);
+    }
+  }
+
+  /**
+   * Move the query to the index entry of its current status.
+   *
+   * @param ctx the query context
+   */
+  synchronized void statusChanged(QueryContext ctx) {
+    QueryHandle handle = ctx.getQueryHandle();
+    QueryContext indexed = queries.get(handle);
+    if (indexed == null) {
+      return;
+    }
+    Status status = ctx.getStatus().getStatus();
+    Status before = indexedStatus.put(handle, status);
+    if (before != status) {
+      Position position = new Position(indexed);
+      removeFrom(byStatus, before, position);
+      addTo(byStatus, status, position, indexed);
+    }
+  }
+
+  /**
+   * Number of queries in the index.
+   *
+   * @return the number of queries
+   */
+  synchronized int size() {
+    return queries.size();
+  }
+
+  /**
+   * Find the queries matching all the given filters which come after the given position in submission order.
+   *
+   * @param status          status of the queries, null for any status
+   * @param user            submitting user, matched ignoring case, null or blank for any user
+   * @param queryName       part of the query name, matched ignoring case, null or blank for any name
+   * @param fromDate        submission time lower bound, inclusive
+   * @param toDate          submission time upper bound, inclusive
+   * @param afterSubmission submission time of the position after which queries are returned
+   * @param afterHandle     handle of the position after which queries are returned, null to start from the first query
+   * @param limit           maximum number of queries returned, all the matching queries if not positive
+   * @return the matching queries, ordered by submission time
+   */
+  synchronized List<QueryContext> findAfter(Status status, String user, String queryName, long fromDate, long toDate,
+    long afterSubmission, String afterHandle, int limit) {
+    String userKey = StringUtils.isBlank(user) ? null : userKey(user);
+    String name = StringUtils.isBlank(queryName) ? null : queryName.toLowerCase();
+
+    NavigableMap<Position, QueryContext> candidates = bySubmission;
+    if (userKey != null) {
+      candidates = get(byUser, userKey);
+    }
+    if (status != null) {
+      NavigableMap<Position, QueryContext> withStatus = get(byStatus, status);
+      if (withStatus.size() < candidates.size()) {
+        candidates = withStatus;
+      }
+    }
+
+    // the empty handle string sorts before the handles of the queries submitted at fromDate
+    Position from = new Position(fromDate, "");
+    boolean inclusive = true;
+    if (afterHandle != null) {
+      Position after = new Position(afterSubmission, afterHandle);
+      if (after.compareTo(from) >= 0) {
+        from = after;
+        inclusive = false;
+      }
+    }
+
+    List<QueryContext> matches = new ArrayList<QueryContext>();
+    for (QueryContext ctx : candidates.tailMap(from, inclusive).values()) {
+      if (ctx.getSubmissionTime() > toDate || (limit > 0 && matches.size() >= limit)) {
+        break;
+      }
+      if ((status != null && status != ctx.getStatus().getStatus())
+        || (userKey != null && !userKey.equals(userKey(ctx.getSubmittedUser())))
+        || (name != null && (ctx.getQueryName() == null || !ctx.getQueryName().toLowerCase().contains(name)))) {
+        continue;
+      }
+      matches.add(ctx);
+    }
+    return matches;
+  }
+
+  /**
+   * Compare two positions in submission order.
+   *
+   * @return negative, zero or positive as the first position is before, same as or after the second one
+   */
+  static int compareSubmission(long submission1, String handle1, long submission2, String handle2) {
+    if (submission1 != submission2) {
+      return submission1 < submission2 ? -1 : 1;
+    }
+    return handle1.compareTo(handle2);
+  }
+
+  /**
+   * Merge the queries in memory and the queries persisted in DB, both ordered by submission time. A query which has
+   * just been persisted and not yet removed from memory is returned once.
+   *
+   * @param inMemory  the queries in memory
+   * @param persisted the queries persisted in DB
+   * @param limit     maximum number of queries returned, all the queries if not positive
+   * @return the merged query handles
+   */
+  static List<QueryHandle> mergeInSubmissionOrder(List<QueryContext> inMemory, List<FinishedLensQuery> persisted,
+    int limit) {
+    Set<QueryHandle> merged = new LinkedHashSet<QueryHandle>();
+    int i = 0;
+    int j = 0;
+    while ((i < inMemory.size() || j < persisted.size()) && (limit <= 0 || merged.size() < limit)) {
+      if (j >= persisted.size() || (i < inMemory.size() && compareSubmission(
+        inMemory.get(i).getSubmissionTime(), inMemory.get(i).getQueryHandle().toString(),
+        persisted.get(j).getSubmissionTime(), persisted.get(j).getHandle()) <= 0)) {
+        merged.add(inMemory.get(i++).getQueryHandle());
+      } else {
+        String handle = persisted.get(j++).getHandle();
+        try {
+          merged.add(QueryHandle.fromString(handle));
+        } catch (IllegalArgumentException e) {
+          log.warn("Warning invalid query handle found in DB " + handle);
+        }
+      }
+    }
+    return new ArrayList<QueryHandle>(merged);
+  }
+
+  private void removeFromIndexes(QueryContext ctx) {
+    Position position = new Position(ctx);
+    bySubmission.remove(position);
+    removeFrom(byUser, userKey(ctx.getSubmittedUser()), position);
+    removeFrom(byStatus, indexedStatus.remove(ctx.getQueryHandle()), position);
+  }
+
+  private static String userKey(String user) {
+    return user == null ? "" : user.toLowerCase();
+  }
+
+  private static <K> NavigableMap<Position, QueryContext> get(Map<K, NavigableMap<Position, QueryContext>> index,
+    K key) {
+    NavigableMap<Position, QueryContext> entries = index.get(key);
+    return entries == null ? new TreeMap<Position, QueryContext>() : entries;
+  }
+
+  private static <K> void addTo(Map<K, NavigableMap<Position, QueryContext>> index, K key, Position position,
+    QueryContext ctx) {
+    NavigableMap<Position, QueryContext> entries = index.get(key);
+    if (entries == null) {
+      entries = new TreeMap<Position, QueryContext>();
+      index.put(key, entries);
+    }
+    entries.put(position, ctx);
+  }
+
+  private static <K> void removeFrom(Map<K, NavigableMap<Position, QueryContext>> index, K key, Position position) {
+    NavigableMap<Position, QueryContext> entries = index.get(key);
+    if (entries != null) {
+      entries.remove(position);
+      if (entries.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+}
@@ -147,7 +147,10 @@ public class QueryServiceResource {
    *                  returns queries of the current user.
    * @param fromDate  from date to search queries in a time range, the range is inclusive(submitTime &gt;= fromDate)
    * @param toDate    to date to search queries in a time range, the range is inclusive(toDate &gt;= submitTime)
-   * @return List of {@link QueryHandle} objects
+   * @param after     If a query handle is passed, only the queries submitted after that query are returned. Passing
+   *                  the last handle of a list gets the next page of queries.
+   * @param limit     Maximum number of queries returned. By default, all the queries are returned.
+   * @return List of {@link QueryHandle} objects, ordered by submission time
    */
   @GET
   @Path("queries")
@@ -155,13 +158,15 @@ public class QueryServiceResource {
   public List<QueryHandle> getAllQueries(@QueryParam("sessionid") LensSessionHandle sessionid,
     @DefaultValue("") @QueryParam("state") String state, @DefaultValue("") @QueryParam("queryName") String queryName,
     @DefaultValue("") @QueryParam("user") String user, @DefaultValue("-1") @QueryParam("fromDate") long fromDate,
-    @DefaultValue("-1") @QueryParam("toDate") long toDate) {
+    @DefaultValue("-1") @QueryParam("toDate") long toDate, @DefaultValue("") @QueryParam("after") String after,
+    @DefaultValue("0") @QueryParam("limit") int limit) {
     checkSessionId(sessionid);
     try {
       if (toDate == -1L) {
         toDate = Long.MAX_VALUE;
       }
-      return queryServer.getAllQueries(sessionid, state, user, queryName, fromDate, toDate);
+      QueryHandle afterHandle = StringUtils.isBlank(after) ? null : getQueryHandle(after);
+      return queryServer.getAllQueries(sessionid, state, user, queryName, fromDate, toDate, afterHandle, limit);
     } catch (LensException e) {
       throw new WebApplicationException(e);
     }
@@ -274,7 +279,8 @@ public class QueryServiceResource {
     List<QueryHandle> handles = null;
     boolean failed = false;
     try {
-      handles = getAllQueries(sessionid, state, queryName, user, fromDate, toDate == -1L ? Long.MAX_VALUE : toDate);
+      handles = getAllQueries(sessionid, state, queryName, user, fromDate, toDate == -1L ? Long.MAX_VALUE : toDate,
+        "", 0);
       for (QueryHandle handle : handles) {
         if (cancelQuery(sessionid, handle)) {
           numCancelled++;
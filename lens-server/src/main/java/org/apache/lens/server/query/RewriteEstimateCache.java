@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.DriverSelectorQueryContext.DriverQueryContext;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.util.UtilityMethods;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache of the results of rewrite and estimate of user queries, so that a query submitted again is neither rewritten
+ * nor estimated again. An entry holds the driver query, the rewriter and driver plans and the cost for every driver.
+ * <p/>
+ * Entries are keyed by the user query with its white space normalized, the current database and the query conf. The
+ * query conf is made of the session conf, whose digest is computed once per change of the session conf, and of the
+ * conf passed with the query, which is small. All
+ * the entries are dropped when the version of the metastore changes, which happens on every change to cubes, tables,
+ * storages or partitions made through the metastore client. Changes made by other lens servers are seen only with
+ * the versioned metastore cache, <code>cube.metastore.cache.versioned</code>, once the metastore clients check the
+ * version stamp of their database; without it, the cache is only kept in step with the changes made through this
+ * server, and entries computed before a change made elsewhere are served until they expire. Queries with time ranges
+ * relative to now are not cached, since their rewrite depends on the time of submission.
+ * <p/>
+ * Plans are copied when they are cached and again for every query they are handed to, since queries can change them,
+ * for example by setting the prepare handle. Costs are immutable and shared.
+ */
+class RewriteEstimateCache {
+
+  /** Matches queries with time ranges relative to now. */
+  private static final Pattern RELATIVE_TIME = Pattern.compile("\\bnow\\b", Pattern.CASE_INSENSITIVE);
+
+  /**
+   * Result of rewrite and estimate for a driver.
+   */
+  private static class DriverResult {
+    private final String driverQuery;
+    private final String finalDriverQuery;
+    private final DriverQueryPlan rewriterPlan;
+    private final DriverQueryPlan driverQueryPlan;
+    private final QueryCost cost;
+
+    DriverResult(DriverQueryContext driverCtx) {
+      this.driverQuery = driverCtx.getQuery();
+      this.finalDriverQuery = driverCtx.getFinalDriverQuery();
+      this.rewriterPlan = copy(driverCtx.getRewriterPlan());
+      // a plan which can not be copied is computed again by the driver when needed
+      this.driverQueryPlan = copy(driverCtx.getDriverQueryPlan());
+      this.cost = driverCtx.getDriverCost();
+    }
+  }
+
+  private static DriverQueryPlan copy(DriverQueryPlan plan) {
+    return plan == null ? null : plan.copy();
+  }
+
+  /**
+   * Results of rewrite and estimate of a query for all the drivers.
+   */
+  private static class Entry {
+    private final boolean olapQuery;
+    private final Map<LensDriver, DriverResult> results = new HashMap<LensDriver, DriverResult>();
+
+    Entry(boolean olapQuery) {
+      this.olapQuery = olapQuery;
+    }
+  }
+
+  /** The cache. */
+  private final Cache<String, Entry> cache;
+
+  /** Version of the metastore, against which the cached entries were computed. */
+  private long metastoreVersion = CubeMetastoreClient.getMetastoreVersion();
+
+  /**
+   * Instantiates a new rewrite estimate cache.
+   *
+   * @param maxSize      maximum number of cached queries
+   * @param expiryMillis time after which a cached query is computed again
+   */
+  RewriteEstimateCache(long maxSize, long expiryMillis) {
+    cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(expiryMillis, TimeUnit.MILLISECONDS)
+      .build();
+  }
+
+  /**
+   * Key of the query in the cache.
+   *
+   * @param ctx the query context
+   * @return the key, null if the query can not be cached
+   */
+  String getKey(AbstractQueryContext ctx) {
+    if (ctx.getSessionConfDigest() == null) {
+      return null;
+    }
+    String query = normalize(ctx.getUserQuery());
+    if (RELATIVE_TIME.matcher(query).find()) {
+      return null;
+    }
+    Map<String, String> queryConf = ctx.getLensConf() == null ? Collections.<String, String>emptyMap()
+      : ctx.getLensConf().getProperties();
+    return ctx.getDatabase() + "\n" + ctx.getSessionConfDigest() + "\n"
+      + UtilityMethods.confDigest(queryConf.entrySet()) + "\n" + query;
+  }
+
+  /**
+   * Set results of rewrite and estimate of the query from the cache.
+   *
+   * @param key the key of the query
+   * @param ctx the query context
+   * @return true if the results were cached
+   */
+  boolean load(String key, AbstractQueryContext ctx) {
+    // with versioned metastore caches, this picks up changes made by other lens servers
+    CubeMetastoreClient.checkAllCaches();
+    checkMetastoreVersion();
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null || !entry.results.keySet().equals(ctx.getDriverContext().getDriverQueryContextMap().keySet())) {
+      return false;
+    }
+    ctx.setOlapQuery(entry.olapQuery);
+    for (Map.Entry<LensDriver, DriverResult> result : entry.results.entrySet()) {
+      LensDriver driver = result.getKey();
+      DriverResult driverResult = result.getValue();
+      ctx.setDriverQuery(driver, driverResult.driverQuery);
+      if (driverResult.finalDriverQuery != null) {
+        ctx.setFinalDriverQuery(driver, driverResult.finalDriverQuery);
+      }
+      ctx.getDriverContext().setDriverRewriterPlan(driver, copy(driverResult.rewriterPlan));
+      if (driverResult.driverQueryPlan != null) {
+        ctx.getDriverContext().setDriverQueryPlan(driver, copy(driverResult.driverQueryPlan));
+      }
+      ctx.setDriverCost(driver, driverResult.cost);
+    }
+    return true;
+  }
+
+  /**
+   * Cache the results of rewrite and estimate of the query, if they succeeded for all the drivers.
+   *
+   * @param key              the key of the query
+   * @param metastoreVersion version of the metastore before the query was rewritten
+   * @param ctx              the query context
+   */
+  void store(String key, long metastoreVersion, AbstractQueryContext ctx) {
+    Entry entry = new Entry(ctx.isOlapQuery());
+    for (Map.Entry<LensDriver, DriverQueryContext> driverCtx
+      : ctx.getDriverContext().getDriverQueryContextMap().entrySet()) {
+      DriverQueryContext driverQueryCtx = driverCtx.getValue();
+      if (driverQueryCtx.getDriverQueryRewriteError() != null
+        || driverQueryCtx.getDriverQueryCostEstimateError() != null || driverQueryCtx.getDriverCost() == null) {
+        return;
+      }
+      DriverResult result = new DriverResult(driverQueryCtx);
+      if (driverQueryCtx.getRewriterPlan() != null && result.rewriterPlan == null) {
+        // the rewriter plan can not be copied
+        return;
+      }
+      entry.results.put(driverCtx.getKey(), result);
+    }
+    synchronized (this) {
+      // metastore changed while the query was rewritten
+      if (metastoreVersion != CubeMetastoreClient.getMetastoreVersion()) {
+        return;
+      }
+      cache.put(key, entry);
+    }
+  }
+
+  /**
+   * Number of cached queries.
+   *
+   * @return the size
+   */
+  long size() {
+    return cache.size();
+  }
+
+  /**
+   * Drop all the cached queries.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private synchronized void checkMetastoreVersion() {
+    long currentVersion = CubeMetastoreClient.getMetastoreVersion();
+    if (currentVersion != metastoreVersion) {
+      cache.invalidateAll();
+      metastoreVersion = currentVersion;
+    }
+  }
+
+  /**
+   * Collapse white space outside of quotes, so that queries differing only in formatting share the cache entry.
+   *
+   * @param query the query
+   * @return the normalized query
+   */
+  static String normalize(String query) {
+    StringBuilder builder = new StringBuilder(query.length());
+    char quote = 0;
+    boolean space = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if (space && builder.length() > 0) {
+        builder.append(' ');
+      }
+      space = false;
+      builder.append(c);
+      if (quote == 0 && (c == '\'' || c == '"' || c == '`')) {
+        quote = c;
+      } else if (c == quote && query.charAt(i - 1) != '\\') {
+        quote = 0;
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.constraint;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.lens.api.Priority;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
+
+import org.apache.hadoop.conf.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caps the number of queries launched concurrently with each {@link Priority}. Priority of a query is the one its
+ * selected driver runs it with, decided from the estimated cost by the {@link QueryPriorityDecider} of the driver.
+ * Queries of drivers without a priority decider are {@link Priority#NORMAL}. Priorities which are not configured have
+ * no cap.
+ */
+@Slf4j
+public class MaxConcurrentPriorityQueriesConstraint extends MaxConcurrentQueriesConstraint {
+
+  /**
+   * The maximum concurrent queries of each priority.
+   */
+  private final Map<Priority, Integer> maxConcurrentQueries = new EnumMap<Priority, Integer>(Priority.class);
+
+  @Override
+  public void setConf(Configuration conf) {
+    super.setConf(conf);
+    if (conf == null) {
+      return;
+    }
+    maxConcurrentQueries.clear();
+    String[] limits = conf.getTrimmedStrings(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_PRIORITY);
+    for (String limit : limits) {
+      String[] priorityAndMax = limit.split("=");
+      if (priorityAndMax.length != 2) {
+        throw new IllegalArgumentException("Invalid value " + limit + " in "
+          + LensConfConstants.MAX_CONCURRENT_QUERIES_PER_PRIORITY + ", expected <priority>=<max>");
+      }
+      maxConcurrentQueries.put(Priority.valueOf(priorityAndMax[0].trim().toUpperCase()),
+        Integer.parseInt(priorityAndMax[1].trim()));
+    }
+  }
+
+  @Override
+  protected String getKey(QueryContext query) {
+    return decidePriority(query).name();
+  }
+
+  @Override
+  protected int getMaxConcurrentQueries(QueryContext query, String key) {
+    Integer max = maxConcurrentQueries.get(Priority.valueOf(key));
+    return max == null ? 0 : max;
+  }
+
+  /**
+   * Decide priority of the query from the cost estimated by its selected driver, with the decider of the driver.
+   *
+   * @param query the query
+   * @return the priority, {@link Priority#NORMAL} if it can not be decided
+   */
+  private Priority decidePriority(QueryContext query) {
+    try {
+      QueryPriorityDecider priorityDecider = query.getSelectedDriver().getQueryPriorityDecider();
+      QueryCost cost = query.getSelectedDriverQueryCost();
+      if (priorityDecider != null && cost != null) {
+        return priorityDecider.decidePriority(cost);
+      }
+    } catch (Exception e) {
+      log.warn("Could not decide priority of query {}, assuming {}", query.getQueryHandle(), Priority.NORMAL, e);
+    }
+    return Priority.NORMAL;
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.constraint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+
+import org.apache.hadoop.conf.Configured;
+
+/**
+ * Base class for constraints capping the number of launched queries sharing a key, like the driver or the submitting
+ * user. Counts are kept in memory as queries are launched and finished.
+ */
+public abstract class MaxConcurrentQueriesConstraint extends Configured implements QueryLaunchingConstraint {
+
+  /**
+   * Number of launched queries for each key.
+   */
+  private final Map<String, Integer> launchedCounts = new HashMap<String, Integer>();
+
+  /**
+   * Key of each launched query, so that the right count is decremented when it finishes.
+   */
+  private final Map<QueryHandle, String> launchedKeys = new HashMap<QueryHandle, String>();
+
+  /**
+   * Get the key under which the query is counted.
+   *
+   * @param query the query
+   * @return the key
+   */
+  protected abstract String getKey(QueryContext query);
+
+  /**
+   * Get the maximum number of queries which can be launched concurrently for the key.
+   *
+   * @param query the query being checked
+   * @param key   the key of the query
+   * @return the maximum, zero or less if there is no limit
+   */
+  protected abstract int getMaxConcurrentQueries(QueryContext query, String key);
+
+  @Override
+  public boolean allowsLaunchOf(QueryContext candidateQuery) {
+    String key = getKey(candidateQuery);
+    int max = getMaxConcurrentQueries(candidateQuery, key);
+    return max <= 0 || getLaunchedCount(key) < max;
+  }
+
+  @Override
+  public void queryLaunched(QueryContext query) {
+    String key = getKey(query);
+    launchedKeys.put(query.getQueryHandle(), key);
+    launchedCounts.put(key, getLaunchedCount(key) + 1);
+  }
+
+  @Override
+  public void queryFinished(QueryContext query) {
+    String key = launchedKeys.remove(query.getQueryHandle());
+    if (key != null) {
+      int count = getLaunchedCount(key) - 1;
+      if (count > 0) {
+        launchedCounts.put(key, count);
+      } else {
+        launchedCounts.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Get the number of launched queries for the key.
+   *
+   * @param key the key
+   * @return the count
+   */
+  int getLaunchedCount(String key) {
+    Integer count = launchedCounts.get(key);
+    return count == null ? 0 : count;
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.constraint;
+
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.query.QueryContext;
+
+/**
+ * Caps the number of queries of a user launched concurrently, across all drivers.
+ */
+public class MaxConcurrentUserQueriesConstraint extends MaxConcurrentQueriesConstraint {
+
+  @Override
+  protected String getKey(QueryContext query) {
+    return query.getSubmittedUser();
+  }
+
+  @Override
+  protected int getMaxConcurrentQueries(QueryContext query, String key) {
+    return getConf().getInt(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_USER,
+      LensConfConstants.DEFAULT_MAX_CONCURRENT_QUERIES_PER_USER);
+  }
+}
@@ -43,6 +43,8 @@ import org.apache.lens.server.api.session.SessionRestored;
 import org.apache.lens.server.api.session.SessionService;
 import org.apache.lens.server.query.QueryExecutionServiceImpl;
 import org.apache.lens.server.session.LensSessionImpl.ResourceEntry;
+import org.apache.lens.server.state.IncrementalStatePersistable;
+import org.apache.lens.server.state.ServiceStateLog;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -66,11 +68,14 @@ import lombok.extern.slf4j.Slf4j;
  * The Class HiveSessionService.
  */
 @Slf4j
-public class HiveSessionService extends LensService implements SessionService {
+public class HiveSessionService extends LensService implements SessionService, IncrementalStatePersistable {
 
   /** The restorable sessions. */
   private List<LensSessionImpl.LensSessionPersistInfo> restorableSessions;
 
+  /** The state log on which changed sessions are marked, null if state is persisted only in snapshots. */
+  private volatile ServiceStateLog stateLog;
+
   /** The session expiry thread. */
   private ScheduledExecutorService sessionExpiryThread;
 
@@ -114,6 +119,7 @@ public class HiveSessionService extends LensService implements SessionService {
     }
     if (!error) {
       getSession(sessionid).addResource(type, path);
+      markStateChanged(sessionid);
     }
     return numAdded;
   }
@@ -163,6 +169,7 @@ public class HiveSessionService extends LensService implements SessionService {
       acquire(sessionid);
       closeCliServiceOp(getCliService().executeStatement(getHiveSessionHandle(sessionid), command, null));
       getSession(sessionid).removeResource(type, path);
+      markStateChanged(sessionid);
     } catch (HiveSQLException e) {
       throw new WebApplicationException(e);
     } finally {
@@ -248,6 +255,7 @@ public class HiveSessionService extends LensService implements SessionService {
         addResourceToAllServices(sessionid, "jar", jar);
       }
     }
+    markStateChanged(sessionid);
     return sessionid;
   }
 
@@ -313,7 +321,7 @@ public class HiveSessionService extends LensService implements SessionService {
         if (var.indexOf(SetProcessor.HIVECONF_PREFIX) == 0) {
           var = var.substring(SetProcessor.HIVECONF_PREFIX.length());
         }
-        getSession(sessionid).getSessionConf().set(var, entry.getValue());
+        getSession(sessionid).setSessionConf(var, entry.getValue());
         if (addToSession) {
           String command = "set" + " " + entry.getKey() + "= " + entry.getValue();
           closeCliServiceOp(getCliService().executeStatement(getHiveSessionHandle(sessionid), command, null));
@@ -324,6 +332,7 @@ public class HiveSessionService extends LensService implements SessionService {
       // add to persist
       if (addToSession) {
         getSession(sessionid).setConfig(config);
+        markStateChanged(sessionid);
       }
       log.info("Set params:" + config);
     } catch (HiveSQLException e) {
@@ -467,6 +476,61 @@ public class HiveSessionService extends LensService implements SessionService {
     log.info("Session service recovered " + SESSION_MAP.size() + " sessions");
   }
 
+  @Override
+  public void setStateLog(ServiceStateLog stateLog) {
+    this.stateLog = stateLog;
+  }
+
+  @Override
+  public Collection<String> getStateEntryKeys() {
+    return new ArrayList<String>(SESSION_MAP.keySet());
+  }
+
+  @Override
+  public boolean writeStateEntry(String key, ObjectOutput out) throws IOException {
+    LensSessionHandle sessionHandle = SESSION_MAP.get(key);
+    if (sessionHandle == null) {
+      return false;
+    }
+    LensSessionImpl session;
+    try {
+      session = getSession(sessionHandle);
+    } catch (ClientErrorException e) {
+      // closed after it was looked up
+      return false;
+    }
+    session.getLensSessionPersistInfo().writeExternal(out);
+    return true;
+  }
+
+  @Override
+  public void readStateEntry(String key, ObjectInput in) throws IOException, ClassNotFoundException {
+    if (restorableSessions == null) {
+      restorableSessions = new ArrayList<LensSessionImpl.LensSessionPersistInfo>();
+    }
+    LensSessionImpl.LensSessionPersistInfo persistInfo = new LensSessionImpl.LensSessionPersistInfo();
+    persistInfo.readExternal(in);
+    restorableSessions.add(persistInfo);
+    SESSION_MAP.put(persistInfo.getSessionHandle().getPublicId().toString(), persistInfo.getSessionHandle());
+  }
+
+  @Override
+  public void stateEntriesRestored() {
+    log.info("Session service recovered " + SESSION_MAP.size() + " sessions");
+  }
+
+  /**
+   * Mark the session as changed on the state log, if state is persisted incrementally.
+   *
+   * @param sessionHandle the session handle
+   */
+  private void markStateChanged(LensSessionHandle sessionHandle) {
+    ServiceStateLog changes = stateLog;
+    if (changes != null) {
+      changes.markChanged(sessionHandle.getPublicId().toString());
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -483,6 +547,7 @@ public class HiveSessionService extends LensService implements SessionService {
    */
   private void closeInternal(LensSessionHandle sessionHandle) throws LensException {
     super.closeSession(sessionHandle);
+    markStateChanged(sessionHandle);
     // Inform query service
     LensService svc = LensServices.get().getService(QueryExecutionServiceImpl.NAME);
     if (svc instanceof QueryExecutionServiceImpl) {
@@ -517,6 +582,11 @@ public class HiveSessionService extends LensService implements SessionService {
      * Run internal.
      */
     public void runInternal() {
+      // persist last access times of the sessions, they are not marked on every access
+      ServiceStateLog changes = stateLog;
+      if (changes != null) {
+        changes.markChanged(getStateEntryKeys());
+      }
       List<LensSessionHandle> sessionsToRemove = new ArrayList<LensSessionHandle>(SESSION_MAP.values());
       Iterator<LensSessionHandle> itr = sessionsToRemove.iterator();
       while (itr.hasNext()) {
@@ -70,6 +70,9 @@ public class LensSessionImpl extends HiveSessionImpl {
   /** The conf. */
   private Configuration conf = createDefaultConf();
 
+  /** Digest of the conf, null until computed after the last change to the conf. */
+  private String confDigest;
+
   /**
    * Keep track of DB static resources which failed to be added to this session
    */
@@ -148,8 +151,37 @@ public class LensSessionImpl extends HiveSessionImpl {
     }
   }
 
-  public Configuration getSessionConf() {
-    return conf;
+  /**
+   * Copy of the session conf. The conf is changed only through {@link #setSessionConf(String, String)}, which keeps
+   * its digest in step.
+   *
+   * @return the session conf
+   */
+  public synchronized Configuration getSessionConf() {
+    return new Configuration(conf);
+  }
+
+  /**
+   * Sets an entry of the session conf.
+   *
+   * @param key   the key
+   * @param value the value
+   */
+  public synchronized void setSessionConf(String key, String value) {
+    conf.set(key, value);
+    confDigest = null;
+  }
+
+  /**
+   * Digest of the session conf. It is computed again only after the session conf is changed.
+   *
+   * @return the digest
+   */
+  public synchronized String getSessionConfDigest() {
+    if (confDigest == null) {
+      confDigest = UtilityMethods.confDigest(conf);
+    }
+    return confDigest;
   }
 
   /**
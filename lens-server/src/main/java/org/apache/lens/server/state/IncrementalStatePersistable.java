@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.state;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+
+/**
+ * A service whose state is made of keyed entries, which can be persisted incrementally through a
+ * {@link ServiceStateLog} instead of writing the whole state at every snapshot.
+ * <p/>
+ * The service marks keys of the entries it changes on the state log. The state log writes them in background, by
+ * calling {@link #writeStateEntry(String, ObjectOutput)}, so marking an entry does not block the caller.
+ */
+public interface IncrementalStatePersistable {
+
+  /**
+   * Name of the service.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Set the log on which the service marks its changed entries.
+   *
+   * @param stateLog the state log
+   */
+  void setStateLog(ServiceStateLog stateLog);
+
+  /**
+   * Keys of all the entries currently in the state of the service.
+   *
+   * @return the keys
+   */
+  Collection<String> getStateEntryKeys();
+
+  /**
+   * Write the current state of an entry.
+   *
+   * @param key the key of the entry
+   * @param out the output to write to
+   * @return false if the entry does not exist anymore, in which case nothing is written
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  boolean writeStateEntry(String key, ObjectOutput out) throws IOException;
+
+  /**
+   * Restore an entry written by {@link #writeStateEntry(String, ObjectOutput)}.
+   *
+   * @param key the key of the entry
+   * @param in  the input to read from
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  void readStateEntry(String key, ObjectInput in) throws IOException, ClassNotFoundException;
+
+  /**
+   * Called after all the persisted entries are restored.
+   */
+  void stateEntriesRestored();
+}
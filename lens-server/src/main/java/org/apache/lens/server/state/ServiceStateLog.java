@@ -0,0 +1,386 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.state;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write ahead log of the state of an {@link IncrementalStatePersistable} service.
+ * <p/>
+ * The service marks the keys of entries it changes. {@link #flush()} appends a record with the current state of every
+ * marked entry, or a removal record if the entry does not exist anymore, to the current journal segment. Marking an
+ * entry many times between two flushes writes it once.
+ * <p/>
+ * {@link #compact()} folds the base file and all the journal segments into a new base file, holding the latest record
+ * of every entry, and deletes the folded segments. Compaction only reads the persisted files, it does not need the
+ * state of the service.
+ * <p/>
+ * Files are kept in a directory per service: the base file is named {@value #BASE_FILE}, journal segments are named
+ * {@value #SEGMENT_PREFIX} followed by a sequence number.
+ * <p/>
+ * Compaction never leaves the log without a complete base: the new base is written to {@value #TMP_BASE_FILE}, the
+ * current base is renamed to {@value #OLD_BASE_FILE}, the new base is renamed in place and only then are the old base
+ * and the folded segments deleted, oldest segment first. If the server goes down in between, replay reads
+ * {@value #OLD_BASE_FILE} when {@value #BASE_FILE} is missing; the folded segments are still there in that case.
+ * {@value #TMP_BASE_FILE} is never read, it may be incomplete.
+ */
+@Slf4j
+public class ServiceStateLog {
+
+  /** Name of the base file. */
+  static final String BASE_FILE = "base";
+
+  /** Name of the base file being written by a compaction. */
+  static final String TMP_BASE_FILE = BASE_FILE + ".tmp";
+
+  /** Name of the base file replaced by a compaction, until the new base is in place. */
+  static final String OLD_BASE_FILE = BASE_FILE + ".old";
+
+  /** Prefix of journal segment names. */
+  static final String SEGMENT_PREFIX = "journal.";
+
+  /**
+   * Orders journal segments by their sequence number, which is the order they were created in. Sequence numbers in the
+   * names are zero padded to the same width, so comparing the names compares the numbers.
+   */
+  private static final Comparator<Path> SEGMENT_ORDER = new Comparator<Path>() {
+    @Override
+    public int compare(Path path1, Path path2) {
+      return path1.getName().compareTo(path2.getName());
+    }
+  };
+
+  /** Record holding the state of an entry. */
+  private static final byte PUT = 1;
+
+  /** Record marking the removal of an entry. */
+  private static final byte REMOVE = 2;
+
+  /** The service. */
+  private final IncrementalStatePersistable service;
+
+  /** The file system. */
+  private final FileSystem fs;
+
+  /** The directory holding the log files. */
+  private final Path dir;
+
+  /** Keys of the entries changed since the last flush. */
+  private final Set<String> changedKeys = new LinkedHashSet<String>();
+
+  /** The journal segment being written. */
+  private FSDataOutputStream segment;
+
+  /** Sequence number of the last journal segment. */
+  private long lastSegment;
+
+  /**
+   * Instantiates a new service state log.
+   *
+   * @param service the service
+   * @param fs      the file system
+   * @param dir     the directory holding the log files
+   */
+  public ServiceStateLog(IncrementalStatePersistable service, FileSystem fs, Path dir) {
+    this.service = service;
+    this.fs = fs;
+    this.dir = dir;
+  }
+
+  /**
+   * Mark an entry as changed, it will be written at the next flush.
+   *
+   * @param key the key of the entry
+   */
+  public void markChanged(String key) {
+    synchronized (changedKeys) {
+      changedKeys.add(key);
+    }
+  }
+
+  /**
+   * Mark entries as changed.
+   *
+   * @param keys the keys of the entries
+   */
+  public void markChanged(Collection<String> keys) {
+    synchronized (changedKeys) {
+      changedKeys.addAll(keys);
+    }
+  }
+
+  /**
+   * Whether anything has been persisted in the log.
+   *
+   * @return true if base file or journal segments exist
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized boolean exists() throws IOException {
+    return currentBase() != null || !listSegments().isEmpty();
+  }
+
+  /**
+   * Append the state of the changed entries to the journal.
+   *
+   * @return number of entries written
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized int flush() throws IOException {
+    List<String> keys;
+    synchronized (changedKeys) {
+      keys = new ArrayList<String>(changedKeys);
+      changedKeys.clear();
+    }
+    if (keys.isEmpty()) {
+      return 0;
+    }
+    int written = 0;
+    try {
+      if (segment == null) {
+        segment = fs.create(new Path(dir, nextSegmentName()));
+      }
+      for (String key : keys) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        boolean exists = service.writeStateEntry(key, out);
+        out.close();
+        writeRecord(segment, key, exists ? bytes.toByteArray() : null);
+        written++;
+      }
+    } finally {
+      if (written < keys.size()) {
+        // entries not written have to be written at the next flush
+        markChanged(keys.subList(written, keys.size()));
+      }
+      if (segment != null) {
+        segment.hflush();
+      }
+    }
+    log.debug("Wrote " + written + " entries of " + service.getName() + " to state log");
+    return written;
+  }
+
+  /**
+   * Fold the base file and the journal segments into a new base file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void compact() throws IOException {
+    flush();
+    closeSegment();
+    List<Path> segments = listSegments();
+    Map<String, byte[]> entries = replay();
+
+    Path base = new Path(dir, BASE_FILE);
+    Path oldBase = new Path(dir, OLD_BASE_FILE);
+    Path tmp = new Path(dir, TMP_BASE_FILE);
+    DataOutputStream out = fs.create(tmp, true);
+    try {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        writeRecord(out, entry.getKey(), entry.getValue());
+      }
+    } finally {
+      out.close();
+    }
+    if (fs.exists(base)) {
+      // an old base left next to a complete base is stale, and rename is no-op in HDFS if destination exists
+      if (fs.exists(oldBase) && !fs.delete(oldBase, false)) {
+        throw new IOException("Failed to delete " + oldBase);
+      }
+      if (!fs.rename(base, oldBase)) {
+        throw new IOException("Failed to rename " + base + " to " + oldBase);
+      }
+    }
+    // without a base, an old base left by an interrupted compaction stays readable until the new base is in place
+    if (!fs.rename(tmp, base)) {
+      throw new IOException("Failed to rename " + tmp + " to " + base);
+    }
+    if (fs.exists(oldBase) && !fs.delete(oldBase, false)) {
+      log.warn("Failed to delete replaced state log base " + oldBase);
+    }
+    // oldest first, so that the segments left behind by a failure are always the latest ones, which replay on top of
+    // the new base to the same state
+    for (Path path : segments) {
+      if (!fs.delete(path, false)) {
+        log.warn("Failed to delete compacted state log segment " + path + ", keeping it and the later segments");
+        break;
+      }
+    }
+    log.info("Compacted state log of " + service.getName() + " to " + entries.size() + " entries");
+  }
+
+  /**
+   * Read the latest persisted state of all entries.
+   *
+   * @return state of the entries by key, in the order in which they were first written
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized Map<String, byte[]> replay() throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+    Path base = currentBase();
+    if (base != null) {
+      readRecords(base, entries);
+    }
+    for (Path path : listSegments()) {
+      readRecords(path, entries);
+    }
+    return entries;
+  }
+
+  /**
+   * Restore the service from the persisted state.
+   *
+   * @return number of entries restored
+   * @throws IOException            Signals that an I/O exception has occurred.
+   * @throws ClassNotFoundException the class not found exception
+   */
+  public synchronized int restore() throws IOException, ClassNotFoundException {
+    Map<String, byte[]> entries = replay();
+    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(entry.getValue()));
+      try {
+        service.readStateEntry(entry.getKey(), in);
+      } finally {
+        in.close();
+      }
+    }
+    service.stateEntriesRestored();
+    return entries.size();
+  }
+
+  /**
+   * Close the journal segment being written.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void close() throws IOException {
+    closeSegment();
+  }
+
+  /**
+   * Delete all the log files.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public synchronized void delete() throws IOException {
+    closeSegment();
+    if (fs.exists(dir) && !fs.delete(dir, true)) {
+      throw new IOException("Failed to delete " + dir);
+    }
+  }
+
+  private void closeSegment() throws IOException {
+    if (segment != null) {
+      try {
+        segment.close();
+      } finally {
+        segment = null;
+      }
+    }
+  }
+
+  /**
+   * The base file to read: {@value #BASE_FILE}, or {@value #OLD_BASE_FILE} if a compaction was interrupted after moving
+   * the base away and before putting the new one in place.
+   *
+   * @return the base file, null if there is none
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private Path currentBase() throws IOException {
+    Path base = new Path(dir, BASE_FILE);
+    if (fs.exists(base)) {
+      return base;
+    }
+    Path oldBase = new Path(dir, OLD_BASE_FILE);
+    if (fs.exists(oldBase)) {
+      log.warn("Reading " + oldBase + " left by an interrupted compaction of " + service.getName());
+      return oldBase;
+    }
+    return null;
+  }
+
+  private String nextSegmentName() throws IOException {
+    for (Path path : listSegments()) {
+      lastSegment = Math.max(lastSegment, Long.parseLong(path.getName().substring(SEGMENT_PREFIX.length())));
+    }
+    lastSegment++;
+    return String.format("%s%020d", SEGMENT_PREFIX, lastSegment);
+  }
+
+  private List<Path> listSegments() throws IOException {
+    List<Path> segments = new ArrayList<Path>();
+    if (!fs.exists(dir)) {
+      return segments;
+    }
+    for (FileStatus status : fs.listStatus(dir)) {
+      if (status.getPath().getName().startsWith(SEGMENT_PREFIX)) {
+        segments.add(status.getPath());
+      }
+    }
+    Collections.sort(segments, SEGMENT_ORDER);
+    return segments;
+  }
+
+  private static void writeRecord(DataOutputStream out, String key, byte[] value) throws IOException {
+    if (value == null) {
+      out.writeByte(REMOVE);
+      out.writeUTF(key);
+    } else {
+      out.writeByte(PUT);
+      out.writeUTF(key);
+      out.writeInt(value.length);
+      out.write(value);
+    }
+  }
+
+  private void readRecords(Path path, Map<String, byte[]> entries) throws IOException {
+    DataInputStream in = fs.open(path);
+    try {
+      while (true) {
+        int type = in.read();
+        if (type < 0) {
+          break;
+        }
+        String key = in.readUTF();
+        if (type == PUT) {
+          byte[] value = new byte[in.readInt()];
+          in.readFully(value);
+          entries.put(key, value);
+        } else if (type == REMOVE) {
+          entries.remove(key);
+        } else {
+          throw new IOException("Unknown record type " + type + " in " + path);
+        }
+      }
+    } catch (EOFException e) {
+      // the server went down while writing the last record
+      log.warn("Ignoring incomplete record at the end of " + path);
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -18,9 +18,15 @@
  */
 package org.apache.lens.server.util;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import javax.sql.DataSource;
 
@@ -149,4 +155,30 @@ public final class UtilityMethods {
     }
     return sb.toString();
   }
+
+  /**
+   * MD5 digest of the conf entries, independent of their order.
+   *
+   * @param conf the conf entries
+   * @return the digest
+   */
+  public static String confDigest(Iterable<Map.Entry<String, String>> conf) {
+    SortedMap<String, String> entries = new TreeMap<String, String>();
+    for (Map.Entry<String, String> entry : conf) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(String.valueOf(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    return new BigInteger(1, digest.digest()).toString(16);
+  }
 }
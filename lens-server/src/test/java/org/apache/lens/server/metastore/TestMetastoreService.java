@@ -2084,6 +2084,90 @@ public class TestMetastoreService extends LensJerseyTest {
     }
   }
 
+  @Test
+  public void testBulkFactStoragePartitions() throws Exception {
+    final String table = "testBulkFactStoragePartitions";
+    final String DB = dbPFX + "testBulkFactStoragePartitions_DB";
+    String prevDb = getCurrentDatabase();
+    createDatabase(DB);
+    setCurrentDatabase(DB);
+    createStorage("S1");
+    createStorage("S2");
+
+    try {
+      final XCube cube = createTestCube("testCube");
+      target().path("metastore").path("cubes").queryParam("sessionid", lensSessionId).request(mediaType)
+        .post(Entity.xml(cubeObjectFactory.createXCube(cube)), APIResult.class);
+
+      XFactTable f = createFactTable(table);
+      f.getStorageTables().getStorageTable().add(createStorageTblElement("S1", table, "HOURLY"));
+      f.getStorageTables().getStorageTable().add(createStorageTblElement("S2", table, "HOURLY"));
+      final FormDataMultiPart mp = new FormDataMultiPart();
+      mp.bodyPart(new FormDataBodyPart(FormDataContentDisposition.name("sessionid").build(),
+        lensSessionId, medType));
+      mp.bodyPart(new FormDataBodyPart(
+        FormDataContentDisposition.name("fact").fileName("fact").build(),
+        cubeObjectFactory.createXFactTable(f), medType));
+      APIResult result = target()
+        .path("metastore")
+        .path("facts")
+        .request(mediaType)
+        .post(Entity.entity(mp, MediaType.MULTIPART_FORM_DATA_TYPE), APIResult.class);
+      assertEquals(result.getStatus(), APIResult.Status.SUCCEEDED);
+
+      // Add null partitions
+      Response resp = target().path("metastore/partitions")
+        .queryParam("sessionid", lensSessionId).request(mediaType)
+        .post(null);
+      Assert.assertEquals(resp.getStatus(), 400);
+
+      final Date partDate = new Date();
+      XBulkPartitions bulkPartitions = cubeObjectFactory.createXBulkPartitions();
+      XStoragePartitions s1Partitions = cubeObjectFactory.createXStoragePartitions();
+      s1Partitions.setStorageName("S1");
+      s1Partitions.getPartition().add(createPartition(table, partDate));
+      XPartition noUpdatePeriod = createPartition(table, partDate);
+      noUpdatePeriod.setUpdatePeriod(null);
+      s1Partitions.getPartition().add(noUpdatePeriod);
+      bulkPartitions.getStoragePartitions().add(s1Partitions);
+      XStoragePartitions s2Partitions = cubeObjectFactory.createXStoragePartitions();
+      s2Partitions.setStorageName("S2");
+      s2Partitions.getPartition().add(createPartition(table, partDate));
+      s2Partitions.getPartition().add(createPartition("testBulkNoSuchFact", partDate));
+      bulkPartitions.getStoragePartitions().add(s2Partitions);
+
+      XPartitionAddResults addResults = target().path("metastore/partitions")
+        .queryParam("sessionid", lensSessionId).request(mediaType)
+        .post(Entity.xml(cubeObjectFactory.createXBulkPartitions(bulkPartitions)),
+          new GenericType<JAXBElement<XPartitionAddResults>>() {}).getValue();
+      assertEquals(addResults.getResult().size(), 4);
+      assertTrue(addResults.getResult().get(0).isAdded());
+      assertEquals(addResults.getResult().get(0).getStorageName(), "S1");
+      // a partition that can't be converted is reported in its place
+      assertFalse(addResults.getResult().get(1).isAdded());
+      assertEquals(addResults.getResult().get(1).getStorageName(), "S1");
+      assertEquals(addResults.getResult().get(1).getFactName(), table);
+      assertNotNull(addResults.getResult().get(1).getMessage());
+      assertTrue(addResults.getResult().get(2).isAdded());
+      assertEquals(addResults.getResult().get(2).getStorageName(), "S2");
+      assertFalse(addResults.getResult().get(3).isAdded());
+      assertEquals(addResults.getResult().get(3).getFactName(), "testBulkNoSuchFact");
+      assertNotNull(addResults.getResult().get(3).getMessage());
+
+      // Verify partitions were added
+      for (String storage : new String[]{"S1", "S2"}) {
+        XPartitionList partitions = target().path("metastore/facts").path(table).path("storages").path(storage)
+          .path("partitions")
+          .queryParam("sessionid", lensSessionId).request(mediaType)
+          .get(new GenericType<JAXBElement<XPartitionList>>() {}).getValue();
+        assertEquals(partitions.getPartition().size(), 1);
+      }
+    } finally {
+      setCurrentDatabase(prevDb);
+      dropDatabase(DB);
+    }
+  }
+
   @Test
   public void testDimStoragePartitions() throws Exception {
     final String table = "testDimStoragePartitions";
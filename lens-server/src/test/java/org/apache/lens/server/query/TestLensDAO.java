@@ -22,6 +22,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -35,8 +36,10 @@ import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.driver.jdbc.JDBCResultSet;
 import org.apache.lens.server.LensJerseyTest;
 import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.metrics.MetricsService;
 import org.apache.lens.server.api.query.FinishedLensQuery;
 import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.metrics.MetricsServiceImpl;
 
 import org.apache.hadoop.conf.Configuration;
 
@@ -141,6 +144,78 @@ public class TestLensDAO extends LensJerseyTest {
     Assert.assertEquals(daoTestQueryHandles.get(0).getHandleId().toString(), finishedHandle);
   }
 
+  /**
+   * Test inserting finished queries in a batch.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testInsertFinishedQueriesBatch() throws Exception {
+    QueryExecutionServiceImpl service = (QueryExecutionServiceImpl) LensServices.get().getService("query");
+
+    List<FinishedLensQuery> batch = new ArrayList<FinishedLensQuery>();
+    for (int i = 0; i < 5; i++) {
+      QueryContext queryContext = service.createContext("SELECT ID FROM testTable", "foo@localhost", new LensConf(),
+        new Configuration());
+      queryContext.setQueryName("daobatchtestquery");
+      FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+      finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+      batch.add(finishedLensQuery);
+    }
+    // First query is already in db, it should be skipped while inserting the batch
+    service.lensServerDao.insertFinishedQuery(batch.get(0));
+    service.lensServerDao.insertFinishedQueries(batch);
+
+    for (FinishedLensQuery finishedLensQuery : batch) {
+      FinishedLensQuery actual = service.lensServerDao.getQuery(finishedLensQuery.getHandle());
+      Assert.assertNotNull(actual);
+      Assert.assertEquals(actual.getQueryName(), "daobatchtestquery");
+    }
+    List<QueryHandle> handles = service.lensServerDao.findFinishedQueries(null, null, "daobatchtestquery", -1L,
+      Long.MAX_VALUE);
+    Assert.assertEquals(handles.size(), batch.size());
+
+    // Read the same queries two at a time, in order of submission
+    List<String> paged = new ArrayList<String>();
+    FinishedLensQuery last = null;
+    while (true) {
+      List<FinishedLensQuery> page = service.lensServerDao.findFinishedQueries(null, null, "daobatchtestquery", -1L,
+        Long.MAX_VALUE, last == null ? 0 : last.getSubmissionTime(), last == null ? null : last.getHandle(), 2);
+      Assert.assertTrue(page.size() <= 2);
+      if (page.isEmpty()) {
+        break;
+      }
+      for (FinishedLensQuery query : page) {
+        paged.add(query.getHandle());
+      }
+      last = page.get(page.size() - 1);
+    }
+    Assert.assertEquals(paged.size(), batch.size());
+    for (int i = 1; i < paged.size(); i++) {
+      FinishedLensQuery previous = service.lensServerDao.getQuery(paged.get(i - 1));
+      FinishedLensQuery current = service.lensServerDao.getQuery(paged.get(i));
+      Assert.assertTrue(QueryIndex.compareSubmission(previous.getSubmissionTime(), previous.getHandle(),
+        current.getSubmissionTime(), current.getHandle()) < 0);
+    }
+  }
+
+  /**
+   * Test the indexes on finished queries table are reported healthy, also when they exist already.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFinishedQueriesIndexes() throws Exception {
+    QueryExecutionServiceImpl service = (QueryExecutionServiceImpl) LensServices.get().getService("query");
+    Assert.assertTrue(service.getMissingFinishedQueriesIndexes().isEmpty());
+    // creating the table again finds the indexes created at start up
+    service.lensServerDao.createFinishedQueriesTable();
+    Assert.assertTrue(service.getMissingFinishedQueriesIndexes().isEmpty());
+
+    MetricsServiceImpl metrics = (MetricsServiceImpl) LensServices.get().getService(MetricsService.NAME);
+    Assert.assertTrue(metrics.getHealthCheck().runHealthCheck(MetricsService.FINISHED_QUERIES_INDEXES).isHealthy());
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.query.QueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the in memory query index.
+ */
+public class TestQueryIndex {
+
+  private MockDriver driver;
+  private QueryIndex index;
+  private List<QueryContext> queries;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    driver = new MockDriver();
+    driver.configure(new Configuration(false));
+    index = new QueryIndex();
+    queries = new ArrayList<QueryContext>();
+    // user1 submits even numbered queries, user2 the odd numbered ones
+    for (int i = 0; i < 6; i++) {
+      QueryContext ctx = new QueryContext("select * from table", "user" + (i % 2 + 1), new LensConf(),
+        new Configuration(false), Collections.<LensDriver>singletonList(driver));
+      ctx.setQueryName("query" + i);
+      ctx.setStatus(new QueryStatus(0.0, Status.QUEUED, "queued", false, null, null, null));
+      index.add(ctx);
+      queries.add(ctx);
+      // make sure the queries have different submission times
+      Thread.sleep(2);
+    }
+  }
+
+  private List<QueryHandle> handles(int... positions) {
+    List<QueryHandle> handles = new ArrayList<QueryHandle>();
+    for (int position : positions) {
+      handles.add(queries.get(position).getQueryHandle());
+    }
+    return handles;
+  }
+
+  private List<QueryHandle> find(Status status, String user, String queryName, long fromDate, long toDate) {
+    return toHandles(index.findAfter(status, user, queryName, fromDate, toDate, 0, null, 0));
+  }
+
+  private List<QueryHandle> page(Status status, String user, long fromDate, long toDate, QueryContext after,
+    int limit) {
+    return toHandles(index.findAfter(status, user, null, fromDate, toDate,
+      after == null ? 0 : after.getSubmissionTime(), after == null ? null : after.getQueryHandle().toString(), limit));
+  }
+
+  private static List<QueryHandle> toHandles(List<QueryContext> page) {
+    List<QueryHandle> handles = new ArrayList<QueryHandle>();
+    for (QueryContext ctx : page) {
+      handles.add(ctx.getQueryHandle());
+    }
+    return handles;
+  }
+
+  @Test
+  public void testFind() throws Exception {
+    assertEquals(find(null, null, null, 0, Long.MAX_VALUE), handles(0, 1, 2, 3, 4, 5));
+    assertEquals(find(null, "USER1", null, 0, Long.MAX_VALUE), handles(0, 2, 4));
+    assertEquals(find(null, null, "QUERY3", 0, Long.MAX_VALUE), handles(3));
+    assertEquals(find(null, null, null, queries.get(2).getSubmissionTime(),
+      queries.get(4).getSubmissionTime()), handles(2, 3, 4));
+    assertTrue(find(Status.RUNNING, null, null, 0, Long.MAX_VALUE).isEmpty());
+    assertTrue(find(null, "user3", null, 0, Long.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testStatusChange() throws Exception {
+    for (int i : Arrays.asList(1, 2, 5)) {
+      queries.get(i).setStatus(new QueryStatus(0.0, Status.LAUNCHED, "launched", false, null, null, null));
+      index.statusChanged(queries.get(i));
+    }
+    assertEquals(find(Status.LAUNCHED, null, null, 0, Long.MAX_VALUE), handles(1, 2, 5));
+    assertEquals(find(Status.QUEUED, null, null, 0, Long.MAX_VALUE), handles(0, 3, 4));
+    assertEquals(find(Status.LAUNCHED, "user2", null, 0, Long.MAX_VALUE), handles(1, 5));
+
+    index.remove(queries.get(2));
+    assertEquals(index.size(), 5);
+    assertEquals(find(Status.LAUNCHED, null, null, 0, Long.MAX_VALUE), handles(1, 5));
+    assertEquals(find(null, "user1", null, 0, Long.MAX_VALUE), handles(0, 4));
+  }
+
+  @Test
+  public void testPagination() throws Exception {
+    assertEquals(page(null, null, 0, Long.MAX_VALUE, null, 2), handles(0, 1));
+    assertEquals(page(null, null, 0, Long.MAX_VALUE, queries.get(1), 2), handles(2, 3));
+    assertEquals(page(null, null, 0, Long.MAX_VALUE, queries.get(3), 10), handles(4, 5));
+    assertTrue(page(null, null, 0, Long.MAX_VALUE, queries.get(5), 2).isEmpty());
+    assertEquals(page(null, "user2", 0, Long.MAX_VALUE, queries.get(1), 1), handles(3));
+    // a lower bound after the position wins over the position
+    assertEquals(page(Status.QUEUED, null, queries.get(4).getSubmissionTime(), Long.MAX_VALUE, queries.get(1), 0),
+      handles(4, 5));
+    assertEquals(page(null, null, 0, queries.get(3).getSubmissionTime(), queries.get(1), 0), handles(2, 3));
+  }
+
+  @Test
+  public void testFindAfter() throws Exception {
+    List<QueryHandle> pages = new ArrayList<QueryHandle>();
+    QueryContext last = null;
+    while (true) {
+      List<QueryContext> page = index.findAfter(null, null, null, 0, Long.MAX_VALUE,
+        last == null ? 0 : last.getSubmissionTime(), last == null ? null : last.getQueryHandle().toString(), 4);
+      if (page.isEmpty()) {
+        break;
+      }
+      for (QueryContext ctx : page) {
+        pages.add(ctx.getQueryHandle());
+      }
+      last = page.get(page.size() - 1);
+    }
+    assertEquals(pages, handles(0, 1, 2, 3, 4, 5));
+
+    List<QueryContext> afterFirst = index.findAfter(null, "user1", null, 0, Long.MAX_VALUE,
+      queries.get(0).getSubmissionTime(), queries.get(0).getQueryHandle().toString(), 0);
+    assertEquals(afterFirst, Arrays.asList(queries.get(2), queries.get(4)));
+  }
+}
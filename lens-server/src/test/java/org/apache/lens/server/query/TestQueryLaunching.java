@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.apache.lens.api.query.QueryStatus.Status.LAUNCHED;
+import static org.apache.lens.api.query.QueryStatus.Status.QUEUED;
+import static org.apache.lens.api.query.QueryStatus.Status.RUNNING;
+import static org.apache.lens.api.query.QueryStatus.Status.SUCCESSFUL;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.core.Application;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.api.LensSessionHandle;
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.LensJerseyTest;
+import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverQueryStatus.DriverQueryState;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryExecutionService;
+import org.apache.lens.server.query.constraint.MaxConcurrentDriverQueriesConstraint;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.testng.annotations.AfterTest;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+/**
+ * Tests launching of queries held back by the query launching constraints. The server is restarted with a driver on
+ * which queries run till the test releases them, so it runs with the restart tests.
+ */
+@Test(alwaysRun = true, groups = "restart-test", dependsOnGroups = "unit-test")
+public class TestQueryLaunching extends LensJerseyTest {
+
+  /** The size of the launcher pool. */
+  private static final int LAUNCHER_POOL_SIZE = 2;
+
+  /**
+   * Driver on which launched queries keep running till they are released. It runs a single query at a time.
+   */
+  public static class HoldingDriver extends MockDriver {
+
+    /** The released queries. */
+    static final Set<QueryHandle> RELEASED = Collections.newSetFromMap(new ConcurrentHashMap<QueryHandle, Boolean>());
+
+    @Override
+    public void configure(Configuration conf) throws LensException {
+      Configuration driverConf = new Configuration(conf);
+      driverConf.setInt(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_DRIVER, 1);
+      super.configure(driverConf);
+    }
+
+    @Override
+    public void updateStatus(QueryContext context) throws LensException {
+      if (RELEASED.contains(context.getQueryHandle())) {
+        super.updateStatus(context);
+      } else {
+        context.getDriverStatus().setState(DriverQueryState.RUNNING);
+      }
+    }
+  }
+
+  /** The query service. */
+  private QueryExecutionServiceImpl queryService;
+
+  /** The lens session id. */
+  private LensSessionHandle lensSessionId;
+
+  @BeforeTest
+  public void setUp() throws Exception {
+    super.setUp();
+  }
+
+  @AfterTest
+  public void tearDown() throws Exception {
+    super.tearDown();
+  }
+
+  @Override
+  protected Application configure() {
+    return new QueryApp();
+  }
+
+  /**
+   * Submit more queries than the launching constraints allow, and check the queries held back wait without holding a
+   * launcher thread, and are launched as the launched queries finish.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testQueriesWaitingForLaunchingConstraints() throws Exception {
+    HiveConf conf = new HiveConf(getServerConf());
+    conf.set(LensConfConstants.DRIVER_CLASSES, conf.get(LensConfConstants.DRIVER_CLASSES) + ","
+      + HoldingDriver.class.getName());
+    conf.set(LensConfConstants.QUERY_LAUNCHING_CONSTRAINTS, MaxConcurrentDriverQueriesConstraint.class.getName());
+    conf.setInt(LensConfConstants.LAUNCHER_POOL_SIZE, LAUNCHER_POOL_SIZE);
+    conf.setLong(LensConfConstants.STATUS_POLL_MIN_INTERVAL_MILLIS, 100);
+    conf.setLong(LensConfConstants.STATUS_POLL_MAX_INTERVAL_MILLIS, 100);
+    restartLensServer(conf);
+    try {
+      queryService = (QueryExecutionServiceImpl) LensServices.get().getService(QueryExecutionService.NAME);
+      lensSessionId = queryService.openSession("foo@localhost", "bar", new HashMap<String, String>());
+      // the tables do not exist, so that only the holding driver can run the queries
+      List<QueryHandle> handles = new ArrayList<QueryHandle>();
+      for (int i = 0; i < 3; i++) {
+        handles.add(queryService.executeAsync(lensSessionId, "select id from launching_test_" + i, new LensConf(),
+          "launching_test_" + i));
+      }
+
+      // one query is launched, the others wait without holding launcher threads
+      waitForLaunch(handles, 1, 2);
+      QueryHandle first = getLaunched(handles);
+      assertNotNull(first);
+
+      // the first query finishing launches one of the waiting queries
+      HoldingDriver.RELEASED.add(first);
+      waitForStatus(first, SUCCESSFUL);
+      waitForLaunch(handles, 1, 1);
+      QueryHandle second = getLaunched(handles);
+      assertNotNull(second);
+      assertNotEquals(second, first);
+
+      HoldingDriver.RELEASED.addAll(handles);
+      for (QueryHandle handle : handles) {
+        waitForStatus(handle, SUCCESSFUL);
+      }
+      assertEquals(queryService.getWaitingQueriesCount(), 0);
+      waitForLaunch(handles, 0, 0);
+      queryService.closeSession(lensSessionId);
+    } finally {
+      restartLensServer(getServerConf());
+    }
+  }
+
+  private QueryStatus.Status getStatus(QueryHandle handle) throws LensException {
+    return queryService.getQuery(lensSessionId, handle).getStatus().getStatus();
+  }
+
+  private QueryHandle getLaunched(List<QueryHandle> handles) throws LensException {
+    for (QueryHandle handle : handles) {
+      QueryStatus.Status status = getStatus(handle);
+      if (status == LAUNCHED || status == RUNNING) {
+        return handle;
+      }
+    }
+    return null;
+  }
+
+  private void waitForStatus(QueryHandle handle, QueryStatus.Status expected) throws Exception {
+    for (int i = 0; i < 300 && getStatus(handle) != expected; i++) {
+      Thread.sleep(100);
+    }
+    assertEquals(getStatus(handle), expected);
+  }
+
+  /**
+   * Wait till the given numbers of queries are launched and waiting, and the launcher threads are free. The query
+   * submitter holds one launcher permit while it waits for a query to be queued.
+   *
+   * @param handles  the queries
+   * @param launched the number of launched queries expected
+   * @param waiting  the number of waiting queries expected
+   * @throws Exception the exception
+   */
+  private void waitForLaunch(List<QueryHandle> handles, int launched, int waiting) throws Exception {
+    for (int i = 0; i < 300; i++) {
+      if (countLaunched(handles) == launched && countQueued(handles) == waiting
+        && queryService.getWaitingQueriesCount() == waiting
+        && queryService.getAvailableLauncherPermits() == LAUNCHER_POOL_SIZE - 1) {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    assertEquals(countLaunched(handles), launched);
+    assertEquals(countQueued(handles), waiting);
+    assertEquals(queryService.getWaitingQueriesCount(), waiting);
+    assertEquals(queryService.getRunnableQueriesCount(), 0);
+    assertEquals(queryService.getAvailableLauncherPermits(), LAUNCHER_POOL_SIZE - 1);
+  }
+
+  private int countLaunched(List<QueryHandle> handles) throws LensException {
+    int count = 0;
+    for (QueryHandle handle : handles) {
+      QueryStatus.Status status = getStatus(handle);
+      if (status == LAUNCHED || status == RUNNING) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private int countQueued(List<QueryHandle> handles) throws LensException {
+    int count = 0;
+    for (QueryHandle handle : handles) {
+      if (getStatus(handle) == QUEUED) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.api.query.QueryPrepareHandle;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the cache of rewrite and estimate results.
+ */
+public class TestRewriteEstimateCache {
+
+  private MockDriver driver;
+  private RewriteEstimateCache cache;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    driver = new MockDriver();
+    driver.configure(new Configuration(false));
+    cache = new RewriteEstimateCache(10, 60000);
+  }
+
+  private QueryContext createContext(String query, String sessionConfDigest, LensConf lensConf) {
+    QueryContext ctx = new QueryContext(query, "user", lensConf, new Configuration(false),
+      Collections.<LensDriver>singletonList(driver));
+    ctx.setSessionConfDigest(sessionConfDigest);
+    return ctx;
+  }
+
+  private QueryContext createContext(String query) {
+    return createContext(query, "session", new LensConf());
+  }
+
+  private void rewrite(QueryContext ctx) {
+    ctx.setDriverQuery(driver, "rewritten " + ctx.getUserQuery());
+    ctx.setDriverCost(driver, new FactPartitionBasedQueryCost(10.0));
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals(RewriteEstimateCache.normalize("  select\n a,\tb  from t "), "select a, b from t");
+    assertEquals(RewriteEstimateCache.normalize("select 'a  b' from t where c = \"x\ty\""),
+      "select 'a  b' from t where c = \"x\ty\"");
+    assertEquals(RewriteEstimateCache.normalize("select 'it\\'s  a' ,  b"), "select 'it\\'s  a' , b");
+  }
+
+  @Test
+  public void testKey() {
+    LensConf conf = new LensConf();
+    conf.addProperty("key", "value");
+    String key = cache.getKey(createContext("select a  from t", "session", conf));
+    LensConf sameConf = new LensConf();
+    sameConf.addProperty("key", "value");
+    assertEquals(cache.getKey(createContext("select a from\nt", "session", sameConf)), key);
+
+    LensConf otherConf = new LensConf();
+    otherConf.addProperty("key", "other");
+    assertNotEquals(cache.getKey(createContext("select a from t", "session", otherConf)), key);
+    assertNotEquals(cache.getKey(createContext("select a from t", "otherSession", conf)), key);
+    assertNotEquals(cache.getKey(createContext("select b from t", "session", conf)), key);
+    assertNull(cache.getKey(createContext("cube select a from t where time_range_in(dt, 'now.day', 'now')",
+      "session", conf)));
+    // conf not coming from a session
+    assertNull(cache.getKey(createContext("select a from t", null, conf)));
+  }
+
+  @Test
+  public void testLoadAndInvalidate() {
+    QueryContext ctx = createContext("select a from t");
+    String key = cache.getKey(ctx);
+    assertFalse(cache.load(key, ctx));
+
+    rewrite(ctx);
+    cache.store(key, CubeMetastoreClient.getMetastoreVersion(), ctx);
+    assertEquals(cache.size(), 1);
+
+    QueryContext other = createContext("select a from t");
+    assertTrue(cache.load(key, other));
+    assertEquals(other.getDriverQuery(driver), "rewritten select a from t");
+    assertEquals(other.getDriverQueryCost(driver), new FactPartitionBasedQueryCost(10.0));
+
+    // results computed against an older version of the metastore are not cached
+    long version = CubeMetastoreClient.getMetastoreVersion();
+    CubeMetastoreClient.metastoreChanged();
+    assertFalse(cache.load(key, createContext("select a from t")));
+    assertEquals(cache.size(), 0);
+    cache.store(key, version, ctx);
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testPlansAreCopied() throws Exception {
+    QueryContext ctx = createContext("select a from t");
+    String key = cache.getKey(ctx);
+    rewrite(ctx);
+    DriverQueryPlan plan = driver.explain(ctx);
+    ctx.getDriverContext().setDriverQueryPlan(driver, plan);
+    cache.store(key, CubeMetastoreClient.getMetastoreVersion(), ctx);
+
+    QueryContext first = createContext("select a from t");
+    assertTrue(cache.load(key, first));
+    DriverQueryPlan firstPlan = first.getDriverContext().getDriverQueryPlan(driver);
+    assertNotNull(firstPlan);
+    assertNotSame(firstPlan, plan);
+    assertEquals(firstPlan.getPlan(), plan.getPlan());
+    assertEquals(firstPlan.getPrepareHandle(), plan.getPrepareHandle());
+    assertEquals(firstPlan.getTableWeights(), plan.getTableWeights());
+
+    // changes made by a query to its plan are not seen by the queries served later
+    QueryPrepareHandle handle = new QueryPrepareHandle(UUID.randomUUID());
+    firstPlan.setPrepareHandle(handle);
+    plan.getTableWeights().clear();
+    QueryContext second = createContext("select a from t");
+    assertTrue(cache.load(key, second));
+    DriverQueryPlan secondPlan = second.getDriverContext().getDriverQueryPlan(driver);
+    assertNotSame(secondPlan, firstPlan);
+    assertNotEquals(secondPlan.getPrepareHandle(), handle);
+    assertEquals(secondPlan.getTableWeights().size(), 3);
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query.constraint;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.lens.api.LensConf;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.driver.MockDriver;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the built in query launching constraints.
+ */
+public class TestQueryLaunchingConstraints {
+
+  private Configuration conf;
+  private MockDriver driver;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    conf = new Configuration(false);
+    driver = new MockDriver();
+    driver.configure(new Configuration(false));
+  }
+
+  private QueryContext createQuery(String user, double cost) {
+    QueryContext ctx = new QueryContext("select * from table", user, new LensConf(), conf,
+      Collections.<LensDriver>singletonList(driver));
+    ctx.setSelectedDriver(driver);
+    ctx.setDriverCost(driver, new FactPartitionBasedQueryCost(cost));
+    return ctx;
+  }
+
+  @Test
+  public void testMaxConcurrentDriverQueries() throws Exception {
+    conf.setInt(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_DRIVER, 2);
+    MaxConcurrentDriverQueriesConstraint constraint = new MaxConcurrentDriverQueriesConstraint();
+    constraint.setConf(conf);
+
+    QueryContext q1 = createQuery("user1", 0);
+    QueryContext q2 = createQuery("user2", 0);
+    QueryContext q3 = createQuery("user3", 0);
+    assertTrue(constraint.allowsLaunchOf(q1));
+    constraint.queryLaunched(q1);
+    assertTrue(constraint.allowsLaunchOf(q2));
+    constraint.queryLaunched(q2);
+    assertFalse(constraint.allowsLaunchOf(q3));
+
+    constraint.queryFinished(q1);
+    assertTrue(constraint.allowsLaunchOf(q3));
+    // finishing a query twice should not free up another slot
+    constraint.queryLaunched(q3);
+    constraint.queryFinished(q1);
+    assertFalse(constraint.allowsLaunchOf(q1));
+
+    // driver configuration overrides server configuration
+    driver.getConf().setInt(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_DRIVER, 3);
+    assertTrue(constraint.allowsLaunchOf(q1));
+  }
+
+  @Test
+  public void testMaxConcurrentUserQueries() throws Exception {
+    conf.setInt(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_USER, 1);
+    MaxConcurrentUserQueriesConstraint constraint = new MaxConcurrentUserQueriesConstraint();
+    constraint.setConf(conf);
+
+    QueryContext q1 = createQuery("user1", 0);
+    QueryContext q2 = createQuery("user1", 0);
+    QueryContext q3 = createQuery("user2", 0);
+    constraint.queryLaunched(q1);
+    assertFalse(constraint.allowsLaunchOf(q2));
+    assertTrue(constraint.allowsLaunchOf(q3));
+    constraint.queryFinished(q1);
+    assertTrue(constraint.allowsLaunchOf(q2));
+  }
+
+  @Test
+  public void testMaxConcurrentPriorityQueries() throws Exception {
+    conf.set(LensConfConstants.MAX_CONCURRENT_QUERIES_PER_PRIORITY, "LOW=1");
+    MaxConcurrentPriorityQueriesConstraint constraint = new MaxConcurrentPriorityQueriesConstraint();
+    constraint.setConf(conf);
+
+    QueryContext low1 = createQuery("user1", 100);
+    QueryContext low2 = createQuery("user2", 200);
+    QueryContext high = createQuery("user3", 1);
+    constraint.queryLaunched(low1);
+    assertFalse(constraint.allowsLaunchOf(low2));
+    // priorities without a limit are not capped
+    constraint.queryLaunched(high);
+    assertTrue(constraint.allowsLaunchOf(createQuery("user4", 1)));
+    constraint.queryFinished(low1);
+    assertTrue(constraint.allowsLaunchOf(low2));
+
+    // priority is decided by the selected driver
+    constraint.queryLaunched(low2);
+    assertFalse(constraint.allowsLaunchOf(createQuery("user5", 300)));
+    Configuration driverConf = new Configuration(false);
+    driverConf.set("mock.driver.priority.ranges", "");
+    driver.configure(driverConf);
+    assertTrue(constraint.allowsLaunchOf(createQuery("user5", 300)));
+  }
+}
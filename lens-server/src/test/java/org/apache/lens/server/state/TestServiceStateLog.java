@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.state;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the service state log.
+ */
+public class TestServiceStateLog {
+
+  private FileSystem fs;
+  private Path dir;
+
+  /**
+   * Service whose state is a map of strings.
+   */
+  private static class MapService implements IncrementalStatePersistable {
+    private final Map<String, String> entries = new LinkedHashMap<String, String>();
+    private boolean restored;
+
+    @Override
+    public String getName() {
+      return "mapservice";
+    }
+
+    @Override
+    public void setStateLog(ServiceStateLog stateLog) {
+    }
+
+    @Override
+    public Collection<String> getStateEntryKeys() {
+      return new ArrayList<String>(entries.keySet());
+    }
+
+    @Override
+    public boolean writeStateEntry(String key, ObjectOutput out) throws IOException {
+      String value = entries.get(key);
+      if (value == null) {
+        return false;
+      }
+      out.writeUTF(value);
+      return true;
+    }
+
+    @Override
+    public void readStateEntry(String key, ObjectInput in) throws IOException {
+      entries.put(key, in.readUTF());
+    }
+
+    @Override
+    public void stateEntriesRestored() {
+      restored = true;
+    }
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    fs = FileSystem.getLocal(new Configuration());
+    dir = new Path("target/test-state-log");
+    fs.delete(dir, true);
+  }
+
+  @Test
+  public void testFlushAndRestore() throws Exception {
+    MapService service = new MapService();
+    ServiceStateLog stateLog = new ServiceStateLog(service, fs, dir);
+    assertFalse(stateLog.exists());
+    assertEquals(stateLog.flush(), 0);
+
+    service.entries.put("a", "1");
+    service.entries.put("b", "2");
+    stateLog.markChanged(service.getStateEntryKeys());
+    assertEquals(stateLog.flush(), 2);
+
+    // marking an entry many times writes it once
+    service.entries.put("a", "3");
+    stateLog.markChanged("a");
+    stateLog.markChanged("a");
+    service.entries.remove("b");
+    stateLog.markChanged("b");
+    assertEquals(stateLog.flush(), 2);
+    stateLog.close();
+    assertTrue(stateLog.exists());
+
+    MapService restoredService = new MapService();
+    assertEquals(new ServiceStateLog(restoredService, fs, dir).restore(), 1);
+    assertTrue(restoredService.restored);
+    assertEquals(restoredService.entries, Collections.singletonMap("a", "3"));
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    MapService service = new MapService();
+    ServiceStateLog stateLog = new ServiceStateLog(service, fs, dir);
+    for (int i = 0; i < 5; i++) {
+      service.entries.put("k" + i, "v" + i);
+      stateLog.markChanged("k" + i);
+      stateLog.flush();
+    }
+    service.entries.remove("k0");
+    stateLog.markChanged("k0");
+    stateLog.compact();
+    assertEquals(fs.listStatus(dir).length, 1);
+    assertTrue(fs.exists(new Path(dir, ServiceStateLog.BASE_FILE)));
+
+    // changes after compaction go to a new segment
+    service.entries.put("k1", "changed");
+    stateLog.markChanged("k1");
+    stateLog.flush();
+    stateLog.close();
+
+    Map<String, byte[]> entries = new ServiceStateLog(new MapService(), fs, dir).replay();
+    assertEquals(entries.keySet(), new LinkedHashSet<String>(Arrays.asList("k1", "k2", "k3", "k4")));
+    MapService restoredService = new MapService();
+    new ServiceStateLog(restoredService, fs, dir).restore();
+    assertEquals(restoredService.entries, service.entries);
+
+    stateLog.delete();
+    assertFalse(stateLog.exists());
+  }
+
+  @Test
+  public void testTruncatedRecordIgnored() throws Exception {
+    MapService service = new MapService();
+    ServiceStateLog stateLog = new ServiceStateLog(service, fs, dir);
+    service.entries.put("a", "1");
+    stateLog.markChanged("a");
+    stateLog.flush();
+    stateLog.close();
+
+    // the server went down while writing a record
+    FSDataOutputStream out = fs.create(new Path(dir, ServiceStateLog.SEGMENT_PREFIX + "99999999999999999999"));
+    out.writeByte(1);
+    out.writeUTF("b");
+    out.writeInt(100);
+    out.close();
+
+    MapService restoredService = new MapService();
+    assertEquals(new ServiceStateLog(restoredService, fs, dir).restore(), 1);
+    assertEquals(restoredService.entries, Collections.singletonMap("a", "1"));
+  }
+
+  @Test
+  public void testCompactionInterruptedAfterMovingBase() throws Exception {
+    MapService service = new MapService();
+    ServiceStateLog stateLog = new ServiceStateLog(service, fs, dir);
+    service.entries.put("a", "1");
+    service.entries.put("b", "2");
+    stateLog.markChanged(service.getStateEntryKeys());
+    stateLog.compact();
+    service.entries.put("a", "3");
+    service.entries.remove("b");
+    service.entries.put("c", "4");
+    stateLog.markChanged(Arrays.asList("a", "b", "c"));
+    stateLog.flush();
+    stateLog.close();
+
+    // the server went down after moving the base away and before the new base, still being written, was renamed
+    Path base = new Path(dir, ServiceStateLog.BASE_FILE);
+    assertTrue(fs.rename(base, new Path(dir, ServiceStateLog.OLD_BASE_FILE)));
+    FSDataOutputStream out = fs.create(new Path(dir, ServiceStateLog.TMP_BASE_FILE));
+    out.writeByte(1);
+    out.close();
+    assertFalse(fs.exists(base));
+
+    ServiceStateLog restartedLog = new ServiceStateLog(new MapService(), fs, dir);
+    assertTrue(restartedLog.exists());
+    MapService restoredService = new MapService();
+    assertEquals(new ServiceStateLog(restoredService, fs, dir).restore(), 2);
+    assertEquals(restoredService.entries, service.entries);
+
+    // the next compaction puts a base in place and removes the leftovers
+    restartedLog.compact();
+    assertEquals(fs.listStatus(dir).length, 1);
+    assertTrue(fs.exists(base));
+    restoredService = new MapService();
+    new ServiceStateLog(restoredService, fs, dir).restore();
+    assertEquals(restoredService.entries, service.entries);
+  }
+
+  @Test
+  public void testCompactionInterruptedBeforeMovingBase() throws Exception {
+    MapService service = new MapService();
+    ServiceStateLog stateLog = new ServiceStateLog(service, fs, dir);
+    service.entries.put("a", "1");
+    stateLog.markChanged("a");
+    stateLog.compact();
+    service.entries.put("a", "2");
+    stateLog.markChanged("a");
+    stateLog.flush();
+    stateLog.close();
+
+    // the server went down while writing the new base
+    FSDataOutputStream out = fs.create(new Path(dir, ServiceStateLog.TMP_BASE_FILE));
+    out.writeByte(1);
+    out.writeUTF("a");
+    out.close();
+
+    MapService restoredService = new MapService();
+    assertEquals(new ServiceStateLog(restoredService, fs, dir).restore(), 1);
+    assertEquals(restoredService.entries, Collections.singletonMap("a", "2"));
+  }
+}